@@ -0,0 +1,136 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* Everything about a compiled module that doesn't change while it runs: the
+ * SimProgram, the class SimBytecodeCompiler made for it, the warnings of its
+ * source and, for a module with no state, the step() output cache. Nothing
+ * in it is written after the constructor, so one module can be shared by any
+ * number of SimInstances on any number of threads. Each SimInstance only holds the values of one copy
+ * of the module. */
+public final class CompiledModule
+{
+	private final SimProgram					program;
+	private final SimEngineType					engine_type;
+	/* null unless the module runs as a generated class */
+	private final Class<? extends SimEngine>	engine_class;
+	private final SimOutputCache				output_cache;
+	private final List<SimDiagnostic>			diagnostics;
+
+	/* Makes the classes for a module lowered by SimCompiler. engine_type is
+	 * INTERPRETER or BYTECODE. BYTECODE falls back to the interpreter if the
+	 * module can't be turned into a class, and modules with vectors wider than
+	 * 30 bits always run on SimWideInterpreter. diagnostics are the warnings
+	 * SimAnalysis found in the source. */
+	public CompiledModule(SimProgram program, SimEngineType engine_type, List<SimDiagnostic> diagnostics)
+	{
+		Class<? extends SimEngine> engine_class = null;
+
+		if (engine_type == SimEngineType.TREE_WALKER)
+		{
+			throw new IllegalArgumentException("The tree walker runs the parse tree, not a SimProgram");
+		}
+
+		if (!program.isWide() && engine_type == SimEngineType.BYTECODE)
+		{
+			try
+			{
+				engine_class = new SimBytecodeCompiler(program).compileClass();
+			}
+			catch (RuntimeException e)
+			{
+				System.out.println("Using the interpreter: " + e);
+			}
+			catch (LinkageError e)
+			{
+				System.out.println("Using the interpreter: " + e);
+			}
+		}
+
+		this.program = program;
+		this.engine_class = engine_class;
+		this.engine_type = (engine_class != null) ? SimEngineType.BYTECODE : SimEngineType.INTERPRETER;
+		this.diagnostics = Collections.unmodifiableList(new ArrayList<SimDiagnostic>(diagnostics));
+		/* most ticks repeat a sensor pattern seen before, whichever copy of
+		 * the module saw it - but a profile has to run every step */
+		this.output_cache = (program.getSchedule().isStateless() && program.getNumCounters() == 0) ? new SimOutputCache(SimOutputCache.DEFAULT_SIZE) : null;
+	}
+
+	/* A copy of the module in its initial state */
+	public SimInstance newInstance()
+	{
+		return new SimInstance(this, newEngine());
+	}
+
+	SimEngine newEngine()
+	{
+		SimEngine engine;
+
+		if (engine_class != null)
+		{
+			engine = SimBytecodeCompiler.newEngine(engine_class);
+		}
+		else if (program.isWide())
+		{
+			engine = new SimWideInterpreter(program);
+		}
+		else
+		{
+			engine = new SimInterpreter(program);
+		}
+		engine.setOutputCache(output_cache);
+		engine.setCounters(new long[program.getNumCounters()]);
+
+		return engine;
+	}
+
+	public SimProgram getProgram()
+	{
+		return program;
+	}
+
+	/* What the instances run on, which is INTERPRETER if BYTECODE fell back */
+	public SimEngineType getEngineType()
+	{
+		return engine_type;
+	}
+
+	/* The warnings of the source, kept with the module so one from the
+	 * program cache has them too */
+	public List<SimDiagnostic> getDiagnostics()
+	{
+		return diagnostics;
+	}
+
+	/* Shared by every instance. Null unless the module has no state. */
+	public SimOutputCache getOutputCache()
+	{
+		return output_cache;
+	}
+}
@@ -24,8 +24,12 @@ THE SOFTWARE.
 
 package VerilogSimulator;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Hashtable;
@@ -33,7 +37,6 @@ import java.util.List;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BaseErrorListener;
-import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
@@ -43,8 +46,26 @@ import javax.swing.*;
 
 public class Parse
 {
+	/* where sim_cycle puts each output */
+	public static final int					OUT_N				= 0;
+	public static final int					OUT_S				= 1;
+	public static final int					OUT_E				= 2;
+	public static final int					OUT_W				= 3;
+	public static final int					DEBUG_PORT			= 4;
+	public static final int					CLOCK_CYCLE			= 5;
+	public static final int					NUM_OUTPUTS			= 6;
+
+	/* the VCD scope the signals of a waveform are in */
+	private static final String				WAVEFORM_SCOPE		= "traffic_signal";
+
 	private ParseTree						root_tree;
 	private SimVisitor						visitor;
+	private SimEngine						engine;
+	private SimProgram						program;
+	private CompiledModule					module;
+	private SimProgramCache					program_cache;
+	private SimEngineType					sim_engine			= SimEngineType.INTERPRETER;
+	private boolean							is_profiling		= false;
 
 	private ArrayList<ParsePort>			ports_list;
 	private ArrayList<ParseRegWire>			vars_list;
@@ -52,6 +73,15 @@ public class Parse
 	private Hashtable<String, ParseRegWire>	hash_vars;
 
 	private ArrayList<Integer>				output_vector_list;
+	private ArrayList<SimDiagnostic>		diagnostics			= new ArrayList<SimDiagnostic>();
+
+	/* the VCD file being written and the last cycles kept - see
+	 * startWaveform and keepLastCycles */
+	private SimVcdWriter					waveform;
+	private SimCycleRing					last_cycles;
+	private int								num_last_cycles;
+	private long[]							wave_values;
+	private long							wave_time;
 
 	private Boolean							is_compiled			= false;
 	private Boolean							is_no_parse_errors	= true;
@@ -75,18 +105,19 @@ public class Parse
 		ports_list = new ArrayList<ParsePort>();
 		vars_list = new ArrayList<ParseRegWire>();
 		ANTLRInputStream input = new ANTLRInputStream(new FileInputStream(fileName));
-		Verilog2001Lexer lexer = new Verilog2001Lexer(input);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		Verilog2001Parser parser = new Verilog2001Parser(tokens);
+		ParseFrontEnd front_end = ParseFrontEnd.forThread();
+		Verilog2001Parser parser = front_end.reset(input);
 		ParseTreeWalker walker = new ParseTreeWalker();
 		ParseListener listener = new ParseListener(parser, ports_list, vars_list, hash_ports, hash_vars);
 
-		this.visitor = new SimVisitor(ports_list, vars_list, hash_ports, hash_vars);
-
-		root_tree = parser.module_declaration();
+		root_tree = front_end.parseModule(null);
 		/* first pass to make all the symbol tables */
-		walker.walk(listener, root_tree);
-		is_compiled = true;
+		if (root_tree != null)
+		{
+			walker.walk(listener, root_tree);
+		}
+		/* bind the identifiers and lower the tree for the sim engine */
+		is_compiled = lowerToProgram(parser);
 	}
 
 	public void compileFileForEditor(String fileName) throws IOException
@@ -96,23 +127,21 @@ public class Parse
 		ports_list = new ArrayList<ParsePort>();
 		vars_list = new ArrayList<ParseRegWire>();
 		ANTLRInputStream input = new ANTLRInputStream(new FileInputStream(fileName));
-		Verilog2001Lexer lexer = new Verilog2001Lexer(input);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		Verilog2001Parser parser = new Verilog2001Parser(tokens);
+		ParseFrontEnd front_end = ParseFrontEnd.forThread();
+		Verilog2001Parser parser = front_end.reset(input);
 		ParseTreeWalker walker = new ParseTreeWalker();
 		ParseListener listener = new ParseListener(parser, ports_list, vars_list, hash_ports, hash_vars);
 
-		this.visitor = new SimVisitor(ports_list, vars_list, hash_ports, hash_vars);
-
 		is_no_parse_errors = true;
 
-		parser.removeErrorListeners();
-		parser.addErrorListener(new VerboseListenerE());
-		root_tree = parser.module_declaration();
+		root_tree = front_end.parseModule(new VerboseListenerE());
 		/* first pass to make all the symbol tables */
-		walker.walk(listener, root_tree);
+		if (root_tree != null)
+		{
+			walker.walk(listener, root_tree);
+		}
 
-		if (is_no_parse_errors)
+		if (is_no_parse_errors && lowerToProgram(parser))
 		{
 			is_compiled = true;
 		}
@@ -122,31 +151,48 @@ public class Parse
 		}
 	}
 
+	/* Uses the program cache if there is one - see setProgramCache */
 	public void compileFileForGame(String fileName) throws IOException
 	{
+		byte[] source = Files.readAllBytes(Paths.get(fileName));
+
+		/* the cache only keeps modules compiled without profiling */
+		if (program_cache != null && sim_engine != SimEngineType.TREE_WALKER && !is_profiling)
+		{
+			CompiledModule cached_module = program_cache.loadModule(source, sim_engine);
+
+			if (cached_module != null)
+			{
+				setCompiledModule(cached_module);
+				for (int i = 0; i < diagnostics.size(); i++)
+				{
+					reportMessage(diagnostics.get(i).toString());
+				}
+				return;
+			}
+		}
+
 		hash_ports = new Hashtable<String, ParsePort>();
 		hash_vars = new Hashtable<String, ParseRegWire>();
 		ports_list = new ArrayList<ParsePort>();
 		vars_list = new ArrayList<ParseRegWire>();
-		ANTLRInputStream input = new ANTLRInputStream(new FileInputStream(fileName));
-		Verilog2001Lexer lexer = new Verilog2001Lexer(input);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		Verilog2001Parser parser = new Verilog2001Parser(tokens);
+		ANTLRInputStream input = new ANTLRInputStream(new ByteArrayInputStream(source));
+		ParseFrontEnd front_end = ParseFrontEnd.forThread();
+		Verilog2001Parser parser = front_end.reset(input);
 		ParseTreeWalker walker = new ParseTreeWalker();
 		ParseListener listener = new ParseListener(parser, ports_list, vars_list, hash_ports, hash_vars);
 
-		this.visitor = new SimVisitor(ports_list, vars_list, hash_ports, hash_vars);
-
 		is_no_parse_errors = true;
 
-		parser.removeErrorListeners();
-		parser.addErrorListener(new VerboseListenerGame());
-		root_tree = parser.module_declaration();
+		root_tree = front_end.parseModule(new VerboseListenerGame());
 
 		/* first pass to make all the symbol tables */
-		walker.walk(listener, root_tree);
+		if (root_tree != null)
+		{
+			walker.walk(listener, root_tree);
+		}
 
-		if (is_no_parse_errors)
+		if (is_no_parse_errors && lowerToProgram(parser))
 		{
 			is_compiled = true;
 		}
@@ -154,6 +200,256 @@ public class Parse
 		{
 			is_compiled = false;
 		}
+
+		if (is_compiled && module != null && program_cache != null && !is_profiling)
+		{
+			try
+			{
+				program_cache.storeModule(source, sim_engine, module);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Not caching the compiled module: " + e);
+			}
+		}
+	}
+
+	/* Keeps compileFileForGame results in a cache directory so a file that
+	 * hasn't changed since it was last compiled skips the parser. Only
+	 * modules that compiled without errors are kept. Every Parse given the
+	 * same cache shares one CompiledModule per source. Null turns it off. */
+	public void setProgramCache(SimProgramCache program_cache)
+	{
+		this.program_cache = program_cache;
+	}
+
+	public SimProgramCache getProgramCache()
+	{
+		return program_cache;
+	}
+
+	/* Picks what runs sim_cycle for the next compile. The tree walker is slow
+	 * but handy for checking the other engines against, and only simulates
+	 * vectors up to 30 bits. BYTECODE falls back to the interpreter if the
+	 * module can't be turned into a class, and modules with wider vectors
+	 * always run on SimWideInterpreter. */
+	public void setSimEngine(SimEngineType sim_engine)
+	{
+		this.sim_engine = sim_engine;
+	}
+
+	public SimEngineType getSimEngine()
+	{
+		return sim_engine;
+	}
+
+	/* Compiles the next module with a counter on every statement, if arm and
+	 * case item for getCoverage(). Counting costs a little on every one, and
+	 * the tree walker doesn't count. */
+	public void setProfiling(boolean is_profiling)
+	{
+		this.is_profiling = is_profiling;
+	}
+
+	public boolean isProfiling()
+	{
+		return is_profiling;
+	}
+
+	/* How often each statement, if arm and case item has run since the module
+	 * was compiled. Null unless a module compiled with profiling is
+	 * running. */
+	public SimCoverage getCoverage()
+	{
+		if (engine == null || program.getNumCounters() == 0)
+		{
+			return null;
+		}
+
+		return new SimCoverage(program, engine.getCounters());
+	}
+
+	/* Binds every identifier to a slot, then lowers the module into a
+	 * SimProgram so a sim cycle runs a flat list of instructions instead of
+	 * visiting the whole tree. Returns false if the module can't be
+	 * simulated. */
+	private boolean lowerToProgram(Verilog2001Parser parser)
+	{
+		ParseHierarchy hierarchy;
+		SimBinding binding;
+		SimCompiler sim_compiler;
+		SimProgram program;
+		List<ParseTree> step_blocks;
+
+		end_recording();
+		visitor = null;
+		engine = null;
+		this.program = null;
+		this.module = null;
+		diagnostics = new ArrayList<SimDiagnostic>();
+
+		if (root_tree == null)
+		{
+			reportMessage("Error: No module in the file");
+			return false;
+		}
+
+		/* the modules the top one instantiates, each instance with its own
+		 * tree */
+		hierarchy = new ParseHierarchy(parser, (Verilog2001Parser.Module_declarationContext) root_tree);
+		if (!hierarchy.getErrors().isEmpty())
+		{
+			reportErrors(hierarchy.getErrors());
+			return false;
+		}
+
+		binding = new SimBinding(ports_list, vars_list, hash_ports, hash_vars, hierarchy);
+		binding.bind(root_tree, hierarchy.getNumTokens());
+		if (!binding.getErrors().isEmpty())
+		{
+			reportErrors(binding.getErrors());
+			return false;
+		}
+
+		/* latches, loops and misplaced assignments, found once here instead
+		 * of every cycle of the simulation */
+		if (parser.getNumberOfSyntaxErrors() == 0)
+		{
+			diagnostics = new SimAnalysis(binding).analyze(root_tree);
+			for (int i = 0; i < diagnostics.size(); i++)
+			{
+				reportMessage(diagnostics.get(i).toString());
+			}
+		}
+
+		if (sim_engine == SimEngineType.TREE_WALKER)
+		{
+			ArrayList<String> errors = tree_walker_errors(binding);
+
+			if (!errors.isEmpty())
+			{
+				reportErrors(errors);
+				return false;
+			}
+			if (parser.getNumberOfSyntaxErrors() > 0)
+			{
+				return false;
+			}
+
+			/* the blocks in the order the compiled engines settle them */
+			sim_compiler = new SimCompiler(binding);
+			step_blocks = sim_compiler.stepBlocks(root_tree);
+			if (step_blocks == null)
+			{
+				reportErrors(sim_compiler.getErrors());
+				return false;
+			}
+			visitor = new SimVisitor(binding, step_blocks);
+			return true;
+		}
+		if (parser.getNumberOfSyntaxErrors() > 0)
+		{
+			return false;
+		}
+
+		sim_compiler = new SimCompiler(binding, is_profiling);
+		program = sim_compiler.compile(root_tree);
+
+		if (program == null)
+		{
+			reportErrors(sim_compiler.getErrors());
+			return false;
+		}
+
+		/* only the tree walker needs the tree after this */
+		root_tree = null;
+		hash_ports = null;
+		hash_vars = null;
+		ports_list = null;
+		vars_list = null;
+
+		startModule(new CompiledModule(program, sim_engine, diagnostics));
+		return true;
+	}
+
+	/* The tree walker runs on ints, so it would cut a vector wider than 30
+	 * bits to its low bits */
+	private ArrayList<String> tree_walker_errors(SimBinding binding)
+	{
+		ArrayList<String> errors = new ArrayList<String>();
+		int[] slot_widths = binding.getSlotWidths();
+
+		for (int i = 0; i < slot_widths.length; i++)
+		{
+			if (slot_widths[i] > 30 && !binding.isParameter(i))
+			{
+				errors.add("Error: " + binding.getSlotNames()[i] + " is " + slot_widths[i] + " bits, and the tree walker engine only simulates vectors of up to 30");
+			}
+		}
+
+		return errors;
+	}
+
+	private void startModule(CompiledModule module)
+	{
+		this.module = module;
+		this.program = module.getProgram();
+		engine = module.newEngine();
+		update_output_cache();
+	}
+
+	/* Runs a module compiled by another Parse, from its initial state. The
+	 * module is shared and this Parse only keeps its own values. */
+	public void setCompiledModule(CompiledModule module)
+	{
+		end_recording();
+		root_tree = null;
+		visitor = null;
+		is_no_parse_errors = true;
+		diagnostics = new ArrayList<SimDiagnostic>(module.getDiagnostics());
+		startModule(module);
+		is_compiled = true;
+	}
+
+	/* What a compile made for the engines other than the tree walker, to share
+	 * with other Parses or SimInstances. Null if nothing was compiled. */
+	public CompiledModule getCompiledModule()
+	{
+		return is_compiled ? module : null;
+	}
+
+	/* The step() output cache of a module with no state, with its hit and
+	 * miss counts. Null for anything else. */
+	public SimOutputCache getOutputCache()
+	{
+		return (module != null) ? module.getOutputCache() : null;
+	}
+
+	/* The warnings SimAnalysis found in the last compile of the source, or
+	 * kept with the module it came from */
+	public ArrayList<SimDiagnostic> getDiagnostics()
+	{
+		return diagnostics;
+	}
+
+	private void reportErrors(ArrayList<String> errors)
+	{
+		for (int i = 0; i < errors.size(); i++)
+		{
+			reportMessage(errors.get(i));
+		}
+	}
+
+	private void reportMessage(String msg)
+	{
+		if (errorText != null)
+		{
+			errorText.setText(errorText.getText() + "\n" + msg);
+		}
+		else
+		{
+			System.out.println(msg);
+		}
 	}
 
 	public ArrayList<Integer> sim_cycle(
@@ -161,13 +457,25 @@ public class Parse
 			String light_sensors,
 			String general_sensors)
 	{
-		if (is_compiled)
+		if (is_compiled && engine != null)
+		{
+			engine.next_sim_cycle();
+			engine.update_vector_inputs(rst, light_sensors, general_sensors);
+			engine.run_sim_cycle();
+			engine.clean_sim_cycle();
+			output_vector_list = engine.update_vector_ouputs();
+			record_values(1);
+
+			return output_vector_list;
+		}
+		else if (is_compiled && visitor != null)
 		{
 			visitor.next_sim_cycle();
 			visitor.update_vector_inputs(rst, light_sensors, general_sensors);
 			visitor.visit(root_tree);
 			visitor.clean_sim_cycle();
 			output_vector_list = visitor.update_vector_ouputs();
+			record_values(1);
 
 			return output_vector_list;
 		}
@@ -175,6 +483,439 @@ public class Parse
 		return null;
 	}
 
+	/* sim_cycle without the strings and boxing. The masks hold the bits the
+	 * strings spell out with char 0 as the top bit, and outputs gets outN,
+	 * outS, outE, outW, debug_port and the clock cycle (see OUT_N...) unless
+	 * it is null. Returns false if nothing has been compiled. */
+	public boolean sim_cycle(
+			int rst,
+			int light_sensors,
+			int general_sensors,
+			int[] outputs)
+	{
+		if (is_compiled && engine != null)
+		{
+			engine.next_sim_cycle();
+			engine.update_vector_inputs(rst, light_sensors, general_sensors);
+			engine.run_sim_cycle();
+			engine.clean_sim_cycle();
+			if (outputs != null)
+			{
+				engine.update_vector_ouputs(outputs);
+			}
+			record_values(1);
+
+			return true;
+		}
+		else if (is_compiled && visitor != null)
+		{
+			visitor.next_sim_cycle();
+			visitor.update_vector_inputs(rst, light_sensors, general_sensors);
+			visitor.visit(root_tree);
+			visitor.clean_sim_cycle();
+			if (outputs != null)
+			{
+				visitor.update_vector_ouputs(outputs);
+			}
+			record_values(1);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/* One clock of the module, replacing a combinational sim_cycle followed by
+	 * a clock one. The combinational logic settles once in dependency order
+	 * so chains of assigns don't need extra cycles. Same arguments and
+	 * outputs as the int sim_cycle. The tree walker settles its blocks in
+	 * the same order, so every engine gives the same outputs. */
+	public boolean step(
+			int rst,
+			int light_sensors,
+			int general_sensors,
+			int[] outputs)
+	{
+		if (is_compiled && engine != null)
+		{
+			engine.step(rst, light_sensors, general_sensors);
+			if (outputs != null)
+			{
+				engine.update_vector_ouputs(outputs);
+			}
+			record_values(2);
+
+			return true;
+		}
+		else if (is_compiled && visitor != null)
+		{
+			visitor.step(rst, light_sensors, general_sensors);
+			if (outputs != null)
+			{
+				visitor.update_vector_ouputs(outputs);
+			}
+			record_values(2);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/* step() for every cycle of a recorded trace in one call, without the
+	 * per cycle output copying. rst, light_sensors and general_sensors hold
+	 * the inputs of each cycle as step() takes them, and output arrays that
+	 * aren't null get the outputs of each cycle. Returns false if nothing has
+	 * been compiled. */
+	public boolean runTrace(
+			int[] rst,
+			int[] light_sensors,
+			int[] general_sensors,
+			int[] outN,
+			int[] outS,
+			int[] outE,
+			int[] outW)
+	{
+		return runTrace(rst, light_sensors, general_sensors, outN, outS, outE, outW, null);
+	}
+
+	public boolean runTrace(
+			int[] rst,
+			int[] light_sensors,
+			int[] general_sensors,
+			int[] outN,
+			int[] outS,
+			int[] outE,
+			int[] outW,
+			int[] debug_port)
+	{
+		int num_cycles = rst.length;
+		int[][] traces = new int[][] { outN, outS, outE, outW, debug_port };
+
+		if (light_sensors.length < num_cycles || general_sensors.length < num_cycles)
+		{
+			throw new IllegalArgumentException("Every input needs a value for each cycle");
+		}
+		for (int i = 0; i < traces.length; i++)
+		{
+			if (traces[i] != null && traces[i].length < num_cycles)
+			{
+				throw new IllegalArgumentException("Every output needs room for each cycle");
+			}
+		}
+
+		if (is_compiled && engine != null && !is_recording())
+		{
+			engine.runTrace(rst, light_sensors, general_sensors, num_cycles, traces);
+
+			return true;
+		}
+		else if (is_compiled && (engine != null || visitor != null))
+		{
+			/* one step at a time to record each of them */
+			int[] outputs = new int[NUM_OUTPUTS];
+
+			for (int cycle = 0; cycle < num_cycles; cycle++)
+			{
+				step(rst[cycle], light_sensors[cycle], general_sensors[cycle], outputs);
+				for (int i = 0; i < traces.length; i++)
+				{
+					if (traces[i] != null)
+					{
+						traces[i][cycle] = outputs[i];
+					}
+				}
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Waveforms
+	 * -------------------------------------------------------------------------- */
+	/* Writes every signal of the module but its parameters and clk to a VCD
+	 * file after each sim cycle or step from now until stopWaveform() or the
+	 * next compile. A sim cycle is one unit of time and a step() is two. */
+	public void startWaveform(File file) throws IOException
+	{
+		if (!is_compiled || (engine == null && visitor == null))
+		{
+			throw new IllegalStateException("Nothing has been compiled to record");
+		}
+
+		stopWaveform();
+		waveform = open_waveform(file);
+		update_output_cache();
+	}
+
+	public void stopWaveform()
+	{
+		if (waveform == null)
+		{
+			return;
+		}
+
+		try
+		{
+			waveform.close();
+		}
+		catch (IOException e)
+		{
+			reportMessage("Error writing the waveform: " + e.getMessage());
+		}
+		waveform = null;
+		update_output_cache();
+	}
+
+	public boolean isRecordingWaveform()
+	{
+		return waveform != null;
+	}
+
+	/* Keeps every signal of the last num_cycles sim cycles or steps in memory
+	 * for writeLastCycles, e.g. to see what led to a crash. 0 stops keeping
+	 * them. */
+	public void keepLastCycles(int num_cycles)
+	{
+		num_last_cycles = Math.max(0, num_cycles);
+		last_cycles = null;
+		update_output_cache();
+	}
+
+	/* Writes the cycles keepLastCycles kept to a VCD file. Returns false if
+	 * there are none. */
+	public boolean writeLastCycles(File file) throws IOException
+	{
+		SimVcdWriter writer;
+
+		if (last_cycles == null || last_cycles.size() == 0)
+		{
+			return false;
+		}
+
+		writer = open_waveform(file);
+		try
+		{
+			last_cycles.writeTo(writer);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return true;
+	}
+
+	private boolean is_recording()
+	{
+		return waveform != null || num_last_cycles > 0;
+	}
+
+	private SimVcdWriter open_waveform(File file) throws IOException
+	{
+		SimBinding binding;
+		String[] names;
+		int[] widths;
+
+		if (engine == null)
+		{
+			binding = visitor.getBinding();
+			return SimVcdWriter.open(file, WAVEFORM_SCOPE, binding.getSlotNames(), binding.getSlotWidths(), 0, waveform_slots(binding.getSlotNames(), binding.getParameterSlots()));
+		}
+
+		names = new String[program.getNumSlots()];
+		widths = new int[program.getNumSlots()];
+		for (int i = 0; i < names.length; i++)
+		{
+			names[i] = program.getSlotName(i);
+			widths[i] = program.getSlotWidth(i);
+		}
+
+		return SimVcdWriter.open(file, WAVEFORM_SCOPE, names, widths, program.getValueWords(), waveform_slots(names, program.getParameterSlots()));
+	}
+
+	/* Every slot but the parameters, which are constants wider than their
+	 * declared width, and clk, which no engine gives a value */
+	private static int[] waveform_slots(String[] names, int[] parameter_slots)
+	{
+		boolean[] is_left_out = new boolean[names.length];
+		int[] slots;
+		int num_slots = 0;
+
+		for (int i = 0; i < parameter_slots.length; i++)
+		{
+			is_left_out[parameter_slots[i]] = true;
+		}
+		for (int i = 0; i < names.length; i++)
+		{
+			is_left_out[i] |= names[i].equals("clk");
+			num_slots += is_left_out[i] ? 0 : 1;
+		}
+
+		slots = new int[num_slots];
+		num_slots = 0;
+		for (int i = 0; i < names.length; i++)
+		{
+			if (!is_left_out[i])
+			{
+				slots[num_slots++] = i;
+			}
+		}
+
+		return slots;
+	}
+
+	/* After every sim cycle, and after step() as two */
+	private void record_values(int num_sim_cycles)
+	{
+		wave_time += num_sim_cycles;
+		if (!is_recording())
+		{
+			return;
+		}
+
+		if (wave_values == null)
+		{
+			int num_slots = (engine != null) ? program.getNumSlots() * Math.max(1, program.getValueWords()) : visitor.getBinding().getNumSlots();
+
+			wave_values = new long[num_slots];
+		}
+		if (engine != null)
+		{
+			engine.load_values(wave_values);
+		}
+		else
+		{
+			visitor.load_values(wave_values);
+		}
+
+		if (num_last_cycles > 0)
+		{
+			if (last_cycles == null)
+			{
+				last_cycles = new SimCycleRing(num_last_cycles, wave_values.length);
+			}
+			last_cycles.record(wave_time, wave_values);
+		}
+		if (waveform != null)
+		{
+			try
+			{
+				waveform.sample(wave_time, wave_values);
+			}
+			catch (IOException e)
+			{
+				reportMessage("Error writing the waveform: " + e.getMessage());
+				stopWaveform();
+			}
+		}
+	}
+
+	/* A cached step() doesn't run the module, so it's off while recording */
+	private void update_output_cache()
+	{
+		if (engine != null)
+		{
+			engine.setOutputCache(is_recording() ? null : module.getOutputCache());
+		}
+	}
+
+	/* a new module has other slots */
+	private void end_recording()
+	{
+		stopWaveform();
+		last_cycles = null;
+		wave_values = null;
+		wave_time = 0;
+	}
+
+	/* Runs up to 64 input traces side by side, one per bit of a long, from
+	 * the state the module starts in. stimulus[cycle] holds the input bits of
+	 * every lane laid out as in SimLanes, and the result has the output bits
+	 * of each cycle - see SimLanes.toPlanes and fromPlanes. Each cycle is a
+	 * step(). Returns null unless the module was compiled for an engine other
+	 * than the tree walker and has no vector wider than 30 bits. */
+	public long[][] simulateLanes(long[][] stimulus)
+	{
+		SimLanes lanes;
+		long[][] outputs;
+
+		if (!is_compiled || program == null || program.isWide())
+		{
+			return null;
+		}
+
+		lanes = new SimLanes(program);
+		outputs = new long[stimulus.length][SimLanes.NUM_OUTPUT_PLANES];
+		for (int i = 0; i < stimulus.length; i++)
+		{
+			lanes.step(stimulus[i], outputs[i]);
+		}
+
+		return outputs;
+	}
+
+	/* The compiled module as a graph of gates, which says what it would cost
+	 * as hardware and can run lanes like simulateLanes. Null in the same cases
+	 * as simulateLanes. */
+	public SimAig synthesize()
+	{
+		if (!is_compiled || program == null || program.isWide())
+		{
+			return null;
+		}
+
+		return new SimAig(program);
+	}
+
+	/* A SimExplorer of the signals, to check for crossing Go with its
+	 * explore(). Null if the module isn't compiled or is wide. */
+	public SimExplorer explore()
+	{
+		if (!is_compiled || program == null || program.isWide())
+		{
+			return null;
+		}
+
+		return new SimExplorer(program);
+	}
+
+	/* simulateLanes run on the gates of synthesize() */
+	public long[][] simulateGates(long[][] stimulus)
+	{
+		SimAig aig = synthesize();
+		long[][] outputs;
+
+		if (aig == null)
+		{
+			return null;
+		}
+
+		outputs = new long[stimulus.length][SimLanes.NUM_OUTPUT_PLANES];
+		for (int i = 0; i < stimulus.length; i++)
+		{
+			aig.step(stimulus[i], outputs[i]);
+		}
+
+		return outputs;
+	}
+
+	/* '0' is 0 and anything else is 1, char 0 being the top bit */
+	public static int bitsFromString(String bits)
+	{
+		int value = 0;
+
+		for (int i = 0; i < bits.length(); i++)
+		{
+			value = (value << 1) | (bits.charAt(i) == '0' ? 0 : 1);
+		}
+
+		return value;
+	}
+
 	public Boolean is_compiled_yet()
 	{
 		return is_compiled;
@@ -0,0 +1,210 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/* The lexer and parser kept between compiles, one set per thread. The
+ * generated recognizers already share their DFA caches, so reusing them saves
+ * making the recognizers and lets warmUp fill the caches before the first
+ * real compile.
+ *
+ * A module is parsed with SLL prediction first, which is much cheaper and
+ * gets almost every module right. SLL can only fail on a module full LL
+ * would accept or on a real syntax error, so on any error the tokens are
+ * parsed again with LL and the normal error recovery, and only that pass
+ * reports errors. */
+public class ParseFrontEnd
+{
+	private static final ThreadLocal<ParseFrontEnd>	front_ends	= new ThreadLocal<ParseFrontEnd>()
+																{
+																	@Override
+																	protected ParseFrontEnd initialValue()
+																	{
+																		return new ParseFrontEnd();
+																	}
+																};
+
+	/* looks like the level templates so warmUp visits the usual rules */
+	private static final String[]					WARM_UP_MODULE	= {
+			"module warm_up (clk, rst, outN, outS, outE, outW, sensor_light, general_sensors, debug_port);",
+			"input clk, rst;",
+			"output [29:0]debug_port;",
+			"output [2:0]outN;",
+			"output [2:0]outS;",
+			"output [2:0]outE;",
+			"output [2:0]outW;",
+			"input [7:0] sensor_light;",
+			"input [29:0] general_sensors;",
+			"parameter Stop = 3'b000, Forward_only = 3'b001, Left_only = 3'b010, Right_only = 3'b011, Go = 3'b100;",
+			"reg [2:0]outN;",
+			"reg [2:0]outS;",
+			"reg [2:0]outE;",
+			"reg [2:0]outW;",
+			"reg [3:0]state;",
+			"reg [3:0]next_state;",
+			"reg [29:0]count;",
+			"wire is_car;",
+			"assign is_car = (sensor_light[0] | sensor_light[1]) & ~general_sensors[2];",
+			"assign debug_port = count;",
+			"always @(posedge clk or negedge rst)",
+			"begin",
+			"\tif (rst == 1'b0)",
+			"\tbegin",
+			"\t\tstate <= 4'd0;",
+			"\t\tcount <= 30'd0;",
+			"\tend",
+			"\telse",
+			"\tbegin",
+			"\t\tstate <= next_state;",
+			"\t\tcount <= count + 1'b1;",
+			"\tend",
+			"end",
+			"always @(*)",
+			"begin",
+			"\tcase (state)",
+			"\t\t4'd0: next_state = (is_car == 1'b1 && count >= 30'd10) ? 4'd1 : 4'd0;",
+			"\t\t4'd1: next_state = (sensor_light[7] != 1'b0) ? 4'd2 : 4'd1;",
+			"\t\tdefault: next_state = 4'd0;",
+			"\tendcase",
+			"\tif ((sensor_light[6] == 1'b1) && (state >= 4'd2))",
+			"\tbegin",
+			"\t\toutN = Go;",
+			"\t\toutS = Stop;",
+			"\t\toutE = Stop;",
+			"\t\toutW = Stop;",
+			"\tend",
+			"\telse if (sensor_light[4] == 1'b1 || count[3] == 1'b0)",
+			"\tbegin",
+			"\t\toutN = Stop;",
+			"\t\toutS = Forward_only;",
+			"\t\toutE = Left_only;",
+			"\t\toutW = Right_only;",
+			"\tend",
+			"\telse",
+			"\tbegin",
+			"\t\toutN = Stop;",
+			"\t\toutS = Stop;",
+			"\t\toutE = Stop;",
+			"\t\toutW = (count * 2 - 1) % 3;",
+			"\tend",
+			"end",
+			"endmodule"
+	};
+
+	private Verilog2001Lexer						lexer;
+	private Verilog2001Parser						parser;
+
+	private ParseFrontEnd()
+	{
+		lexer = new Verilog2001Lexer(null);
+		parser = new Verilog2001Parser(null);
+	}
+
+	/* The front end for this thread. A compile has to finish with it before
+	 * the next one on the same thread starts. */
+	public static ParseFrontEnd forThread()
+	{
+		return front_ends.get();
+	}
+
+	/* Parses a module the game and editor would typically see so the first
+	 * real compile finds the recognizer classes loaded and the DFA caches
+	 * mostly filled. The caches are shared, so this can run on a background
+	 * thread while the game starts. */
+	public static void warmUp()
+	{
+		ParseFrontEnd front_end = forThread();
+		StringBuilder text = new StringBuilder();
+
+		for (String line : WARM_UP_MODULE)
+		{
+			text.append(line).append('\n');
+		}
+		front_end.reset(new ANTLRInputStream(text.toString()));
+		front_end.parseModule(null);
+		/* don't keep the tokens around */
+		front_end.reset(new ANTLRInputStream(""));
+	}
+
+	/* Points the lexer and parser at a new source and returns the parser, for
+	 * the listeners that want it */
+	public Verilog2001Parser reset(CharStream input)
+	{
+		lexer.setInputStream(input);
+		/* setTokenSource doesn't forget it already saw EOF, so the token
+		 * buffer can't be reused */
+		parser.setTokenStream(new CommonTokenStream(lexer));
+
+		return parser;
+	}
+
+	public Verilog2001Parser getParser()
+	{
+		return parser;
+	}
+
+	/* Parses the whole source and returns the top module, see
+	 * ParseHierarchy.findTop, or null if there are no modules. Syntax errors
+	 * go to error_listener, or the console if it's null, and are counted by
+	 * the parser as usual. */
+	public ParseTree parseModule(ANTLRErrorListener error_listener)
+	{
+		Verilog2001Parser.Source_textContext tree;
+
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		try
+		{
+			tree = parser.source_text();
+		}
+		catch (ParseCancellationException e)
+		{
+			tree = null;
+		}
+
+		if (tree == null)
+		{
+			/* rewinds the tokens and clears the error count */
+			parser.reset();
+			parser.addErrorListener((error_listener != null) ? error_listener : ConsoleErrorListener.INSTANCE);
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			tree = parser.source_text();
+		}
+
+		return ParseHierarchy.findTop(tree);
+	}
+}
@@ -0,0 +1,289 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+/* Elaborates the modules a top module instantiates, and the ones those
+ * instantiate, into ParseInstances before binding. Every instance gets its
+ * own parse tree of its module: the first one uses the tree the file was
+ * parsed into, and the others a tree from parsing copies of the module's
+ * tokens again, numbered past every token seen so far. Since SimBinding keeps
+ * slots by token index, each instance's identifiers then bind to its own
+ * slots and the whole design flattens into one set of slots, with nothing
+ * of the hierarchy left when it runs.
+ *
+ * Ports are connected by position to signals of the parent with the same
+ * width. SimBinding gives a port the slot of the signal it connects to, so a
+ * connection costs nothing either. */
+public class ParseHierarchy
+{
+	private TokenStream														tokens;
+	private int																num_tokens;
+
+	/* module trees not used by an instance yet, by module name */
+	private HashMap<String, ArrayList<Verilog2001Parser.Module_declarationContext>>	unused_modules;
+	/* the first tree of each module, whose tokens are parsed again for more */
+	private HashMap<String, Verilog2001Parser.Module_declarationContext>		declarations;
+	/* names of the modules being elaborated, to catch recursion */
+	private ArrayList<String>												module_stack;
+
+	private ArrayList<ParseInstance>										instances;
+	private IdentityHashMap<Verilog2001Parser.Module_instanceContext, ParseInstance>	instance_of;
+	private ArrayList<String>												errors;
+
+	/* top_module is from the tokens of parser, see findTop */
+	public ParseHierarchy(Verilog2001Parser parser, Verilog2001Parser.Module_declarationContext top_module)
+	{
+		this.tokens = parser.getTokenStream();
+		this.num_tokens = tokens.size();
+		this.unused_modules = new HashMap<String, ArrayList<Verilog2001Parser.Module_declarationContext>>();
+		this.declarations = new HashMap<String, Verilog2001Parser.Module_declarationContext>();
+		this.module_stack = new ArrayList<String>();
+		this.instances = new ArrayList<ParseInstance>();
+		this.instance_of = new IdentityHashMap<Verilog2001Parser.Module_instanceContext, ParseInstance>();
+		this.errors = new ArrayList<String>();
+
+		if (top_module.getParent() != null && top_module.getParent().getParent() instanceof Verilog2001Parser.Source_textContext)
+		{
+			add_modules((Verilog2001Parser.Source_textContext) top_module.getParent().getParent(), top_module);
+		}
+		module_stack.add(top_module.module_identifier().getText());
+		elaborate(top_module, "", null);
+	}
+
+	/* The module no other module instantiates, the first one if there are
+	 * more, or null if the source has no modules */
+	public static Verilog2001Parser.Module_declarationContext findTop(Verilog2001Parser.Source_textContext source_text)
+	{
+		ArrayList<Verilog2001Parser.Module_declarationContext> modules = modules(source_text);
+		ArrayList<String> instantiated = new ArrayList<String>();
+
+		for (int i = 0; i < modules.size(); i++)
+		{
+			for (int j = 0; j < modules.get(i).module_item().size(); j++)
+			{
+				Verilog2001Parser.Module_instantiationContext instantiation = modules.get(i).module_item(j).module_instantiation();
+
+				if (instantiation != null && instantiation.module_identifier() != null)
+				{
+					instantiated.add(instantiation.module_identifier().getText());
+				}
+			}
+		}
+		for (int i = 0; i < modules.size(); i++)
+		{
+			if (!instantiated.contains(modules.get(i).module_identifier().getText()))
+			{
+				return modules.get(i);
+			}
+		}
+
+		return modules.isEmpty() ? null : modules.get(0);
+	}
+
+	private static ArrayList<Verilog2001Parser.Module_declarationContext> modules(Verilog2001Parser.Source_textContext source_text)
+	{
+		ArrayList<Verilog2001Parser.Module_declarationContext> modules = new ArrayList<Verilog2001Parser.Module_declarationContext>();
+
+		for (int i = 0; i < source_text.description().size(); i++)
+		{
+			Verilog2001Parser.Module_declarationContext module = source_text.description(i).module_declaration();
+
+			/* error recovery can leave a module without a name */
+			if (module != null && module.module_identifier() != null)
+			{
+				modules.add(module);
+			}
+		}
+
+		return modules;
+	}
+
+	public ArrayList<String> getErrors()
+	{
+		return errors;
+	}
+
+	/* parents before their children */
+	public ArrayList<ParseInstance> getInstances()
+	{
+		return instances;
+	}
+
+	/* The instance made for a module_instance in one of the trees, or null */
+	public ParseInstance getInstance(Verilog2001Parser.Module_instanceContext ctx)
+	{
+		return instance_of.get(ctx);
+	}
+
+	/* tokens of every tree, for SimBinding.bind */
+	public int getNumTokens()
+	{
+		return num_tokens;
+	}
+
+	private void add_modules(Verilog2001Parser.Source_textContext source_text, Verilog2001Parser.Module_declarationContext except)
+	{
+		ArrayList<Verilog2001Parser.Module_declarationContext> modules = modules(source_text);
+
+		for (int i = 0; i < modules.size(); i++)
+		{
+			String name = modules.get(i).module_identifier().getText();
+
+			if (modules.get(i) == except)
+			{
+				continue;
+			}
+			if (!unused_modules.containsKey(name))
+			{
+				unused_modules.put(name, new ArrayList<Verilog2001Parser.Module_declarationContext>());
+				declarations.put(name, modules.get(i));
+			}
+			unused_modules.get(name).add(modules.get(i));
+		}
+	}
+
+	private void elaborate(Verilog2001Parser.Module_declarationContext module, String prefix, ParseInstance parent)
+	{
+		for (int i = 0; i < module.module_item().size(); i++)
+		{
+			Verilog2001Parser.Module_instantiationContext instantiation = module.module_item(i).module_instantiation();
+
+			/* or left half built by error recovery */
+			if (instantiation == null || instantiation.module_identifier() == null)
+			{
+				continue;
+			}
+
+			for (int j = 0; j < instantiation.module_instance().size(); j++)
+			{
+				Verilog2001Parser.Module_instanceContext ctx = instantiation.module_instance(j);
+				String name = instantiation.module_identifier().getText();
+				Verilog2001Parser.Module_declarationContext instance_module;
+				ParseInstance instance;
+
+				if (ctx.name_of_instance() == null || ctx.list_of_port_connections() == null)
+				{
+					continue;
+				}
+				if (ctx.name_of_instance().range() != null)
+				{
+					error(ctx, "arrays of instances aren't supported");
+					continue;
+				}
+				if (module_stack.contains(name))
+				{
+					error(ctx, "module " + name + " instantiates itself");
+					continue;
+				}
+				instance_module = take_module(name);
+				if (instance_module == null)
+				{
+					error(ctx, "no module called " + name);
+					continue;
+				}
+
+				instance = new ParseInstance(prefix + ctx.name_of_instance().getText(), ctx, instance_module, parent);
+				/* the symbol tables of this copy of the module */
+				new ParseTreeWalker().walk(new ParseListener(null, instance.getPortsList(), instance.getVarsList(), instance.getHashPorts(), instance.getHashVars()), instance_module);
+				instances.add(instance);
+				instance_of.put(ctx, instance);
+
+				module_stack.add(name);
+				elaborate(instance_module, instance.getPath() + ".", instance);
+				module_stack.remove(module_stack.size() - 1);
+			}
+		}
+	}
+
+	/* A tree of the module no instance has used yet, parsing the module
+	 * again if there isn't one */
+	private Verilog2001Parser.Module_declarationContext take_module(String name)
+	{
+		ArrayList<Verilog2001Parser.Module_declarationContext> modules = unused_modules.get(name);
+
+		if (modules == null)
+		{
+			return null;
+		}
+		if (modules.isEmpty())
+		{
+			return reparse(declarations.get(name));
+		}
+
+		return modules.remove(0);
+	}
+
+	/* Parses copies of the tokens of module, not the whole file and without
+	 * lexing it again, so a copy costs the size of the module */
+	private Verilog2001Parser.Module_declarationContext reparse(Verilog2001Parser.Module_declarationContext module)
+	{
+		ArrayList<Token> copies = new ArrayList<Token>();
+		CommonTokenStream copy_tokens;
+		Verilog2001Parser parser;
+		Verilog2001Parser.Module_declarationContext copy;
+
+		for (int i = module.start.getTokenIndex(); i <= module.stop.getTokenIndex(); i++)
+		{
+			copies.add(new CommonToken(tokens.get(i)));
+		}
+		copy_tokens = new CommonTokenStream(new ListTokenSource(copies));
+		parser = new Verilog2001Parser(copy_tokens);
+
+		/* the first parse reported any errors */
+		parser.removeErrorListeners();
+		copy = parser.module_declaration();
+
+		for (Token token : copy_tokens.getTokens())
+		{
+			((CommonToken) token).setTokenIndex(num_tokens + token.getTokenIndex());
+		}
+		num_tokens += copy_tokens.size();
+
+		return copy;
+	}
+
+	/* every copy of a module would report the same error */
+	private void error(Verilog2001Parser.Module_instanceContext ctx, String message)
+	{
+		String error = "Error at line " + ctx.start.getLine() + ":" + ctx.start.getCharPositionInLine() + " " + message;
+
+		if (!errors.contains(error))
+		{
+			errors.add(error);
+		}
+	}
+}
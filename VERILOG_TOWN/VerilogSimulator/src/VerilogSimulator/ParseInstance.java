@@ -0,0 +1,106 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+/* One instantiation of a module below the top one, with a parse tree of the
+ * module of its own so its identifiers can be bound to its own slots, and the
+ * symbol tables ParseListener made from that tree. See ParseHierarchy. */
+public class ParseInstance
+{
+	/* instance names from the top down, e.g. north.count */
+	private String											path;
+	private Verilog2001Parser.Module_instanceContext		instance;
+	private Verilog2001Parser.Module_declarationContext		module;
+	/* null if the top module instantiates it */
+	private ParseInstance									parent;
+
+	private ArrayList<ParsePort>							ports_list;
+	private ArrayList<ParseRegWire>							vars_list;
+	private Hashtable<String, ParsePort>					hash_ports;
+	private Hashtable<String, ParseRegWire>					hash_vars;
+
+	public ParseInstance(
+			String path,
+			Verilog2001Parser.Module_instanceContext instance,
+			Verilog2001Parser.Module_declarationContext module,
+			ParseInstance parent)
+	{
+		this.path = path;
+		this.instance = instance;
+		this.module = module;
+		this.parent = parent;
+
+		this.ports_list = new ArrayList<ParsePort>();
+		this.vars_list = new ArrayList<ParseRegWire>();
+		this.hash_ports = new Hashtable<String, ParsePort>();
+		this.hash_vars = new Hashtable<String, ParseRegWire>();
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	/* where the parent instantiates it, with the signals its ports connect
+	 * to */
+	public Verilog2001Parser.Module_instanceContext getInstance()
+	{
+		return instance;
+	}
+
+	public Verilog2001Parser.Module_declarationContext getModule()
+	{
+		return module;
+	}
+
+	public ParseInstance getParent()
+	{
+		return parent;
+	}
+
+	public ArrayList<ParsePort> getPortsList()
+	{
+		return ports_list;
+	}
+
+	public ArrayList<ParseRegWire> getVarsList()
+	{
+		return vars_list;
+	}
+
+	public Hashtable<String, ParsePort> getHashPorts()
+	{
+		return hash_ports;
+	}
+
+	public Hashtable<String, ParseRegWire> getHashVars()
+	{
+		return hash_vars;
+	}
+}
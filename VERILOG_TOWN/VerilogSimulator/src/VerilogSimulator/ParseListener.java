@@ -35,6 +35,7 @@ public class ParseListener extends Verilog2001BaseListener
 	private boolean							is_var_identifier;
 	private boolean							is_number;
 	private boolean							is_var_assign_left;
+	private boolean							is_instantiation;
 	private int								MSB_range;
 	private int								LSB_range;
 	Verilog2001Parser						parser;
@@ -53,6 +54,7 @@ public class ParseListener extends Verilog2001BaseListener
 		this.is_var_identifier = false;
 		this.is_number = false;
 		this.is_var_assign_left = false;
+		this.is_instantiation = false;
 
 		this.parser = parser;
 		this.ports_list = ports_list;
@@ -375,12 +377,28 @@ public class ParseListener extends Verilog2001BaseListener
 	@Override
 	public void exitIdentifier(Verilog2001Parser.IdentifierContext ctx)
 	{
-		if (is_var_identifier || is_var_assign_left)
+		if ((is_var_identifier || is_var_assign_left) && !is_instantiation)
 		{
 			var_stack.push(ctx.getText());
 		}
 	}
 
+	/* the module, instance and connected signal names of an instantiation
+	 * aren't declarations of this module; ParseHierarchy handles them */
+	@Override
+	public void enterModule_instantiation(
+			Verilog2001Parser.Module_instantiationContext ctx)
+	{
+		is_instantiation = true;
+	}
+
+	@Override
+	public void exitModule_instantiation(
+			Verilog2001Parser.Module_instantiationContext ctx)
+	{
+		is_instantiation = false;
+	}
+
 	/* --------------------------------------------------------------------------
 	 * -----------
 	 * --------------------------------------------------------------
@@ -32,6 +32,7 @@ public class ParsePort extends Parse
 	private RegWireType	r_type;
 	private int[]		value;
 	private int			cycle_update_time;
+	private int			slot;
 
 	public ParsePort()
 	{
@@ -44,6 +45,7 @@ public class ParsePort extends Parse
 		this.value[0] = 0;
 		this.value[1] = 0;
 		this.cycle_update_time = -1;
+		this.slot = -1;
 	}
 
 	public void addPort(String name, int bus_size, boolean is_input)
@@ -77,6 +79,27 @@ public class ParsePort extends Parse
 		return busSize;
 	}
 
+	public PortType getType()
+	{
+		return type;
+	}
+
+	public RegWireType getRegType()
+	{
+		return r_type;
+	}
+
+	/* index into the state arrays of a compiled SimProgram */
+	public int getSlot()
+	{
+		return slot;
+	}
+
+	public void setSlot(int slot)
+	{
+		this.slot = slot;
+	}
+
 	public int getValue(int idx)
 	{
 		if (this.type == PortType.INPUT)
@@ -133,23 +156,4 @@ public class ParsePort extends Parse
 		int ac_value = value[idx];
 		return ((ac_value & mask) > 0) ? 1 : 0;
 	}
-
-	public void seqUpdate(int cycle_time, int new_val_idx, int old_val_idx)
-	{
-		if (type == PortType.OUTPUT)
-		{
-			if (cycle_time != this.cycle_update_time)
-			{
-				/* IF there has been no update for this value */
-				if (r_type == RegWireType.COMBINATIONAL)
-				{
-					System.out.println("Error: Inferring latch");
-				}
-				else if (r_type == RegWireType.SEQUENTIAL)
-				{
-					this.value[new_val_idx] = this.value[old_val_idx];
-				}
-			}
-		}
-	}
 }
@@ -31,6 +31,7 @@ public class ParseRegWire extends Parse
 	private RegWireType	type;
 	private int[]		value;
 	private int			cycle_update_time;
+	private int			slot;
 
 	public ParseRegWire()
 	{
@@ -42,6 +43,7 @@ public class ParseRegWire extends Parse
 		this.value[0] = 0;
 		this.value[1] = 0;
 		this.cycle_update_time = -1;
+		this.slot = -1;
 	}
 
 	public void addReg(String name, int bus_size)
@@ -87,6 +89,22 @@ public class ParseRegWire extends Parse
 		return busSize;
 	}
 
+	public RegWireType getType()
+	{
+		return type;
+	}
+
+	/* index into the state arrays of a compiled SimProgram */
+	public int getSlot()
+	{
+		return slot;
+	}
+
+	public void setSlot(int slot)
+	{
+		this.slot = slot;
+	}
+
 	public int getValue(int idx)
 	{
 		return this.value[idx];
@@ -120,20 +138,4 @@ public class ParseRegWire extends Parse
 		int ac_value = value[idx];
 		return ((ac_value & mask) > 0) ? 1 : 0;
 	}
-
-	public void seqUpdate(int cycle_time, int new_val_idx, int old_val_idx)
-	{
-		if (cycle_time != this.cycle_update_time)
-		{
-			/* IF there has been no update for this value */
-			if (type == RegWireType.COMBINATIONAL)
-			{
-				System.out.println("Error: Inferring latch");
-			}
-			else if (type == RegWireType.SEQUENTIAL)
-			{
-				this.value[new_val_idx] = this.value[old_val_idx];
-			}
-		}
-	}
 }
@@ -0,0 +1,1057 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/* The step() of a SimProgram lowered to an and-inverter graph: every bit of
+ * the module is an AND of two other bits, either of them inverted, or an
+ * input or a latch holding a bit from the last step. The graph counts what
+ * the module would cost as hardware - its gates and the gates on the longest
+ * path through it - and also simulates 64 copies of the module at once like
+ * SimLanes, each gate being one word AND.
+ *
+ * It's made by running the step code once with a graph bit for every bit of
+ * every value, the way SimLanes runs it with a lane mask. A jump splits the
+ * condition of the instruction into the bits for the code that jumps and the
+ * code that doesn't, and stores and the stack pick between the old and new
+ * bits by it. Gates are shared when they AND the same two bits, and an AND
+ * with a constant, itself, its inverse or one of its own inputs is folded
+ * away. A latch that can never change becomes a constant and the graph is
+ * made again, and only the gates and latches the outputs need are kept.
+ *
+ * Values are ints like in SimInterpreter, and DIV and MOD by 0 throw for a
+ * lane whose code gets to them, like they do in SimLanes. */
+public class SimAig
+{
+	/* literals are twice the node, plus one if the bit is inverted */
+	public static final int		FALSE		= 0;
+	public static final int		TRUE		= 1;
+
+	private static final int	NUM_PLANES	= SimLanes.NUM_PLANES;
+	private static final int	LEAF		= -1;
+
+	private SimProgram				program;
+	private int						num_outputs;
+	private SimSchedule				schedule;
+	private int[]					code;
+	private int[]					depths;
+
+	/* the graph being made */
+	private int						num_nodes;
+	/* the two literals a node ANDs, or LEAF for inputs and latches */
+	private int[]					node_left;
+	private int[]					node_right;
+	private HashMap<Long, Integer>	and_nodes;
+	/* the latch of each plane of each slot, or -1 if it's a constant */
+	private int[]					plane_latches;
+	/* planes found to never change, kept as their initial value */
+	private boolean[]				is_constant_plane;
+
+	/* literals of the planes of each slot, as in SimLanes */
+	private int[]					new_values;
+	private int[]					next_values;
+	private int[]					stack;
+	/* when the jumps to each instruction are taken */
+	private int[]					pending;
+	/* when each slot is assigned in the step */
+	private int[]					stored;
+	private int[]					result;
+	private int[]					shifted;
+	private int[]					sum;
+	private int						equal;
+
+	private int[]					output_literals;
+	private int						latch_literal;
+	/* when a DIV or MOD the code gets to divides by 0 */
+	private int						div_zero_literal;
+
+	/* the graph step() runs, only what the outputs need: inputs from node
+	 * 1, then latches from first_latch and gates from first_gate */
+	private int						first_latch;
+	private int						first_gate;
+	private int[]					gate_left;
+	private int[]					gate_right;
+	private int[]					latch_next;
+	private long[]					latch_values;
+	private long[]					latch_init;
+	private int[]					sim_outputs;
+	private int						sim_latch;
+	private int						sim_div_zero;
+	private int						depth;
+
+	private long[]					node_values;
+	private long					latch_lanes;
+
+	public SimAig(SimProgram program)
+	{
+		this(program, program.getOutputSlots().length);
+	}
+
+	/* Only makes the first num_outputs of outN, outS, outE, outW and
+	 * debug_port, and leaves the others 0, to drop the gates and latches only
+	 * they need */
+	public SimAig(SimProgram program, int num_outputs)
+	{
+		if (program.isWide())
+		{
+			throw new IllegalArgumentException("Gates only hold 32 bit values");
+		}
+
+		this.program = program;
+		this.num_outputs = num_outputs;
+		this.schedule = program.getSchedule();
+		this.code = schedule.getCode();
+		this.depths = SimLanes.stackDepths(schedule);
+		this.is_constant_plane = new boolean[program.getNumSlots() * NUM_PLANES];
+
+		do
+		{
+			build();
+		}
+		while (find_constant_planes());
+
+		sweep();
+	}
+
+	/* ANDs the simulation runs for each step */
+	public int getNumGates()
+	{
+		return gate_left.length;
+	}
+
+	/* the most gates between an input or latch and an output or latch */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/* bits kept from one step to the next */
+	public int getNumLatches()
+	{
+		return latch_next.length;
+	}
+
+	/* lanes that inferred a latch in any step so far */
+	public long getLatchLanes()
+	{
+		return latch_lanes;
+	}
+
+	/* Puts every lane back in the state the module starts in */
+	public void reset()
+	{
+		System.arraycopy(latch_init, 0, latch_values, 0, latch_init.length);
+		latch_lanes = 0;
+	}
+
+	/* the lanes of each latch, to read and set the state between steps */
+	long[] getLatchValues()
+	{
+		return latch_values;
+	}
+
+	/* One step() of every lane, with the inputs and outputs laid out as in
+	 * SimLanes.step */
+	public void step(long[] inputs, long[] outputs)
+	{
+		System.arraycopy(inputs, 0, node_values, 1, SimLanes.NUM_INPUT_PLANES);
+		System.arraycopy(latch_values, 0, node_values, first_latch, latch_values.length);
+
+		for (int i = 0; i < gate_left.length; i++)
+		{
+			node_values[first_gate + i] = value(gate_left[i]) & value(gate_right[i]);
+		}
+		if (value(sim_div_zero) != 0)
+		{
+			throw new ArithmeticException("/ by zero");
+		}
+
+		for (int i = 0; i < sim_outputs.length; i++)
+		{
+			outputs[i] = value(sim_outputs[i]);
+		}
+		latch_lanes |= value(sim_latch);
+		for (int i = 0; i < latch_next.length; i++)
+		{
+			latch_values[i] = value(latch_next[i]);
+		}
+	}
+
+	private long value(int literal)
+	{
+		return node_values[literal >>> 1] ^ -(long) (literal & 1);
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Gates
+	 * -------------------------------------------------------------------------- */
+	private int new_node(int left, int right)
+	{
+		if (num_nodes == node_left.length)
+		{
+			node_left = Arrays.copyOf(node_left, num_nodes * 2);
+			node_right = Arrays.copyOf(node_right, num_nodes * 2);
+		}
+		node_left[num_nodes] = left;
+		node_right[num_nodes] = right;
+
+		return 2 * num_nodes++;
+	}
+
+	private boolean is_and(int literal)
+	{
+		return node_left[literal >>> 1] != LEAF;
+	}
+
+	private int and(int left, int right)
+	{
+		int simple;
+		long key;
+		Integer node;
+
+		if (left > right)
+		{
+			return and(right, left);
+		}
+		if (left == FALSE || left == (right ^ 1))
+		{
+			return FALSE;
+		}
+		if (left == TRUE || left == right)
+		{
+			return right;
+		}
+
+		simple = absorb(left, right);
+		if (simple == -1)
+		{
+			simple = absorb(right, left);
+		}
+		if (simple != -1)
+		{
+			return simple;
+		}
+
+		key = ((long) left << 32) | right;
+		node = and_nodes.get(key);
+		if (node == null)
+		{
+			node = new_node(left, right) >>> 1;
+			and_nodes.put(key, node);
+		}
+
+		return 2 * node;
+	}
+
+	/* a & (a & b) is a & b, a & (~a & b) is 0 and a & ~(~a & b) is a, or -1
+	 * if gate isn't one of those */
+	private int absorb(int literal, int gate)
+	{
+		int left;
+		int right;
+
+		if (!is_and(gate))
+		{
+			return -1;
+		}
+
+		left = node_left[gate >>> 1];
+		right = node_right[gate >>> 1];
+		if ((gate & 1) == 0)
+		{
+			if (left == literal || right == literal)
+			{
+				return gate;
+			}
+			if (left == (literal ^ 1) || right == (literal ^ 1))
+			{
+				return FALSE;
+			}
+		}
+		else if (left == (literal ^ 1) || right == (literal ^ 1))
+		{
+			return literal;
+		}
+
+		return -1;
+	}
+
+	private int or(int left, int right)
+	{
+		return and(left ^ 1, right ^ 1) ^ 1;
+	}
+
+	private int xor(int left, int right)
+	{
+		return or(and(left, right ^ 1), and(left ^ 1, right));
+	}
+
+	/* when_true if select is set, or else when_false */
+	private int mux(int select, int when_true, int when_false)
+	{
+		if (when_true == when_false)
+		{
+			return when_true;
+		}
+
+		return or(and(select, when_true), and(select ^ 1, when_false));
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Making the graph
+	 * -------------------------------------------------------------------------- */
+	private void build()
+	{
+		int num_slots = program.getNumSlots();
+
+		num_nodes = 1;
+		node_left = new int[1024];
+		node_right = new int[1024];
+		node_left[0] = LEAF;
+		and_nodes = new HashMap<Long, Integer>();
+
+		/* inputs are nodes 1 to NUM_INPUT_PLANES */
+		for (int i = 0; i < SimLanes.NUM_INPUT_PLANES; i++)
+		{
+			new_node(LEAF, -1);
+		}
+
+		new_values = new int[num_slots * NUM_PLANES];
+		next_values = new int[num_slots * NUM_PLANES];
+		plane_latches = new int[num_slots * NUM_PLANES];
+		for (int i = 0; i < num_slots; i++)
+		{
+			int mask = program.getSlotMask(i);
+			int init = program.getSlotInit(i);
+
+			for (int j = 0; j < NUM_PLANES; j++)
+			{
+				int plane = i * NUM_PLANES + j;
+
+				plane_latches[plane] = -1;
+				if (((mask >>> j) & 1) != 0 && !is_constant_plane[plane])
+				{
+					plane_latches[plane] = new_node(LEAF, plane) >>> 1;
+					new_values[plane] = 2 * plane_latches[plane];
+				}
+				else
+				{
+					new_values[plane] = (((init >>> j) & 1) != 0) ? TRUE : FALSE;
+				}
+			}
+		}
+		set_input(program.getRstSlot(), SimLanes.RST_PLANE, 1);
+		set_input(program.getSensorLightSlot(), SimLanes.SENSOR_LIGHT_PLANE, 8);
+		set_input(program.getGeneralSensorsSlot(), SimLanes.GENERAL_SENSORS_PLANE, 30);
+
+		stack = new int[(program.getMaxStack() + 1) * NUM_PLANES];
+		pending = new int[code.length];
+		stored = new int[num_slots];
+		result = new int[NUM_PLANES];
+		shifted = new int[NUM_PLANES];
+		sum = new int[NUM_PLANES + 2];
+		div_zero_literal = FALSE;
+
+		settle();
+		edge();
+
+		output_literals = new int[SimLanes.NUM_OUTPUT_PLANES];
+		for (int i = 0; i < num_outputs; i++)
+		{
+			System.arraycopy(new_values, program.getOutputSlots()[i] * NUM_PLANES, output_literals, i * NUM_PLANES, NUM_PLANES);
+		}
+	}
+
+	private void set_input(int slot, int first_plane, int num_bits)
+	{
+		int mask = program.getSlotMask(slot);
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			boolean is_input = i < num_bits && ((mask >>> i) & 1) != 0;
+
+			new_values[slot * NUM_PLANES + i] = is_input ? 2 * (1 + first_plane + i) : FALSE;
+		}
+	}
+
+	private void settle()
+	{
+		int[] latch_slots = program.getLatchSlots();
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			stored[latch_slots[i]] = FALSE;
+		}
+		for (int i = 0; i < schedule.getNumCombBlocks(); i++)
+		{
+			execute(schedule.getBlockStart(i), new_values, new_values);
+		}
+
+		latch_literal = FALSE;
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			latch_literal = or(latch_literal, stored[latch_slots[i]] ^ 1);
+		}
+	}
+
+	private void edge()
+	{
+		int[] edge_slots = schedule.getEdgeSlots();
+
+		/* the clocked blocks all read from before the edge */
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(new_values, edge_slots[i] * NUM_PLANES, next_values, edge_slots[i] * NUM_PLANES, NUM_PLANES);
+		}
+		for (int i = schedule.getNumCombBlocks(); i < schedule.getNumBlocks(); i++)
+		{
+			execute(schedule.getBlockStart(i), new_values, next_values);
+		}
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(next_values, edge_slots[i] * NUM_PLANES, new_values, edge_slots[i] * NUM_PLANES, NUM_PLANES);
+		}
+	}
+
+	/* A latch that is its own next value, or whose next value is always its
+	 * initial one, never changes. Returns true if there are new ones. */
+	private boolean find_constant_planes()
+	{
+		boolean is_found = false;
+
+		for (int plane = 0; plane < plane_latches.length; plane++)
+		{
+			int latch = plane_latches[plane];
+			int init = (((program.getSlotInit(plane / NUM_PLANES) >>> (plane % NUM_PLANES)) & 1) != 0) ? TRUE : FALSE;
+
+			if (latch != -1 && (new_values[plane] == 2 * latch || new_values[plane] == init))
+			{
+				is_constant_plane[plane] = true;
+				is_found = true;
+			}
+		}
+
+		return is_found;
+	}
+
+	/* Keeps the gates and latches the outputs need, numbered for step() */
+	private void sweep()
+	{
+		boolean[] is_needed = new boolean[num_nodes];
+		int[] levels = new int[num_nodes];
+		int[] renumbered = new int[num_nodes];
+		int[] work = new int[num_nodes];
+		int num_work = 0;
+		int num_latches = 0;
+		int num_gates = 0;
+		int next;
+
+		for (int i = 0; i < output_literals.length; i++)
+		{
+			num_work = need(output_literals[i], is_needed, work, num_work);
+		}
+		num_work = need(latch_literal, is_needed, work, num_work);
+		num_work = need(div_zero_literal, is_needed, work, num_work);
+
+		while (num_work > 0)
+		{
+			int node = work[--num_work];
+
+			if (node_left[node] != LEAF)
+			{
+				num_work = need(node_left[node], is_needed, work, num_work);
+				num_work = need(node_right[node], is_needed, work, num_work);
+			}
+			else if (node > SimLanes.NUM_INPUT_PLANES)
+			{
+				/* a latch needs what makes its next value */
+				num_work = need(new_values[node_right[node]], is_needed, work, num_work);
+			}
+		}
+
+		/* the constant and inputs keep their numbers */
+		for (int i = 0; i <= SimLanes.NUM_INPUT_PLANES; i++)
+		{
+			renumbered[i] = i;
+		}
+		for (int i = SimLanes.NUM_INPUT_PLANES + 1; i < num_nodes; i++)
+		{
+			if (is_needed[i] && node_left[i] == LEAF)
+			{
+				num_latches++;
+			}
+			else if (is_needed[i])
+			{
+				num_gates++;
+			}
+		}
+
+		first_latch = SimLanes.NUM_INPUT_PLANES + 1;
+		first_gate = first_latch + num_latches;
+		gate_left = new int[num_gates];
+		gate_right = new int[num_gates];
+		latch_next = new int[num_latches];
+		latch_values = new long[num_latches];
+		latch_init = new long[num_latches];
+		next = first_latch;
+		for (int i = SimLanes.NUM_INPUT_PLANES + 1; i < num_nodes; i++)
+		{
+			if (is_needed[i] && node_left[i] == LEAF)
+			{
+				renumbered[i] = next++;
+			}
+		}
+		for (int i = SimLanes.NUM_INPUT_PLANES + 1; i < num_nodes; i++)
+		{
+			if (is_needed[i] && node_left[i] != LEAF)
+			{
+				/* an AND comes after its inputs, so they're numbered */
+				gate_left[next - first_gate] = renumber(node_left[i], renumbered);
+				gate_right[next - first_gate] = renumber(node_right[i], renumbered);
+				levels[i] = 1 + Math.max(levels[node_left[i] >>> 1], levels[node_right[i] >>> 1]);
+				renumbered[i] = next++;
+			}
+		}
+
+		depth = levels[latch_literal >>> 1];
+		for (int i = SimLanes.NUM_INPUT_PLANES + 1; i < num_nodes; i++)
+		{
+			if (is_needed[i] && node_left[i] == LEAF)
+			{
+				int next_literal = new_values[node_right[i]];
+
+				latch_next[renumbered[i] - first_latch] = renumber(next_literal, renumbered);
+				latch_init[renumbered[i] - first_latch] = (((program.getSlotInit(node_right[i] / NUM_PLANES) >>> (node_right[i] % NUM_PLANES)) & 1) != 0) ? ~0L : 0;
+				depth = Math.max(depth, levels[next_literal >>> 1]);
+			}
+		}
+
+		sim_outputs = new int[output_literals.length];
+		for (int i = 0; i < output_literals.length; i++)
+		{
+			sim_outputs[i] = renumber(output_literals[i], renumbered);
+			depth = Math.max(depth, levels[output_literals[i] >>> 1]);
+		}
+		sim_latch = renumber(latch_literal, renumbered);
+		sim_div_zero = renumber(div_zero_literal, renumbered);
+		System.arraycopy(latch_init, 0, latch_values, 0, num_latches);
+		node_values = new long[first_gate + num_gates];
+
+		/* only the swept graph is kept */
+		node_left = null;
+		node_right = null;
+		and_nodes = null;
+		new_values = null;
+		next_values = null;
+		stack = null;
+		pending = null;
+	}
+
+	/* marks the node of the literal and adds it to the work if it's new */
+	private static int need(int literal, boolean[] is_needed, int[] work, int num_work)
+	{
+		if (!is_needed[literal >>> 1])
+		{
+			is_needed[literal >>> 1] = true;
+			work[num_work++] = literal >>> 1;
+		}
+
+		return num_work;
+	}
+
+	private static int renumber(int literal, int[] renumbered)
+	{
+		return 2 * renumbered[literal >>> 1] + (literal & 1);
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Values
+	 * -------------------------------------------------------------------------- */
+	private int plane(int entry, int i)
+	{
+		return stack[entry * NUM_PLANES + i];
+	}
+
+	/* Puts result on a stack entry when active is set */
+	private void put(int entry, int active)
+	{
+		int offset = entry * NUM_PLANES;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			stack[offset + i] = mux(active, result[i], stack[offset + i]);
+		}
+	}
+
+	private void put_bool(int entry, int bit, int active)
+	{
+		result[0] = bit;
+		Arrays.fill(result, 1, NUM_PLANES, FALSE);
+		put(entry, active);
+	}
+
+	private void store(int[] values, int slot, int active)
+	{
+		int offset = slot * NUM_PLANES;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			values[offset + i] = mux(active, result[i], values[offset + i]);
+		}
+		stored[slot] = or(stored[slot], active);
+	}
+
+	private int non_zero(int entry)
+	{
+		int bit = FALSE;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			bit = or(bit, plane(entry, i));
+		}
+
+		return bit;
+	}
+
+	private int equal_to(int entry, int value)
+	{
+		int bit = TRUE;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			bit = and(bit, plane(entry, i) ^ ((((value >>> i) & 1) != 0) ? 0 : 1));
+		}
+
+		return bit;
+	}
+
+	/* sum gets num_bits bits of left + right + carry and the carry out on
+	 * top */
+	private void add(int[] left, int[] right, int carry, int num_bits)
+	{
+		for (int i = 0; i < num_bits; i++)
+		{
+			int half = xor(left[i], right[i]);
+
+			sum[i] = xor(half, carry);
+			carry = or(and(left[i], right[i]), and(carry, half));
+		}
+		sum[num_bits] = carry;
+	}
+
+	/* the two's complement of bits if negate is set */
+	private void negate_if(int[] bits, int negate, int num_bits)
+	{
+		int carry = negate;
+
+		for (int i = 0; i < num_bits; i++)
+		{
+			int bit = xor(bits[i], negate);
+
+			bits[i] = xor(bit, carry);
+			carry = and(bit, carry);
+		}
+	}
+
+	/* result = left + right, or left - right if is_subtract */
+	private void add_entries(int left, int right, boolean is_subtract)
+	{
+		int[] left_bits = new int[NUM_PLANES];
+		int[] right_bits = new int[NUM_PLANES];
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			left_bits[i] = plane(left, i);
+			right_bits[i] = plane(right, i) ^ (is_subtract ? 1 : 0);
+		}
+		add(left_bits, right_bits, is_subtract ? TRUE : FALSE, NUM_PLANES);
+		System.arraycopy(sum, 0, result, 0, NUM_PLANES);
+	}
+
+	/* result = left * right, a shifted add for each bit of right */
+	private void multiply(int left, int right)
+	{
+		int[] product = new int[NUM_PLANES];
+		int[] partial = new int[NUM_PLANES];
+
+		Arrays.fill(product, FALSE);
+		for (int j = 0; j < NUM_PLANES; j++)
+		{
+			int bit = plane(right, j);
+
+			if (bit == FALSE)
+			{
+				continue;
+			}
+			for (int i = 0; i < NUM_PLANES; i++)
+			{
+				partial[i] = (i < j) ? FALSE : and(plane(left, i - j), bit);
+			}
+			add(product, partial, FALSE, NUM_PLANES);
+			System.arraycopy(sum, 0, product, 0, NUM_PLANES);
+		}
+		System.arraycopy(product, 0, result, 0, NUM_PLANES);
+	}
+
+	/* result = left / right or left % right, rounding to 0 like an int. The
+	 * magnitudes are divided by restoring division, a subtract for each bit
+	 * of the quotient. */
+	private void divide(int left, int right, boolean is_remainder)
+	{
+		int left_sign = plane(left, NUM_PLANES - 1);
+		int right_sign = plane(right, NUM_PLANES - 1);
+		int[] dividend = new int[NUM_PLANES];
+		int[] divisor = new int[NUM_PLANES + 1];
+		int[] remainder = new int[NUM_PLANES + 1];
+		int[] quotient = new int[NUM_PLANES];
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			dividend[i] = plane(left, i);
+			divisor[i] = plane(right, i);
+		}
+		negate_if(dividend, left_sign, NUM_PLANES);
+		negate_if(divisor, right_sign, NUM_PLANES);
+		/* inverted for the subtract, with a 0 on top */
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			divisor[i] ^= 1;
+		}
+		divisor[NUM_PLANES] = TRUE;
+		Arrays.fill(remainder, FALSE);
+
+		for (int i = NUM_PLANES - 1; i >= 0; i--)
+		{
+			int fits;
+
+			System.arraycopy(remainder, 0, remainder, 1, NUM_PLANES);
+			remainder[0] = dividend[i];
+			add(remainder, divisor, TRUE, NUM_PLANES + 1);
+			/* no borrow out of the subtract */
+			fits = sum[NUM_PLANES + 1];
+			quotient[i] = fits;
+			for (int j = 0; j <= NUM_PLANES; j++)
+			{
+				remainder[j] = mux(fits, sum[j], remainder[j]);
+			}
+		}
+
+		if (is_remainder)
+		{
+			negate_if(remainder, left_sign, NUM_PLANES);
+			System.arraycopy(remainder, 0, result, 0, NUM_PLANES);
+		}
+		else
+		{
+			negate_if(quotient, xor(left_sign, right_sign), NUM_PLANES);
+			System.arraycopy(quotient, 0, result, 0, NUM_PLANES);
+		}
+	}
+
+	/* Shifts by the low 5 bits of right like an int shift, one stage per bit */
+	private void shift(int left, int right, boolean is_left)
+	{
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			result[i] = plane(left, i);
+		}
+
+		for (int stage = 0; stage < 5; stage++)
+		{
+			int bit = plane(right, stage);
+			int distance = 1 << stage;
+
+			if (bit == FALSE)
+			{
+				continue;
+			}
+			for (int i = 0; i < NUM_PLANES; i++)
+			{
+				int from = is_left ? i - distance : i + distance;
+
+				/* >> copies the sign down */
+				shifted[i] = (from < 0) ? FALSE : result[Math.min(from, NUM_PLANES - 1)];
+			}
+			for (int i = 0; i < NUM_PLANES; i++)
+			{
+				result[i] = mux(bit, shifted[i], result[i]);
+			}
+		}
+	}
+
+	/* left < right as ints, setting equal */
+	private int less_than(int left, int right)
+	{
+		int less = FALSE;
+		int same = TRUE;
+
+		for (int i = NUM_PLANES - 1; i >= 0; i--)
+		{
+			int a = plane(left, i);
+			int b = plane(right, i);
+
+			/* the top plane is the sign */
+			less = or(less, and(same, (i == NUM_PLANES - 1) ? and(a, b ^ 1) : and(a ^ 1, b)));
+			same = and(same, xor(a, b) ^ 1);
+		}
+		equal = same;
+
+		return less;
+	}
+
+	private int bitwise(int opcode, int left, int right)
+	{
+		switch (opcode)
+		{
+			case SimOpcode.AND:
+				return and(left, right);
+			case SimOpcode.NAND:
+				return and(left, right) ^ 1;
+			case SimOpcode.OR:
+				return or(left, right);
+			case SimOpcode.NOR:
+				return or(left, right) ^ 1;
+			case SimOpcode.XOR:
+				return xor(left, right);
+			default:
+				return xor(left, right) ^ 1;
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Running code
+	 * -------------------------------------------------------------------------- */
+	/* loads read old_values and stores write new_values */
+	private void execute(int pc, int[] old_values, int[] new_values)
+	{
+		int active = TRUE;
+
+		/* whatever the last block left is never read */
+		Arrays.fill(stack, FALSE);
+
+		for (;;)
+		{
+			int opcode = code[pc];
+			int top = depths[pc] - 1;
+
+			active = or(active, pending[pc]);
+			pending[pc] = FALSE;
+			if (active == FALSE && opcode != SimOpcode.END)
+			{
+				/* the code never gets here this way */
+				pc += SimOpcode.length(code, pc);
+				continue;
+			}
+
+			switch (opcode)
+			{
+				case SimOpcode.CONST:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = (((code[pc + 1] >>> i) & 1) != 0) ? TRUE : FALSE;
+					}
+					put(top + 1, active);
+					break;
+				case SimOpcode.LOAD:
+					System.arraycopy(old_values, code[pc + 1] * NUM_PLANES, result, 0, NUM_PLANES);
+					put(top + 1, active);
+					break;
+				case SimOpcode.LOAD_BIT:
+				{
+					int offset = code[pc + 1] * NUM_PLANES;
+					int mask = code[pc + 2];
+					int bit = FALSE;
+
+					/* (value & mask) > 0, so not if the sign bit is in it */
+					for (int i = 0; i < NUM_PLANES - 1; i++)
+					{
+						if (((mask >>> i) & 1) != 0)
+						{
+							bit = or(bit, old_values[offset + i]);
+						}
+					}
+					if (mask < 0)
+					{
+						bit = and(bit, old_values[offset + NUM_PLANES - 1] ^ 1);
+					}
+					put_bool(top + 1, bit, active);
+					break;
+				}
+				case SimOpcode.MASK:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = (((code[pc + 1] >>> i) & 1) != 0) ? plane(top, i) : FALSE;
+					}
+					put(top, active);
+					break;
+				case SimOpcode.NEG:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = plane(top, i);
+					}
+					negate_if(result, TRUE, NUM_PLANES);
+					put(top, active);
+					break;
+				case SimOpcode.NOT:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = plane(top, i) ^ 1;
+					}
+					put(top, active);
+					break;
+				case SimOpcode.LNOT:
+					put_bool(top, non_zero(top) ^ 1, active);
+					break;
+				case SimOpcode.MUL:
+					multiply(top - 1, top);
+					put(top - 1, active);
+					break;
+				case SimOpcode.DIV:
+				case SimOpcode.MOD:
+					div_zero_literal = or(div_zero_literal, and(active, non_zero(top) ^ 1));
+					divide(top - 1, top, opcode == SimOpcode.MOD);
+					put(top - 1, active);
+					break;
+				case SimOpcode.ADD:
+				case SimOpcode.SUB:
+					add_entries(top - 1, top, opcode == SimOpcode.SUB);
+					put(top - 1, active);
+					break;
+				case SimOpcode.AND:
+				case SimOpcode.NAND:
+				case SimOpcode.OR:
+				case SimOpcode.NOR:
+				case SimOpcode.XOR:
+				case SimOpcode.XNOR:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = bitwise(opcode, plane(top - 1, i), plane(top, i));
+					}
+					put(top - 1, active);
+					break;
+				case SimOpcode.SHL:
+				case SimOpcode.SHR:
+					shift(top - 1, top, opcode == SimOpcode.SHL);
+					put(top - 1, active);
+					break;
+				case SimOpcode.LT:
+					put_bool(top - 1, less_than(top - 1, top), active);
+					break;
+				case SimOpcode.LTE:
+					put_bool(top - 1, or(less_than(top - 1, top), equal), active);
+					break;
+				case SimOpcode.GT:
+					put_bool(top - 1, or(less_than(top - 1, top), equal) ^ 1, active);
+					break;
+				case SimOpcode.GTE:
+					put_bool(top - 1, less_than(top - 1, top) ^ 1, active);
+					break;
+				case SimOpcode.EQ:
+					less_than(top - 1, top);
+					put_bool(top - 1, equal, active);
+					break;
+				case SimOpcode.NE:
+					less_than(top - 1, top);
+					put_bool(top - 1, equal ^ 1, active);
+					break;
+				case SimOpcode.LAND:
+					put_bool(top - 1, and(non_zero(top - 1), non_zero(top)), active);
+					break;
+				case SimOpcode.LOR:
+					put_bool(top - 1, or(non_zero(top - 1), non_zero(top)), active);
+					break;
+				case SimOpcode.STORE:
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = (((code[pc + 2] >>> i) & 1) != 0) ? plane(top, i) : FALSE;
+					}
+					store(new_values, code[pc + 1], active);
+					break;
+				case SimOpcode.STORE_BITS:
+				{
+					int offset = code[pc + 1] * NUM_PLANES;
+					int lsb = code[pc + 2] & 31;
+					int field_mask = code[pc + 3] << lsb;
+					int mask = code[pc + 4];
+
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						int bit = (((field_mask >>> i) & 1) != 0) ? plane(top, i - lsb) : new_values[offset + i];
+
+						result[i] = (((mask >>> i) & 1) != 0) ? bit : FALSE;
+					}
+					store(new_values, code[pc + 1], active);
+					break;
+				}
+				case SimOpcode.JUMP:
+					pending[code[pc + 1]] = or(pending[code[pc + 1]], active);
+					active = FALSE;
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+				{
+					int bit = non_zero(top);
+
+					pending[code[pc + 1]] = or(pending[code[pc + 1]], and(active, bit ^ 1));
+					active = and(active, bit);
+					break;
+				}
+				case SimOpcode.CASE_NE:
+					less_than(top - 1, top);
+					pending[code[pc + 1]] = or(pending[code[pc + 1]], and(active, equal ^ 1));
+					active = and(active, equal);
+					break;
+				case SimOpcode.POP:
+					break;
+				case SimOpcode.COUNT:
+					/* gates aren't profiled */
+					break;
+				case SimOpcode.SWITCH:
+				{
+					int rest = active;
+
+					/* each value goes on at its own target */
+					for (int i = 0; i < code[pc + 2] && rest != FALSE; i++)
+					{
+						int target = code[pc + 4 + i];
+						int matched = and(rest, equal_to(top, code[pc + 1] + i));
+
+						pending[target] = or(pending[target], matched);
+						rest = and(rest, matched ^ 1);
+					}
+					pending[code[pc + 3]] = or(pending[code[pc + 3]], rest);
+					active = FALSE;
+					break;
+				}
+				default:
+					/* END */
+					return;
+			}
+			pc += SimOpcode.length(code, pc);
+		}
+	}
+}
@@ -0,0 +1,653 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/* Looks for the mistakes the engines used to print about every cycle, once
+ * when the module is compiled:
+ * - combinational signals not assigned on every path through their always
+ * block, or never assigned, which hold their value like a latch
+ * - combinational blocks that feed each other in a loop
+ * - = in clocked blocks and <= in combinational ones, which are ignored
+ * The paths are the ones in the source, so an if on a constant still counts
+ * both arms. */
+public class SimAnalysis
+{
+	private SimBinding								binding;
+	private ArrayList<SimDiagnostic>				diagnostics;
+
+	/* the combinational blocks (always @(*) and assigns) in source order */
+	private ArrayList<ParserRuleContext>			comb_blocks;
+	private ArrayList<boolean[]>					block_reads;
+	private ArrayList<boolean[]>					block_writes;
+	/* slots a block assigns on every path, all of them for an assign */
+	private ArrayList<boolean[]>					block_assigns;
+	/* slots a block reads before it's sure to have assigned them */
+	private ArrayList<boolean[]>					block_first_reads;
+	/* slots assigned with = in a clocked block, which the compiler leaves out */
+	private boolean[]								is_clocked_blocking;
+	/* where each slot is first named, to point at its declaration */
+	private Verilog2001Parser.IdentifierContext[]	first_use;
+
+	/* Tarjan's strongly connected components over the blocks */
+	private int[]									index;
+	private int[]									low_link;
+	private boolean[]								is_on_stack;
+	private ArrayList<Integer>						stack;
+	private int										next_index;
+
+	public SimAnalysis(SimBinding binding)
+	{
+		this.binding = binding;
+	}
+
+	public ArrayList<SimDiagnostic> analyze(ParseTree root_tree)
+	{
+		Verilog2001Parser.Module_declarationContext module = (Verilog2001Parser.Module_declarationContext) root_tree;
+
+		diagnostics = new ArrayList<SimDiagnostic>();
+		comb_blocks = new ArrayList<ParserRuleContext>();
+		block_reads = new ArrayList<boolean[]>();
+		block_writes = new ArrayList<boolean[]>();
+		block_assigns = new ArrayList<boolean[]>();
+		block_first_reads = new ArrayList<boolean[]>();
+		first_use = new Verilog2001Parser.IdentifierContext[binding.getNumSlots()];
+		is_clocked_blocking = new boolean[binding.getNumSlots()];
+
+		add_module(module, "");
+		check_latches();
+		check_loops();
+
+		return diagnostics;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Blocks
+	 * -------------------------------------------------------------------------- */
+	/* the blocks of the module and the instances in it, which start their
+	 * slot names with prefix */
+	private void add_module(Verilog2001Parser.Module_declarationContext module, String prefix)
+	{
+		for (int i = 0; i < module.module_item().size(); i++)
+		{
+			Verilog2001Parser.Module_itemContext item = module.module_item(i);
+
+			/* the declarations come before any use */
+			find_first_uses(item);
+			if (item.continuous_assign() != null)
+			{
+				add_assign(item.continuous_assign());
+			}
+			else if (item.always_construct() instanceof Verilog2001Parser.COMBONATIONAL_ALWAYSContext)
+			{
+				add_always(item.always_construct(), ((Verilog2001Parser.COMBONATIONAL_ALWAYSContext) item.always_construct()).statement());
+			}
+			else if (item.always_construct() instanceof Verilog2001Parser.SEQUENTIAL_ALWAYSContext)
+			{
+				check_clocked(((Verilog2001Parser.SEQUENTIAL_ALWAYSContext) item.always_construct()).statement());
+			}
+			else if (item.module_instantiation() != null)
+			{
+				for (int j = 0; j < item.module_instantiation().module_instance().size(); j++)
+				{
+					Verilog2001Parser.Module_instanceContext instance = item.module_instantiation().module_instance(j);
+
+					if (binding.getInstanceModule(instance) != null)
+					{
+						add_module(binding.getInstanceModule(instance), prefix + instance.name_of_instance().getText() + ".");
+					}
+				}
+			}
+		}
+
+		/* signals only in the port list and declarations aren't bound */
+		find_declarations(module, prefix);
+	}
+
+	private void add_assign(Verilog2001Parser.Continuous_assignContext ctx)
+	{
+		boolean[] reads = new boolean[binding.getNumSlots()];
+		boolean[] writes = new boolean[binding.getNumSlots()];
+		int slot = lvalue_slot(ctx.variable_lvalue());
+
+		collect_reads(ctx.expression(), reads);
+		if (slot != SimBinding.NO_SLOT)
+		{
+			writes[slot] = true;
+		}
+		add_block(ctx, reads, writes, writes.clone(), reads.clone());
+	}
+
+	private void add_always(ParserRuleContext ctx, Verilog2001Parser.StatementContext statement)
+	{
+		boolean[] reads = new boolean[binding.getNumSlots()];
+		boolean[] writes = new boolean[binding.getNumSlots()];
+		boolean[] first_reads = new boolean[binding.getNumSlots()];
+
+		collect_statement(statement, reads, writes);
+		collect_first_reads(statement, new boolean[binding.getNumSlots()], first_reads);
+		add_block(ctx, reads, writes, assigned(statement), first_reads);
+	}
+
+	private void add_block(ParserRuleContext ctx, boolean[] reads, boolean[] writes, boolean[] assigns, boolean[] first_reads)
+	{
+		comb_blocks.add(ctx);
+		block_reads.add(reads);
+		block_writes.add(writes);
+		block_assigns.add(assigns);
+		block_first_reads.add(first_reads);
+	}
+
+	/* Marks what a combinational statement loads and stores, and reports the
+	 * non-blocking assignments the compiler leaves out */
+	private void collect_statement(Verilog2001Parser.StatementContext ctx, boolean[] reads, boolean[] writes)
+	{
+		if (ctx.blocking_assignment() != null)
+		{
+			int slot = lvalue_slot(ctx.blocking_assignment().variable_lvalue());
+
+			collect_reads(ctx.blocking_assignment().expression(), reads);
+			if (slot != SimBinding.NO_SLOT)
+			{
+				writes[slot] = true;
+			}
+		}
+		else if (ctx.nonblocking_assignment() != null)
+		{
+			add(SimDiagnostic.Kind.NON_BLOCKING_IN_COMBINATIONAL, ctx, null, "<= in a combinational block is ignored, use =");
+		}
+		else if (ctx.conditional_statement() != null)
+		{
+			for (int i = 0; i < ctx.conditional_statement().expression().size(); i++)
+			{
+				collect_reads(ctx.conditional_statement().expression(i), reads);
+			}
+			for (int i = 0; i < ctx.conditional_statement().statement().size(); i++)
+			{
+				collect_statement(ctx.conditional_statement().statement(i), reads, writes);
+			}
+		}
+		else if (ctx.case_statement() != null)
+		{
+			collect_reads(ctx.case_statement().expression(), reads);
+			for (int i = 0; i < ctx.case_statement().case_item().size(); i++)
+			{
+				Verilog2001Parser.Case_itemContext item = ctx.case_statement().case_item(i);
+
+				if (item instanceof Verilog2001Parser.FCASE_ITEMContext)
+				{
+					collect_reads(((Verilog2001Parser.FCASE_ITEMContext) item).expression(), reads);
+				}
+				collect_statement(item_statement(item), reads, writes);
+			}
+		}
+		else
+		{
+			for (int i = 0; i < ctx.statement().size(); i++)
+			{
+				collect_statement(ctx.statement(i), reads, writes);
+			}
+		}
+	}
+
+	/* Marks what a combinational statement reads while it may not have been
+	 * assigned yet, given the slots assigned on every path before it */
+	private void collect_first_reads(Verilog2001Parser.StatementContext ctx, boolean[] assigned, boolean[] first_reads)
+	{
+		if (ctx.blocking_assignment() != null)
+		{
+			collect_unassigned_reads(ctx.blocking_assignment().expression(), assigned, first_reads);
+		}
+		else if (ctx.conditional_statement() != null)
+		{
+			for (int i = 0; i < ctx.conditional_statement().expression().size(); i++)
+			{
+				collect_unassigned_reads(ctx.conditional_statement().expression(i), assigned, first_reads);
+			}
+			for (int i = 0; i < ctx.conditional_statement().statement().size(); i++)
+			{
+				collect_first_reads(ctx.conditional_statement().statement(i), assigned, first_reads);
+			}
+		}
+		else if (ctx.case_statement() != null)
+		{
+			collect_unassigned_reads(ctx.case_statement().expression(), assigned, first_reads);
+			for (int i = 0; i < ctx.case_statement().case_item().size(); i++)
+			{
+				Verilog2001Parser.Case_itemContext item = ctx.case_statement().case_item(i);
+
+				if (item instanceof Verilog2001Parser.FCASE_ITEMContext)
+				{
+					collect_unassigned_reads(((Verilog2001Parser.FCASE_ITEMContext) item).expression(), assigned, first_reads);
+				}
+				collect_first_reads(item_statement(item), assigned, first_reads);
+			}
+		}
+		else if (ctx.nonblocking_assignment() == null)
+		{
+			boolean[] assigned_so_far = assigned.clone();
+
+			for (int i = 0; i < ctx.statement().size(); i++)
+			{
+				boolean[] statement_slots = assigned(ctx.statement(i));
+
+				collect_first_reads(ctx.statement(i), assigned_so_far, first_reads);
+				for (int slot = 0; slot < assigned_so_far.length; slot++)
+				{
+					assigned_so_far[slot] |= statement_slots[slot];
+				}
+			}
+		}
+	}
+
+	private void collect_unassigned_reads(ParseTree tree, boolean[] assigned, boolean[] first_reads)
+	{
+		boolean[] reads = new boolean[assigned.length];
+
+		collect_reads(tree, reads);
+		for (int slot = 0; slot < reads.length; slot++)
+		{
+			first_reads[slot] |= reads[slot] && !assigned[slot];
+		}
+	}
+
+	/* reports the blocking assignments the compiler leaves out */
+	private void check_clocked(Verilog2001Parser.StatementContext ctx)
+	{
+		if (ctx.blocking_assignment() != null)
+		{
+			int slot = lvalue_slot(ctx.blocking_assignment().variable_lvalue());
+
+			if (slot != SimBinding.NO_SLOT)
+			{
+				is_clocked_blocking[slot] = true;
+			}
+			add(SimDiagnostic.Kind.BLOCKING_IN_SEQUENTIAL, ctx, null, "= in a clocked block is ignored, use <=");
+		}
+		else if (ctx.conditional_statement() != null)
+		{
+			for (int i = 0; i < ctx.conditional_statement().statement().size(); i++)
+			{
+				check_clocked(ctx.conditional_statement().statement(i));
+			}
+		}
+		else if (ctx.case_statement() != null)
+		{
+			for (int i = 0; i < ctx.case_statement().case_item().size(); i++)
+			{
+				check_clocked(item_statement(ctx.case_statement().case_item(i)));
+			}
+		}
+		else
+		{
+			for (int i = 0; i < ctx.statement().size(); i++)
+			{
+				check_clocked(ctx.statement(i));
+			}
+		}
+	}
+
+	/* The slots a statement assigns whichever way it goes: everything a
+	 * begin/end assigns, and what every arm of an if or case with an else or
+	 * default assigns */
+	private boolean[] assigned(Verilog2001Parser.StatementContext ctx)
+	{
+		boolean[] slots = new boolean[binding.getNumSlots()];
+
+		if (ctx.blocking_assignment() != null)
+		{
+			int slot = lvalue_slot(ctx.blocking_assignment().variable_lvalue());
+
+			if (slot != SimBinding.NO_SLOT)
+			{
+				slots[slot] = true;
+			}
+		}
+		else if (ctx.conditional_statement() != null)
+		{
+			Verilog2001Parser.Conditional_statementContext conditional = ctx.conditional_statement();
+
+			/* without an else nothing is certain */
+			if (conditional.statement().size() > conditional.expression().size())
+			{
+				slots = all_arms(conditional.statement());
+			}
+		}
+		else if (ctx.case_statement() != null)
+		{
+			List<Verilog2001Parser.Case_itemContext> items = ctx.case_statement().case_item();
+			ArrayList<Verilog2001Parser.StatementContext> arms = new ArrayList<Verilog2001Parser.StatementContext>();
+			boolean has_default = false;
+
+			for (int i = 0; i < items.size() && !has_default; i++)
+			{
+				arms.add(item_statement(items.get(i)));
+				/* the items after a default can't be reached */
+				has_default = items.get(i) instanceof Verilog2001Parser.DEFAULTContext;
+			}
+			if (has_default)
+			{
+				slots = all_arms(arms);
+			}
+		}
+		else if (ctx.nonblocking_assignment() == null)
+		{
+			for (int i = 0; i < ctx.statement().size(); i++)
+			{
+				boolean[] statement_slots = assigned(ctx.statement(i));
+
+				for (int slot = 0; slot < slots.length; slot++)
+				{
+					slots[slot] |= statement_slots[slot];
+				}
+			}
+		}
+
+		return slots;
+	}
+
+	private boolean[] all_arms(List<Verilog2001Parser.StatementContext> arms)
+	{
+		boolean[] slots = assigned(arms.get(0));
+
+		for (int i = 1; i < arms.size(); i++)
+		{
+			boolean[] arm_slots = assigned(arms.get(i));
+
+			for (int slot = 0; slot < slots.length; slot++)
+			{
+				slots[slot] &= arm_slots[slot];
+			}
+		}
+
+		return slots;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Latches
+	 * -------------------------------------------------------------------------- */
+	private void check_latches()
+	{
+		int[] latch_slots = binding.getLatchSlots();
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int slot = latch_slots[i];
+			int first_writer = -1;
+			boolean is_assigned = false;
+
+			for (int j = 0; j < comb_blocks.size(); j++)
+			{
+				if (block_writes.get(j)[slot])
+				{
+					first_writer = (first_writer == -1) ? j : first_writer;
+					is_assigned |= block_assigns.get(j)[slot];
+				}
+			}
+
+			if (first_writer == -1 && is_clocked_blocking[slot])
+			{
+				add(SimDiagnostic.Kind.LATCH, first_use[slot], slot, name(slot) + " is only assigned with = in a clocked block, so it never changes");
+			}
+			else if (first_writer == -1)
+			{
+				add(SimDiagnostic.Kind.LATCH, first_use[slot], slot, name(slot) + " is never assigned, so it never changes");
+			}
+			else if (!is_assigned)
+			{
+				add(SimDiagnostic.Kind.LATCH, comb_blocks.get(first_writer), slot, name(slot) + " isn't assigned on every path through the block, so it keeps its old value like a latch");
+			}
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Combinational loops
+	 * -------------------------------------------------------------------------- */
+	private void check_loops()
+	{
+		int num_blocks = comb_blocks.size();
+
+		index = new int[num_blocks];
+		low_link = new int[num_blocks];
+		is_on_stack = new boolean[num_blocks];
+		stack = new ArrayList<Integer>();
+		next_index = 1;
+
+		for (int i = 0; i < num_blocks; i++)
+		{
+			if (index[i] == 0)
+			{
+				connect(i);
+			}
+		}
+
+		/* a block reading what it assigns before assigning it is a loop on
+		 * its own, like s = s + 1 */
+		for (int i = 0; i < num_blocks; i++)
+		{
+			for (int slot = 0; slot < binding.getNumSlots(); slot++)
+			{
+				if (block_first_reads.get(i)[slot] && block_writes.get(i)[slot])
+				{
+					add(SimDiagnostic.Kind.COMBINATIONAL_LOOP, comb_blocks.get(i), slot, name(slot) + " depends on itself");
+				}
+			}
+		}
+	}
+
+	/* block i drives block j if j reads something i writes */
+	private boolean is_driving(int i, int j)
+	{
+		boolean[] writes = block_writes.get(i);
+		boolean[] reads = block_reads.get(j);
+
+		for (int slot = 0; slot < writes.length; slot++)
+		{
+			if (writes[slot] && reads[slot])
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void connect(int block)
+	{
+		index[block] = next_index;
+		low_link[block] = next_index;
+		next_index++;
+		stack.add(block);
+		is_on_stack[block] = true;
+
+		for (int next = 0; next < comb_blocks.size(); next++)
+		{
+			if (next == block || !is_driving(block, next))
+			{
+				continue;
+			}
+			if (index[next] == 0)
+			{
+				connect(next);
+				low_link[block] = Math.min(low_link[block], low_link[next]);
+			}
+			else if (is_on_stack[next])
+			{
+				low_link[block] = Math.min(low_link[block], index[next]);
+			}
+		}
+
+		if (low_link[block] == index[block])
+		{
+			boolean[] is_in_loop = new boolean[comb_blocks.size()];
+			int num_in_loop = 0;
+			int first = block;
+			int member;
+
+			do
+			{
+				member = stack.remove(stack.size() - 1);
+				is_on_stack[member] = false;
+				is_in_loop[member] = true;
+				first = Math.min(first, member);
+				num_in_loop++;
+			} while (member != block);
+
+			if (num_in_loop > 1)
+			{
+				report_loop(is_in_loop, first);
+			}
+		}
+	}
+
+	private void report_loop(boolean[] is_in_loop, int first)
+	{
+		StringBuilder signals = new StringBuilder();
+		int first_slot = -1;
+
+		/* the signals passed between the blocks of the loop */
+		for (int slot = 0; slot < binding.getNumSlots(); slot++)
+		{
+			boolean is_written = false;
+			boolean is_read = false;
+
+			for (int i = 0; i < is_in_loop.length; i++)
+			{
+				is_written |= is_in_loop[i] && block_writes.get(i)[slot];
+				is_read |= is_in_loop[i] && block_reads.get(i)[slot];
+			}
+			if (is_written && is_read)
+			{
+				signals.append((first_slot == -1) ? "" : ", ").append(name(slot));
+				first_slot = (first_slot == -1) ? slot : first_slot;
+			}
+		}
+
+		add(SimDiagnostic.Kind.COMBINATIONAL_LOOP, comb_blocks.get(first), first_slot, "Combinational loop through " + signals);
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Helpers
+	 * -------------------------------------------------------------------------- */
+	private void add(SimDiagnostic.Kind kind, ParserRuleContext ctx, int slot, String message)
+	{
+		add(kind, ctx, (slot == SimBinding.NO_SLOT) ? null : name(slot), message);
+	}
+
+	private void add(SimDiagnostic.Kind kind, ParserRuleContext ctx, String signal, String message)
+	{
+		int line = (ctx != null) ? ctx.start.getLine() : 0;
+		int column = (ctx != null) ? ctx.start.getCharPositionInLine() : 0;
+
+		diagnostics.add(new SimDiagnostic(kind, line, column, signal, message));
+	}
+
+	private String name(int slot)
+	{
+		return binding.getSlotNames()[slot];
+	}
+
+	private int lvalue_slot(Verilog2001Parser.Variable_lvalueContext ctx)
+	{
+		return binding.getSlot(ctx.identifier().start);
+	}
+
+	private Verilog2001Parser.StatementContext item_statement(Verilog2001Parser.Case_itemContext item)
+	{
+		if (item instanceof Verilog2001Parser.FCASE_ITEMContext)
+		{
+			return ((Verilog2001Parser.FCASE_ITEMContext) item).statement();
+		}
+
+		return ((Verilog2001Parser.DEFAULTContext) item).statement();
+	}
+
+	/* every identifier under the tree, parameters left out as they never
+	 * change */
+	private void collect_reads(ParseTree tree, boolean[] reads)
+	{
+		if (tree instanceof Verilog2001Parser.IdentifierContext)
+		{
+			int slot = binding.getSlot(((Verilog2001Parser.IdentifierContext) tree).start);
+
+			if (slot != SimBinding.NO_SLOT && !binding.isParameter(slot))
+			{
+				reads[slot] = true;
+			}
+			return;
+		}
+
+		for (int i = 0; i < tree.getChildCount(); i++)
+		{
+			collect_reads(tree.getChild(i), reads);
+		}
+	}
+
+	private void find_first_uses(ParseTree tree)
+	{
+		if (tree instanceof Verilog2001Parser.IdentifierContext)
+		{
+			int slot = binding.getSlot(((Verilog2001Parser.IdentifierContext) tree).start);
+
+			if (slot != SimBinding.NO_SLOT && first_use[slot] == null)
+			{
+				first_use[slot] = (Verilog2001Parser.IdentifierContext) tree;
+			}
+			return;
+		}
+
+		for (int i = 0; i < tree.getChildCount(); i++)
+		{
+			find_first_uses(tree.getChild(i));
+		}
+	}
+
+	private void find_declarations(ParseTree tree, String prefix)
+	{
+		if (tree instanceof Verilog2001Parser.IdentifierContext)
+		{
+			String text = prefix + ((Verilog2001Parser.IdentifierContext) tree).getText();
+
+			for (int slot = 0; slot < first_use.length; slot++)
+			{
+				if (first_use[slot] == null && text.equals(name(slot)))
+				{
+					first_use[slot] = (Verilog2001Parser.IdentifierContext) tree;
+				}
+			}
+			return;
+		}
+
+		for (int i = 0; i < tree.getChildCount(); i++)
+		{
+			find_declarations(tree.getChild(i), prefix);
+		}
+	}
+}
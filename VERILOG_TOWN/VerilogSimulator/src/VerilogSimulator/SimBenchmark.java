@@ -0,0 +1,580 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/* Benchmarks the simulator on the designs that ship with the game: every
+ * Levels/LvN/VerilogFiles/*.v, samples/full_module.v and
+ * VERILOG_TOWN/VerilogSimulator/stop_light_seq.v under -root. Each design
+ * is run on each engine against one fixed sensor trace, one line of inputs
+ * per sim cycle, and measured for
+ *
+ * compile_ms	median time to parse and compile it into a fresh Parse
+ * cold_ns		ns a sim cycle over the first pass after compiling
+ * warm_ns		median ns a sim cycle over passes after warming up
+ * p50_ns...	percentiles of single sim cycles, warm
+ * alloc_bytes	bytes allocated a sim cycle, warm, or -1 if the JVM can't say
+ *
+ * -save keeps the results, and -baseline compares them to a saved run and
+ * exits with 1 if the geometric mean over the designs of compile_ms,
+ * warm_ns or p50_ns on an engine is more than -tolerance worse, or any
+ * design allocates more a cycle, to gate changes to the simulator on. The
+ * other times are too noisy to gate on. Baselines are only comparable on
+ * the same machine and trace.
+ *
+ * java VerilogSimulator.SimBenchmark [-root dir] [-engine type] [-step]
+ * [-cycles n] [-iterations n] [-trace file] [-record file] [-save file]
+ * [-baseline file] [-tolerance fraction] */
+public class SimBenchmark
+{
+	private static final String[]	METRICS				= { "compile_ms", "cold_ns", "warm_ns", "p50_ns", "p99_ns", "p999_ns", "alloc_bytes" };
+	private static final String[]	GATED_METRICS		= { "compile_ms", "warm_ns", "p50_ns" };
+	private static final double		DEFAULT_TOLERANCE	= 0.10;
+	/* allocations that small are noise from the measuring itself */
+	private static final double		ALLOC_SLACK			= 8;
+
+	public static void main(String[] args) throws IOException
+	{
+		File root = new File(".");
+		ArrayList<SimEngineType> engine_types = new ArrayList<SimEngineType>();
+		boolean is_step = false;
+		int num_cycles = 20000;
+		int num_iterations = 5;
+		String trace_file = null;
+		String record_file = null;
+		String save_file = null;
+		String baseline_file = null;
+		double tolerance = DEFAULT_TOLERANCE;
+		ArrayList<File> designs;
+		int[][] trace;
+		TreeMap<String, Double> results = new TreeMap<String, Double>();
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-root") && i + 1 < args.length)
+			{
+				root = new File(args[++i]);
+			}
+			else if (args[i].equals("-engine") && i + 1 < args.length)
+			{
+				engine_types.add(SimEngineType.valueOf(args[++i]));
+			}
+			else if (args[i].equals("-step"))
+			{
+				is_step = true;
+			}
+			else if (args[i].equals("-cycles") && i + 1 < args.length)
+			{
+				num_cycles = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-iterations") && i + 1 < args.length)
+			{
+				num_iterations = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-trace") && i + 1 < args.length)
+			{
+				trace_file = args[++i];
+			}
+			else if (args[i].equals("-record") && i + 1 < args.length)
+			{
+				record_file = args[++i];
+			}
+			else if (args[i].equals("-save") && i + 1 < args.length)
+			{
+				save_file = args[++i];
+			}
+			else if (args[i].equals("-baseline") && i + 1 < args.length)
+			{
+				baseline_file = args[++i];
+			}
+			else if (args[i].equals("-tolerance") && i + 1 < args.length)
+			{
+				tolerance = Double.parseDouble(args[++i]);
+			}
+			else
+			{
+				System.out.println("usage: SimBenchmark [-root dir] [-engine type] [-step] [-cycles n] [-iterations n] [-trace file] [-record file] [-save file] [-baseline file] [-tolerance fraction]");
+				return;
+			}
+		}
+		if (engine_types.isEmpty())
+		{
+			engine_types.addAll(Arrays.asList(SimEngineType.values()));
+		}
+
+		designs = findDesigns(root);
+		if (designs.isEmpty())
+		{
+			System.out.println("No designs under " + root.getAbsolutePath() + " - see -root");
+			return;
+		}
+
+		trace = (trace_file != null) ? readTrace(new File(trace_file)) : makeTrace(new Random(1), num_cycles);
+		if (record_file != null)
+		{
+			writeTrace(new File(record_file), trace);
+		}
+
+		/* the parser, compiler and engines through the JIT before anything
+		 * is timed */
+		for (int i = 0; i < engine_types.size(); i++)
+		{
+			for (int j = 0; j < designs.size(); j++)
+			{
+				Parse parse = compile(designs.get(j), engine_types.get(i));
+
+				run(parse, trace, is_step, new int[Parse.NUM_OUTPUTS]);
+			}
+		}
+
+		System.out.println(designs.size() + " designs, " + trace[0].length + " cycles of " + (is_step ? "step" : "sim_cycle") + ", " + num_iterations + " iterations");
+		System.out.printf("%-12s %-50s %10s %10s %10s %10s %10s %10s %12s%n", "engine", "design", "compile_ms", "cold_ns", "warm_ns", "p50_ns", "p99_ns", "p999_ns", "alloc_bytes");
+		for (int i = 0; i < engine_types.size(); i++)
+		{
+			for (int j = 0; j < designs.size(); j++)
+			{
+				String name = designName(root, designs.get(j));
+				double[] metrics = measure(designs.get(j), engine_types.get(i), trace, num_iterations, is_step);
+
+				if (metrics == null)
+				{
+					System.out.printf("%-12s %-50s doesn't compile, skipped%n", engine_types.get(i), name);
+					continue;
+				}
+
+				System.out.printf("%-12s %-50s %10.3f %10.1f %10.1f %10.0f %10.0f %10.0f %12.1f%n", engine_types.get(i), name, metrics[0], metrics[1], metrics[2], metrics[3], metrics[4], metrics[5], metrics[6]);
+				for (int k = 0; k < METRICS.length; k++)
+				{
+					results.put(engine_types.get(i) + "." + name + "." + METRICS[k], metrics[k]);
+				}
+			}
+		}
+
+		if (save_file != null)
+		{
+			writeResults(new File(save_file), results);
+		}
+		if (baseline_file != null && !compare(readResults(new File(baseline_file)), results, tolerance))
+		{
+			System.exit(1);
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Designs and traces
+	 * -------------------------------------------------------------------------- */
+	public static ArrayList<File> findDesigns(File root)
+	{
+		ArrayList<File> designs = new ArrayList<File>();
+		File[] levels = new File(root, "Levels").listFiles();
+
+		if (levels != null)
+		{
+			Arrays.sort(levels);
+			for (int i = 0; i < levels.length; i++)
+			{
+				File[] files = new File(levels[i], "VerilogFiles").listFiles();
+
+				if (!levels[i].getName().startsWith("Lv") || files == null)
+				{
+					continue;
+				}
+				Arrays.sort(files);
+				for (int j = 0; j < files.length; j++)
+				{
+					if (files[j].getName().endsWith(".v"))
+					{
+						designs.add(files[j]);
+					}
+				}
+			}
+		}
+		add_if_exists(designs, new File(root, "samples/full_module.v"));
+		add_if_exists(designs, new File(root, "VERILOG_TOWN/VerilogSimulator/stop_light_seq.v"));
+
+		return designs;
+	}
+
+	private static void add_if_exists(ArrayList<File> designs, File file)
+	{
+		if (file.isFile())
+		{
+			designs.add(file);
+		}
+	}
+
+	private static String designName(File root, File design)
+	{
+		String root_path = root.getAbsoluteFile().toURI().getPath();
+		String path = design.getAbsoluteFile().toURI().getPath();
+
+		return path.startsWith(root_path) ? path.substring(root_path.length()) : path;
+	}
+
+	/* rst, light sensors and general sensors for each sim cycle, the way the
+	 * game drives a signal: reset at the start and now and then, and a car at
+	 * each light sensor a quarter of the time. Each input is held for a clock
+	 * of two sim cycles. */
+	public static int[][] makeTrace(Random random, int num_cycles)
+	{
+		int[][] trace = new int[3][num_cycles];
+
+		for (int i = 0; i < num_cycles; i += 2)
+		{
+			int rst = (i < 2 || random.nextInt(500) == 0) ? 0 : 1;
+			int light_sensors = 0;
+			int general_sensors = random.nextInt(1 << 28);
+
+			for (int bit = 0; bit < 8; bit++)
+			{
+				if (random.nextInt(4) == 0)
+				{
+					light_sensors |= 1 << bit;
+				}
+			}
+			for (int j = i; j < Math.min(i + 2, num_cycles); j++)
+			{
+				trace[0][j] = rst;
+				trace[1][j] = light_sensors;
+				trace[2][j] = general_sensors;
+			}
+		}
+
+		return trace;
+	}
+
+	/* One sim cycle a line: rst, light sensors and general sensors in
+	 * decimal. Lines starting with # are comments. */
+	public static int[][] readTrace(File file) throws IOException
+	{
+		ArrayList<int[]> cycles = new ArrayList<int[]>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		int[][] trace;
+
+		try
+		{
+			String line;
+
+			while ((line = reader.readLine()) != null)
+			{
+				String[] fields = line.trim().split("\\s+");
+
+				if (line.trim().isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+				if (fields.length != 3)
+				{
+					throw new IOException(file + ": expected rst, light sensors and general sensors at " + line);
+				}
+				cycles.add(new int[] { Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]) });
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		trace = new int[3][cycles.size()];
+		for (int i = 0; i < cycles.size(); i++)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				trace[j][i] = cycles.get(i)[j];
+			}
+		}
+
+		return trace;
+	}
+
+	public static void writeTrace(File file, int[][] trace) throws IOException
+	{
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+
+		try
+		{
+			writer.println("# rst light_sensors general_sensors, one sim cycle a line");
+			for (int i = 0; i < trace[0].length; i++)
+			{
+				writer.println(trace[0][i] + " " + trace[1][i] + " " + trace[2][i]);
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Measuring
+	 * -------------------------------------------------------------------------- */
+	/* The METRICS of one design on one engine, or null if it doesn't
+	 * compile */
+	private static double[] measure(File design, SimEngineType engine_type, int[][] trace, int num_iterations, boolean is_step) throws IOException
+	{
+		double[] metrics = new double[METRICS.length];
+		double[] times = new double[num_iterations];
+		long[] latencies = new long[trace[0].length];
+		int[] outputs = new int[Parse.NUM_OUTPUTS];
+		Parse parse = null;
+		long allocated;
+		long start;
+
+		/* the first compile warms the parser, the rest are timed */
+		for (int i = 0; i <= num_iterations; i++)
+		{
+			start = System.nanoTime();
+			parse = compile(design, engine_type);
+			if (i > 0)
+			{
+				times[i - 1] = (System.nanoTime() - start) / 1e6;
+			}
+			if (!parse.is_compiled_yet())
+			{
+				return null;
+			}
+		}
+		metrics[0] = median(times);
+
+		/* a module fresh from the compiler, e.g. a class the JIT hasn't
+		 * seen */
+		parse = compile(design, engine_type);
+		start = System.nanoTime();
+		run(parse, trace, is_step, outputs);
+		metrics[1] = (double) (System.nanoTime() - start) / trace[0].length;
+
+		for (int i = 0; i < num_iterations; i++)
+		{
+			run(parse, trace, is_step, outputs);
+		}
+		for (int i = 0; i < num_iterations; i++)
+		{
+			start = System.nanoTime();
+			run(parse, trace, is_step, outputs);
+			times[i] = (double) (System.nanoTime() - start) / trace[0].length;
+		}
+		metrics[2] = median(times);
+
+		/* each cycle on its own, which adds the cost of reading the clock */
+		for (int i = 0; i < trace[0].length; i++)
+		{
+			start = System.nanoTime();
+			run_cycle(parse, trace, i, is_step, outputs);
+			latencies[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(latencies);
+		metrics[3] = percentile(latencies, 0.50);
+		metrics[4] = percentile(latencies, 0.99);
+		metrics[5] = percentile(latencies, 0.999);
+
+		allocated = allocatedBytes();
+		run(parse, trace, is_step, outputs);
+		metrics[6] = (allocated < 0) ? -1 : (double) (allocatedBytes() - allocated) / trace[0].length;
+
+		return metrics;
+	}
+
+	private static Parse compile(File design, SimEngineType engine_type) throws IOException
+	{
+		Parse parse = new Parse();
+
+		parse.setSimEngine(engine_type);
+		parse.compileFileForGame(design.getPath());
+
+		return parse;
+	}
+
+	private static void run(Parse parse, int[][] trace, boolean is_step, int[] outputs)
+	{
+		for (int i = 0; i < trace[0].length; i++)
+		{
+			run_cycle(parse, trace, i, is_step, outputs);
+		}
+	}
+
+	private static void run_cycle(Parse parse, int[][] trace, int cycle, boolean is_step, int[] outputs)
+	{
+		if (is_step)
+		{
+			parse.step(trace[0][cycle], trace[1][cycle], trace[2][cycle], outputs);
+		}
+		else
+		{
+			parse.sim_cycle(trace[0][cycle], trace[1][cycle], trace[2][cycle], outputs);
+		}
+	}
+
+	private static double median(double[] values)
+	{
+		double[] sorted = Arrays.copyOf(values, values.length);
+
+		Arrays.sort(sorted);
+
+		return sorted[sorted.length / 2];
+	}
+
+	private static double percentile(long[] sorted, double fraction)
+	{
+		return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+	}
+
+	/* bytes this thread has allocated, or -1 if the JVM doesn't count them */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return -1;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Baselines
+	 * -------------------------------------------------------------------------- */
+	/* One "engine.design.metric value" a line */
+	private static void writeResults(File file, TreeMap<String, Double> results) throws IOException
+	{
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+
+		try
+		{
+			for (Map.Entry<String, Double> result : results.entrySet())
+			{
+				writer.println(result.getKey() + " " + result.getValue());
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static TreeMap<String, Double> readResults(File file) throws IOException
+	{
+		TreeMap<String, Double> results = new TreeMap<String, Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+
+		try
+		{
+			String line;
+
+			while ((line = reader.readLine()) != null)
+			{
+				int space = line.lastIndexOf(' ');
+
+				if (space > 0)
+				{
+					results.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return results;
+	}
+
+	/* Prints how each engine did against the baseline. Returns false if
+	 * one regressed - see the top. Results missing from either side are left
+	 * out, so adding a design doesn't fail the gate. */
+	private static boolean compare(TreeMap<String, Double> baseline, TreeMap<String, Double> results, double tolerance)
+	{
+		/* sums of log(result / baseline) and their counts by engine.metric */
+		TreeMap<String, double[]> log_ratios = new TreeMap<String, double[]>();
+		int num_regressions = 0;
+
+		for (Map.Entry<String, Double> result : results.entrySet())
+		{
+			String key = result.getKey();
+			Double base = baseline.get(key);
+			String group = key.substring(0, key.indexOf('.')) + key.substring(key.lastIndexOf('.'));
+			double[] sum;
+
+			if (base == null || base < 0 || result.getValue() < 0)
+			{
+				continue;
+			}
+
+			if (key.endsWith(".alloc_bytes"))
+			{
+				/* the same every run, so one design is enough */
+				if (result.getValue() > base + ALLOC_SLACK)
+				{
+					System.out.printf("Regression: %s %.1f bytes a cycle, was %.1f%n", key, result.getValue(), base);
+					num_regressions++;
+				}
+				continue;
+			}
+			if (!Arrays.asList(GATED_METRICS).contains(key.substring(key.lastIndexOf('.') + 1)) || base <= 0 || result.getValue() <= 0)
+			{
+				continue;
+			}
+
+			sum = log_ratios.get(group);
+			if (sum == null)
+			{
+				sum = new double[2];
+				log_ratios.put(group, sum);
+			}
+			sum[0] += Math.log(result.getValue() / base);
+			sum[1]++;
+		}
+
+		for (Map.Entry<String, double[]> group : log_ratios.entrySet())
+		{
+			double ratio = Math.exp(group.getValue()[0] / group.getValue()[1]);
+			boolean is_regression = ratio > 1 + tolerance;
+
+			System.out.printf("%-24s %.3fx the baseline%s%n", group.getKey(), ratio, is_regression ? ", regression" : "");
+			if (is_regression)
+			{
+				num_regressions++;
+			}
+		}
+
+		System.out.println((num_regressions == 0) ? "No regressions against the baseline" : num_regressions + " regressions against the baseline");
+
+		return num_regressions == 0;
+	}
+}
@@ -0,0 +1,565 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+/* Binding pass after ParseListener. Gives every port, reg, wire and parameter
+ * a slot in one state array and records the slot of each identifier used in
+ * the always and assign blocks by its token index, so the simulators never
+ * look a name up while running.
+ *
+ * The regs, wires and parameters of instances of other modules get slots of
+ * their own after the top module's, named by the instance path, and their
+ * ports the slot of the signal they connect to. */
+public class SimBinding extends Verilog2001BaseListener
+{
+	public static final int					NO_SLOT	= -1;
+
+	private ArrayList<ParsePort>			ports_list;
+	private ArrayList<ParseRegWire>			vars_list;
+	private Hashtable<String, ParsePort>	hash_ports;
+	private Hashtable<String, ParseRegWire>	hash_vars;
+	private ParseHierarchy					hierarchy;
+
+	private ArrayList<String>				errors;
+
+	private String[]						slot_names;
+	private int[]							slot_masks;
+	private int[]							slot_widths;
+	private int[]							slot_init;
+	private boolean[]						slot_is_input;
+	private boolean[]						slot_is_parameter;
+	private boolean[]						slot_is_assigned;
+	private int[]							latch_slots;
+	private int[]							carry_slots;
+	private int[]							input_slots;
+	private int[]							output_slots;
+
+	/* slot of the identifier starting at each token */
+	private int[]							token_slots;
+
+	public SimBinding(
+			ArrayList<ParsePort> ports_list,
+			ArrayList<ParseRegWire> vars_list,
+			Hashtable<String, ParsePort> hash_ports,
+			Hashtable<String, ParseRegWire> hash_vars)
+	{
+		this(ports_list, vars_list, hash_ports, hash_vars, null);
+	}
+
+	/* hierarchy is null for a source with one module */
+	public SimBinding(
+			ArrayList<ParsePort> ports_list,
+			ArrayList<ParseRegWire> vars_list,
+			Hashtable<String, ParsePort> hash_ports,
+			Hashtable<String, ParseRegWire> hash_vars,
+			ParseHierarchy hierarchy)
+	{
+		this.ports_list = ports_list;
+		this.vars_list = vars_list;
+		this.hash_ports = hash_ports;
+		this.hash_vars = hash_vars;
+		this.hierarchy = hierarchy;
+
+		this.errors = new ArrayList<String>();
+	}
+
+	public ArrayList<String> getErrors()
+	{
+		return errors;
+	}
+
+	/* num_tokens is the size of the token stream the tree was parsed from,
+	 * or ParseHierarchy.getNumTokens() with a hierarchy */
+	public void bind(ParseTree root_tree, int num_tokens)
+	{
+		Hashtable<String, ParsePort> top_ports = hash_ports;
+		Hashtable<String, ParseRegWire> top_vars = hash_vars;
+
+		assign_slots();
+
+		token_slots = new int[num_tokens];
+		Arrays.fill(token_slots, NO_SLOT);
+
+		new ParseTreeWalker().walk(this, root_tree);
+
+		/* each instance has its own tree, bound with its own names */
+		for (int i = 0; hierarchy != null && i < hierarchy.getInstances().size(); i++)
+		{
+			ParseInstance instance = hierarchy.getInstances().get(i);
+
+			hash_ports = instance.getHashPorts();
+			hash_vars = instance.getHashVars();
+			new ParseTreeWalker().walk(this, instance.getModule());
+		}
+		hash_ports = top_ports;
+		hash_vars = top_vars;
+	}
+
+	private void assign_slots()
+	{
+		ArrayList<ParseRegWire> other_vars = new ArrayList<ParseRegWire>();
+		ArrayList<ArrayList<ParseRegWire>> instance_vars = new ArrayList<ArrayList<ParseRegWire>>();
+		ArrayList<Integer> latch_list = new ArrayList<Integer>();
+		ArrayList<Integer> carry_list = new ArrayList<Integer>();
+		int num_slots;
+		int next_slot;
+
+		/* parameters are only reachable through the hash */
+		for (ParseRegWire var : hash_vars.values())
+		{
+			if (!vars_list.contains(var))
+			{
+				other_vars.add(var);
+			}
+		}
+
+		num_slots = ports_list.size() + vars_list.size() + other_vars.size();
+		for (int i = 0; hierarchy != null && i < hierarchy.getInstances().size(); i++)
+		{
+			instance_vars.add(own_vars(hierarchy.getInstances().get(i)));
+			num_slots += instance_vars.get(i).size();
+		}
+		slot_names = new String[num_slots];
+		slot_masks = new int[num_slots];
+		slot_widths = new int[num_slots];
+		slot_init = new int[num_slots];
+		slot_is_input = new boolean[num_slots];
+		slot_is_parameter = new boolean[num_slots];
+		slot_is_assigned = new boolean[num_slots];
+
+		for (int i = 0; i < ports_list.size(); i++)
+		{
+			ParsePort port = ports_list.get(i);
+			int slot = i;
+
+			port.setSlot(slot);
+			slot_names[slot] = port.getName();
+			slot_masks[slot] = (1 << port.getBusSize()) - 1;
+			slot_widths[slot] = port.getBusSize();
+			slot_is_input[slot] = (port.getType() == PortType.INPUT);
+
+			if (port.getType() == PortType.OUTPUT)
+			{
+				if (port.getRegType() == RegWireType.COMBINATIONAL)
+				{
+					latch_list.add(slot);
+				}
+				else if (port.getRegType() == RegWireType.SEQUENTIAL)
+				{
+					carry_list.add(slot);
+				}
+			}
+		}
+		for (int i = 0; i < vars_list.size(); i++)
+		{
+			ParseRegWire var = vars_list.get(i);
+			int slot = ports_list.size() + i;
+
+			var.setSlot(slot);
+			slot_names[slot] = var.getName();
+			slot_masks[slot] = (1 << var.getBusSize()) - 1;
+			slot_widths[slot] = var.getBusSize();
+
+			if (var.getType() == RegWireType.COMBINATIONAL)
+			{
+				latch_list.add(slot);
+			}
+			else if (var.getType() == RegWireType.SEQUENTIAL)
+			{
+				carry_list.add(slot);
+			}
+		}
+		for (int i = 0; i < other_vars.size(); i++)
+		{
+			ParseRegWire var = other_vars.get(i);
+			int slot = ports_list.size() + vars_list.size() + i;
+
+			var.setSlot(slot);
+			slot_names[slot] = var.getName();
+			slot_masks[slot] = (1 << var.getBusSize()) - 1;
+			slot_widths[slot] = var.getBusSize();
+			slot_init[slot] = var.getValue(0);
+			slot_is_parameter[slot] = true;
+		}
+
+		next_slot = ports_list.size() + vars_list.size() + other_vars.size();
+		for (int i = 0; i < instance_vars.size(); i++)
+		{
+			next_slot = assign_instance_slots(hierarchy.getInstances().get(i), instance_vars.get(i), next_slot, latch_list, carry_list);
+		}
+
+		latch_slots = to_array(latch_list);
+		carry_slots = to_array(carry_list);
+		input_slots = new int[] { port_slot("rst"), port_slot("sensor_light"), port_slot("general_sensors") };
+		output_slots = new int[] { port_slot("outN"), port_slot("outS"), port_slot("outE"), port_slot("outW"), port_slot("debug_port") };
+	}
+
+	/* The regs, wires and parameters of an instance that need a slot, in the
+	 * order the top module's get theirs. An output reg that is never
+	 * assigned stays in the vars next to its port and shares its slot. */
+	private ArrayList<ParseRegWire> own_vars(ParseInstance instance)
+	{
+		ArrayList<ParseRegWire> own_vars = new ArrayList<ParseRegWire>();
+
+		for (int i = 0; i < instance.getVarsList().size(); i++)
+		{
+			if (!instance.getHashPorts().containsKey(instance.getVarsList().get(i).getName()))
+			{
+				own_vars.add(instance.getVarsList().get(i));
+			}
+		}
+		for (ParseRegWire var : instance.getHashVars().values())
+		{
+			if (!instance.getVarsList().contains(var))
+			{
+				own_vars.add(var);
+			}
+		}
+
+		return own_vars;
+	}
+
+	/* Gives the ports of the instance the slots of the parent signals they
+	 * connect to and own_vars the slots from next_slot, and returns the slot
+	 * after them. The instance's outputs decide if a connected signal is
+	 * combinational or carried between clocks. */
+	private int assign_instance_slots(
+			ParseInstance instance,
+			ArrayList<ParseRegWire> own_vars,
+			int next_slot,
+			ArrayList<Integer> latch_list,
+			ArrayList<Integer> carry_list)
+	{
+		Verilog2001Parser.Module_declarationContext module = instance.getModule();
+		Verilog2001Parser.Module_instanceContext ctx = instance.getInstance();
+		List<Verilog2001Parser.IdentifierContext> connections = ctx.list_of_port_connections().identifier();
+		Hashtable<String, ParsePort> parent_ports = (instance.getParent() == null) ? hash_ports : instance.getParent().getHashPorts();
+		Hashtable<String, ParseRegWire> parent_vars = (instance.getParent() == null) ? hash_vars : instance.getParent().getHashVars();
+		int num_ports = (module.list_of_ports() == null) ? 0 : module.list_of_ports().port().size();
+
+		if (connections.size() != num_ports)
+		{
+			report(ctx, instance.getPath() + " connects " + connections.size() + " signals to " + num_ports + " ports");
+		}
+
+		for (int i = 0; i < num_ports && i < connections.size(); i++)
+		{
+			Verilog2001Parser.Port_referenceContext reference = module.list_of_ports().port(i).port_reference();
+			String signal = connections.get(i).getText();
+			ParsePort port = (reference == null) ? null : instance.getHashPorts().get(reference.identifier().getText());
+			ParseRegWire parent_var = parent_vars.get(signal);
+			ParsePort parent_port = parent_ports.get(signal);
+			/* an output reg the parent never assigns keeps a var of its own,
+			 * but the port is the slot the outputs are read from */
+			int width = (parent_port != null) ? parent_port.getBusSize() : (parent_var != null) ? parent_var.getBusSize() : 0;
+			int slot = (parent_port != null) ? parent_port.getSlot() : (parent_var != null) ? parent_var.getSlot() : NO_SLOT;
+			ParseRegWire port_var;
+
+			if (port == null || reference.getChildCount() > 1)
+			{
+				report(ctx, "port " + (i + 1) + " of " + instance.getPath() + " isn't a declared input or output");
+				continue;
+			}
+			if (slot == NO_SLOT)
+			{
+				report(connections.get(i), signal + " connected to " + instance.getPath() + " isn't declared");
+				continue;
+			}
+			if (width != port.getBusSize())
+			{
+				report(connections.get(i), signal + " is " + width + " bits but port " + port.getName() + " of " + instance.getPath() + " is " + port.getBusSize());
+				continue;
+			}
+
+			port.setSlot(slot);
+			port_var = instance.getHashVars().get(port.getName());
+			if (port_var != null)
+			{
+				port_var.setSlot(slot);
+			}
+
+			if (port.getType() == PortType.OUTPUT && port.getRegType() == RegWireType.SEQUENTIAL)
+			{
+				latch_list.remove(Integer.valueOf(slot));
+				if (!carry_list.contains(slot))
+				{
+					carry_list.add(slot);
+				}
+			}
+			else if (port.getType() == PortType.OUTPUT && port.getRegType() == RegWireType.COMBINATIONAL)
+			{
+				if (!carry_list.contains(slot) && !latch_list.contains(slot))
+				{
+					latch_list.add(slot);
+				}
+			}
+		}
+
+		for (int i = 0; i < own_vars.size(); i++)
+		{
+			ParseRegWire var = own_vars.get(i);
+			int slot = next_slot++;
+
+			var.setSlot(slot);
+			slot_names[slot] = instance.getPath() + "." + var.getName();
+			slot_masks[slot] = (1 << var.getBusSize()) - 1;
+			slot_widths[slot] = var.getBusSize();
+
+			if (!instance.getVarsList().contains(var))
+			{
+				slot_init[slot] = var.getValue(0);
+				slot_is_parameter[slot] = true;
+			}
+			else if (var.getType() == RegWireType.COMBINATIONAL)
+			{
+				latch_list.add(slot);
+			}
+			else if (var.getType() == RegWireType.SEQUENTIAL)
+			{
+				carry_list.add(slot);
+			}
+		}
+
+		return next_slot;
+	}
+
+	/* once, though a module instantiated twice is walked twice */
+	private void report(ParserRuleContext ctx, String message)
+	{
+		String error = "Error at line " + ctx.start.getLine() + ":" + ctx.start.getCharPositionInLine() + " " + message;
+
+		if (!errors.contains(error))
+		{
+			errors.add(error);
+		}
+	}
+
+	private int port_slot(String name)
+	{
+		ParsePort port = hash_ports.get(name);
+
+		if (port == null)
+		{
+			errors.add("Error: No port called: " + name);
+			return NO_SLOT;
+		}
+
+		return port.getSlot();
+	}
+
+	private int[] to_array(ArrayList<Integer> list)
+	{
+		int[] array = new int[list.size()];
+
+		for (int i = 0; i < array.length; i++)
+		{
+			array[i] = list.get(i);
+		}
+
+		return array;
+	}
+
+	/* regs and wires hide ports with the same name */
+	private void bind_identifier(Verilog2001Parser.IdentifierContext ctx)
+	{
+		int token_index;
+		ParseRegWire regWire;
+		ParsePort port;
+
+		if (ctx == null)
+		{
+			return;
+		}
+
+		/* tokens made up by error recovery aren't in the stream */
+		token_index = ctx.start.getTokenIndex();
+		if (token_index < 0 || token_index >= token_slots.length)
+		{
+			return;
+		}
+
+		regWire = hash_vars.get(ctx.getText());
+		port = hash_ports.get(ctx.getText());
+
+		if (regWire != null)
+		{
+			token_slots[token_index] = regWire.getSlot();
+		}
+		else if (port != null)
+		{
+			token_slots[token_index] = port.getSlot();
+		}
+	}
+
+	@Override
+	public void enterVariable_lvalue(Verilog2001Parser.Variable_lvalueContext ctx)
+	{
+		bind_identifier(ctx.identifier());
+
+		if (ctx.identifier() != null && getSlot(ctx.identifier().start) != NO_SLOT)
+		{
+			slot_is_assigned[getSlot(ctx.identifier().start)] = true;
+		}
+	}
+
+	@Override
+	public void enterBIT_ACCESS(Verilog2001Parser.BIT_ACCESSContext ctx)
+	{
+		bind_identifier(ctx.identifier());
+	}
+
+	@Override
+	public void enterGENERAL(Verilog2001Parser.GENERALContext ctx)
+	{
+		bind_identifier(ctx.identifier());
+	}
+
+	/* rejected here for every engine, as the tree walker would only find it
+	 * while simulating */
+	@Override
+	public void enterQUES(Verilog2001Parser.QUESContext ctx)
+	{
+		report(ctx, "? is not implemented yet");
+	}
+
+	/* The tree of the module an instance in any of the trees runs, or null */
+	public Verilog2001Parser.Module_declarationContext getInstanceModule(Verilog2001Parser.Module_instanceContext ctx)
+	{
+		ParseInstance instance = (hierarchy == null) ? null : hierarchy.getInstance(ctx);
+
+		return (instance == null) ? null : instance.getModule();
+	}
+
+	/* NO_SLOT if the identifier starting at the token isn't declared */
+	public int getSlot(Token ident)
+	{
+		int token_index = ident.getTokenIndex();
+
+		if (token_index < 0 || token_index >= token_slots.length)
+		{
+			return NO_SLOT;
+		}
+
+		return token_slots[token_index];
+	}
+
+	public int getNumTokens()
+	{
+		return token_slots.length;
+	}
+
+	public int getNumSlots()
+	{
+		return slot_names.length;
+	}
+
+	public String[] getSlotNames()
+	{
+		return slot_names;
+	}
+
+	public int[] getSlotMasks()
+	{
+		return slot_masks;
+	}
+
+	/* the declared number of bits - the masks only hold up to 31 */
+	public int[] getSlotWidths()
+	{
+		return slot_widths;
+	}
+
+	public int[] getSlotInit()
+	{
+		return slot_init;
+	}
+
+	public boolean isInput(int slot)
+	{
+		return slot_is_input[slot];
+	}
+
+	/* parameters keep their declared value unmasked */
+	public boolean isParameter(int slot)
+	{
+		return slot_is_parameter[slot];
+	}
+
+	/* the slots isParameter is true for */
+	public int[] getParameterSlots()
+	{
+		ArrayList<Integer> parameter_list = new ArrayList<Integer>();
+
+		for (int i = 0; i < slot_is_parameter.length; i++)
+		{
+			if (slot_is_parameter[i])
+			{
+				parameter_list.add(i);
+			}
+		}
+
+		return to_array(parameter_list);
+	}
+
+	/* true if the slot is on the left of any assignment */
+	public boolean isAssigned(int slot)
+	{
+		return slot_is_assigned[slot];
+	}
+
+	/* combinational outputs, regs and wires that must be assigned every cycle */
+	public int[] getLatchSlots()
+	{
+		return latch_slots;
+	}
+
+	/* sequential outputs and regs that keep their value between clocks */
+	public int[] getCarrySlots()
+	{
+		return carry_slots;
+	}
+
+	/* rst, sensor_light and general_sensors */
+	public int[] getInputSlots()
+	{
+		return input_slots;
+	}
+
+	/* outN, outS, outE, outW and debug_port */
+	public int[] getOutputSlots()
+	{
+		return output_slots;
+	}
+}
@@ -0,0 +1,812 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import VerilogSimulator.SimClassWriter.SimClassLoader;
+import VerilogSimulator.SimClassWriter.SimCodeBuffer;
+
+/* Turns a SimProgram into a subclass of SimEngine so the JIT sees straight
+ * line Java for each module. Every slot gets old_N, new_N and time_N int
+ * fields, SimOpcodes map onto the JVM operand stack one to one and jumps
+ * become branches. */
+public class SimBytecodeCompiler
+{
+	/* JVM opcodes */
+	private static final int	ICONST_M1		= 0x02;
+	private static final int	ICONST_0		= 0x03;
+	private static final int	ICONST_1		= 0x04;
+	private static final int	LCONST_1		= 0x0a;
+	private static final int	BIPUSH			= 0x10;
+	private static final int	SIPUSH			= 0x11;
+	private static final int	LDC_W			= 0x13;
+	private static final int	ILOAD			= 0x15;
+	private static final int	ALOAD_0			= 0x2a;
+	private static final int	ALOAD_1			= 0x2b;
+	private static final int	LALOAD			= 0x2f;
+	private static final int	ISTORE			= 0x36;
+	private static final int	IASTORE			= 0x4f;
+	private static final int	LASTORE			= 0x50;
+	private static final int	POP				= 0x57;
+	private static final int	DUP				= 0x59;
+	private static final int	DUP_X1			= 0x5a;
+	private static final int	DUP2			= 0x5c;
+	private static final int	SWAP			= 0x5f;
+	private static final int	IADD			= 0x60;
+	private static final int	LADD			= 0x61;
+	private static final int	ISUB			= 0x64;
+	private static final int	IMUL			= 0x68;
+	private static final int	IDIV			= 0x6c;
+	private static final int	IREM			= 0x70;
+	private static final int	INEG			= 0x74;
+	private static final int	I2L				= 0x85;
+	private static final int	ISHL			= 0x78;
+	private static final int	ISHR			= 0x7a;
+	private static final int	IAND			= 0x7e;
+	private static final int	IOR				= 0x80;
+	private static final int	IXOR			= 0x82;
+	private static final int	IFEQ			= 0x99;
+	private static final int	IFNE			= 0x9a;
+	private static final int	IFLE			= 0x9e;
+	private static final int	IF_ICMPEQ		= 0x9f;
+	private static final int	IF_ICMPNE		= 0xa0;
+	private static final int	IF_ICMPLT		= 0xa1;
+	private static final int	IF_ICMPGE		= 0xa2;
+	private static final int	IF_ICMPGT		= 0xa3;
+	private static final int	IF_ICMPLE		= 0xa4;
+	private static final int	GOTO			= 0xa7;
+	private static final int	TABLESWITCH		= 0xaa;
+	private static final int	RETURN			= 0xb1;
+	private static final int	GETFIELD		= 0xb4;
+	private static final int	PUTFIELD		= 0xb5;
+	private static final int	INVOKEVIRTUAL	= 0xb6;
+	private static final int	INVOKESPECIAL	= 0xb7;
+
+	private static final String	ENGINE			= "VerilogSimulator/SimEngine";
+
+	private static int			class_count		= 0;
+
+	private SimProgram			program;
+	private SimClassWriter		writer;
+	private String				class_name;
+
+	private int[]				old_fields;
+	private int[]				new_fields;
+	private int[]				time_fields;
+	private int					cycle_time_field;
+	private int					counters_field;
+
+	/* per SimSchedule block */
+	private SimSchedule			schedule;
+	private int[]				dirty_fields;
+	private int[]				run_fields;
+	private int[]				block_methods;
+
+	public SimBytecodeCompiler(SimProgram program)
+	{
+		this.program = program;
+	}
+
+	/* Throws if the module does not fit in a class, e.g. a method over 64K */
+	public SimEngine compile()
+	{
+		return newEngine(compileClass());
+	}
+
+	/* The class compile() makes an instance of, for making many. Throws like
+	 * compile(). */
+	public Class<? extends SimEngine> compileClass()
+	{
+		SimClassLoader loader = new SimClassLoader();
+		byte[] bytes = generate();
+
+		return loader.define(class_name.replace('/', '.'), bytes).asSubclass(SimEngine.class);
+	}
+
+	public static SimEngine newEngine(Class<? extends SimEngine> engine_class)
+	{
+		try
+		{
+			return engine_class.getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public byte[] generate()
+	{
+		int num_slots = program.getNumSlots();
+
+		synchronized (SimBytecodeCompiler.class)
+		{
+			class_name = "VerilogSimulator/SimModule" + class_count++;
+		}
+		writer = new SimClassWriter(class_name, ENGINE);
+
+		old_fields = new int[num_slots];
+		new_fields = new int[num_slots];
+		time_fields = new int[num_slots];
+		for (int i = 0; i < num_slots; i++)
+		{
+			writer.addField(SimClassWriter.ACC_PRIVATE, "old_" + i, "I");
+			writer.addField(SimClassWriter.ACC_PRIVATE, "new_" + i, "I");
+			writer.addField(SimClassWriter.ACC_PRIVATE, "time_" + i, "I");
+			old_fields[i] = writer.fieldRef(class_name, "old_" + i, "I");
+			new_fields[i] = writer.fieldRef(class_name, "new_" + i, "I");
+			time_fields[i] = writer.fieldRef(class_name, "time_" + i, "I");
+		}
+		cycle_time_field = writer.fieldRef(ENGINE, "cycle_time", "I");
+		counters_field = writer.fieldRef(ENGINE, "counters", "[J");
+
+		schedule = program.getSchedule();
+		dirty_fields = new int[schedule.getNumBlocks()];
+		run_fields = new int[schedule.getNumBlocks()];
+		block_methods = new int[schedule.getNumBlocks()];
+		for (int i = 0; i < schedule.getNumBlocks(); i++)
+		{
+			writer.addField(SimClassWriter.ACC_PRIVATE, "dirty_" + i, "Z");
+			writer.addField(SimClassWriter.ACC_PRIVATE, "run_" + i, "I");
+			dirty_fields[i] = writer.fieldRef(class_name, "dirty_" + i, "Z");
+			run_fields[i] = writer.fieldRef(class_name, "run_" + i, "I");
+			block_methods[i] = writer.methodRef(class_name, "block_" + i, "()V");
+		}
+
+		generateConstructor();
+		generateSwapValues();
+		generateSetInputs();
+		generateCheckLatches();
+		generateCarryValues();
+		generateLoadOutputs();
+		generateLoadValues();
+		generateBody("evalCombinational", program.getCombCode(), 0, program.getCombCode().length, old_fields, new_fields);
+		generateBody("clockEdge", program.getSeqCode(), 0, program.getSeqCode().length, old_fields, new_fields);
+		/* step() reads the new values and, for the edge, keeps the registers'
+		 * next values in the old fields until the end */
+		for (int i = 0; i < schedule.getNumBlocks(); i++)
+		{
+			int[] write_fields = (i < schedule.getNumCombBlocks()) ? new_fields : old_fields;
+
+			generateBody("block_" + i, schedule.getCode(), schedule.getBlockStart(i), schedule.getBlockEnd(i), new_fields, write_fields);
+		}
+		generateInvalidateBlocks();
+		generateSettle();
+		generateEdge();
+
+		return writer.toByteArray();
+	}
+
+	private void generateConstructor()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+
+		code.op(ALOAD_0);
+		code.op2(INVOKESPECIAL, writer.methodRef(ENGINE, "<init>", "()V"));
+		for (int i = 0; i < program.getNumSlots(); i++)
+		{
+			code.op(ALOAD_0);
+			pushInt(code, program.getSlotInit(i));
+			code.op2(PUTFIELD, old_fields[i]);
+			code.op(ALOAD_0);
+			pushInt(code, program.getSlotInit(i));
+			code.op2(PUTFIELD, new_fields[i]);
+			code.op(ALOAD_0);
+			code.op(ICONST_M1);
+			code.op2(PUTFIELD, time_fields[i]);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "<init>", "()V", 2, 1, code);
+	}
+
+	private void generateSwapValues()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+
+		for (int i = 0; i < program.getNumSlots(); i++)
+		{
+			/* tmp = old; old = new; new = tmp */
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, old_fields[i]);
+			code.op1(ISTORE, 1);
+			code.op(ALOAD_0);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, new_fields[i]);
+			code.op2(PUTFIELD, old_fields[i]);
+			code.op(ALOAD_0);
+			code.op1(ILOAD, 1);
+			code.op2(PUTFIELD, new_fields[i]);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "swap_values", "()V", 2, 2, code);
+	}
+
+	private void generateSetInputs()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] input_slots = { program.getRstSlot(), program.getSensorLightSlot(), program.getGeneralSensorsSlot() };
+
+		for (int i = 0; i < input_slots.length; i++)
+		{
+			int slot = input_slots[i];
+			int skip;
+
+			code.op1(ILOAD, i + 1);
+			pushInt(code, program.getSlotMask(slot));
+			code.op(IAND);
+			code.op1(ISTORE, i + 1);
+
+			code.op1(ILOAD, i + 1);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, new_fields[slot]);
+			skip = code.length();
+			code.op2(IF_ICMPEQ, 0);
+			markReaders(code, slot);
+			code.patch2(skip + 1, code.length() - skip);
+
+			/* inputs are the same in both halves */
+			code.op(ALOAD_0);
+			code.op1(ILOAD, i + 1);
+			code.op2(PUTFIELD, old_fields[slot]);
+			code.op(ALOAD_0);
+			code.op1(ILOAD, i + 1);
+			code.op2(PUTFIELD, new_fields[slot]);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "set_inputs", "(III)V", 3, 4, code);
+	}
+
+	private void generateCheckLatches()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] latch_slots = program.getLatchSlots();
+		int inferred_latch = writer.methodRef(ENGINE, "inferred_latch", "()V");
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int skip;
+
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, time_fields[latch_slots[i]]);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, cycle_time_field);
+			skip = code.length();
+			code.op2(IF_ICMPEQ, 0);
+			code.op(ALOAD_0);
+			code.op2(INVOKEVIRTUAL, inferred_latch);
+			code.patch2(skip + 1, code.length() - skip);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "check_latches", "()V", 2, 1, code);
+	}
+
+	private void generateCarryValues()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] carry_slots = program.getCarrySlots();
+
+		for (int i = 0; i < carry_slots.length; i++)
+		{
+			int skip;
+
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, time_fields[carry_slots[i]]);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, cycle_time_field);
+			skip = code.length();
+			code.op2(IF_ICMPEQ, 0);
+			code.op(ALOAD_0);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, old_fields[carry_slots[i]]);
+			code.op2(PUTFIELD, new_fields[carry_slots[i]]);
+			code.patch2(skip + 1, code.length() - skip);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "carry_values", "()V", 2, 1, code);
+	}
+
+	private void generateLoadOutputs()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] output_slots = program.getOutputSlots();
+		int outputs_field = writer.fieldRef(ENGINE, "outputs", "[I");
+
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, outputs_field);
+			pushInt(code, i);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, new_fields[output_slots[i]]);
+			code.op(IASTORE);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "load_outputs", "()V", 3, 1, code);
+	}
+
+	private void generateLoadValues()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+
+		for (int i = 0; i < program.getNumSlots(); i++)
+		{
+			code.op(ALOAD_1);
+			pushInt(code, i);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, new_fields[i]);
+			code.op(I2L);
+			code.op(LASTORE);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "load_values", "([J)V", 4, 2, code);
+	}
+
+	/* Loads read read_fields and stores write write_fields. Only the code from
+	 * start to end is generated, jumps go to the same pcs. */
+	private void generateBody(
+			String name,
+			int[] program_code,
+			int start,
+			int end,
+			int[] read_fields,
+			int[] write_fields)
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		/* where each SimOpcode starts in the generated code */
+		int[] offsets = new int[program_code.length + 1];
+		/* branch position and target pc pairs to patch at the end */
+		int[] branches = new int[program_code.length];
+		int num_branches = 0;
+		/* tableswitch offset position, tableswitch position and target pc */
+		int[] switch_branches = new int[3 * program_code.length];
+		int num_switch_branches = 0;
+		int pc = start;
+
+		while (pc < end)
+		{
+			int op = program_code[pc];
+
+			offsets[pc] = code.length();
+			switch (op)
+			{
+				case SimOpcode.CONST:
+					pushInt(code, program_code[pc + 1]);
+					break;
+				case SimOpcode.LOAD:
+					code.op(ALOAD_0);
+					code.op2(GETFIELD, read_fields[program_code[pc + 1]]);
+					break;
+				case SimOpcode.LOAD_BIT:
+					code.op(ALOAD_0);
+					code.op2(GETFIELD, read_fields[program_code[pc + 1]]);
+					pushInt(code, program_code[pc + 2]);
+					code.op(IAND);
+					pushBoolean(code, IFLE);
+					break;
+				case SimOpcode.MASK:
+					pushInt(code, program_code[pc + 1]);
+					code.op(IAND);
+					break;
+				case SimOpcode.NEG:
+					code.op(INEG);
+					break;
+				case SimOpcode.NOT:
+					code.op(ICONST_M1);
+					code.op(IXOR);
+					break;
+				case SimOpcode.LNOT:
+					pushBoolean(code, IFNE);
+					break;
+				case SimOpcode.MUL:
+					code.op(IMUL);
+					break;
+				case SimOpcode.DIV:
+					code.op(IDIV);
+					break;
+				case SimOpcode.MOD:
+					code.op(IREM);
+					break;
+				case SimOpcode.ADD:
+					code.op(IADD);
+					break;
+				case SimOpcode.SUB:
+					code.op(ISUB);
+					break;
+				case SimOpcode.AND:
+					code.op(IAND);
+					break;
+				case SimOpcode.NAND:
+					code.op(IAND);
+					code.op(ICONST_M1);
+					code.op(IXOR);
+					break;
+				case SimOpcode.OR:
+					code.op(IOR);
+					break;
+				case SimOpcode.NOR:
+					code.op(IOR);
+					code.op(ICONST_M1);
+					code.op(IXOR);
+					break;
+				case SimOpcode.XOR:
+					code.op(IXOR);
+					break;
+				case SimOpcode.XNOR:
+					code.op(IXOR);
+					code.op(ICONST_M1);
+					code.op(IXOR);
+					break;
+				case SimOpcode.SHL:
+					code.op(ISHL);
+					break;
+				case SimOpcode.SHR:
+					code.op(ISHR);
+					break;
+				case SimOpcode.LT:
+					pushBoolean(code, IF_ICMPGE);
+					break;
+				case SimOpcode.LTE:
+					pushBoolean(code, IF_ICMPGT);
+					break;
+				case SimOpcode.GT:
+					pushBoolean(code, IF_ICMPLE);
+					break;
+				case SimOpcode.GTE:
+					pushBoolean(code, IF_ICMPLT);
+					break;
+				case SimOpcode.EQ:
+					pushBoolean(code, IF_ICMPNE);
+					break;
+				case SimOpcode.NE:
+					pushBoolean(code, IF_ICMPEQ);
+					break;
+				case SimOpcode.LAND:
+					/* right == 0 drops left and pushes 0 */
+					code.op2(IFEQ, 10);
+					code.op2(IFEQ, 8);
+					code.op(ICONST_1);
+					code.op2(GOTO, 5);
+					code.op(POP);
+					code.op(ICONST_0);
+					break;
+				case SimOpcode.LOR:
+					code.op(IOR);
+					pushBoolean(code, IFEQ);
+					break;
+				case SimOpcode.STORE:
+				{
+					int slot = program_code[pc + 1];
+
+					pushInt(code, program_code[pc + 2]);
+					code.op(IAND);
+					store(code, write_fields[slot], slot);
+					stamp(code, slot);
+					break;
+				}
+				case SimOpcode.STORE_BITS:
+				{
+					int slot = program_code[pc + 1];
+					int lsb = program_code[pc + 2];
+					int field_mask = program_code[pc + 3];
+
+					pushInt(code, field_mask);
+					code.op(IAND);
+					pushInt(code, lsb);
+					code.op(ISHL);
+					code.op(ALOAD_0);
+					code.op2(GETFIELD, write_fields[slot]);
+					pushInt(code, ~(field_mask << lsb));
+					code.op(IAND);
+					code.op(IOR);
+					pushInt(code, program_code[pc + 4]);
+					code.op(IAND);
+					store(code, write_fields[slot], slot);
+					stamp(code, slot);
+					break;
+				}
+				case SimOpcode.JUMP:
+					branches[num_branches++] = code.length();
+					branches[num_branches++] = program_code[pc + 1];
+					code.op2(GOTO, 0);
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+					branches[num_branches++] = code.length();
+					branches[num_branches++] = program_code[pc + 1];
+					code.op2(IFEQ, 0);
+					break;
+				case SimOpcode.CASE_NE:
+					/* compare the label with the case value and keep the case
+					 * value underneath */
+					code.op(SWAP);
+					code.op(DUP_X1);
+					branches[num_branches++] = code.length();
+					branches[num_branches++] = program_code[pc + 1];
+					code.op2(IF_ICMPNE, 0);
+					break;
+				case SimOpcode.POP:
+					code.op(POP);
+					break;
+				case SimOpcode.COUNT:
+					/* counters[counter]++ */
+					code.op(ALOAD_0);
+					code.op2(GETFIELD, counters_field);
+					pushInt(code, program_code[pc + 1]);
+					code.op(DUP2);
+					code.op(LALOAD);
+					code.op(LCONST_1);
+					code.op(LADD);
+					code.op(LASTORE);
+					break;
+				case SimOpcode.SWITCH:
+				{
+					int switch_pos = code.length();
+					int min = program_code[pc + 1];
+					int count = program_code[pc + 2];
+
+					code.op(TABLESWITCH);
+					/* the operands start on a multiple of 4 */
+					while (code.length() % 4 != 0)
+					{
+						code.u1(0);
+					}
+					for (int i = -1; i < count; i++)
+					{
+						switch_branches[num_switch_branches++] = code.length() + ((i == -1) ? 0 : 12 + 4 * i);
+						switch_branches[num_switch_branches++] = switch_pos;
+						switch_branches[num_switch_branches++] = program_code[pc + 4 + i];
+					}
+					code.u4(0);
+					code.u4(min);
+					code.u4(min + count - 1);
+					for (int i = 0; i < count; i++)
+					{
+						code.u4(0);
+					}
+					break;
+				}
+				default:
+					/* END */
+					code.op(RETURN);
+					break;
+			}
+			pc += SimOpcode.length(program_code, pc);
+		}
+		offsets[pc] = code.length();
+
+		for (int i = 0; i < num_branches; i += 2)
+		{
+			int offset = offsets[branches[i + 1]] - branches[i];
+
+			if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+			{
+				throw new IllegalStateException("Branch out of range in " + name);
+			}
+			code.patch2(branches[i] + 1, offset);
+		}
+		for (int i = 0; i < num_switch_branches; i += 3)
+		{
+			code.patch4(switch_branches[i], offsets[switch_branches[i + 2]] - switch_branches[i + 1]);
+		}
+
+		/* room for this, the operands of a store and a compare, or the
+		 * array, index and long of a COUNT */
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, name, "()V", program.getMaxStack() + 6, 1, code);
+	}
+
+	private void generateInvalidateBlocks()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+
+		for (int i = 0; i < schedule.getNumBlocks(); i++)
+		{
+			code.op(ALOAD_0);
+			code.op(ICONST_1);
+			code.op2(PUTFIELD, dirty_fields[i]);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "invalidate_blocks", "()V", 2, 1, code);
+	}
+
+	/* Calls the dirty combinational blocks in order, then the latch check
+	 * against when each latch slot's block last ran */
+	private void generateSettle()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] latch_slots = program.getLatchSlots();
+		int[] latch_blocks = schedule.getLatchBlocks();
+		int inferred_latch = writer.methodRef(ENGINE, "inferred_latch", "()V");
+
+		for (int i = 0; i < schedule.getNumCombBlocks(); i++)
+		{
+			int skip = -1;
+
+			if (!schedule.isAlwaysRun(i))
+			{
+				code.op(ALOAD_0);
+				code.op2(GETFIELD, dirty_fields[i]);
+				skip = code.length();
+				code.op2(IFEQ, 0);
+			}
+			code.op(ALOAD_0);
+			code.op(ICONST_0);
+			code.op2(PUTFIELD, dirty_fields[i]);
+			code.op(ALOAD_0);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, cycle_time_field);
+			code.op2(PUTFIELD, run_fields[i]);
+			code.op(ALOAD_0);
+			code.op2(INVOKEVIRTUAL, block_methods[i]);
+			if (skip != -1)
+			{
+				code.patch2(skip + 1, code.length() - skip);
+			}
+		}
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int skip;
+
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, time_fields[latch_slots[i]]);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, (latch_blocks[i] == -1) ? cycle_time_field : run_fields[latch_blocks[i]]);
+			skip = code.length();
+			code.op2(IF_ICMPEQ, 0);
+			code.op(ALOAD_0);
+			code.op2(INVOKEVIRTUAL, inferred_latch);
+			code.patch2(skip + 1, code.length() - skip);
+		}
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "settle", "()V", 2, 1, code);
+	}
+
+	/* Picks the dirty clocked blocks into locals before calling them, as
+	 * their stores mark blocks, and keeps the next register values in the old
+	 * fields until they have all run */
+	private void generateEdge()
+	{
+		SimCodeBuffer code = new SimCodeBuffer();
+		int[] edge_slots = schedule.getEdgeSlots();
+		int first_block = schedule.getNumCombBlocks();
+		int num_blocks = schedule.getNumBlocks();
+
+		copyFields(code, edge_slots, new_fields, old_fields);
+		for (int i = first_block; i < num_blocks; i++)
+		{
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, dirty_fields[i]);
+			code.op1(ISTORE, i - first_block + 1);
+			code.op(ALOAD_0);
+			code.op(ICONST_0);
+			code.op2(PUTFIELD, dirty_fields[i]);
+		}
+		for (int i = first_block; i < num_blocks; i++)
+		{
+			int skip;
+
+			code.op1(ILOAD, i - first_block + 1);
+			skip = code.length();
+			code.op2(IFEQ, 0);
+			code.op(ALOAD_0);
+			code.op2(INVOKEVIRTUAL, block_methods[i]);
+			code.patch2(skip + 1, code.length() - skip);
+		}
+		copyFields(code, edge_slots, old_fields, new_fields);
+		code.op(RETURN);
+
+		writer.addMethod(SimClassWriter.ACC_PUBLIC, "edge", "()V", 2, num_blocks - first_block + 1, code);
+	}
+
+	/* Pops a value into the field, marking the slot's readers dirty if it
+	 * changes */
+	private void store(SimCodeBuffer code, int field, int slot)
+	{
+		if (schedule.getSlotReaders(slot).length > 0)
+		{
+			int skip;
+
+			code.op(DUP);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, field);
+			skip = code.length();
+			code.op2(IF_ICMPEQ, 0);
+			markReaders(code, slot);
+			code.patch2(skip + 1, code.length() - skip);
+		}
+		code.op(ALOAD_0);
+		code.op(SWAP);
+		code.op2(PUTFIELD, field);
+	}
+
+	private void markReaders(SimCodeBuffer code, int slot)
+	{
+		int[] readers = schedule.getSlotReaders(slot);
+
+		for (int i = 0; i < readers.length; i++)
+		{
+			code.op(ALOAD_0);
+			code.op(ICONST_1);
+			code.op2(PUTFIELD, dirty_fields[readers[i]]);
+		}
+	}
+
+	/* to_N = from_N for the slots */
+	private void copyFields(SimCodeBuffer code, int[] slots, int[] from_fields, int[] to_fields)
+	{
+		for (int i = 0; i < slots.length; i++)
+		{
+			code.op(ALOAD_0);
+			code.op(ALOAD_0);
+			code.op2(GETFIELD, from_fields[slots[i]]);
+			code.op2(PUTFIELD, to_fields[slots[i]]);
+		}
+	}
+
+	/* time_N = cycle_time */
+	private void stamp(SimCodeBuffer code, int slot)
+	{
+		code.op(ALOAD_0);
+		code.op(ALOAD_0);
+		code.op2(GETFIELD, cycle_time_field);
+		code.op2(PUTFIELD, time_fields[slot]);
+	}
+
+	/* branch_if_false ? 0 : 1 for an if opcode that branches when false */
+	private void pushBoolean(SimCodeBuffer code, int branch_if_false)
+	{
+		code.op2(branch_if_false, 7);
+		code.op(ICONST_1);
+		code.op2(GOTO, 4);
+		code.op(ICONST_0);
+	}
+
+	private void pushInt(SimCodeBuffer code, int value)
+	{
+		if (value >= -1 && value <= 5)
+		{
+			code.op(ICONST_0 + value);
+		}
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+		{
+			code.op1(BIPUSH, value & 0xFF);
+		}
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+		{
+			code.op2(SIPUSH, value & 0xFFFF);
+		}
+		else
+		{
+			code.op2(LDC_W, writer.integer(value));
+		}
+	}
+}
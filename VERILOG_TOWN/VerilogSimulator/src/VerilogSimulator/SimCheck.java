@@ -0,0 +1,692 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* Checks of the simulator on small designs made for them, for behaviour
+ * the shipped designs SimBenchmark runs don't show. Each check writes its
+ * design to a temporary file and runs it on every engine. Exits with 1 if
+ * any check fails.
+ *
+ * java VerilogSimulator.SimCheck */
+public class SimCheck
+{
+	private static final String	HEADER	= "module check(clk, rst, sensor_light, general_sensors, outN, outS, outE, outW, debug_port);\n" + "input clk, rst;\n" + "input [7:0] sensor_light;\n" + "input [29:0] general_sensors;\n" + "output [2:0] outN, outS, outE, outW;\n" + "output [15:0] debug_port;\n" + "reg [2:0] outN, outS, outE, outW;\n" + "reg [15:0] debug_port;\n";
+
+	/* calls to warm the JIT up before counting, and calls counted */
+	private static final int	WARM_UP_CALLS		= 50000;
+	private static final int	COUNTED_CALLS		= 10000;
+	/* bytes the JVM can allocate once while the calls are counted, far
+	 * under an object a call */
+	private static final int	ALLOCATION_SLACK	= 1024;
+
+	private static int			num_failed;
+
+	public static void main(String[] args) throws IOException
+	{
+		checkLatchCache();
+		checkOutputCacheRefresh();
+		checkUnsupported();
+		checkWideTreeWalker();
+		checkWideShift();
+		checkNarrowInWide();
+		checkBitStore();
+		checkAssignChain();
+		checkInstances();
+		checkWaveformSignals();
+		checkWaveformScopes();
+		checkClockedBlockingMessage();
+		checkSelfLoop();
+		checkGatesDivideByZero();
+		checkExplorerReport();
+		checkNoAllocation();
+		checkDamagedCache();
+		checkCachedDiagnostics();
+
+		if (num_failed == 0)
+		{
+			System.out.println("All checks passed");
+		}
+		else
+		{
+			System.out.println(num_failed + " checks failed");
+		}
+		System.exit(num_failed == 0 ? 0 : 1);
+	}
+
+	/* A step that holds a latch outputs its value from the last step, not
+	 * from the last step that ran, so an output cache can't skip any */
+	private static void checkLatchCache() throws IOException
+	{
+		File design = writeDesign("always @(*)\n" + "begin\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "\tif (sensor_light[0] == 1'b1)\n" + "\t\toutN = sensor_light >> 1;\n" + "end\n");
+		int[] sensor_light = { 0, 3, 5, 3, 8 };
+		int[] expected = { 0, 1, 2, 1, 1 };
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			int[] outputs = new int[6];
+			int[] outN = new int[sensor_light.length];
+
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				parse.step(1, sensor_light[i], 0, outputs);
+				outN[i] = outputs[Parse.OUT_N];
+			}
+			check("latch on " + engine_type, Arrays.equals(expected, outN), "outN " + Arrays.toString(outN) + " instead of " + Arrays.toString(expected));
+		}
+		design.delete();
+	}
+
+	/* Putting a key that is already cached into a full cache updates its
+	 * outputs without evicting another key */
+	private static void checkOutputCacheRefresh()
+	{
+		SimOutputCache cache = new SimOutputCache(64);
+		ArrayList<Long> cached = new ArrayList<Long>();
+		int[] outputs = new int[5];
+		boolean is_kept = true;
+
+		for (int i = 0; i < 1000; i++)
+		{
+			outputs[0] = i;
+			cache.put(SimOutputCache.key(1, i & 0xFF, i >> 8), outputs);
+		}
+		for (int i = 0; i < 1000; i++)
+		{
+			long key = SimOutputCache.key(1, i & 0xFF, i >> 8);
+
+			if (cache.get(key, outputs))
+			{
+				cached.add(key);
+			}
+		}
+		for (int i = 0; i < cached.size(); i++)
+		{
+			outputs[0] = -i;
+			cache.put(cached.get(i), outputs);
+		}
+		for (int i = 0; i < cached.size(); i++)
+		{
+			is_kept &= cache.get(cached.get(i), outputs) && outputs[0] == -i;
+		}
+		check("output cache refresh", is_kept && cache.getSize() == cached.size(), cached.size() + " keys cached, " + cache.getSize() + " after putting them again");
+	}
+
+	/* Every engine rejects what it can't simulate when compiling, rather
+	 * than printing errors while simulating */
+	private static void checkUnsupported() throws IOException
+	{
+		File design = writeDesign("always @(*)\n" + "begin\n" + "\toutN = (sensor_light[0] == 1'b1) ? 3'd4 : 3'd0;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+
+			check("? on " + engine_type, !parse.is_compiled_yet(), "compiled");
+		}
+		design.delete();
+	}
+
+	/* The tree walker runs on ints, so it rejects a vector wider than 30
+	 * bits the other engines run */
+	private static void checkWideTreeWalker() throws IOException
+	{
+		File design = writeDesign("reg [39:0] count;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tcount <= 40'd0;\n" + "\telse\n" + "\t\tcount <= count + 40'd1;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\toutN = 3'd0;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = count >> 24;\n" + "end\n");
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			boolean is_rejected = engine_type == SimEngineType.TREE_WALKER;
+
+			check("40 bits on " + engine_type, parse.is_compiled_yet() != is_rejected, is_rejected ? "compiled" : "didn't compile");
+		}
+		design.delete();
+	}
+
+	/* A vector wider than 30 bits doesn't change what the narrow expressions
+	 * in the same module give */
+	private static void checkNarrowInWide() throws IOException
+	{
+		String narrow = "reg [15:0] count;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tcount <= 16'd0;\n" + "\telse\n" + "\t\tcount <= count + sensor_light;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\toutN = (~count) >> 13;\n" + "\toutS = (~count) < count;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = (~count) % 4;\n" + "end\n";
+		String wide = "reg [39:0] wide;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\twide <= 40'd0;\n" + "\telse\n" + "\t\twide <= wide + sensor_light;\n" + "end\n";
+		File narrow_design = writeDesign(narrow);
+		File wide_design = writeDesign(wide + narrow);
+		int[] sensor_light = { 0, 0, 3, 200, 7, 0 };
+
+		for (SimEngineType engine_type : new SimEngineType[] { SimEngineType.INTERPRETER, SimEngineType.BYTECODE })
+		{
+			Parse narrow_parse = compile(narrow_design, engine_type);
+			Parse wide_parse = compile(wide_design, engine_type);
+			int[] narrow_outputs = new int[6];
+			int[] wide_outputs = new int[6];
+			boolean is_same = true;
+
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				narrow_parse.step((i == 0) ? 0 : 1, sensor_light[i], 0, narrow_outputs);
+				wide_parse.step((i == 0) ? 0 : 1, sensor_light[i], 0, wide_outputs);
+				is_same &= Arrays.equals(narrow_outputs, wide_outputs);
+			}
+			check("narrow in wide on " + engine_type, is_same, "outputs " + Arrays.toString(wide_outputs) + " instead of " + Arrays.toString(narrow_outputs));
+		}
+		narrow_design.delete();
+		wide_design.delete();
+	}
+
+	/* A narrow operand shifted left in a wide assignment is widened first,
+	 * so the bits shifted past its width are kept */
+	private static void checkWideShift() throws IOException
+	{
+		File design = writeDesign("reg [39:0] shifted;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tshifted <= 40'd0;\n" + "\telse\n" + "\t\tshifted <= sensor_light << 32;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\toutN = 3'd0;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = shifted >> 28;\n" + "end\n");
+		int[] rst = { 0, 1, 1, 1 };
+		int[] sensor_light = { 0, 0xA5, 0x3C, 0x01 };
+		int[] expected = { 0, 0, 0xA50, 0x3C0 };
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse;
+			int[] outputs = new int[6];
+			int[] debug_port = new int[sensor_light.length];
+
+			if (engine_type == SimEngineType.TREE_WALKER)
+			{
+				continue;
+			}
+			parse = compile(design, engine_type);
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				parse.step(rst[i], sensor_light[i], 0, outputs);
+				debug_port[i] = outputs[Parse.DEBUG_PORT];
+			}
+			check("wide shift on " + engine_type, Arrays.equals(expected, debug_port), "debug_port " + Arrays.toString(debug_port) + " instead of " + Arrays.toString(expected));
+		}
+		design.delete();
+	}
+
+	/* A store to a bit or a range leaves the other bits of the target as
+	 * they were on every engine */
+	private static void checkBitStore() throws IOException
+	{
+		File design = writeDesign("always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\toutS <= 3'b011;\n" + "\telse\n" + "\t\toutS[2] <= sensor_light[0];\n" + "end\n" + "always @(*)\n" + "begin\n" + "\toutN = 3'd0;\n" + "\toutN[2:1] = sensor_light >> 1;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+		int[] rst = { 0, 1, 1, 1 };
+		int[] sensor_light = { 0, 1, 6, 3 };
+		int[] expected = { 3 << 3, 7 << 3 | 0, 3 << 3 | 6, 7 << 3 | 2 };
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			int[] outputs = new int[6];
+			int[] outS_outN = new int[sensor_light.length];
+
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				parse.step(rst[i], sensor_light[i], 0, outputs);
+				outS_outN[i] = outputs[Parse.OUT_S] << 3 | outputs[Parse.OUT_N];
+			}
+			check("bit store on " + engine_type, Arrays.equals(expected, outS_outN), "outS, outN " + Arrays.toString(outS_outN) + " instead of " + Arrays.toString(expected));
+		}
+		design.delete();
+	}
+
+	/* A chain of assigns written out of order settles in one step on every
+	 * engine, and a register loads the settled value */
+	private static void checkAssignChain() throws IOException
+	{
+		File design = writeDesign("wire [2:0] first, second;\n" + "reg [2:0] held;\n" + "always @(*)\n" + "begin\n" + "\toutN = second;\n" + "\toutS = held;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n" + "assign second = first + 3'd1;\n" + "assign first = sensor_light;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\theld <= 3'd0;\n" + "\telse\n" + "\t\theld <= second;\n" + "end\n");
+		int[] rst = { 0, 1, 1, 1 };
+		int[] sensor_light = { 2, 4, 6, 7 };
+		int[] expected = { 3, 0 << 3 | 5, 5 << 3 | 7, 7 << 3 | 0 };
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			int[] outputs = new int[6];
+			int[] outS_outN = new int[sensor_light.length];
+
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				parse.step(rst[i], sensor_light[i], 0, outputs);
+				outS_outN[i] = outputs[Parse.OUT_S] << 3 | outputs[Parse.OUT_N];
+			}
+			check("assign chain on " + engine_type, Arrays.equals(expected, outS_outN), "outS, outN " + Arrays.toString(outS_outN) + " instead of " + Arrays.toString(expected));
+		}
+		design.delete();
+	}
+
+	/* A reg only assigned with = in a clocked block is reported as that,
+	 * not as never assigned */
+	private static void checkClockedBlockingMessage() throws IOException
+	{
+		File design = writeDesign("reg [2:0] state;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tstate = 3'd0;\n" + "\telse\n" + "\t\tstate = state + 3'd1;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\toutN = state;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+		Parse parse = compile(design, SimEngineType.INTERPRETER);
+		String message = null;
+
+		for (SimDiagnostic diagnostic : parse.getDiagnostics())
+		{
+			if (diagnostic.getKind() == SimDiagnostic.Kind.LATCH && "state".equals(diagnostic.getSignal()))
+			{
+				message = diagnostic.getMessage();
+			}
+		}
+		check("= in a clocked block message", message != null && message.contains("only assigned with ="), "reported " + message);
+		design.delete();
+	}
+
+	/* An always block that reads what it assigns before assigning it is a
+	 * loop, and one that assigns it first isn't */
+	private static void checkSelfLoop() throws IOException
+	{
+		String[] firsts = { "", "\toutN = 3'd0;\n" };
+		boolean[] is_loop = { true, false };
+
+		for (int i = 0; i < firsts.length; i++)
+		{
+			File design = writeDesign("always @(*)\n" + "begin\n" + firsts[i] + "\toutN = outN + 3'd1;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+			Parse parse = compile(design, SimEngineType.INTERPRETER);
+			boolean is_reported = false;
+
+			for (SimDiagnostic diagnostic : parse.getDiagnostics())
+			{
+				is_reported |= diagnostic.getKind() == SimDiagnostic.Kind.COMBINATIONAL_LOOP && "outN".equals(diagnostic.getSignal());
+			}
+			check("self loop " + i, is_reported == is_loop[i], is_loop[i] ? "not reported" : "reported");
+			design.delete();
+		}
+	}
+
+	/* DIV and MOD by 0 throw in the gates like in the lanes, and only for a
+	 * lane whose code gets to them */
+	private static void checkGatesDivideByZero() throws IOException
+	{
+		String[] divides = { "\toutN = (sensor_light & 8'd7) / (sensor_light >> 3);\n", "\toutN = (sensor_light & 8'd7) % 3'd3;\n", "\tif ((sensor_light >> 3) != 3'd0)\n" + "\t\toutN = (sensor_light & 8'd7) / (sensor_light >> 3);\n" + "\telse\n" + "\t\toutN = 3'd0;\n" };
+		boolean[] is_div_by_zero = { true, false, false };
+
+		for (int i = 0; i < divides.length; i++)
+		{
+			File design = writeDesign("always @(*)\n" + "begin\n" + divides[i] + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+			Parse parse = compile(design, SimEngineType.INTERPRETER);
+
+			/* sensor_light >> 3 is 0 in the first 8 lanes and not in the second */
+			for (int first = 0; first <= 8; first += 8)
+			{
+				long[][] stimulus = new long[1][SimLanes.NUM_INPUT_PLANES];
+				int[] sensor_light = new int[SimLanes.NUM_LANES];
+				boolean is_thrown = is_div_by_zero[i] && first == 0;
+				String lanes;
+				String gates;
+
+				for (int lane = 0; lane < SimLanes.NUM_LANES; lane++)
+				{
+					sensor_light[lane] = first + lane;
+				}
+				SimLanes.toPlanes(sensor_light, stimulus[0], SimLanes.SENSOR_LIGHT_PLANE, 8);
+				lanes = lane_outputs(parse, stimulus, false);
+				gates = lane_outputs(parse, stimulus, true);
+				check("gates of divide " + i + " from " + first, gates.equals(lanes) && gates.equals("thrown") == is_thrown, "gates " + gates + ", lanes " + lanes);
+			}
+			design.delete();
+		}
+	}
+
+	/* the outputs of simulateLanes or simulateGates, or "thrown" */
+	private static String lane_outputs(Parse parse, long[][] stimulus, boolean is_gates)
+	{
+		try
+		{
+			return Arrays.deepToString(is_gates ? parse.simulateGates(stimulus) : parse.simulateLanes(stimulus));
+		}
+		catch (ArithmeticException e)
+		{
+			return "thrown";
+		}
+	}
+
+	/* Every instance of a module gets its own copy of the module's signals,
+	 * the ones after the first parsed again from its tokens */
+	private static void checkInstances() throws IOException
+	{
+		File design = writeDesign("wire [2:0] low, high;\n" + "assign low = sensor_light;\n" + "assign high = sensor_light >> 3;\n" + "flip first(low, outN);\n" + "flip second(high, outS);\n" + "flip third(outN, outE);\n" + "always @(*)\n" + "begin\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n" + "endmodule\n" + "module flip(in, out);\n" + "input [2:0] in;\n" + "output [2:0] out;\n" + "reg [2:0] out;\n" + "always @(*)\n" + "begin\n" + "\tout = ~in;\n" + "end\n");
+		int[] sensor_light = { 0, 0x0A, 0x3C };
+		int[] expected = { 7 << 6 | 7 << 3 | 0, 6 << 6 | 5 << 3 | 2, 0 << 6 | 3 << 3 | 4 };
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			int[] outputs = new int[6];
+			int[] outS_outN_outE = new int[sensor_light.length];
+
+			for (int i = 0; i < sensor_light.length; i++)
+			{
+				parse.step(1, sensor_light[i], 0, outputs);
+				outS_outN_outE[i] = outputs[Parse.OUT_S] << 6 | outputs[Parse.OUT_N] << 3 | outputs[Parse.OUT_E];
+			}
+			check("instances on " + engine_type, Arrays.equals(expected, outS_outN_outE), "outS, outN, outE " + Arrays.toString(outS_outN_outE) + " instead of " + Arrays.toString(expected));
+		}
+		design.delete();
+	}
+
+	/* A waveform leaves out the parameters, whose values don't fit their
+	 * declared width, and clk, which never changes */
+	private static void checkWaveformSignals() throws IOException
+	{
+		File design = writeDesign("parameter Go = 3'b100;\n" + "always @(*)\n" + "begin\n" + "\toutN = Go;\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			File waveform = File.createTempFile("check", ".vcd");
+			String text;
+
+			parse.startWaveform(waveform);
+			for (int i = 0; i < 3; i++)
+			{
+				parse.step(1, i, 0, null);
+			}
+			parse.stopWaveform();
+			text = new String(Files.readAllBytes(waveform.toPath()), "US-ASCII");
+			waveform.delete();
+
+			check("waveform signals on " + engine_type, text.contains(" outN $end") && !text.contains(" Go $end") && !text.contains(" clk $end"), "declares\n" + text.substring(0, text.indexOf("$enddefinitions")));
+		}
+		design.delete();
+	}
+
+	/* The signals of an instance are declared in a scope of their own, nested
+	 * the way the instances are */
+	private static void checkWaveformScopes() throws IOException
+	{
+		File design = writeDesign("wire [2:0] low;\n" + "assign low = sensor_light;\n" + "pair both(low, outN);\n" + "always @(*)\n" + "begin\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "end\n" + "endmodule\n" + "module pair(in, out);\n" + "input [2:0] in;\n" + "output [2:0] out;\n" + "wire [2:0] middle;\n" + "flip first(in, middle);\n" + "flip second(middle, out);\n" + "endmodule\n" + "module flip(in, out);\n" + "input [2:0] in;\n" + "output [2:0] out;\n" + "reg [2:0] out;\n" + "reg [2:0] flipped;\n" + "always @(*)\n" + "begin\n" + "\tflipped = ~in;\n" + "\tout = flipped;\n" + "end\n");
+
+		for (SimEngineType engine_type : SimEngineType.values())
+		{
+			Parse parse = compile(design, engine_type);
+			File waveform = File.createTempFile("check", ".vcd");
+			String text;
+			String header;
+
+			parse.startWaveform(waveform);
+			for (int i = 0; i < 3; i++)
+			{
+				parse.step(1, i, 0, null);
+			}
+			parse.stopWaveform();
+			text = new String(Files.readAllBytes(waveform.toPath()), "US-ASCII");
+			waveform.delete();
+			header = text.substring(0, text.indexOf("$enddefinitions"));
+
+			check("waveform scopes on " + engine_type, header.matches("(?s).*\\$scope module both \\$end\n(\\$var [^\n]*\n)*\\$scope module first \\$end\n(\\$var [^\n]*\n)+\\$upscope \\$end\n\\$scope module second \\$end\n(\\$var [^\n]*\n)+\\$upscope \\$end\n\\$upscope \\$end\n\\$upscope \\$end\n") && !header.contains("."), "declares\n" + header);
+		}
+		design.delete();
+	}
+
+	/* A conflict on the first step is reported after 1 step, not 1 steps */
+	private static void checkExplorerReport() throws IOException
+	{
+		File design = writeDesign("always @(*)\n" + "begin\n" + "\toutN = 3'd4;\n" + "\toutS = 3'd4;\n" + "\toutE = 3'd4;\n" + "\toutW = 3'd4;\n" + "\tdebug_port = 16'd0;\n" + "end\n");
+		SimExplorer explorer = compile(design, SimEngineType.INTERPRETER).explore();
+		String report;
+
+		explorer.explore();
+		report = explorer.getReport();
+		check("explorer report", explorer.getTrace().length == 1 && report.contains(" after 1 step from the reset"), report);
+		design.delete();
+	}
+
+	/* Once warm, the int sim_cycle and step() of the compiled engines
+	 * allocate nothing. The design has a register so step() can't come from
+	 * the output cache. */
+	private static void checkNoAllocation() throws IOException
+	{
+		File design = writeDesign("reg [7:0] count;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tcount <= 8'd0;\n" + "\telse\n" + "\t\tcount <= count + sensor_light;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\tcase (count[1])\n" + "\t\t1'b0: outN = 3'd4;\n" + "\t\tdefault: outN = 3'd1;\n" + "\tendcase\n" + "\toutS = count;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = count;\n" + "end\n");
+		SimEngineType[] engine_types = { SimEngineType.TREE_WALKER, SimEngineType.INTERPRETER, SimEngineType.BYTECODE };
+
+		if (allocatedBytes() < 0)
+		{
+			System.out.println("skip   allocation: the JVM doesn't count allocated bytes");
+			design.delete();
+			return;
+		}
+
+		for (SimEngineType engine_type : engine_types)
+		{
+			Parse parse = compile(design, engine_type);
+			int[] outputs = new int[6];
+			long allocated;
+
+			allocated_by(parse, outputs, WARM_UP_CALLS, false);
+			allocated = allocated_by(parse, outputs, COUNTED_CALLS, false);
+			check("sim_cycle allocation on " + engine_type, allocated <= ALLOCATION_SLACK, allocated + " bytes over " + COUNTED_CALLS + " calls");
+
+			allocated_by(parse, outputs, WARM_UP_CALLS, true);
+			allocated = allocated_by(parse, outputs, COUNTED_CALLS, true);
+			check("step allocation on " + engine_type, allocated <= ALLOCATION_SLACK, allocated + " bytes over " + COUNTED_CALLS + " calls");
+		}
+		design.delete();
+	}
+
+	/* Bytes num_calls int sim_cycles or steps allocate, less what counting
+	 * them allocates */
+	private static long allocated_by(Parse parse, int[] outputs, int num_calls, boolean is_step)
+	{
+		long start = allocatedBytes();
+		long overhead = allocatedBytes() - start;
+
+		start = allocatedBytes();
+		for (int i = 0; i < num_calls; i++)
+		{
+			if (is_step)
+			{
+				parse.step(1, i & 0xFF, i, outputs);
+			}
+			else
+			{
+				parse.sim_cycle(1, i & 0xFF, i, outputs);
+			}
+		}
+
+		return allocatedBytes() - start - overhead;
+	}
+
+	/* bytes this thread has allocated, or -1 if the JVM doesn't count them */
+	private static long allocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return -1;
+	}
+
+	/* A damaged program cache file is a cache miss. Every int of the file is
+	 * changed in turn and the file cut short at each int, and the game's
+	 * compile and the steps after it must not fail. */
+	private static void checkDamagedCache() throws IOException
+	{
+		File design = writeDesign("reg [39:0] count;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tcount <= 40'd0;\n" + "\telse\n" + "\t\tcount <= count + sensor_light;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\tcase (sensor_light)\n" + "\t\t8'd0: outN = 3'd4;\n" + "\t\t8'd1: outN = 3'd1;\n" + "\t\tdefault: outN = 3'd2;\n" + "\tendcase\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = count >> 24;\n" + "end\n");
+		File narrow_design = writeDesign("reg [7:0] count;\n" + "always @(posedge clk or negedge rst)\n" + "begin\n" + "\tif (rst == 1'b0)\n" + "\t\tcount <= 8'd0;\n" + "\telse\n" + "\t\tcount <= count + sensor_light;\n" + "end\n" + "always @(*)\n" + "begin\n" + "\tcase (sensor_light)\n" + "\t\t8'd0: outN = 3'd4;\n" + "\t\t8'd1: outN = 3'd1;\n" + "\t\t8'd2: outN = 3'd3;\n" + "\t\tdefault: outN = 3'd2;\n" + "\tendcase\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW[1] = count[0];\n" + "\toutW[2] = 1'b0;\n" + "\toutW[0] = 1'b1;\n" + "\tdebug_port = count;\n" + "end\n");
+
+		check_damaged_cache("wide", design);
+		check_damaged_cache("narrow", narrow_design);
+		design.delete();
+		narrow_design.delete();
+	}
+
+	private static void check_damaged_cache(String name, File design) throws IOException
+	{
+		File directory = Files.createTempDirectory("check").toFile();
+		File cached;
+		byte[] bytes;
+		String failure = null;
+
+		game_compile(design, directory);
+		cached = directory.listFiles()[0];
+		bytes = Files.readAllBytes(cached.toPath());
+		check("undamaged " + name + " cache", new SimProgramCache(directory).load(Files.readAllBytes(design.toPath()), new ArrayList<SimDiagnostic>()) != null, "not loaded");
+
+		for (int i = 0; i + 4 <= bytes.length && failure == null; i += 4)
+		{
+			int value = ByteBuffer.wrap(bytes).getInt(i);
+			int[] damages = { value + 1, -1, Integer.MAX_VALUE };
+
+			for (int j = 0; j < damages.length && failure == null; j++)
+			{
+				byte[] damaged = bytes.clone();
+
+				ByteBuffer.wrap(damaged).putInt(i, damages[j]);
+				failure = damaged_failure(design, directory, cached, damaged, "int at " + i + " set to " + damages[j]);
+			}
+			if (failure == null)
+			{
+				failure = damaged_failure(design, directory, cached, Arrays.copyOf(bytes, i), "cut to " + i + " bytes");
+			}
+		}
+		check("damaged " + name + " cache", failure == null, failure);
+
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/* null if the game compiles and runs the design with the damaged file
+	 * in the cache */
+	private static String damaged_failure(File design, File directory, File cached, byte[] damaged, String damage) throws IOException
+	{
+		Files.write(cached.toPath(), damaged);
+		try
+		{
+			Parse parse = game_compile(design, directory);
+			int[] outputs = new int[6];
+
+			if (!parse.is_compiled_yet())
+			{
+				return damage + ": didn't compile";
+			}
+			for (int i = 0; i < 20; i++)
+			{
+				parse.step((i == 0) ? 0 : 1, i, 0, outputs);
+			}
+		}
+		catch (Throwable e)
+		{
+			return damage + ": " + e;
+		}
+
+		return null;
+	}
+
+	/* A module from the program cache has the warnings of the compile that
+	 * stored it, and storing deletes the files of an older format */
+	private static void checkCachedDiagnostics() throws IOException
+	{
+		File design = writeDesign("always @(*)\n" + "begin\n" + "\toutS = 3'd0;\n" + "\toutE = 3'd0;\n" + "\toutW = 3'd0;\n" + "\tdebug_port = 16'd0;\n" + "\tif (sensor_light[0] == 1'b1)\n" + "\t\toutN = 3'd1;\n" + "end\n");
+		File directory = Files.createTempDirectory("check").toFile();
+		File old_file = new File(directory, "old.vprog");
+		String compiled;
+		String cached;
+
+		Files.write(old_file.toPath(), ByteBuffer.allocate(8).putInt(0x56505247).putInt(SimProgramCache.FORMAT_VERSION - 1).array());
+		compiled = game_compile(design, directory).getDiagnostics().toString();
+		cached = game_compile(design, directory).getDiagnostics().toString();
+		check("cached warnings", compiled.contains("latch") && cached.equals(compiled), cached + " instead of " + compiled);
+		check("old cache files", !old_file.exists() && directory.listFiles().length == 1, Arrays.toString(directory.list()));
+
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+		design.delete();
+	}
+
+	private static Parse game_compile(File design, File directory) throws IOException
+	{
+		Parse parse = new Parse();
+
+		parse.setProgramCache(new SimProgramCache(directory));
+		parse.compileFileForGame(design.getPath());
+
+		return parse;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Helpers
+	 * -------------------------------------------------------------------------- */
+	/* a module with the ports of a traffic signal around body */
+	private static File writeDesign(String body) throws IOException
+	{
+		File file = File.createTempFile("check", ".v");
+		FileWriter writer = new FileWriter(file);
+
+		try
+		{
+			writer.write(HEADER + body + "endmodule\n");
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return file;
+	}
+
+	private static Parse compile(File design, SimEngineType engine_type) throws IOException
+	{
+		Parse parse = new Parse();
+
+		parse.setSimEngine(engine_type);
+		parse.compileFile(design.getPath());
+
+		return parse;
+	}
+
+	private static void check(String name, boolean is_passed, String failure)
+	{
+		if (is_passed)
+		{
+			System.out.println("ok     " + name);
+		}
+		else
+		{
+			System.out.println("FAILED " + name + ": " + failure);
+			num_failed++;
+		}
+	}
+}
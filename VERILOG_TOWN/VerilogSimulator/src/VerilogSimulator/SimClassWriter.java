@@ -0,0 +1,377 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/* Just enough of the class file format for the classes SimBytecodeCompiler
+ * generates. Writes version 49 classes so no stack map frames are needed. */
+public class SimClassWriter
+{
+	public static final int				ACC_PUBLIC			= 0x0001;
+	public static final int				ACC_PRIVATE			= 0x0002;
+	public static final int				ACC_FINAL			= 0x0010;
+	public static final int				ACC_SUPER			= 0x0020;
+
+	private static final int			CONSTANT_Utf8		= 1;
+	private static final int			CONSTANT_Integer	= 3;
+	private static final int			CONSTANT_Class		= 7;
+	private static final int			CONSTANT_Fieldref	= 9;
+	private static final int			CONSTANT_Methodref	= 10;
+	private static final int			CONSTANT_NameAndType	= 12;
+
+	private ByteArrayOutputStream		pool_bytes;
+	private DataOutputStream			pool;
+	private int							pool_count;
+	private Hashtable<String, Integer>	pool_index;
+
+	private int							this_class;
+	private int							super_class;
+
+	private ByteArrayOutputStream[]		member_bytes;
+	private DataOutputStream[]			members;
+	private int[]							member_count;
+
+	public SimClassWriter(String class_name, String super_name)
+	{
+		this.pool_bytes = new ByteArrayOutputStream();
+		this.pool = new DataOutputStream(pool_bytes);
+		this.pool_count = 1;
+		this.pool_index = new Hashtable<String, Integer>();
+
+		/* fields and methods */
+		this.member_bytes = new ByteArrayOutputStream[2];
+		this.members = new DataOutputStream[2];
+		this.member_count = new int[2];
+		for (int i = 0; i < 2; i++)
+		{
+			this.member_bytes[i] = new ByteArrayOutputStream();
+			this.members[i] = new DataOutputStream(member_bytes[i]);
+		}
+
+		this.this_class = classRef(class_name);
+		this.super_class = classRef(super_name);
+	}
+
+	public int utf8(String value)
+	{
+		Integer index = pool_index.get("U" + value);
+
+		if (index == null)
+		{
+			try
+			{
+				pool.writeByte(CONSTANT_Utf8);
+				pool.writeUTF(value);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			index = pool_count++;
+			pool_index.put("U" + value, index);
+		}
+
+		return index;
+	}
+
+	public int integer(int value)
+	{
+		Integer index = pool_index.get("I" + value);
+
+		if (index == null)
+		{
+			index = addEntry(CONSTANT_Integer, value >>> 16, value & 0xFFFF);
+			pool_index.put("I" + value, index);
+		}
+
+		return index;
+	}
+
+	public int classRef(String name)
+	{
+		Integer index = pool_index.get("C" + name);
+
+		if (index == null)
+		{
+			index = addEntry(CONSTANT_Class, utf8(name));
+			pool_index.put("C" + name, index);
+		}
+
+		return index;
+	}
+
+	public int fieldRef(String owner, String name, String desc)
+	{
+		return memberRef(CONSTANT_Fieldref, owner, name, desc);
+	}
+
+	public int methodRef(String owner, String name, String desc)
+	{
+		return memberRef(CONSTANT_Methodref, owner, name, desc);
+	}
+
+	private int memberRef(int tag, String owner, String name, String desc)
+	{
+		String key = "M" + tag + owner + "." + name + ":" + desc;
+		Integer index = pool_index.get(key);
+
+		if (index == null)
+		{
+			int owner_index = classRef(owner);
+			int name_and_type = nameAndType(name, desc);
+
+			index = addEntry(tag, owner_index, name_and_type);
+			pool_index.put(key, index);
+		}
+
+		return index;
+	}
+
+	private int nameAndType(String name, String desc)
+	{
+		Integer index = pool_index.get("N" + name + ":" + desc);
+
+		if (index == null)
+		{
+			int name_index = utf8(name);
+			int desc_index = utf8(desc);
+
+			index = addEntry(CONSTANT_NameAndType, name_index, desc_index);
+			pool_index.put("N" + name + ":" + desc, index);
+		}
+
+		return index;
+	}
+
+	private int addEntry(int tag, int... shorts)
+	{
+		try
+		{
+			pool.writeByte(tag);
+			for (int i = 0; i < shorts.length; i++)
+			{
+				pool.writeShort(shorts[i]);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return pool_count++;
+	}
+
+	public void addField(int access, String name, String desc)
+	{
+		int name_index = utf8(name);
+		int desc_index = utf8(desc);
+
+		try
+		{
+			members[0].writeShort(access);
+			members[0].writeShort(name_index);
+			members[0].writeShort(desc_index);
+			/* no attributes */
+			members[0].writeShort(0);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		member_count[0]++;
+	}
+
+	public void addMethod(int access, String name, String desc, int max_stack, int max_locals, SimCodeBuffer code)
+	{
+		int name_index = utf8(name);
+		int desc_index = utf8(desc);
+		int code_index = utf8("Code");
+
+		if (code.length() == 0 || code.length() > 0xFFFF)
+		{
+			throw new IllegalStateException("Method " + name + " is " + code.length() + " bytes");
+		}
+
+		try
+		{
+			members[1].writeShort(access);
+			members[1].writeShort(name_index);
+			members[1].writeShort(desc_index);
+			members[1].writeShort(1);
+
+			/* Code attribute without exception table or attributes */
+			members[1].writeShort(code_index);
+			members[1].writeInt(12 + code.length());
+			members[1].writeShort(max_stack);
+			members[1].writeShort(max_locals);
+			members[1].writeInt(code.length());
+			members[1].write(code.toByteArray());
+			members[1].writeShort(0);
+			members[1].writeShort(0);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		member_count[1]++;
+	}
+
+	public byte[] toByteArray()
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		if (pool_count > 0xFFFF)
+		{
+			throw new IllegalStateException("Too many constants");
+		}
+
+		try
+		{
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(pool_count);
+			out.write(pool_bytes.toByteArray());
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(this_class);
+			out.writeShort(super_class);
+			/* no interfaces */
+			out.writeShort(0);
+			for (int i = 0; i < 2; i++)
+			{
+				out.writeShort(member_count[i]);
+				out.write(member_bytes[i].toByteArray());
+			}
+			/* no class attributes */
+			out.writeShort(0);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/* Growable code array with room to patch branch offsets afterwards */
+	public static class SimCodeBuffer
+	{
+		private byte[]	code;
+		private int		length;
+
+		public SimCodeBuffer()
+		{
+			this.code = new byte[256];
+			this.length = 0;
+		}
+
+		public int length()
+		{
+			return length;
+		}
+
+		public void u1(int value)
+		{
+			if (length == code.length)
+			{
+				byte[] bigger = new byte[code.length * 2];
+
+				System.arraycopy(code, 0, bigger, 0, length);
+				code = bigger;
+			}
+			code[length++] = (byte) value;
+		}
+
+		public void u2(int value)
+		{
+			u1(value >> 8);
+			u1(value);
+		}
+
+		public void u4(int value)
+		{
+			u2(value >> 16);
+			u2(value);
+		}
+
+		public void op(int opcode)
+		{
+			u1(opcode);
+		}
+
+		public void op1(int opcode, int operand)
+		{
+			u1(opcode);
+			u1(operand);
+		}
+
+		public void op2(int opcode, int operand)
+		{
+			u1(opcode);
+			u2(operand);
+		}
+
+		public void patch2(int pos, int value)
+		{
+			code[pos] = (byte) (value >> 8);
+			code[pos + 1] = (byte) value;
+		}
+
+		public void patch4(int pos, int value)
+		{
+			patch2(pos, value >> 16);
+			patch2(pos + 2, value);
+		}
+
+		public byte[] toByteArray()
+		{
+			byte[] bytes = new byte[length];
+
+			System.arraycopy(code, 0, bytes, 0, length);
+
+			return bytes;
+		}
+	}
+
+	/* Defines one generated class. A loader per class lets the class go away
+	 * with the module that uses it. */
+	public static class SimClassLoader extends ClassLoader
+	{
+		public SimClassLoader()
+		{
+			super(SimEngine.class.getClassLoader());
+		}
+
+		public Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,1792 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/* Pass after SimBinding. Lowers the always and assign blocks of a
+ * module into the instruction arrays of a SimProgram, including the levelized
+ * step() code where the combinational blocks are sorted by what they read and
+ * write. Literals, parameters that are never assigned and operators on them
+ * fold into one CONST, and if and case arms that can't be taken are left
+ * out. Expression visits return
+ * the size SimVisitor gives the same result, so intermediate results are
+ * masked exactly the way the tree walker masks them.
+ *
+ * A module with a vector wider than 30 bits becomes a wide program. The same
+ * sizes are used there as long as the operands fit in 30 bits, and anything
+ * wider gets the width of its widest operand. Operators on narrow operands
+ * keep the int results of a narrow program, so the INT_ opcodes are used for
+ * the ones that are unsigned on longs. Nothing is folded in a wide program. */
+public class SimCompiler extends Verilog2001BaseVisitor<Integer>
+{
+	/* a case becomes a SWITCH with at least this many constant labels, if
+	 * they fill at least a quarter of a table of at most MAX_CASE_TABLE */
+	private static final int	MIN_CASE_TABLE_LABELS	= 4;
+	private static final int	MAX_CASE_TABLE			= 1024;
+
+	private SimBinding			binding;
+
+	private ArrayList<String>	errors;
+
+	private int[]				slot_masks;
+	private int[]				slot_bounds;
+	private int[]				slot_widths;
+
+	/* longs per value, 0 if every vector fits in an int */
+	private int					value_words;
+	private ArrayList<Long>		constants;
+
+	private ArrayList<Integer>	code;
+	private int					stack_depth;
+	private int					max_stack;
+
+	/* the width of what the expression being lowered is assigned to, as
+	 * Verilog sizes a shift left by it, or 0 outside an assignment and in
+	 * operands that are sized on their own */
+	private int					context_width;
+
+	/* set if the last instruction emitted is a CONST */
+	private boolean				is_const;
+	private int					const_value;
+
+	private boolean				is_sequential_pass;
+	private boolean				is_reporting;
+
+	/* the assigns and always @(*) blocks, and the clocked always blocks */
+	private List<ParseTree>		comb_blocks;
+	private List<ParseTree>		seq_blocks;
+	private boolean				is_combinational;
+	private boolean				is_sequential;
+
+	/* COUNT counters by the statement they count, so every pass over a
+	 * statement adds to the same one - see SimCoverage */
+	private boolean										is_profiling;
+	private IdentityHashMap<ParserRuleContext, Integer>	counters;
+	private ArrayList<Integer>							counter_lines;
+	private ArrayList<SimCoverage.Kind>					counter_kinds;
+
+	public SimCompiler(SimBinding binding)
+	{
+		this(binding, false);
+	}
+
+	/* A profiling compiler puts a COUNT before every statement, if arm and
+	 * case item */
+	public SimCompiler(SimBinding binding, boolean is_profiling)
+	{
+		this.binding = binding;
+		this.is_profiling = is_profiling;
+
+		this.errors = new ArrayList<String>();
+	}
+
+	public ArrayList<String> getErrors()
+	{
+		return errors;
+	}
+
+	/* Returns null if the module can't be simulated - see getErrors() */
+	public SimProgram compile(ParseTree root_tree)
+	{
+		start();
+
+		/* one program for the clock cycle and one for the combinational cycle
+		 * that leaves out the non-blocking assignments */
+		max_stack = 0;
+		comb_blocks = new ArrayList<ParseTree>();
+		seq_blocks = new ArrayList<ParseTree>();
+		is_reporting = true;
+		is_sequential_pass = false;
+		int[] comb_code = lower(root_tree);
+		is_reporting = false;
+		is_sequential_pass = true;
+		int[] seq_code = lower(root_tree);
+
+		if (!errors.isEmpty())
+		{
+			return null;
+		}
+
+		SimSchedule schedule = schedule();
+
+		return new SimProgram(binding.getSlotNames(), slot_masks, binding.getSlotInit(), slot_widths, binding.getLatchSlots(), binding.getCarrySlots(), binding.getParameterSlots(), binding.getInputSlots(), binding.getOutputSlots(), comb_code, seq_code, schedule, max_stack, value_words, to_long_array(constants), to_array(counter_lines), counter_kinds.toArray(new SimCoverage.Kind[counter_kinds.size()]));
+	}
+
+	/* The assigns and always blocks of the module for the tree walker's
+	 * step(): the combinational ones in the order step() settles them, then
+	 * the clocked ones. Returns null if the module can't be simulated - see
+	 * getErrors() */
+	public List<ParseTree> stepBlocks(ParseTree root_tree)
+	{
+		List<ParseTree> blocks;
+
+		start();
+
+		max_stack = 0;
+		comb_blocks = new ArrayList<ParseTree>();
+		seq_blocks = new ArrayList<ParseTree>();
+		is_reporting = true;
+		is_sequential_pass = false;
+		lower(root_tree);
+		is_reporting = false;
+
+		if (!errors.isEmpty())
+		{
+			return null;
+		}
+
+		blocks = new ArrayList<ParseTree>(sort_blocks(comb_blocks));
+		blocks.addAll(seq_blocks);
+
+		return blocks;
+	}
+
+	private void start()
+	{
+		int num_slots = binding.getNumSlots();
+
+		slot_masks = binding.getSlotMasks();
+		slot_widths = binding.getSlotWidths();
+		slot_bounds = new int[num_slots];
+		for (int i = 0; i < num_slots; i++)
+		{
+			/* parameters are stored unmasked so nothing is known about them */
+			slot_bounds[i] = binding.isParameter(i) ? -1 : slot_masks[i];
+		}
+
+		value_words = value_words();
+		constants = new ArrayList<Long>();
+		counters = new IdentityHashMap<ParserRuleContext, Integer>();
+		counter_lines = new ArrayList<Integer>();
+		counter_kinds = new ArrayList<SimCoverage.Kind>();
+	}
+
+	private int value_words()
+	{
+		int max_width = 0;
+
+		for (int i = 0; i < slot_widths.length; i++)
+		{
+			if (!binding.isParameter(i) && slot_widths[i] > max_width)
+			{
+				max_width = slot_widths[i];
+			}
+		}
+
+		return (max_width > 30) ? (max_width + 63) / 64 : 0;
+	}
+
+	private int[] lower(ParseTree root_tree)
+	{
+		code = new ArrayList<Integer>();
+		stack_depth = 0;
+
+		visit(root_tree);
+		emit(SimOpcode.END);
+
+		return to_array(code);
+	}
+
+	/* Lowers each block on its own with an END after it */
+	private void lower_blocks(List<ParseTree> blocks, int[] block_starts, int first_block)
+	{
+		for (int i = 0; i < blocks.size(); i++)
+		{
+			block_starts[first_block + i] = code.size();
+			stack_depth = 0;
+			visit(blocks.get(i));
+			emit(SimOpcode.END);
+		}
+	}
+
+	/* step() settles the combinational blocks once, each after the blocks that
+	 * drive it, and then runs the clock edge. A block only runs again when a
+	 * slot it loads has changed. */
+	private SimSchedule schedule()
+	{
+		int num_slots = binding.getNumSlots();
+		List<ParseTree> sorted_blocks = sort_blocks(comb_blocks);
+		int num_comb_blocks = sorted_blocks.size();
+		int num_blocks = num_comb_blocks + seq_blocks.size();
+		int[] block_starts = new int[num_blocks];
+		boolean[][] reads = new boolean[num_blocks][num_slots];
+		boolean[][] writes = new boolean[num_blocks][num_slots];
+		boolean[] edge_writes = new boolean[num_slots];
+		int[][] slot_readers = new int[num_slots][];
+		int[] latch_slots = binding.getLatchSlots();
+		int[] latch_blocks = new int[latch_slots.length];
+		boolean[] is_always_run = new boolean[num_blocks];
+		int[] step_code;
+
+		code = new ArrayList<Integer>();
+		is_sequential_pass = false;
+		lower_blocks(sorted_blocks, block_starts, 0);
+		is_sequential_pass = true;
+		lower_blocks(seq_blocks, block_starts, num_comb_blocks);
+		step_code = to_array(code);
+
+		for (int i = 0; i < num_blocks; i++)
+		{
+			int end = (i + 1 < num_blocks) ? block_starts[i + 1] : step_code.length;
+
+			collect_slots(step_code, block_starts[i], end, reads[i], writes[i]);
+			if (i >= num_comb_blocks)
+			{
+				collect_slots(step_code, block_starts[i], end, new boolean[num_slots], edge_writes);
+			}
+		}
+
+		for (int slot = 0; slot < num_slots; slot++)
+		{
+			ArrayList<Integer> readers = new ArrayList<Integer>();
+
+			for (int i = 0; i < num_blocks; i++)
+			{
+				if (reads[i][slot])
+				{
+					readers.add(i);
+				}
+			}
+			slot_readers[slot] = to_array(readers);
+		}
+
+		/* the latch check compares a slot's update time with when its block
+		 * last ran, which only works with one block assigning it */
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int num_writers = 0;
+
+			latch_blocks[i] = -1;
+			for (int j = 0; j < num_comb_blocks; j++)
+			{
+				if (writes[j][latch_slots[i]])
+				{
+					latch_blocks[i] = j;
+					num_writers++;
+				}
+			}
+			if (num_writers > 1)
+			{
+				latch_blocks[i] = -1;
+				for (int j = 0; j < num_comb_blocks; j++)
+				{
+					is_always_run[j] |= writes[j][latch_slots[i]];
+				}
+			}
+		}
+
+		return new SimSchedule(step_code, block_starts, num_comb_blocks, slot_readers, latch_blocks, is_always_run, to_slots(edge_writes), is_stateless(reads, writes, num_comb_blocks));
+	}
+
+	/* Without clocked blocks, the only state is a slot loaded before it's
+	 * assigned in the step, i.e. by its own block or one that runs earlier */
+	private boolean is_stateless(boolean[][] reads, boolean[][] writes, int num_comb_blocks)
+	{
+		if (num_comb_blocks != reads.length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < num_comb_blocks; i++)
+		{
+			for (int slot = 0; slot < reads[i].length; slot++)
+			{
+				if (!reads[i][slot])
+				{
+					continue;
+				}
+				for (int j = i; j < num_comb_blocks; j++)
+				{
+					if (writes[j][slot])
+					{
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/* Orders the combinational blocks so each one runs after every block that
+	 * writes something it reads. Blocks in a combinational loop can't be
+	 * ordered and run in source order. */
+	private List<ParseTree> sort_blocks(List<ParseTree> blocks)
+	{
+		int num_blocks = blocks.size();
+		int num_slots = binding.getNumSlots();
+		boolean[][] reads = new boolean[num_blocks][num_slots];
+		boolean[][] writes = new boolean[num_blocks][num_slots];
+		boolean[][] is_driven_by = new boolean[num_blocks][num_blocks];
+		int[] num_drivers = new int[num_blocks];
+		boolean[] is_placed = new boolean[num_blocks];
+		ArrayList<ParseTree> sorted = new ArrayList<ParseTree>();
+
+		is_sequential_pass = false;
+		for (int i = 0; i < num_blocks; i++)
+		{
+			int[] block_code = lower(blocks.get(i));
+
+			collect_slots(block_code, 0, block_code.length, reads[i], writes[i]);
+		}
+
+		for (int i = 0; i < num_blocks; i++)
+		{
+			for (int j = 0; j < num_blocks; j++)
+			{
+				if (i == j)
+				{
+					continue;
+				}
+				for (int slot = 0; slot < num_slots; slot++)
+				{
+					if (reads[i][slot] && writes[j][slot])
+					{
+						is_driven_by[i][j] = true;
+						num_drivers[i]++;
+						break;
+					}
+				}
+			}
+		}
+
+		while (sorted.size() < num_blocks)
+		{
+			int next = -1;
+
+			for (int i = 0; i < num_blocks && next == -1; i++)
+			{
+				if (!is_placed[i] && num_drivers[i] == 0)
+				{
+					next = i;
+				}
+			}
+			if (next == -1)
+			{
+				/* loop - take the first block left */
+				for (int i = 0; i < num_blocks && next == -1; i++)
+				{
+					if (!is_placed[i])
+					{
+						next = i;
+					}
+				}
+			}
+
+			is_placed[next] = true;
+			sorted.add(blocks.get(next));
+			for (int i = 0; i < num_blocks; i++)
+			{
+				if (is_driven_by[i][next])
+				{
+					num_drivers[i]--;
+				}
+			}
+		}
+
+		return sorted;
+	}
+
+	/* Marks the slots the code loads and the slots it stores to */
+	private void collect_slots(int[] program_code, int start, int end, boolean[] reads, boolean[] writes)
+	{
+		int pc = start;
+
+		while (pc < end)
+		{
+			int op = program_code[pc];
+
+			if (op == SimOpcode.LOAD || op == SimOpcode.LOAD_BIT)
+			{
+				reads[program_code[pc + 1]] = true;
+			}
+			else if (op == SimOpcode.STORE || op == SimOpcode.STORE_BITS)
+			{
+				writes[program_code[pc + 1]] = true;
+			}
+			pc += SimOpcode.length(program_code, pc);
+		}
+	}
+
+	private int[] to_slots(boolean[] is_slot)
+	{
+		ArrayList<Integer> slots = new ArrayList<Integer>();
+
+		for (int i = 0; i < is_slot.length; i++)
+		{
+			if (is_slot[i])
+			{
+				slots.add(i);
+			}
+		}
+
+		return to_array(slots);
+	}
+
+	private int[] to_array(ArrayList<Integer> list)
+	{
+		int[] array = new int[list.size()];
+
+		for (int i = 0; i < array.length; i++)
+		{
+			array[i] = list.get(i);
+		}
+
+		return array;
+	}
+
+	private long[] to_long_array(ArrayList<Long> list)
+	{
+		long[] array = new long[list.size()];
+
+		for (int i = 0; i < array.length; i++)
+		{
+			array[i] = list.get(i);
+		}
+
+		return array;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Errors and symbols
+	 * -------------------------------------------------------------------------- */
+	private void report(ParserRuleContext ctx, String msg)
+	{
+		/* every pass sees the same tree so only report from the first */
+		if (is_reporting)
+		{
+			errors.add("Error at line " + ctx.start.getLine() + ":" + ctx.start.getCharPositionInLine() + " " + msg);
+		}
+	}
+
+	/* parameters nothing assigns keep their declared value */
+	private boolean is_constant_slot(int slot)
+	{
+		return slot != SimBinding.NO_SLOT && binding.isParameter(slot) && !binding.isAssigned(slot);
+	}
+
+	private int resolve(Verilog2001Parser.IdentifierContext ident)
+	{
+		int slot = binding.getSlot(ident.start);
+
+		if (slot == SimBinding.NO_SLOT)
+		{
+			report(ident, "No item called: " + ident.getText());
+		}
+
+		return slot;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Emitting instructions
+	 * -------------------------------------------------------------------------- */
+	private void emit(int opcode)
+	{
+		is_const = false;
+		code.add(opcode);
+
+		stack_depth += SimOpcode.stackEffect(opcode);
+		if (stack_depth > max_stack)
+		{
+			max_stack = stack_depth;
+		}
+	}
+
+	private void emit(int opcode, int operand)
+	{
+		emit(opcode);
+		code.add(operand);
+	}
+
+	private void emit_const(int value)
+	{
+		emit(SimOpcode.CONST, value_operand(value));
+		/* folding is done in ints */
+		is_const = (value_words == 0);
+		const_value = value;
+	}
+
+	/* The operand for a value - the value itself, or where it is in the
+	 * constants of a wide program */
+	private int value_operand(int value)
+	{
+		long[] words;
+
+		if (value_words == 0)
+		{
+			return value;
+		}
+
+		words = new long[value_words];
+		SimWords.set(words, 0, value_words, value);
+
+		return constant(words);
+	}
+
+	private int mask_operand(int width)
+	{
+		long[] words = new long[value_words];
+
+		SimWords.mask(words, 0, value_words, width);
+
+		return constant(words);
+	}
+
+	private int constant(long[] words)
+	{
+		int num_constants = constants.size() / value_words;
+
+		for (int i = 0; i < num_constants; i++)
+		{
+			boolean is_same = true;
+
+			for (int j = 0; j < value_words && is_same; j++)
+			{
+				is_same = (constants.get(i * value_words + j) == words[j]);
+			}
+			if (is_same)
+			{
+				return i;
+			}
+		}
+
+		for (int j = 0; j < value_words; j++)
+		{
+			constants.add(words[j]);
+		}
+
+		return num_constants;
+	}
+
+	/* Replaces the code of an expression whose operands were all constants */
+	private void fold(int start, int num_operands, int value)
+	{
+		truncate(start);
+		stack_depth -= num_operands;
+		emit_const(value);
+	}
+
+	private void emit_unary(int start, int opcode)
+	{
+		if (is_const)
+		{
+			fold(start, 1, SimOpcode.evaluate(opcode, const_value));
+		}
+		else
+		{
+			emit(opcode);
+		}
+	}
+
+	/* The left operand's constness is passed in, the right one's is current */
+	private void emit_binary(int start, int opcode, boolean is_left_const, int left)
+	{
+		boolean is_div_by_zero = (opcode == SimOpcode.DIV || opcode == SimOpcode.MOD) && const_value == 0;
+
+		if (is_left_const && is_const && !is_div_by_zero)
+		{
+			fold(start, 2, SimOpcode.evaluate(opcode, left, const_value));
+		}
+		else
+		{
+			emit(opcode);
+		}
+	}
+
+	/* Emits the statement only to report its errors, for arms that can't be
+	 * taken */
+	private void skip_statement(Verilog2001Parser.StatementContext ctx, SimCoverage.Kind kind)
+	{
+		int start = code.size();
+
+		/* still given a counter, which shows it never runs */
+		emit_statement(ctx, kind);
+		truncate(start);
+	}
+
+	/* emits a jump and returns where its target has to be patched */
+	private int emit_jump(int opcode)
+	{
+		emit(opcode, -1);
+		return code.size() - 1;
+	}
+
+	private void patch_jump(int operand_idx)
+	{
+		code.set(operand_idx, code.size());
+	}
+
+	private void truncate(int size)
+	{
+		code.subList(size, code.size()).clear();
+		is_const = false;
+	}
+
+	/* Emits an if arm or case item. Returns true if it emitted any
+	 * instructions, which a profiling compiler always does. */
+	private boolean emit_statement(Verilog2001Parser.StatementContext ctx, SimCoverage.Kind kind)
+	{
+		int start = code.size();
+
+		emit_count(ctx, kind);
+		visit(ctx);
+
+		return code.size() > start;
+	}
+
+	private void emit_count(ParserRuleContext ctx, SimCoverage.Kind kind)
+	{
+		Integer counter;
+
+		/* a clocked block does nothing on a combinational cycle */
+		if (!is_profiling || (is_sequential && !is_sequential_pass))
+		{
+			return;
+		}
+
+		counter = counters.get(ctx);
+		if (counter == null)
+		{
+			counter = counter_lines.size();
+			counters.put(ctx, counter);
+			counter_lines.add(ctx.getStart().getLine());
+			counter_kinds.add(kind);
+		}
+		emit(SimOpcode.COUNT, counter);
+	}
+
+	/* Masks a result the way SimVisitor.setResult does */
+	private int emit_sized(int size)
+	{
+		if (size == -1)
+		{
+			return -1;
+		}
+
+		if (is_const)
+		{
+			fold(code.size() - 2, 1, const_value & ((1 << size) - 1));
+		}
+		else
+		{
+			emit(SimOpcode.MASK, value_operand((1 << size) - 1));
+		}
+
+		return (size > 30) ? 30 : size;
+	}
+
+	/* Size SimVisitor gives an arithmetic result - note it's the larger
+	 * operand mask that is passed on as the size */
+	private int wider_mask(int size1, int size2)
+	{
+		int mask1 = (1 << size1) - 1;
+		int mask2 = (1 << size2) - 1;
+
+		return (mask1 >= mask2) ? mask1 : mask2;
+	}
+
+	/* an operator in a wide program with an operand wider than 30 bits */
+	private boolean is_wide(int size1, int size2)
+	{
+		return value_words > 0 && (size1 > 30 || size2 > 30);
+	}
+
+	/* The INT_ opcode for an operator on narrow operands in a wide program,
+	 * where the plain one is unsigned, or else opcode itself */
+	private int int_opcode(int opcode, int size1, int size2)
+	{
+		if (value_words == 0 || is_wide(size1, size2))
+		{
+			return opcode;
+		}
+
+		switch (opcode)
+		{
+			case SimOpcode.DIV:
+				return SimOpcode.INT_DIV;
+			case SimOpcode.MOD:
+				return SimOpcode.INT_MOD;
+			case SimOpcode.SHL:
+				return SimOpcode.INT_SHL;
+			case SimOpcode.SHR:
+				return SimOpcode.INT_SHR;
+			case SimOpcode.LT:
+				return SimOpcode.INT_LT;
+			case SimOpcode.LTE:
+				return SimOpcode.INT_LTE;
+			case SimOpcode.GT:
+				return SimOpcode.INT_GT;
+			case SimOpcode.GTE:
+				return SimOpcode.INT_GTE;
+			default:
+				return opcode;
+		}
+	}
+
+	/* Masks a wide result to its width */
+	private int emit_width(int width)
+	{
+		if (width > 64 * value_words)
+		{
+			width = 64 * value_words;
+		}
+		emit(SimOpcode.MASK, mask_operand(width));
+
+		return width;
+	}
+
+	/* the slot mask for a store */
+	private int slot_mask_operand(int slot)
+	{
+		if (value_words > 0 && slot_widths[slot] > 30 && !binding.isParameter(slot))
+		{
+			return mask_operand(slot_widths[slot]);
+		}
+
+		return value_operand(slot_masks[slot]);
+	}
+
+	private void emit_store(Verilog2001Parser.Variable_lvalueContext ctx)
+	{
+		String ident = ctx.identifier().getText();
+		int slot = binding.getSlot(ctx.identifier().start);
+
+		if (slot == SimBinding.NO_SLOT)
+		{
+			report(ctx, "No left hand side called: " + ident);
+			emit(SimOpcode.POP);
+			return;
+		}
+		else if (binding.isInput(slot))
+		{
+			report(ctx, "Can't assign to input: " + ident);
+			emit(SimOpcode.POP);
+			return;
+		}
+
+		if (ctx.range_expression() == null)
+		{
+			emit(SimOpcode.STORE, slot);
+			code.add(slot_mask_operand(slot));
+		}
+		else
+		{
+			Verilog2001Parser.Range_expressionContext range = ctx.range_expression();
+			int msb;
+			int lsb;
+
+			if (range.decimal_number() != null)
+			{
+				msb = decimal_value(range.decimal_number());
+				lsb = msb;
+			}
+			else
+			{
+				msb = decimal_value(range.msb_constant_expression().decimal_number());
+				lsb = decimal_value(range.lsb_constant_expression().decimal_number());
+			}
+
+			if (msb < lsb)
+			{
+				report(ctx, "Bad range on: " + ident);
+			}
+
+			emit(SimOpcode.STORE_BITS, slot);
+			code.add(lsb);
+			if (value_words > 0)
+			{
+				code.add(mask_operand(msb - lsb + 1));
+			}
+			else
+			{
+				code.add((msb - lsb + 1 >= 32) ? -1 : (1 << (msb - lsb + 1)) - 1);
+			}
+			code.add(slot_mask_operand(slot));
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Numbers
+	 * -------------------------------------------------------------------------- */
+	private List<TerminalNode> number_digits(Verilog2001Parser.NumberContext ctx)
+	{
+		if (ctx.binary_number() != null)
+		{
+			return ctx.binary_number().Unsigned_number();
+		}
+		else if (ctx.octal_number() != null)
+		{
+			return ctx.octal_number().Unsigned_number();
+		}
+		else if (ctx.hex_number() != null)
+		{
+			return ctx.hex_number().Unsigned_number();
+		}
+
+		return ctx.decimal_number().Unsigned_number();
+	}
+
+	private int number_radix(Verilog2001Parser.NumberContext ctx)
+	{
+		if (ctx.binary_number() != null)
+		{
+			return 2;
+		}
+		else if (ctx.octal_number() != null)
+		{
+			return 8;
+		}
+		else if (ctx.hex_number() != null)
+		{
+			return 16;
+		}
+
+		return 10;
+	}
+
+	/* numbers without a size are 30 bits like everything else */
+	private int number_size(Verilog2001Parser.NumberContext ctx)
+	{
+		List<TerminalNode> digits = number_digits(ctx);
+
+		if (digits.size() == 1)
+		{
+			return 30;
+		}
+
+		return parse_number(ctx, digits.get(0).getText(), 10);
+	}
+
+	private int number_value(Verilog2001Parser.NumberContext ctx)
+	{
+		List<TerminalNode> digits = number_digits(ctx);
+		int value = parse_number(ctx, digits.get(digits.size() - 1).getText(), number_radix(ctx));
+
+		return value & ((1 << number_size(ctx)) - 1);
+	}
+
+	/* a number wider than 30 bits in a wide program, as its words */
+	private long[] wide_number_value(Verilog2001Parser.NumberContext ctx, int size)
+	{
+		List<TerminalNode> digits = number_digits(ctx);
+		String text = digits.get(digits.size() - 1).getText();
+		long[] words = new long[value_words];
+		BigInteger value;
+
+		try
+		{
+			value = new BigInteger(text, number_radix(ctx));
+		}
+		catch (NumberFormatException e)
+		{
+			report(ctx, "Bad number: " + text);
+			value = BigInteger.ZERO;
+		}
+
+		for (int i = 0; i < value_words; i++)
+		{
+			words[i] = value.shiftRight(64 * i).longValue();
+			if (size - 64 * i < 64)
+			{
+				words[i] &= (size - 64 * i <= 0) ? 0 : SimWords.mask(size - 64 * i);
+			}
+		}
+
+		return words;
+	}
+
+	private int decimal_value(Verilog2001Parser.Decimal_numberContext ctx)
+	{
+		List<TerminalNode> digits = ctx.Unsigned_number();
+
+		return parse_number(ctx, digits.get(digits.size() - 1).getText(), 10);
+	}
+
+	private int parse_number(ParserRuleContext ctx, String text, int radix)
+	{
+		try
+		{
+			return Integer.parseInt(text, radix);
+		}
+		catch (NumberFormatException e)
+		{
+			report(ctx, "Bad number: " + text);
+			return 0;
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Module items - only assigns and always blocks do anything in a cycle
+	 * -------------------------------------------------------------------------- */
+	@Override
+	public Integer visitModule_declaration(
+			Verilog2001Parser.Module_declarationContext ctx)
+	{
+		for (int i = 0; i < ctx.module_item().size(); i++)
+		{
+			Verilog2001Parser.Module_itemContext item = ctx.module_item(i);
+
+			if (item.continuous_assign() != null)
+			{
+				visit(item.continuous_assign());
+				if (is_reporting)
+				{
+					comb_blocks.add(item.continuous_assign());
+				}
+			}
+			else if (item.always_construct() != null)
+			{
+				visit(item.always_construct());
+				if (is_reporting)
+				{
+					if (item.always_construct() instanceof Verilog2001Parser.SEQUENTIAL_ALWAYSContext)
+					{
+						seq_blocks.add(item.always_construct());
+					}
+					else
+					{
+						comb_blocks.add(item.always_construct());
+					}
+				}
+			}
+			else if (item.module_instantiation() != null)
+			{
+				visit_instances(item.module_instantiation());
+			}
+		}
+
+		return null;
+	}
+
+	/* the blocks of an instance are lowered into this program as if they
+	 * were written here, since its identifiers are bound to their own
+	 * slots */
+	private void visit_instances(Verilog2001Parser.Module_instantiationContext ctx)
+	{
+		for (int i = 0; i < ctx.module_instance().size(); i++)
+		{
+			Verilog2001Parser.Module_declarationContext module = binding.getInstanceModule(ctx.module_instance(i));
+
+			if (module != null)
+			{
+				visit(module);
+			}
+		}
+	}
+
+	@Override
+	public Integer visitCOMBONATIONAL_ALWAYS(
+			Verilog2001Parser.COMBONATIONAL_ALWAYSContext ctx)
+	{
+		is_combinational = true;
+		visit(ctx.statement());
+		is_combinational = false;
+
+		return null;
+	}
+
+	@Override
+	public Integer visitSEQUENTIAL_ALWAYS(
+			Verilog2001Parser.SEQUENTIAL_ALWAYSContext ctx)
+	{
+		is_sequential = true;
+		visit(ctx.statement());
+		is_sequential = false;
+
+		return null;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Statements
+	 * -------------------------------------------------------------------------- */
+	@Override
+	public Integer visitContinuous_assign(
+			Verilog2001Parser.Continuous_assignContext ctx)
+	{
+		emit_count(ctx, SimCoverage.Kind.STATEMENT);
+		visit_assigned(ctx.expression(), ctx.variable_lvalue());
+		emit_store(ctx.variable_lvalue());
+
+		return null;
+	}
+
+	/* Lowers the right side of an assignment with the width of its left side
+	 * as the context */
+	private void visit_assigned(
+			Verilog2001Parser.ExpressionContext expression,
+			Verilog2001Parser.Variable_lvalueContext lvalue)
+	{
+		context_width = store_width(lvalue);
+		visit(expression);
+		context_width = 0;
+	}
+
+	/* The number of bits a store to the left side writes, or 0 outside a
+	 * wide program, where nothing is sized by its context */
+	private int store_width(Verilog2001Parser.Variable_lvalueContext ctx)
+	{
+		int slot = binding.getSlot(ctx.identifier().start);
+		Verilog2001Parser.Range_expressionContext range = ctx.range_expression();
+		boolean was_reporting = is_reporting;
+		int width;
+
+		if (value_words == 0 || slot == SimBinding.NO_SLOT || binding.isParameter(slot))
+		{
+			return 0;
+		}
+		if (range == null)
+		{
+			return slot_widths[slot];
+		}
+
+		/* emit_store reports a bad range */
+		is_reporting = false;
+		if (range.decimal_number() != null)
+		{
+			width = 1;
+		}
+		else
+		{
+			width = decimal_value(range.msb_constant_expression().decimal_number()) - decimal_value(range.lsb_constant_expression().decimal_number()) + 1;
+		}
+		is_reporting = was_reporting;
+
+		return Math.max(0, width);
+	}
+
+	/* Lowers an operand Verilog sizes on its own, like a shift amount or
+	 * the operands of a compare, whatever it is assigned to */
+	private int visit_self_determined(ParseTree ctx)
+	{
+		int outer_width = context_width;
+		int size;
+
+		context_width = 0;
+		size = visit(ctx);
+		context_width = outer_width;
+
+		return size;
+	}
+
+	@Override
+	public Integer visitBlocking_assignment(
+			Verilog2001Parser.Blocking_assignmentContext ctx)
+	{
+		if (!is_combinational)
+		{
+			/* ignored, SimAnalysis reports it */
+			return null;
+		}
+
+		emit_count(ctx, SimCoverage.Kind.STATEMENT);
+		visit_assigned(ctx.expression(), ctx.variable_lvalue());
+		emit_store(ctx.variable_lvalue());
+
+		return null;
+	}
+
+	@Override
+	public Integer visitNonblocking_assignment(
+			Verilog2001Parser.Nonblocking_assignmentContext ctx)
+	{
+		if (!is_sequential)
+		{
+			/* ignored, SimAnalysis reports it */
+			return null;
+		}
+
+		/* Only store on simulate cycles */
+		if (is_sequential_pass)
+		{
+			emit_count(ctx, SimCoverage.Kind.STATEMENT);
+			visit_assigned(ctx.expression(), ctx.variable_lvalue());
+			emit_store(ctx.variable_lvalue());
+		}
+
+		return null;
+	}
+
+	@Override
+	public Integer visitConditional_statement(
+			Verilog2001Parser.Conditional_statementContext ctx)
+	{
+		ArrayList<Integer> end_jumps = new ArrayList<Integer>();
+		int start = code.size();
+		int num_statements = ctx.statement().size();
+		boolean is_empty = true;
+
+		for (int i = 0; i < num_statements; i++)
+		{
+			/* ELSE statment */
+			boolean is_taken = (ctx.expression(i) == null && i == num_statements - 1);
+
+			if (!is_taken)
+			{
+				int condition_start = code.size();
+
+				visit(ctx.expression(i));
+				if (is_const)
+				{
+					int condition = const_value;
+
+					truncate(condition_start);
+					stack_depth--;
+					if (condition == 0)
+					{
+						skip_statement(ctx.statement(i), SimCoverage.Kind.BRANCH);
+						continue;
+					}
+					is_taken = true;
+				}
+			}
+
+			if (is_taken)
+			{
+				/* nothing after this arm can be reached */
+				is_empty &= !emit_statement(ctx.statement(i), SimCoverage.Kind.BRANCH);
+				for (int j = i + 1; j < num_statements; j++)
+				{
+					skip_statement(ctx.statement(j), SimCoverage.Kind.BRANCH);
+				}
+				break;
+			}
+
+			int next_jump = emit_jump(SimOpcode.JUMP_IF_ZERO);
+
+			is_empty &= !emit_statement(ctx.statement(i), SimCoverage.Kind.BRANCH);
+
+			if (i < num_statements - 1)
+			{
+				end_jumps.add(emit_jump(SimOpcode.JUMP));
+			}
+			patch_jump(next_jump);
+		}
+
+		for (int i = 0; i < end_jumps.size(); i++)
+		{
+			patch_jump(end_jumps.get(i));
+		}
+
+		if (is_empty)
+		{
+			/* nothing happens in this cycle so don't test the conditions */
+			truncate(start);
+		}
+
+		return null;
+	}
+
+	@Override
+	public
+			Integer
+			visitCase_statement(Verilog2001Parser.Case_statementContext ctx)
+	{
+		ArrayList<Integer> end_jumps = new ArrayList<Integer>();
+		/* constant labels tested so far - a repeat can never match */
+		ArrayList<Integer> const_labels = new ArrayList<Integer>();
+		int start = code.size();
+		boolean is_empty = true;
+		boolean has_default = false;
+		boolean is_case_const;
+		int case_value;
+
+		/* the case expression stays on the stack until an item matches */
+		visit(ctx.expression());
+		is_case_const = is_const;
+		case_value = const_value;
+
+		if (!is_case_const)
+		{
+			int[] labels = case_labels(ctx);
+
+			if (labels != null && is_case_table(labels))
+			{
+				emit_case_table(ctx, labels, start);
+				return null;
+			}
+		}
+
+		for (int i = 0; i < ctx.case_item().size(); i++)
+		{
+			Verilog2001Parser.Case_itemContext item = ctx.case_item(i);
+
+			if (item instanceof Verilog2001Parser.FCASE_ITEMContext)
+			{
+				Verilog2001Parser.FCASE_ITEMContext fcase = (Verilog2001Parser.FCASE_ITEMContext) item;
+				int label_start = code.size();
+
+				visit(fcase.expression());
+
+				if (is_const)
+				{
+					int label = const_value;
+
+					if (const_labels.contains(label) || (is_case_const && label != case_value))
+					{
+						truncate(label_start);
+						stack_depth--;
+						skip_statement(fcase.statement(), SimCoverage.Kind.CASE_ARM);
+						continue;
+					}
+					if (is_case_const)
+					{
+						/* always matches - the rest can't be reached */
+						truncate(label_start);
+						stack_depth--;
+						emit_pop_case(start);
+						is_empty &= !emit_statement(fcase.statement(), SimCoverage.Kind.CASE_ARM);
+						skip_items(ctx, i + 1);
+						has_default = true;
+						break;
+					}
+					const_labels.add(label);
+				}
+
+				int next_jump = emit_jump(SimOpcode.CASE_NE);
+
+				emit(SimOpcode.POP);
+				is_empty &= !emit_statement(fcase.statement(), SimCoverage.Kind.CASE_ARM);
+				end_jumps.add(emit_jump(SimOpcode.JUMP));
+
+				/* the case expression is still there if the item didn't match */
+				stack_depth++;
+				patch_jump(next_jump);
+			}
+			else
+			{
+				/* If we get to the default then it's true */
+				emit_pop_case(start);
+				is_empty &= !emit_statement(((Verilog2001Parser.DEFAULTContext) item).statement(), SimCoverage.Kind.CASE_ARM);
+				has_default = true;
+				break;
+			}
+		}
+
+		if (!has_default)
+		{
+			emit_pop_case(start);
+		}
+
+		for (int i = 0; i < end_jumps.size(); i++)
+		{
+			patch_jump(end_jumps.get(i));
+		}
+
+		if (is_empty)
+		{
+			truncate(start);
+		}
+
+		return null;
+	}
+
+	/* The labels of the items before the default, or null if one of them
+	 * isn't a constant */
+	private int[] case_labels(Verilog2001Parser.Case_statementContext ctx)
+	{
+		ArrayList<Integer> labels = new ArrayList<Integer>();
+		boolean was_reporting = is_reporting;
+
+		/* the items report their errors when they're lowered */
+		is_reporting = false;
+		for (int i = 0; i < ctx.case_item().size() && labels != null; i++)
+		{
+			Verilog2001Parser.Case_itemContext item = ctx.case_item(i);
+			int start = code.size();
+
+			if (!(item instanceof Verilog2001Parser.FCASE_ITEMContext))
+			{
+				break;
+			}
+
+			visit(((Verilog2001Parser.FCASE_ITEMContext) item).expression());
+			if (is_const)
+			{
+				labels.add(const_value);
+			}
+			else
+			{
+				labels = null;
+			}
+			truncate(start);
+			stack_depth--;
+		}
+		is_reporting = was_reporting;
+
+		return (labels != null) ? to_array(labels) : null;
+	}
+
+	private boolean is_case_table(int[] labels)
+	{
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		long size;
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			min = Math.min(min, labels[i]);
+			max = Math.max(max, labels[i]);
+		}
+		size = (long) max - min + 1;
+
+		return labels.length >= MIN_CASE_TABLE_LABELS && size <= MAX_CASE_TABLE && size <= 4L * labels.length;
+	}
+
+	/* Lowers a case with constant labels to a SWITCH that goes straight to
+	 * the item for the case expression instead of testing the labels in turn.
+	 * Values with no item go to the default, or past the case. */
+	private void emit_case_table(Verilog2001Parser.Case_statementContext ctx, int[] labels, int start)
+	{
+		ArrayList<Integer> end_jumps = new ArrayList<Integer>();
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		int table;
+		int default_target;
+		boolean is_empty = true;
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			min = Math.min(min, labels[i]);
+			max = Math.max(max, labels[i]);
+		}
+
+		emit(SimOpcode.SWITCH, min);
+		code.add(max - min + 1);
+		code.add(-1);
+		table = code.size();
+		for (int i = min; i <= max; i++)
+		{
+			code.add(-1);
+		}
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			Verilog2001Parser.FCASE_ITEMContext fcase = (Verilog2001Parser.FCASE_ITEMContext) ctx.case_item(i);
+			int label_start = code.size();
+
+			/* the label only for its errors */
+			visit(fcase.expression());
+			truncate(label_start);
+			stack_depth--;
+
+			if (code.get(table + labels[i] - min) != -1)
+			{
+				/* a repeat can never match */
+				skip_statement(fcase.statement(), SimCoverage.Kind.CASE_ARM);
+				continue;
+			}
+
+			code.set(table + labels[i] - min, code.size());
+			is_empty &= !emit_statement(fcase.statement(), SimCoverage.Kind.CASE_ARM);
+			end_jumps.add(emit_jump(SimOpcode.JUMP));
+		}
+
+		default_target = code.size();
+		if (labels.length < ctx.case_item().size())
+		{
+			is_empty &= !emit_statement(((Verilog2001Parser.DEFAULTContext) ctx.case_item(labels.length)).statement(), SimCoverage.Kind.CASE_ARM);
+		}
+
+		code.set(table - 1, default_target);
+		for (int i = table; i <= table + max - min; i++)
+		{
+			if (code.get(i) == -1)
+			{
+				code.set(i, default_target);
+			}
+		}
+		for (int i = 0; i < end_jumps.size(); i++)
+		{
+			patch_jump(end_jumps.get(i));
+		}
+
+		if (is_empty)
+		{
+			truncate(start);
+		}
+	}
+
+	/* Pops the case expression, or takes its CONST back out if no item needed
+	 * it */
+	private void emit_pop_case(int start)
+	{
+		if (code.size() == start + SimOpcode.length(SimOpcode.CONST) && code.get(start) == SimOpcode.CONST)
+		{
+			truncate(start);
+			stack_depth--;
+		}
+		else
+		{
+			emit(SimOpcode.POP);
+		}
+	}
+
+	private void skip_items(Verilog2001Parser.Case_statementContext ctx, int first_item)
+	{
+		for (int i = first_item; i < ctx.case_item().size(); i++)
+		{
+			Verilog2001Parser.Case_itemContext item = ctx.case_item(i);
+
+			if (item instanceof Verilog2001Parser.FCASE_ITEMContext)
+			{
+				int start = code.size();
+
+				/* the label too, for its errors */
+				visit(((Verilog2001Parser.FCASE_ITEMContext) item).expression());
+				truncate(start);
+				stack_depth--;
+				skip_statement(((Verilog2001Parser.FCASE_ITEMContext) item).statement(), SimCoverage.Kind.CASE_ARM);
+			}
+			else
+			{
+				skip_statement(((Verilog2001Parser.DEFAULTContext) item).statement(), SimCoverage.Kind.CASE_ARM);
+				break;
+			}
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Expressions
+	 * -------------------------------------------------------------------------- */
+	@Override
+	public Integer visitUMINUS(Verilog2001Parser.UMINUSContext ctx)
+	{
+		int start = code.size();
+		int size = visit(ctx.expression());
+
+		emit_unary(start, SimOpcode.NEG);
+
+		/* a wide operand keeps its width, so what it's used in stays wide */
+		return is_wide(size, size) ? emit_width(size) : -1;
+	}
+
+	@Override
+	public Integer visitUNOT(Verilog2001Parser.UNOTContext ctx)
+	{
+		int start = code.size();
+		int size = visit(ctx.expression());
+
+		emit_unary(start, SimOpcode.NOT);
+
+		return is_wide(size, size) ? emit_width(size) : -1;
+	}
+
+	@Override
+	public Integer visitMULT_DIV_MOD(Verilog2001Parser.MULT_DIV_MODContext ctx)
+	{
+		int start = code.size();
+		int size1 = visit(ctx.expression(0));
+		boolean is_left_const = is_const;
+		int left = const_value;
+		int size2 = visit(ctx.expression(1));
+		int mask = wider_mask(size1, size2);
+		boolean is_wide = is_wide(size1, size2);
+
+		switch (ctx.op.getType())
+		{
+			case (Verilog2001Parser.MULT):
+			{
+				emit_binary(start, SimOpcode.MUL, is_left_const, left);
+				if (is_wide)
+				{
+					/* an unsized operand can have any width */
+					return emit_width((size1 == -1 || size2 == -1) ? 64 * value_words : size1 + size2);
+				}
+				return emit_sized(2 * mask);
+			}
+			case (Verilog2001Parser.DIV):
+			{
+				emit_binary(start, int_opcode(SimOpcode.DIV, size1, size2), is_left_const, left);
+				return is_wide ? emit_width(Math.max(size1, size2)) : emit_sized(mask);
+			}
+			default:
+			{
+				emit_binary(start, int_opcode(SimOpcode.MOD, size1, size2), is_left_const, left);
+				return is_wide ? emit_width(Math.max(size1, size2)) : emit_sized(mask);
+			}
+		}
+	}
+
+	@Override
+	public Integer visitADD_SUB(Verilog2001Parser.ADD_SUBContext ctx)
+	{
+		int start = code.size();
+		int size1 = visit(ctx.expression(0));
+		boolean is_left_const = is_const;
+		int left = const_value;
+		int size2 = visit(ctx.expression(1));
+
+		emit_binary(start, (ctx.op.getType() == Verilog2001Parser.ADD) ? SimOpcode.ADD : SimOpcode.SUB, is_left_const, left);
+
+		if (is_wide(size1, size2))
+		{
+			return emit_width(Math.max(size1, size2));
+		}
+
+		return emit_sized(wider_mask(size1, size2));
+	}
+
+	@Override
+	public Integer visitBLOGIC(Verilog2001Parser.BLOGICContext ctx)
+	{
+		int start = code.size();
+		int size1 = visit(ctx.expression(0));
+		boolean is_left_const = is_const;
+		int left = const_value;
+		boolean is_shift = ctx.op.getType() == Verilog2001Parser.SHIFT_LEFT || ctx.op.getType() == Verilog2001Parser.SHIFT_RIGHT;
+		int size2 = is_shift ? visit_self_determined(ctx.expression(1)) : visit(ctx.expression(1));
+		int opcode;
+
+		switch (ctx.op.getType())
+		{
+			case (Verilog2001Parser.BITWISE_AND):
+				opcode = SimOpcode.AND;
+				break;
+			case (Verilog2001Parser.BITWISE_NAND):
+				opcode = SimOpcode.NAND;
+				break;
+			case (Verilog2001Parser.BITWISE_OR):
+				opcode = SimOpcode.OR;
+				break;
+			case (Verilog2001Parser.BITWISE_NOR):
+				opcode = SimOpcode.NOR;
+				break;
+			case (Verilog2001Parser.BITWISE_XOR):
+				opcode = SimOpcode.XOR;
+				break;
+			case (Verilog2001Parser.BITWISE_XNOR):
+				opcode = SimOpcode.XNOR;
+				break;
+			case (Verilog2001Parser.SHIFT_LEFT):
+				opcode = SimOpcode.SHL;
+				break;
+			default:
+				opcode = SimOpcode.SHR;
+				break;
+		}
+		/* bits shifted past a narrow operand stay in a wider context, as
+		 * the operand is widened to it first */
+		if (opcode == SimOpcode.SHL && value_words > 0 && context_width > 30)
+		{
+			emit_binary(start, opcode, is_left_const, left);
+			return emit_width(Math.max(Math.max(size1, size2), context_width));
+		}
+		emit_binary(start, int_opcode(opcode, size1, size2), is_left_const, left);
+		if (is_wide(size1, size2))
+		{
+			return emit_width(Math.max(size1, size2));
+		}
+
+		return emit_sized(wider_mask(size1, size2));
+	}
+
+	@Override
+	public Integer visitCOMPARES(Verilog2001Parser.COMPARESContext ctx)
+	{
+		int start = code.size();
+		boolean is_left_const;
+		int left;
+		int size1;
+		int size2;
+		int opcode;
+
+		size1 = visit_self_determined(ctx.expression(0));
+		is_left_const = is_const;
+		left = const_value;
+		size2 = visit_self_determined(ctx.expression(1));
+
+		switch (ctx.op.getType())
+		{
+			case (Verilog2001Parser.NOTEQUAL):
+				opcode = SimOpcode.NE;
+				break;
+			case (Verilog2001Parser.EQUAL):
+				opcode = SimOpcode.EQ;
+				break;
+			case (Verilog2001Parser.LT):
+				opcode = SimOpcode.LT;
+				break;
+			case (Verilog2001Parser.LTE):
+				opcode = SimOpcode.LTE;
+				break;
+			case (Verilog2001Parser.GT):
+				opcode = SimOpcode.GT;
+				break;
+			default:
+				opcode = SimOpcode.GTE;
+				break;
+		}
+		emit_binary(start, int_opcode(opcode, size1, size2), is_left_const, left);
+
+		return -1;
+	}
+
+	@Override
+	public Integer visitLNOT(Verilog2001Parser.LNOTContext ctx)
+	{
+		int start = code.size();
+
+		visit_self_determined(ctx.expression(0));
+		emit_unary(start, SimOpcode.LNOT);
+
+		return -1;
+	}
+
+	@Override
+	public Integer visitLAND(Verilog2001Parser.LANDContext ctx)
+	{
+		int start = code.size();
+		boolean is_left_const;
+		int left;
+
+		visit_self_determined(ctx.expression(0));
+		is_left_const = is_const;
+		left = const_value;
+		visit_self_determined(ctx.expression(1));
+		emit_binary(start, SimOpcode.LAND, is_left_const, left);
+
+		return -1;
+	}
+
+	@Override
+	public Integer visitLOR(Verilog2001Parser.LORContext ctx)
+	{
+		int start = code.size();
+		boolean is_left_const;
+		int left;
+
+		visit_self_determined(ctx.expression(0));
+		is_left_const = is_const;
+		left = const_value;
+		visit_self_determined(ctx.expression(1));
+		emit_binary(start, SimOpcode.LOR, is_left_const, left);
+
+		return -1;
+	}
+
+	@Override
+	public Integer visitQUES(Verilog2001Parser.QUESContext ctx)
+	{
+		report(ctx, "? is not implemented yet");
+		emit(SimOpcode.CONST, value_operand(0));
+
+		return -1;
+	}
+
+	@Override
+	public Integer visitBRACKETS(Verilog2001Parser.BRACKETSContext ctx)
+	{
+		/* just pass results up */
+		return visit(ctx.expression());
+	}
+
+	@Override
+	public Integer visitIDENT(Verilog2001Parser.IDENTContext ctx)
+	{
+		return visit(ctx.identifier_types());
+	}
+
+	@Override
+	public Integer visitBIT_ACCESS(Verilog2001Parser.BIT_ACCESSContext ctx)
+	{
+		int slot = resolve(ctx.identifier());
+		int bit = number_value(ctx.constant_expression().number());
+
+		if (is_constant_slot(slot))
+		{
+			emit_const(((binding.getSlotInit()[slot] & (1 << bit)) > 0) ? 1 : 0);
+			return 1;
+		}
+
+		emit(SimOpcode.LOAD_BIT, slot);
+		if (value_words > 0)
+		{
+			long[] words = new long[value_words];
+
+			if (bit >= 0 && bit < 64 * value_words)
+			{
+				SimWords.setBit(words, 0, bit);
+			}
+			code.add(constant(words));
+		}
+		else
+		{
+			code.add(1 << bit);
+		}
+
+		return 1;
+	}
+
+	@Override
+	public Integer visitGENERAL(Verilog2001Parser.GENERALContext ctx)
+	{
+		int slot = resolve(ctx.identifier());
+
+		if (is_constant_slot(slot))
+		{
+			emit_const(binding.getSlotInit()[slot]);
+		}
+		else
+		{
+			emit(SimOpcode.LOAD, slot);
+		}
+
+		if (value_words > 0 && slot >= 0 && !binding.isParameter(slot) && slot_widths[slot] > 30)
+		{
+			return slot_widths[slot];
+		}
+		if (slot < 0 || (slot_bounds[slot] & ~((1 << 30) - 1)) != 0)
+		{
+			/* only needed if the value can be wider than 30 bits */
+			return emit_sized(30);
+		}
+
+		return 30;
+	}
+
+	@Override
+	public Integer visitINUMBER(Verilog2001Parser.INUMBERContext ctx)
+	{
+		int size = number_size(ctx.number());
+
+		if (value_words > 0 && size > 30)
+		{
+			emit(SimOpcode.CONST, constant(wide_number_value(ctx.number(), size)));
+			return Math.min(size, 64 * value_words);
+		}
+
+		emit_const(number_value(ctx.number()));
+
+		return (size > 30) ? 30 : size;
+	}
+}
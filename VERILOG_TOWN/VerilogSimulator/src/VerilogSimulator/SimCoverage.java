@@ -0,0 +1,191 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/* How often each statement, if arm and case item of a module ran, from the
+ * counters of a program compiled for profiling (see Parse.setProfiling). Each
+ * counter is a point in the source found from its first token, and a point
+ * that never ran is code the simulation didn't reach. */
+public final class SimCoverage
+{
+	public enum Kind
+	{
+		/* an assign, = or <= */
+		STATEMENT,
+		/* the statement of an if or an else */
+		BRANCH,
+		/* the statement of a case item or the default */
+		CASE_ARM
+	}
+
+	private final int[]		lines;
+	private final Kind[]	kinds;
+	private final long[]	counts;
+
+	/* a copy of counts, so the engine can keep counting */
+	SimCoverage(SimProgram program, long[] counts)
+	{
+		int num_points = program.getNumCounters();
+
+		this.lines = new int[num_points];
+		this.kinds = new Kind[num_points];
+		this.counts = Arrays.copyOf(counts, num_points);
+		for (int i = 0; i < num_points; i++)
+		{
+			lines[i] = program.getCounterLine(i);
+			kinds[i] = program.getCounterKind(i);
+		}
+	}
+
+	public int getNumPoints()
+	{
+		return counts.length;
+	}
+
+	public int getLine(int point)
+	{
+		return lines[point];
+	}
+
+	public Kind getKind(int point)
+	{
+		return kinds[point];
+	}
+
+	public long getCount(int point)
+	{
+		return counts[point];
+	}
+
+	/* number of points that ran at least once */
+	public int getNumCovered()
+	{
+		int num_covered = 0;
+
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (counts[i] > 0)
+			{
+				num_covered++;
+			}
+		}
+
+		return num_covered;
+	}
+
+	/* The count of the most run point on each line, indexed by line - 1, or
+	 * -1 for a line with no points. For heatmaps. */
+	public long[] getLineCounts(int num_lines)
+	{
+		long[] line_counts = new long[num_lines];
+
+		Arrays.fill(line_counts, -1);
+		for (int i = 0; i < counts.length; i++)
+		{
+			if (lines[i] >= 1 && lines[i] <= num_lines)
+			{
+				line_counts[lines[i] - 1] = Math.max(line_counts[lines[i] - 1], counts[i]);
+			}
+		}
+
+		return line_counts;
+	}
+
+	/* Every point in line order with its count, then the ones that never
+	 * ran */
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		Integer[] order = new Integer[counts.length];
+		int num_covered = getNumCovered();
+
+		for (int i = 0; i < order.length; i++)
+		{
+			order[i] = i;
+		}
+		/* stable, so points on one line stay in the order they run */
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return lines[a] - lines[b];
+			}
+		});
+
+		report.append("Coverage: ").append(num_covered).append(" of ").append(counts.length).append(" points ran");
+		if (counts.length > 0)
+		{
+			report.append(" (").append(100 * num_covered / counts.length).append("%)");
+		}
+		report.append("\n\n");
+
+		report.append(String.format("%6s  %-10s %12s%n", "line", "kind", "count"));
+		for (int i = 0; i < order.length; i++)
+		{
+			report.append(String.format("%6d  %-10s %12d%n", lines[order[i]], kind_name(kinds[order[i]]), counts[order[i]]));
+		}
+
+		if (num_covered < counts.length)
+		{
+			report.append("\nNever ran:\n");
+			for (int i = 0; i < order.length; i++)
+			{
+				if (counts[order[i]] == 0)
+				{
+					report.append(String.format("%6d  %s%n", lines[order[i]], kind_name(kinds[order[i]])));
+				}
+			}
+		}
+
+		return report.toString();
+	}
+
+	public void writeReport(File file) throws IOException
+	{
+		Writer writer = new FileWriter(file);
+
+		try
+		{
+			writer.write(getReport());
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static String kind_name(Kind kind)
+	{
+		return kind.name().toLowerCase().replace('_', ' ');
+	}
+}
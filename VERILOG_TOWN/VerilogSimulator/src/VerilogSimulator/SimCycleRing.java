@@ -0,0 +1,86 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.io.IOException;
+
+/* The values of every slot for the last num_cycles samples, kept in memory
+ * so a run can be written out as a waveform after something goes wrong,
+ * e.g. when cars crash. A sample copies the values over the oldest one, so
+ * keeping them costs no allocation. */
+public class SimCycleRing
+{
+	private long[][]	values;
+	private long[]		times;
+	/* where the next sample goes */
+	private int			next;
+	private int			num_samples;
+
+	public SimCycleRing(int num_cycles, int num_values)
+	{
+		if (num_cycles < 1)
+		{
+			throw new IllegalArgumentException("A ring needs room for a cycle");
+		}
+
+		this.values = new long[num_cycles][num_values];
+		this.times = new long[num_cycles];
+		this.next = 0;
+		this.num_samples = 0;
+	}
+
+	public void record(long time, long[] sample)
+	{
+		System.arraycopy(sample, 0, values[next], 0, values[next].length);
+		times[next] = time;
+		next = (next + 1) % values.length;
+		num_samples = Math.min(num_samples + 1, values.length);
+	}
+
+	public int size()
+	{
+		return num_samples;
+	}
+
+	public void clear()
+	{
+		next = 0;
+		num_samples = 0;
+	}
+
+	/* Samples everything kept to a writer, oldest first */
+	public void writeTo(SimVcdWriter writer) throws IOException
+	{
+		int first = (next - num_samples + values.length) % values.length;
+
+		for (int i = 0; i < num_samples; i++)
+		{
+			int index = (first + i) % values.length;
+
+			writer.sample(times[index], values[index]);
+		}
+	}
+}
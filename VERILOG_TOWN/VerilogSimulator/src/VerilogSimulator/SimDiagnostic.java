@@ -0,0 +1,91 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Something SimAnalysis found wrong with a module that still simulates, with
+ * where it is in the source */
+public final class SimDiagnostic
+{
+	public enum Kind
+	{
+		/* a combinational signal isn't assigned on every path, so it keeps
+		 * its value like a latch */
+		LATCH,
+		/* combinational signals that depend on each other */
+		COMBINATIONAL_LOOP,
+		/* = in a clocked block, which is ignored */
+		BLOCKING_IN_SEQUENTIAL,
+		/* <= in a combinational block, which is ignored */
+		NON_BLOCKING_IN_COMBINATIONAL
+	}
+
+	private final Kind		kind;
+	private final int		line;
+	private final int		column;
+	/* the signal it's about, or null */
+	private final String	signal;
+	private final String	message;
+
+	public SimDiagnostic(Kind kind, int line, int column, String signal, String message)
+	{
+		this.kind = kind;
+		this.line = line;
+		this.column = column;
+		this.signal = signal;
+		this.message = message;
+	}
+
+	public Kind getKind()
+	{
+		return kind;
+	}
+
+	public int getLine()
+	{
+		return line;
+	}
+
+	public int getColumn()
+	{
+		return column;
+	}
+
+	public String getSignal()
+	{
+		return signal;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	/* like the parser and SimCompiler errors */
+	@Override
+	public String toString()
+	{
+		return "Warning at line " + line + ":" + column + " " + message;
+	}
+}
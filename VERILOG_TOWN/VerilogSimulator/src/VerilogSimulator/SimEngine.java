@@ -0,0 +1,326 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.util.ArrayList;
+
+/* What Parse drives every sim cycle. Keeps the clock/combinational cycle
+ * protocol of SimVisitor, adds step() for a whole clock in one call, and
+ * leaves how the values are stored and evaluated to the subclasses. */
+public abstract class SimEngine
+{
+	protected boolean			is_sequential_sim_cycle;
+	protected int				cycle_time;
+	protected int				clock_cycle;
+	/* false until step() has run every block since the last sim cycle */
+	private boolean				is_stepping;
+	protected int				num_inferred_latches;
+
+	/* only set for modules with no state */
+	private SimOutputCache		output_cache;
+	/* step() leaves the outputs loaded, a sim cycle doesn't */
+	private boolean				is_outputs_loaded;
+
+	/* outN, outS, outE, outW and debug_port */
+	protected int[]				outputs;
+	/* what COUNT adds to, empty unless the program profiles */
+	protected long[]			counters;
+	/* made by the first boxed update_vector_ouputs, as most engines are only
+	 * stepped */
+	private ArrayList<Integer>	output_vector_list;
+
+	public SimEngine()
+	{
+		this.is_sequential_sim_cycle = true;
+		this.cycle_time = 0;
+		/* initialize a clock tracker */
+		this.clock_cycle = 0;
+		this.is_stepping = false;
+		this.num_inferred_latches = 0;
+		this.output_cache = null;
+		this.is_outputs_loaded = false;
+
+		this.outputs = new int[5];
+		this.counters = new long[0];
+		this.output_vector_list = null;
+	}
+
+	public void next_sim_cycle()
+	{
+		/* increase the cycle stamp */
+		cycle_time++;
+		/* step() can't trust what changed after this */
+		is_stepping = false;
+		is_outputs_loaded = false;
+		/* toggle old and new */
+		swap_values();
+		/* toggle between sequential sims and combinational sims */
+		is_sequential_sim_cycle = (is_sequential_sim_cycle) ? false : true;
+
+		if (is_sequential_sim_cycle)
+		{
+			clock_cycle++;
+		}
+	}
+
+	/* Greatest to least as in lightsensors[7] = char 0 ... */
+	public void update_vector_inputs(
+			String rst,
+			String light_sensors,
+			String level_sensors)
+	{
+		set_inputs(getBitsFromString(rst, 1), getBitsFromString(light_sensors, 8), getBitsFromString(level_sensors, 30));
+	}
+
+	/* Same bits as the strings above, char 0 being the top bit */
+	public void update_vector_inputs(
+			int rst,
+			int light_sensors,
+			int level_sensors)
+	{
+		set_inputs(rst, light_sensors, level_sensors);
+	}
+
+	public int getBitsFromString(String str, int num_bits)
+	{
+		int bits = 0;
+
+		for (int i = 0; i < num_bits; i++)
+		{
+			bits = (bits << 1) | (str.charAt(i) == '0' ? 0 : 1);
+		}
+
+		return bits;
+	}
+
+	public void run_sim_cycle()
+	{
+		if (is_sequential_sim_cycle)
+		{
+			clockEdge();
+		}
+		else
+		{
+			evalCombinational();
+		}
+	}
+
+	public void clean_sim_cycle()
+	{
+		if (!is_sequential_sim_cycle)
+		{
+			/* Makes sure the sequential registers keep value and catches
+			 * inferred latches */
+			check_latches();
+			carry_values();
+		}
+	}
+
+	/* One clock in one call instead of a combinational and a clock sim cycle.
+	 * The combinational blocks run once each in dependency order, reading and
+	 * writing the new values, so a chain of assigns settles in the same
+	 * step. Then the clock edge assigns the registers. The outputs read
+	 * after it are the same as after the pair of sim cycles: combinational
+	 * ones from before the edge, registered ones from after it.
+	 * Blocks are only run when a slot they load changed, so a step where
+	 * nothing changed runs nothing. With an output cache, inputs seen before
+	 * run nothing either. */
+	public void step(int rst, int sensor_light, int general_sensors)
+	{
+		long key;
+
+		cycle_time++;
+		clock_cycle++;
+
+		if (output_cache == null)
+		{
+			run_step(rst, sensor_light, general_sensors);
+			is_outputs_loaded = false;
+			return;
+		}
+
+		key = SimOutputCache.key(rst, sensor_light, general_sensors);
+		if (output_cache.get(key, outputs))
+		{
+			is_outputs_loaded = true;
+			return;
+		}
+
+		run_step(rst, sensor_light, general_sensors);
+		load_outputs();
+		is_outputs_loaded = true;
+		output_cache.put(key, outputs);
+	}
+
+	/* step() for each of num_cycles cycles of a trace in one call. Output i
+	 * of a cycle goes into traces[i] (outN, outS, outE, outW, debug_port) at
+	 * the cycle's index, and null traces are left out. */
+	public void runTrace(
+			int[] rst,
+			int[] sensor_light,
+			int[] general_sensors,
+			int num_cycles,
+			int[][] traces)
+	{
+		for (int cycle = 0; cycle < num_cycles; cycle++)
+		{
+			step(rst[cycle], sensor_light[cycle], general_sensors[cycle]);
+			if (!is_outputs_loaded)
+			{
+				load_outputs();
+				is_outputs_loaded = true;
+			}
+
+			for (int i = 0; i < traces.length; i++)
+			{
+				if (traces[i] != null)
+				{
+					traces[i][cycle] = outputs[i];
+				}
+			}
+		}
+	}
+
+	private void run_step(int rst, int sensor_light, int general_sensors)
+	{
+		if (!is_stepping)
+		{
+			invalidate_blocks();
+			is_stepping = true;
+		}
+		set_inputs(rst, sensor_light, general_sensors);
+		settle();
+		edge();
+	}
+
+	/* Caches step() outputs by input. Only for modules whose outputs depend on
+	 * nothing but the inputs - see SimSchedule.isStateless(). */
+	public void setOutputCache(SimOutputCache output_cache)
+	{
+		this.output_cache = output_cache;
+	}
+
+	public SimOutputCache getOutputCache()
+	{
+		return output_cache;
+	}
+
+	void setCounters(long[] counters)
+	{
+		this.counters = counters;
+	}
+
+	/* the COUNT counters of a profiling program, by counter */
+	long[] getCounters()
+	{
+		return counters;
+	}
+
+	public ArrayList<Integer> update_vector_ouputs()
+	{
+		if (!is_outputs_loaded)
+		{
+			load_outputs();
+		}
+		if (output_vector_list == null)
+		{
+			output_vector_list = new ArrayList<Integer>();
+			for (int i = 0; i < 6; i++)
+			{
+				output_vector_list.add(0);
+			}
+		}
+
+		/* only box values that changed */
+		for (int i = 0; i < outputs.length; i++)
+		{
+			if (output_vector_list.get(i) != outputs[i])
+			{
+				output_vector_list.set(i, outputs[i]);
+			}
+		}
+		output_vector_list.set(5, clock_cycle);
+
+		return output_vector_list;
+	}
+
+	/* outN, outS, outE, outW, debug_port and the clock cycle without boxing */
+	public void update_vector_ouputs(int[] output_values)
+	{
+		if (!is_outputs_loaded)
+		{
+			load_outputs();
+		}
+
+		for (int i = 0; i < outputs.length; i++)
+		{
+			output_values[i] = outputs[i];
+		}
+		output_values[5] = clock_cycle;
+	}
+
+	/* SimAnalysis reports latches when the module is compiled, so this only
+	 * counts them for the output cache */
+	protected void inferred_latch()
+	{
+		num_inferred_latches++;
+	}
+
+	/* runs the always and assign blocks for a combinational cycle */
+	public abstract void evalCombinational();
+
+	/* runs the always and assign blocks for a clock cycle */
+	public abstract void clockEdge();
+
+	protected abstract void swap_values();
+
+	/* step(): marks every block as needing to run */
+	protected abstract void invalidate_blocks();
+
+	/* step(): runs the changed combinational blocks in order on the new
+	 * values, then the latch check */
+	protected abstract void settle();
+
+	/* step(): runs the changed clocked blocks on the new values and then
+	 * assigns the registers they wrote */
+	protected abstract void edge();
+
+	/* marks the blocks loading an input that changed */
+	protected abstract void set_inputs(int rst, int sensor_light, int general_sensors);
+
+	/* calls inferred_latch() for every combinational slot not assigned this
+	 * cycle */
+	protected abstract void check_latches();
+
+	/* new value = old value for registers not assigned this cycle */
+	protected abstract void carry_values();
+
+	/* copies the new output port values into outputs */
+	protected abstract void load_outputs();
+
+	/* copies the new value of every slot into values, value_words longs a
+	 * slot for a wide program and one for the others */
+	protected abstract void load_values(long[] values);
+}
@@ -24,7 +24,7 @@ THE SOFTWARE.
 
 package VerilogSimulator;
 
-public enum ValueType
+public enum SimEngineType
 {
-	INTEGER_T, BOOLEAN_T, PORT_T, REG_WIRE_T, NULL_T
+	TREE_WALKER, INTERPRETER, BYTECODE
 }
@@ -0,0 +1,537 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/* Proves a traffic signal never shows Go to crossing directions, by visiting
+ * every state it can reach from its reset. Like in the game, the module is
+ * stepped once with rst at 0 and then with rst at 1, and from each state
+ * every one of the 256 sensor_light values and each of a few general_sensors
+ * values is tried. The general sensors are abstracted to 0 unless told
+ * otherwise - see setGeneralSensors.
+ *
+ * The states are the latches of a SimAig of outN, outS, outE and outW, so
+ * registers only debug_port needs aren't part of them, and 64 inputs are
+ * tried at once, one per lane. States are visited breadth first, so the
+ * first crossing Go found comes with the shortest trace that leads to it.
+ * A signal that isn't one of the five the game knows is reported the same
+ * way, as the game can't show it.
+ *
+ * java VerilogSimulator.SimExplorer [-general value]... [-max-states n]
+ * file... exits with 1 if any file can show crossing Go or can't be
+ * checked. */
+public class SimExplorer
+{
+	public static final int			GO					= 4;
+	public static final int			DEFAULT_MAX_STATES	= 1 << 18;
+
+	private static final int		NUM_SIGNALS			= 4;
+	private static final int		NUM_SENSOR_LIGHTS	= 256;
+	private static final int		NUM_PLANES			= SimLanes.NUM_PLANES;
+	private static final String[]	SIGNAL_NAMES		= { "outN", "outS", "outE", "outW" };
+	/* plane i of the lane numbers 0 to 63 */
+	private static final long[]		LANE_PLANES			= { 0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L, 0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+	private SimAig					aig;
+	private int						num_latches;
+	private int						num_words;
+	private int[]					general_sensors		= { 0 };
+	private int						max_states			= DEFAULT_MAX_STATES;
+
+	/* num_words longs of each state, the state it was first reached from and
+	 * the input that did it, sensor_light + 256 * the general_sensors index */
+	private long[]					states;
+	private int[]					parents;
+	private int[]					parent_inputs;
+	private int						num_states;
+	/* open addressing, one more than the state or 0 for empty */
+	private int[]					table;
+
+	private boolean					is_complete;
+	private String					conflict;
+	/* sensor_light, general_sensors, outN, outS, outE and outW of each step
+	 * after the reset, to the one showing the conflict */
+	private int[][]					trace;
+
+	private long[]					inputs;
+	private long[]					outputs;
+	private long[]					state;
+
+	public SimExplorer(SimProgram program)
+	{
+		this.aig = new SimAig(program, NUM_SIGNALS);
+		this.num_latches = aig.getNumLatches();
+		this.num_words = Math.max(1, (num_latches + 63) / 64);
+		this.inputs = new long[SimLanes.NUM_INPUT_PLANES];
+		this.outputs = new long[SimLanes.NUM_OUTPUT_PLANES];
+		this.state = new long[num_words];
+	}
+
+	/* The general_sensors values tried in every state, { 0 } unless set.
+	 * Each one takes another 256 steps a state. */
+	public void setGeneralSensors(int[] general_sensors)
+	{
+		this.general_sensors = general_sensors;
+	}
+
+	/* Stops looking when this many states are found - see isComplete */
+	public void setMaxStates(int max_states)
+	{
+		this.max_states = max_states;
+	}
+
+	/* Visits the states. Returns true if no conflict was found. A state that
+	 * divides by 0 throws, as it does in the simulator. */
+	public boolean explore()
+	{
+		num_states = 0;
+		states = new long[64 * num_words];
+		parents = new int[64];
+		parent_inputs = new int[64];
+		table = new int[128];
+		is_complete = true;
+		conflict = null;
+		trace = null;
+
+		/* the game's first step holds rst at 0 */
+		aig.reset();
+		Arrays.fill(inputs, 0);
+		aig.step(inputs, outputs);
+		get_state(0);
+		add_state(-1, -1);
+
+		for (int i = 0; i < num_states; i++)
+		{
+			for (int j = 0; j < general_sensors.length; j++)
+			{
+				for (int first = 0; first < NUM_SENSOR_LIGHTS; first += SimLanes.NUM_LANES)
+				{
+					if (!step_state(i, first, j))
+					{
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/* true unless it stopped at the maximum number of states */
+	public boolean isComplete()
+	{
+		return is_complete;
+	}
+
+	public int getNumStates()
+	{
+		return num_states;
+	}
+
+	/* bits of a state */
+	public int getNumLatches()
+	{
+		return num_latches;
+	}
+
+	/* what's wrong with the last step of getTrace(), or null if nothing was
+	 * found */
+	public String getConflict()
+	{
+		return conflict;
+	}
+
+	/* Each step from the reset to the conflict, as sensor_light,
+	 * general_sensors, outN, outS, outE and outW. Null if nothing was
+	 * found. */
+	public int[][] getTrace()
+	{
+		return trace;
+	}
+
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+
+		if (conflict != null)
+		{
+			report.append(conflict).append(" after ").append(trace.length).append((trace.length == 1) ? " step" : " steps").append(" from the reset:\n");
+			for (int i = 0; i < trace.length; i++)
+			{
+				report.append(String.format("step %4d  sensor_light %8s  general_sensors %08x ", i + 1, binary(trace[i][0]), trace[i][1]));
+				for (int j = 0; j < NUM_SIGNALS; j++)
+				{
+					report.append(" ").append(SIGNAL_NAMES[j]).append(" ").append(trace[i][2 + j]);
+				}
+				report.append("\n");
+			}
+		}
+		else if (is_complete)
+		{
+			report.append("No crossing Go in any of the " + num_states + " states reachable from the reset\n");
+		}
+		else
+		{
+			report.append("No crossing Go in the first " + num_states + " states reachable from the reset, but there are more\n");
+		}
+
+		return report.toString();
+	}
+
+	private static String binary(int value)
+	{
+		String bits = Integer.toBinaryString(value);
+
+		return "00000000".substring(bits.length()) + bits;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * States
+	 * -------------------------------------------------------------------------- */
+	/* Steps a state with 64 sensor_light values from first. Returns false if
+	 * one shows a conflict. */
+	private boolean step_state(int index, int first, int general_index)
+	{
+		long[] latch_values = aig.getLatchValues();
+		long bad_lanes;
+
+		for (int i = 0; i < num_latches; i++)
+		{
+			latch_values[i] = (((states[index * num_words + i / 64] >>> (i % 64)) & 1) != 0) ? ~0L : 0;
+		}
+		set_inputs(first, general_sensors[general_index]);
+		aig.step(inputs, outputs);
+
+		bad_lanes = conflict_lanes() | bad_signal_lanes();
+		if (bad_lanes != 0)
+		{
+			int lane = Long.numberOfTrailingZeros(bad_lanes);
+
+			make_trace(index, first + lane + NUM_SENSOR_LIGHTS * general_index);
+			return false;
+		}
+
+		for (int lane = 0; lane < SimLanes.NUM_LANES; lane++)
+		{
+			get_state(lane);
+			if (find_state() == -1)
+			{
+				if (num_states == max_states)
+				{
+					is_complete = false;
+					continue;
+				}
+				add_state(index, first + lane + NUM_SENSOR_LIGHTS * general_index);
+			}
+		}
+
+		return true;
+	}
+
+	/* lane l gets sensor_light first + l */
+	private void set_inputs(int first, int general)
+	{
+		inputs[SimLanes.RST_PLANE] = ~0L;
+		for (int i = 0; i < 8; i++)
+		{
+			if (i < LANE_PLANES.length)
+			{
+				inputs[SimLanes.SENSOR_LIGHT_PLANE + i] = LANE_PLANES[i];
+			}
+			else
+			{
+				inputs[SimLanes.SENSOR_LIGHT_PLANE + i] = (((first >>> i) & 1) != 0) ? ~0L : 0;
+			}
+		}
+		for (int i = 0; i < 30; i++)
+		{
+			inputs[SimLanes.GENERAL_SENSORS_PLANE + i] = (((general >>> i) & 1) != 0) ? ~0L : 0;
+		}
+	}
+
+	/* the state of a lane after the last step into state */
+	private void get_state(int lane)
+	{
+		long[] latch_values = aig.getLatchValues();
+
+		Arrays.fill(state, 0);
+		for (int i = 0; i < num_latches; i++)
+		{
+			state[i / 64] |= ((latch_values[i] >>> lane) & 1) << (i % 64);
+		}
+	}
+
+	private int hash()
+	{
+		long hash = 0;
+
+		for (int i = 0; i < num_words; i++)
+		{
+			hash = (hash ^ state[i]) * 0x9E3779B97F4A7C15L;
+		}
+
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/* the index of state, or -1 if it hasn't been seen */
+	private int find_state()
+	{
+		int slot = hash() & (table.length - 1);
+
+		while (table[slot] != 0)
+		{
+			int index = table[slot] - 1;
+			boolean is_same = true;
+
+			for (int i = 0; i < num_words && is_same; i++)
+			{
+				is_same = states[index * num_words + i] == state[i];
+			}
+			if (is_same)
+			{
+				return index;
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+
+		return -1;
+	}
+
+	private void add_state(int parent, int input)
+	{
+		if (num_states == parents.length)
+		{
+			states = Arrays.copyOf(states, states.length * 2);
+			parents = Arrays.copyOf(parents, parents.length * 2);
+			parent_inputs = Arrays.copyOf(parent_inputs, parent_inputs.length * 2);
+		}
+		System.arraycopy(state, 0, states, num_states * num_words, num_words);
+		parents[num_states] = parent;
+		parent_inputs[num_states] = input;
+		num_states++;
+
+		/* kept at most half full */
+		if (2 * num_states > table.length)
+		{
+			rehash();
+		}
+		else
+		{
+			insert(num_states - 1);
+		}
+	}
+
+	private void insert(int index)
+	{
+		int slot;
+
+		System.arraycopy(states, index * num_words, state, 0, num_words);
+		slot = hash() & (table.length - 1);
+		while (table[slot] != 0)
+		{
+			slot = (slot + 1) & (table.length - 1);
+		}
+		table[slot] = index + 1;
+	}
+
+	private void rehash()
+	{
+		table = new int[table.length * 2];
+		for (int i = 0; i < num_states; i++)
+		{
+			insert(i);
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Signals
+	 * -------------------------------------------------------------------------- */
+	private long signal_lanes(int signal, int value)
+	{
+		long lanes = ~0L;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			long plane = outputs[signal * NUM_PLANES + i];
+
+			lanes &= (((value >>> i) & 1) != 0) ? plane : ~plane;
+		}
+
+		return lanes;
+	}
+
+	/* lanes where north or south and east or west show Go */
+	private long conflict_lanes()
+	{
+		long north_south = signal_lanes(Parse.OUT_N, GO) | signal_lanes(Parse.OUT_S, GO);
+		long east_west = signal_lanes(Parse.OUT_E, GO) | signal_lanes(Parse.OUT_W, GO);
+
+		return north_south & east_west;
+	}
+
+	/* lanes where a signal is more than Go */
+	private long bad_signal_lanes()
+	{
+		long lanes = 0;
+
+		for (int i = 0; i < NUM_SIGNALS; i++)
+		{
+			long signal = ~0L;
+
+			for (int value = 0; value <= GO; value++)
+			{
+				signal &= ~signal_lanes(i, value);
+			}
+			lanes |= signal;
+		}
+
+		return lanes;
+	}
+
+	/* Runs the inputs from the reset to the state and the last input again
+	 * in lane 0 to record the trace */
+	private void make_trace(int index, int last_input)
+	{
+		ArrayList<Integer> path = new ArrayList<Integer>();
+
+		path.add(last_input);
+		for (int i = index; parents[i] != -1; i = parents[i])
+		{
+			path.add(0, parent_inputs[i]);
+		}
+
+		aig.reset();
+		Arrays.fill(inputs, 0);
+		aig.step(inputs, outputs);
+
+		trace = new int[path.size()][2 + NUM_SIGNALS];
+		for (int i = 0; i < path.size(); i++)
+		{
+			int sensor_light = path.get(i) % NUM_SENSOR_LIGHTS;
+			int general = general_sensors[path.get(i) / NUM_SENSOR_LIGHTS];
+
+			/* every lane runs the same input */
+			set_inputs(0, general);
+			for (int j = 0; j < 8; j++)
+			{
+				inputs[SimLanes.SENSOR_LIGHT_PLANE + j] = (((sensor_light >>> j) & 1) != 0) ? ~0L : 0;
+			}
+			aig.step(inputs, outputs);
+
+			trace[i][0] = sensor_light;
+			trace[i][1] = general;
+			for (int j = 0; j < NUM_SIGNALS; j++)
+			{
+				trace[i][2 + j] = SimLanes.fromPlanes(outputs, j * NUM_PLANES, NUM_PLANES, 0);
+			}
+		}
+
+		conflict = describe(trace[trace.length - 1]);
+	}
+
+	private static String describe(int[] step)
+	{
+		for (int i = 0; i < NUM_SIGNALS; i++)
+		{
+			if (step[2 + i] < 0 || step[2 + i] > GO)
+			{
+				return SIGNAL_NAMES[i] + " is " + step[2 + i] + ", which isn't a signal";
+			}
+		}
+		for (int i = Parse.OUT_N; i <= Parse.OUT_S; i++)
+		{
+			for (int j = Parse.OUT_E; j <= Parse.OUT_W; j++)
+			{
+				if (step[2 + i] == GO && step[2 + j] == GO)
+				{
+					return SIGNAL_NAMES[i] + " and " + SIGNAL_NAMES[j] + " show Go together";
+				}
+			}
+		}
+
+		return "Conflict";
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Command line
+	 * -------------------------------------------------------------------------- */
+	public static void main(String[] args) throws IOException
+	{
+		ArrayList<Integer> general_values = new ArrayList<Integer>();
+		int max_states = DEFAULT_MAX_STATES;
+		boolean is_failed = false;
+		PrintStream out = System.out;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-general") && i + 1 < args.length)
+			{
+				general_values.add(Integer.decode(args[++i]));
+			}
+			else if (args[i].equals("-max-states") && i + 1 < args.length)
+			{
+				max_states = Integer.parseInt(args[++i]);
+			}
+			else
+			{
+				Parse compiler = new Parse();
+				SimExplorer explorer;
+
+				out.println("== " + args[i]);
+				compiler.setSimEngine(SimEngineType.INTERPRETER);
+				compiler.compileFile(new File(args[i]).getPath());
+				explorer = compiler.explore();
+				if (explorer == null)
+				{
+					out.println("Can't check it: it didn't compile or has a vector wider than 30 bits");
+					is_failed = true;
+					continue;
+				}
+
+				if (!general_values.isEmpty())
+				{
+					int[] values = new int[general_values.size()];
+
+					for (int j = 0; j < values.length; j++)
+					{
+						values[j] = general_values.get(j);
+					}
+					explorer.setGeneralSensors(values);
+				}
+				explorer.setMaxStates(max_states);
+				is_failed |= !explorer.explore();
+				out.print(explorer.getReport());
+			}
+		}
+
+		System.exit(is_failed ? 1 : 0);
+	}
+}
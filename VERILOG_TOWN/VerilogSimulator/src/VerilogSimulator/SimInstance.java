@@ -0,0 +1,76 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* One copy of a CompiledModule, e.g. the signal at one intersection. It only
+ * holds the module's values and the bookkeeping of step(), a few hundred
+ * bytes for the level templates. Like Parse, one instance is for one thread
+ * at a time, while the module behind it is shared. */
+public final class SimInstance
+{
+	private final CompiledModule	module;
+	private SimEngine				engine;
+
+	SimInstance(CompiledModule module, SimEngine engine)
+	{
+		this.module = module;
+		this.engine = engine;
+	}
+
+	public CompiledModule getModule()
+	{
+		return module;
+	}
+
+	/* One clock - see Parse.step. outputs gets outN, outS, outE, outW,
+	 * debug_port and the clock cycle (see Parse.OUT_N...) unless it is
+	 * null. */
+	public void step(int rst, int light_sensors, int general_sensors, int[] outputs)
+	{
+		engine.step(rst, light_sensors, general_sensors);
+		if (outputs != null)
+		{
+			engine.update_vector_ouputs(outputs);
+		}
+	}
+
+	/* step() for the first num_cycles cycles of a trace - see
+	 * SimEngine.runTrace */
+	public void runTrace(int[] rst, int[] light_sensors, int[] general_sensors, int num_cycles, int[][] traces)
+	{
+		engine.runTrace(rst, light_sensors, general_sensors, num_cycles, traces);
+	}
+
+	/* back to the state the module starts in */
+	public void reset()
+	{
+		engine = module.newEngine();
+	}
+
+	SimEngine getEngine()
+	{
+		return engine;
+	}
+}
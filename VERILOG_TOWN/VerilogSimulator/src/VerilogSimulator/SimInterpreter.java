@@ -0,0 +1,451 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Runs a SimProgram. Values are read from the old half of the state and
+ * written to the new half, and the halves swap every sim cycle. step() runs
+ * the blocks of the SimSchedule on the new half, and a store that changes a
+ * slot marks the blocks loading it to run next. */
+public class SimInterpreter extends SimEngine
+{
+	private SimProgram	program;
+	private SimSchedule	schedule;
+
+	private int[][]		values;
+	private int[]		update_time;
+	private int[]		stack;
+
+	private boolean[]	is_dirty;
+	private boolean[]	is_running;
+	private int[]		run_time;
+
+	private int			new_val_idx;
+	private int			old_val_idx;
+
+	public SimInterpreter(SimProgram program)
+	{
+		int num_slots = program.getNumSlots();
+
+		this.program = program;
+		this.schedule = program.getSchedule();
+
+		this.values = new int[2][num_slots];
+		this.update_time = new int[num_slots];
+		for (int i = 0; i < num_slots; i++)
+		{
+			this.values[0][i] = program.getSlotInit(i);
+			this.values[1][i] = program.getSlotInit(i);
+			this.update_time[i] = -1;
+		}
+		this.stack = new int[program.getMaxStack() + 1];
+
+		this.is_dirty = new boolean[schedule.getNumBlocks()];
+		this.is_running = new boolean[schedule.getNumBlocks()];
+		this.run_time = new int[schedule.getNumBlocks()];
+
+		this.new_val_idx = 0;
+		this.old_val_idx = 1;
+	}
+
+	@Override
+	protected void swap_values()
+	{
+		/* toggle the idx for old and new */
+		new_val_idx = old_val_idx;
+		old_val_idx = (new_val_idx == 1) ? 0 : 1;
+	}
+
+	@Override
+	protected void set_inputs(int rst, int sensor_light, int general_sensors)
+	{
+		set_input(program.getRstSlot(), rst);
+		set_input(program.getSensorLightSlot(), sensor_light);
+		set_input(program.getGeneralSensorsSlot(), general_sensors);
+	}
+
+	private void set_input(int slot, int value)
+	{
+		int masked_value = value & program.getSlotMask(slot);
+
+		if (values[new_val_idx][slot] != masked_value)
+		{
+			changed(slot);
+		}
+		/* inputs are the same in both halves */
+		values[0][slot] = masked_value;
+		values[1][slot] = masked_value;
+	}
+
+	/* the blocks loading the slot have to run again */
+	private void changed(int slot)
+	{
+		int[] readers = schedule.getSlotReaders(slot);
+
+		for (int i = 0; i < readers.length; i++)
+		{
+			is_dirty[readers[i]] = true;
+		}
+	}
+
+	@Override
+	public void evalCombinational()
+	{
+		execute(program.getCombCode(), 0, values[old_val_idx], values[new_val_idx]);
+	}
+
+	@Override
+	public void clockEdge()
+	{
+		execute(program.getSeqCode(), 0, values[old_val_idx], values[new_val_idx]);
+	}
+
+	@Override
+	protected void invalidate_blocks()
+	{
+		for (int i = 0; i < is_dirty.length; i++)
+		{
+			is_dirty[i] = true;
+		}
+	}
+
+	@Override
+	protected void settle()
+	{
+		int[] new_values = values[new_val_idx];
+		int[] latch_slots = program.getLatchSlots();
+		int[] latch_blocks = schedule.getLatchBlocks();
+
+		for (int i = 0; i < schedule.getNumCombBlocks(); i++)
+		{
+			if (is_dirty[i] || schedule.isAlwaysRun(i))
+			{
+				is_dirty[i] = false;
+				run_time[i] = cycle_time;
+				execute(schedule.getCode(), schedule.getBlockStart(i), new_values, new_values);
+			}
+		}
+
+		/* a block that didn't run assigns what it did last time */
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int assign_time = (latch_blocks[i] == -1) ? cycle_time : run_time[latch_blocks[i]];
+
+			if (update_time[latch_slots[i]] != assign_time)
+			{
+				inferred_latch();
+			}
+		}
+	}
+
+	@Override
+	protected void edge()
+	{
+		int[] edge_slots = schedule.getEdgeSlots();
+		int[] new_values = values[new_val_idx];
+		int[] next_values = values[old_val_idx];
+
+		/* the old half holds the registers' next values so the clocked blocks
+		 * all read from before the edge */
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			next_values[edge_slots[i]] = new_values[edge_slots[i]];
+		}
+		/* stores mark blocks as they go, so pick what runs first */
+		for (int i = schedule.getNumCombBlocks(); i < is_dirty.length; i++)
+		{
+			is_running[i] = is_dirty[i];
+			is_dirty[i] = false;
+		}
+		for (int i = schedule.getNumCombBlocks(); i < is_dirty.length; i++)
+		{
+			if (is_running[i])
+			{
+				execute(schedule.getCode(), schedule.getBlockStart(i), new_values, next_values);
+			}
+		}
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			new_values[edge_slots[i]] = next_values[edge_slots[i]];
+		}
+	}
+
+	@Override
+	protected void check_latches()
+	{
+		int[] latch_slots = program.getLatchSlots();
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			if (update_time[latch_slots[i]] != cycle_time)
+			{
+				inferred_latch();
+			}
+		}
+	}
+
+	@Override
+	protected void carry_values()
+	{
+		int[] carry_slots = program.getCarrySlots();
+		int[] new_values = values[new_val_idx];
+		int[] old_values = values[old_val_idx];
+
+		for (int i = 0; i < carry_slots.length; i++)
+		{
+			if (update_time[carry_slots[i]] != cycle_time)
+			{
+				new_values[carry_slots[i]] = old_values[carry_slots[i]];
+			}
+		}
+	}
+
+	@Override
+	protected void load_outputs()
+	{
+		int[] output_slots = program.getOutputSlots();
+
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			outputs[i] = values[new_val_idx][output_slots[i]];
+		}
+	}
+
+	@Override
+	protected void load_values(long[] values)
+	{
+		int[] new_values = this.values[new_val_idx];
+
+		for (int i = 0; i < new_values.length; i++)
+		{
+			values[i] = new_values[i];
+		}
+	}
+
+	/* loads read old_values and stores write new_values */
+	private void execute(int[] code, int pc, int[] old_values, int[] new_values)
+	{
+		int[] stack = this.stack;
+		int sp = 0;
+		int right;
+
+		for (;;)
+		{
+			switch (code[pc])
+			{
+				case SimOpcode.CONST:
+					stack[sp++] = code[pc + 1];
+					pc += 2;
+					break;
+				case SimOpcode.LOAD:
+					stack[sp++] = old_values[code[pc + 1]];
+					pc += 2;
+					break;
+				case SimOpcode.LOAD_BIT:
+					stack[sp++] = ((old_values[code[pc + 1]] & code[pc + 2]) > 0) ? 1 : 0;
+					pc += 3;
+					break;
+				case SimOpcode.MASK:
+					stack[sp - 1] &= code[pc + 1];
+					pc += 2;
+					break;
+				case SimOpcode.NEG:
+					stack[sp - 1] = -stack[sp - 1];
+					pc++;
+					break;
+				case SimOpcode.NOT:
+					stack[sp - 1] = ~stack[sp - 1];
+					pc++;
+					break;
+				case SimOpcode.LNOT:
+					stack[sp - 1] = (stack[sp - 1] == 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.MUL:
+					right = stack[--sp];
+					stack[sp - 1] *= right;
+					pc++;
+					break;
+				case SimOpcode.DIV:
+					right = stack[--sp];
+					stack[sp - 1] /= right;
+					pc++;
+					break;
+				case SimOpcode.MOD:
+					right = stack[--sp];
+					stack[sp - 1] %= right;
+					pc++;
+					break;
+				case SimOpcode.ADD:
+					right = stack[--sp];
+					stack[sp - 1] += right;
+					pc++;
+					break;
+				case SimOpcode.SUB:
+					right = stack[--sp];
+					stack[sp - 1] -= right;
+					pc++;
+					break;
+				case SimOpcode.AND:
+					right = stack[--sp];
+					stack[sp - 1] &= right;
+					pc++;
+					break;
+				case SimOpcode.NAND:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] & right);
+					pc++;
+					break;
+				case SimOpcode.OR:
+					right = stack[--sp];
+					stack[sp - 1] |= right;
+					pc++;
+					break;
+				case SimOpcode.NOR:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] | right);
+					pc++;
+					break;
+				case SimOpcode.XOR:
+					right = stack[--sp];
+					stack[sp - 1] ^= right;
+					pc++;
+					break;
+				case SimOpcode.XNOR:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] ^ right);
+					pc++;
+					break;
+				case SimOpcode.SHL:
+					right = stack[--sp];
+					stack[sp - 1] <<= right;
+					pc++;
+					break;
+				case SimOpcode.SHR:
+					right = stack[--sp];
+					stack[sp - 1] >>= right;
+					pc++;
+					break;
+				case SimOpcode.LT:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] < right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LTE:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] <= right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.GT:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] > right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.GTE:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] >= right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.EQ:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] == right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.NE:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LAND:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != 0 && right != 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LOR:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != 0 || right != 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.STORE:
+				{
+					int slot = code[pc + 1];
+					int value = stack[--sp] & code[pc + 2];
+
+					if (new_values[slot] != value)
+					{
+						new_values[slot] = value;
+						changed(slot);
+					}
+					update_time[slot] = cycle_time;
+					pc += 3;
+					break;
+				}
+				case SimOpcode.STORE_BITS:
+				{
+					int slot = code[pc + 1];
+					int lsb = code[pc + 2];
+					int field_mask = code[pc + 3];
+					int value = ((new_values[slot] & ~(field_mask << lsb)) | ((stack[--sp] & field_mask) << lsb)) & code[pc + 4];
+
+					if (new_values[slot] != value)
+					{
+						new_values[slot] = value;
+						changed(slot);
+					}
+					update_time[slot] = cycle_time;
+					pc += 5;
+					break;
+				}
+				case SimOpcode.JUMP:
+					pc = code[pc + 1];
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+					pc = (stack[--sp] == 0) ? code[pc + 1] : pc + 2;
+					break;
+				case SimOpcode.CASE_NE:
+					right = stack[--sp];
+					pc = (stack[sp - 1] != right) ? code[pc + 1] : pc + 2;
+					break;
+				case SimOpcode.POP:
+					sp--;
+					pc++;
+					break;
+				case SimOpcode.COUNT:
+					counters[code[pc + 1]]++;
+					pc += 2;
+					break;
+				case SimOpcode.SWITCH:
+				{
+					int index = stack[--sp] - code[pc + 1];
+
+					pc = (index >= 0 && index < code[pc + 2]) ? code[pc + 4 + index] : code[pc + 3];
+					break;
+				}
+				default:
+					/* END */
+					return;
+			}
+		}
+	}
+}
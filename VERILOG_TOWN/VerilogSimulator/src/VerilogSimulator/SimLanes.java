@@ -0,0 +1,742 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Runs the step() code of a SimProgram for 64 independent copies of the
+ * module at once, one per bit of a long. Values are bit sliced: plane i of a
+ * value is a long holding bit i of it in every lane, so the operators are a
+ * few word ops for all the lanes. A value only keeps the planes it needs and
+ * the planes above it are copies of its top plane, like a sign extension.
+ *
+ * Lanes branch apart at if and case. All jumps go forward, so the code runs
+ * from top to bottom with a mask of the lanes taking each instruction and
+ * the lanes that jumped wait at their target. Only the active lanes are
+ * written, which keeps the stack of every lane the same as if it ran on its
+ * own. MUL, DIV and MOD are done one lane at a time. */
+public class SimLanes
+{
+	public static final int	NUM_LANES				= 64;
+	/* planes of an int value */
+	public static final int	NUM_PLANES				= 32;
+
+	/* where the input bits are in a cycle of stimulus */
+	public static final int	RST_PLANE				= 0;
+	public static final int	SENSOR_LIGHT_PLANE		= 1;
+	public static final int	GENERAL_SENSORS_PLANE	= 9;
+	public static final int	NUM_INPUT_PLANES		= 39;
+
+	/* NUM_PLANES for each of outN, outS, outE, outW and debug_port */
+	public static final int	NUM_OUTPUT_PLANES		= 5 * NUM_PLANES;
+
+	private static final long	ALL_LANES				= ~0L;
+
+	private SimProgram		program;
+	private SimSchedule		schedule;
+	private int[]			code;
+
+	/* planes kept for each slot */
+	private int[]			slot_widths;
+	/* the step reads and writes new_values, the clock edge writes next_values */
+	private long[]			new_values;
+	private long[]			next_values;
+
+	private long[]			stack;
+	private int[]			stack_widths;
+	/* stack depth before each instruction */
+	private int[]			depths;
+	/* lanes waiting to run from each instruction */
+	private long[]			pending;
+	/* lanes that assigned each slot in the step */
+	private long[]			stored;
+	private long			latch_lanes;
+
+	private long[]			result;
+	private long[]			shifted;
+	/* lanes where the last less_than found the values equal */
+	private long			equal_lanes;
+	private int[]			left_values;
+	private int[]			right_values;
+
+	public SimLanes(SimProgram program)
+	{
+		int num_slots = program.getNumSlots();
+
+		if (program.isWide())
+		{
+			throw new IllegalArgumentException("Lanes only hold 32 bit values");
+		}
+
+		this.program = program;
+		this.schedule = program.getSchedule();
+		this.code = schedule.getCode();
+
+		this.slot_widths = new int[num_slots];
+		this.new_values = new long[num_slots * NUM_PLANES];
+		this.next_values = new long[num_slots * NUM_PLANES];
+		for (int i = 0; i < num_slots; i++)
+		{
+			int mask = program.getSlotMask(i);
+
+			/* parameters aren't masked so they can be any int */
+			slot_widths[i] = (program.getSlotInit(i) != 0 || mask < 0) ? NUM_PLANES : mask_width(mask);
+			set_planes(new_values, i * NUM_PLANES, program.getSlotInit(i));
+			set_planes(next_values, i * NUM_PLANES, program.getSlotInit(i));
+		}
+
+		this.stack = new long[(program.getMaxStack() + 1) * NUM_PLANES];
+		this.stack_widths = new int[program.getMaxStack() + 1];
+		for (int i = 0; i < stack_widths.length; i++)
+		{
+			stack_widths[i] = 1;
+		}
+		this.depths = stackDepths(schedule);
+		this.pending = new long[code.length];
+		this.stored = new long[num_slots];
+
+		this.result = new long[NUM_PLANES];
+		this.shifted = new long[NUM_PLANES];
+		this.left_values = new int[NUM_LANES];
+		this.right_values = new int[NUM_LANES];
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Lanes
+	 * -------------------------------------------------------------------------- */
+	/* Slices one value per lane into num_bits planes starting at offset */
+	public static void toPlanes(int[] lane_values, long[] planes, int offset, int num_bits)
+	{
+		for (int i = 0; i < num_bits; i++)
+		{
+			long plane = 0;
+
+			for (int lane = 0; lane < lane_values.length; lane++)
+			{
+				plane |= (long) ((lane_values[lane] >>> i) & 1) << lane;
+			}
+			planes[offset + i] = plane;
+		}
+	}
+
+	/* The value of one lane in num_bits planes starting at offset */
+	public static int fromPlanes(long[] planes, int offset, int num_bits, int lane)
+	{
+		int value = 0;
+
+		for (int i = 0; i < num_bits; i++)
+		{
+			value |= (int) ((planes[offset + i] >>> lane) & 1) << i;
+		}
+
+		return value;
+	}
+
+	/* lanes that inferred a latch in any step so far */
+	public long getLatchLanes()
+	{
+		return latch_lanes;
+	}
+
+	/* One step() of every lane. inputs holds NUM_INPUT_PLANES planes and
+	 * outputs gets NUM_OUTPUT_PLANES. */
+	public void step(long[] inputs, long[] outputs)
+	{
+		int[] output_slots = program.getOutputSlots();
+
+		set_input(program.getRstSlot(), inputs, RST_PLANE, 1);
+		set_input(program.getSensorLightSlot(), inputs, SENSOR_LIGHT_PLANE, 8);
+		set_input(program.getGeneralSensorsSlot(), inputs, GENERAL_SENSORS_PLANE, 30);
+
+		settle();
+		edge();
+
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			int offset = output_slots[i] * NUM_PLANES;
+			int width = slot_widths[output_slots[i]];
+
+			for (int j = 0; j < NUM_PLANES; j++)
+			{
+				outputs[i * NUM_PLANES + j] = new_values[offset + ((j < width) ? j : width - 1)];
+			}
+		}
+	}
+
+	private void set_input(int slot, long[] inputs, int first_plane, int num_bits)
+	{
+		int mask = program.getSlotMask(slot);
+		int offset = slot * NUM_PLANES;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			long plane = (i < num_bits && ((mask >>> i) & 1) != 0) ? inputs[first_plane + i] : 0;
+
+			/* inputs are the same in both halves */
+			new_values[offset + i] = plane;
+			next_values[offset + i] = plane;
+		}
+	}
+
+	private void settle()
+	{
+		int[] latch_slots = program.getLatchSlots();
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			stored[latch_slots[i]] = 0;
+		}
+		for (int i = 0; i < schedule.getNumCombBlocks(); i++)
+		{
+			execute(schedule.getBlockStart(i), new_values, new_values);
+		}
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			latch_lanes |= ~stored[latch_slots[i]];
+		}
+	}
+
+	private void edge()
+	{
+		int[] edge_slots = schedule.getEdgeSlots();
+
+		/* the clocked blocks all read from before the edge */
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(new_values, edge_slots[i] * NUM_PLANES, next_values, edge_slots[i] * NUM_PLANES, NUM_PLANES);
+		}
+		for (int i = schedule.getNumCombBlocks(); i < schedule.getNumBlocks(); i++)
+		{
+			execute(schedule.getBlockStart(i), new_values, next_values);
+		}
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(next_values, edge_slots[i] * NUM_PLANES, new_values, edge_slots[i] * NUM_PLANES, NUM_PLANES);
+		}
+	}
+
+	/* The stack depth before each instruction of the schedule's code. The
+	 * compiler leaves the stack at the same depth wherever lanes meet. */
+	static int[] stackDepths(SimSchedule schedule)
+	{
+		int[] code = schedule.getCode();
+		int[] stack_depths = new int[code.length];
+		int depth = 0;
+		int pc = 0;
+
+		for (int i = 0; i < code.length; i++)
+		{
+			stack_depths[i] = -1;
+		}
+		for (int i = 0; i < schedule.getNumBlocks(); i++)
+		{
+			stack_depths[schedule.getBlockStart(i)] = 0;
+		}
+
+		while (pc < code.length)
+		{
+			int opcode = code[pc];
+
+			if (stack_depths[pc] != -1)
+			{
+				depth = stack_depths[pc];
+			}
+			stack_depths[pc] = depth;
+			depth += SimOpcode.stackEffect(opcode);
+
+			if (opcode == SimOpcode.JUMP || opcode == SimOpcode.JUMP_IF_ZERO || opcode == SimOpcode.CASE_NE)
+			{
+				stack_depths[code[pc + 1]] = depth;
+			}
+			else if (opcode == SimOpcode.SWITCH)
+			{
+				for (int i = 3; i < SimOpcode.length(code, pc); i++)
+				{
+					stack_depths[code[pc + i]] = depth;
+				}
+			}
+			pc += SimOpcode.length(code, pc);
+		}
+
+		return stack_depths;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Planes
+	 * -------------------------------------------------------------------------- */
+	/* planes for a value under a mask, with a 0 plane on top */
+	private static int mask_width(int mask)
+	{
+		return Math.min(NUM_PLANES, NUM_PLANES - Integer.numberOfLeadingZeros(mask) + 1);
+	}
+
+	private static int const_width(int value)
+	{
+		return mask_width((value < 0) ? ~value : value);
+	}
+
+	private static void set_planes(long[] planes, int offset, int value)
+	{
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			planes[offset + i] = (((value >>> i) & 1) != 0) ? ALL_LANES : 0;
+		}
+	}
+
+	private long plane(int entry, int i)
+	{
+		int width = stack_widths[entry];
+
+		return stack[entry * NUM_PLANES + ((i < width) ? i : width - 1)];
+	}
+
+	/* lanes where the entry is value */
+	private long equal_to(int entry, int value)
+	{
+		long lanes = ALL_LANES;
+
+		for (int i = 0; i < NUM_PLANES && lanes != 0; i++)
+		{
+			long plane = plane(entry, i);
+
+			lanes &= (((value >>> i) & 1) != 0) ? plane : ~plane;
+		}
+
+		return lanes;
+	}
+
+	/* lanes where the entry isn't 0 */
+	private long non_zero(int entry)
+	{
+		long planes = 0;
+
+		for (int i = 0; i < stack_widths[entry]; i++)
+		{
+			planes |= stack[entry * NUM_PLANES + i];
+		}
+
+		return planes;
+	}
+
+	/* Puts the first width planes of result on a stack entry for the active
+	 * lanes. The other lanes keep what they had. */
+	private void put(int entry, int width, long active)
+	{
+		int offset = entry * NUM_PLANES;
+		int old_width = stack_widths[entry];
+		int new_width = Math.max(width, old_width);
+		long old_top = stack[offset + old_width - 1];
+
+		if (active == ALL_LANES)
+		{
+			System.arraycopy(result, 0, stack, offset, width);
+			stack_widths[entry] = width;
+			return;
+		}
+
+		for (int i = 0; i < new_width; i++)
+		{
+			long value = result[(i < width) ? i : width - 1];
+			long old = (i < old_width) ? stack[offset + i] : old_top;
+
+			stack[offset + i] = (value & active) | (old & ~active);
+		}
+		stack_widths[entry] = new_width;
+	}
+
+	private void put_bool(int entry, long lanes, long active)
+	{
+		result[0] = lanes;
+		result[1] = 0;
+		put(entry, 2, active);
+	}
+
+	/* result = left + right + carry, or left - right if is_subtract */
+	private int add(int left, int right, boolean is_subtract)
+	{
+		int width = Math.min(NUM_PLANES, Math.max(stack_widths[left], stack_widths[right]) + 1);
+		long carry = is_subtract ? ALL_LANES : 0;
+
+		for (int i = 0; i < width; i++)
+		{
+			long a = plane(left, i);
+			long b = is_subtract ? ~plane(right, i) : plane(right, i);
+
+			result[i] = a ^ b ^ carry;
+			carry = (a & b) | (carry & (a ^ b));
+		}
+
+		return width;
+	}
+
+	/* Shifts by the low 5 bits of right like an int shift, one stage per bit */
+	private int shift(int left, int right, boolean is_left)
+	{
+		int width = stack_widths[left];
+
+		for (int i = 0; i < width; i++)
+		{
+			result[i] = plane(left, i);
+		}
+
+		for (int stage = 0; stage < 5; stage++)
+		{
+			long lanes = plane(right, stage);
+			int distance = 1 << stage;
+			int new_width = is_left ? Math.min(NUM_PLANES, width + distance) : width;
+
+			if (lanes == 0)
+			{
+				continue;
+			}
+			for (int i = 0; i < new_width; i++)
+			{
+				int from = is_left ? i - distance : i + distance;
+
+				if (from < 0)
+				{
+					shifted[i] = 0;
+				}
+				else
+				{
+					shifted[i] = result[(from < width) ? from : width - 1];
+				}
+			}
+			for (int i = 0; i < new_width; i++)
+			{
+				long old = result[(i < width) ? i : width - 1];
+
+				result[i] = (shifted[i] & lanes) | (old & ~lanes);
+			}
+			width = new_width;
+		}
+
+		return width;
+	}
+
+	/* lanes where left < right, setting equal_lanes */
+	private long less_than(int left, int right)
+	{
+		int width = Math.max(stack_widths[left], stack_widths[right]);
+		long less = 0;
+		long same = ALL_LANES;
+
+		for (int i = width - 1; i >= 0; i--)
+		{
+			long a = plane(left, i);
+			long b = plane(right, i);
+
+			/* the top plane is the sign */
+			less |= same & ((i == width - 1) ? (a & ~b) : (~a & b));
+			same &= ~(a ^ b);
+		}
+		equal_lanes = same;
+
+		return less;
+	}
+
+	/* MUL, DIV and MOD a lane at a time. DIV and MOD by 0 throw for an
+	 * active lane like they do in SimInterpreter. */
+	private void per_lane(int opcode, int left, int right, long active)
+	{
+		for (int lane = 0; lane < NUM_LANES; lane++)
+		{
+			left_values[lane] = lane_value(left, lane);
+			right_values[lane] = lane_value(right, lane);
+			if (((active >>> lane) & 1) != 0)
+			{
+				left_values[lane] = SimOpcode.evaluate(opcode, left_values[lane], right_values[lane]);
+			}
+		}
+		toPlanes(left_values, result, 0, NUM_PLANES);
+		put(left, NUM_PLANES, active);
+	}
+
+	private int lane_value(int entry, int lane)
+	{
+		int value = 0;
+
+		for (int i = 0; i < NUM_PLANES; i++)
+		{
+			value |= (int) ((plane(entry, i) >>> lane) & 1) << i;
+		}
+
+		return value;
+	}
+
+	private void store(long[] values, int slot, long active)
+	{
+		int offset = slot * NUM_PLANES;
+
+		for (int i = 0; i < slot_widths[slot]; i++)
+		{
+			values[offset + i] = (result[i] & active) | (values[offset + i] & ~active);
+		}
+		stored[slot] |= active;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Running code
+	 * -------------------------------------------------------------------------- */
+	/* loads read old_values and stores write new_values */
+	private void execute(int pc, long[] old_values, long[] new_values)
+	{
+		long active = ALL_LANES;
+
+		for (;;)
+		{
+			int opcode = code[pc];
+			int top = depths[pc] - 1;
+
+			active |= pending[pc];
+			pending[pc] = 0;
+			if (active == 0 && opcode != SimOpcode.END)
+			{
+				/* every lane jumped past this */
+				pc += SimOpcode.length(code, pc);
+				continue;
+			}
+
+			switch (opcode)
+			{
+				case SimOpcode.CONST:
+					set_planes(result, 0, code[pc + 1]);
+					put(top + 1, const_width(code[pc + 1]), active);
+					break;
+				case SimOpcode.LOAD:
+				{
+					int slot = code[pc + 1];
+
+					System.arraycopy(old_values, slot * NUM_PLANES, result, 0, slot_widths[slot]);
+					put(top + 1, slot_widths[slot], active);
+					break;
+				}
+				case SimOpcode.LOAD_BIT:
+				{
+					int offset = code[pc + 1] * NUM_PLANES;
+					int mask = code[pc + 2];
+					long lanes = 0;
+
+					/* (value & mask) > 0, so not if the sign bit is in it */
+					for (int i = 0; i < NUM_PLANES - 1; i++)
+					{
+						if (((mask >>> i) & 1) != 0)
+						{
+							lanes |= old_values[offset + Math.min(i, slot_widths[code[pc + 1]] - 1)];
+						}
+					}
+					if (mask < 0)
+					{
+						lanes &= ~old_values[offset + slot_widths[code[pc + 1]] - 1];
+					}
+					put_bool(top + 1, lanes, active);
+					break;
+				}
+				case SimOpcode.MASK:
+				{
+					int mask = code[pc + 1];
+					int width = (mask < 0) ? NUM_PLANES : mask_width(mask);
+
+					for (int i = 0; i < width; i++)
+					{
+						result[i] = (((mask >>> i) & 1) != 0) ? plane(top, i) : 0;
+					}
+					put(top, width, active);
+					break;
+				}
+				case SimOpcode.NEG:
+				{
+					int width = Math.min(NUM_PLANES, stack_widths[top] + 1);
+					long carry = ALL_LANES;
+
+					for (int i = 0; i < width; i++)
+					{
+						long a = ~plane(top, i);
+
+						result[i] = a ^ carry;
+						carry &= a;
+					}
+					put(top, width, active);
+					break;
+				}
+				case SimOpcode.NOT:
+					for (int i = 0; i < stack_widths[top]; i++)
+					{
+						result[i] = ~plane(top, i);
+					}
+					put(top, stack_widths[top], active);
+					break;
+				case SimOpcode.LNOT:
+					put_bool(top, ~non_zero(top), active);
+					break;
+				case SimOpcode.MUL:
+				case SimOpcode.DIV:
+				case SimOpcode.MOD:
+					per_lane(opcode, top - 1, top, active);
+					break;
+				case SimOpcode.ADD:
+					put(top - 1, add(top - 1, top, false), active);
+					break;
+				case SimOpcode.SUB:
+					put(top - 1, add(top - 1, top, true), active);
+					break;
+				case SimOpcode.AND:
+				case SimOpcode.NAND:
+				case SimOpcode.OR:
+				case SimOpcode.NOR:
+				case SimOpcode.XOR:
+				case SimOpcode.XNOR:
+				{
+					int width = Math.max(stack_widths[top - 1], stack_widths[top]);
+
+					for (int i = 0; i < width; i++)
+					{
+						result[i] = bitwise(opcode, plane(top - 1, i), plane(top, i));
+					}
+					put(top - 1, width, active);
+					break;
+				}
+				case SimOpcode.SHL:
+					put(top - 1, shift(top - 1, top, true), active);
+					break;
+				case SimOpcode.SHR:
+					put(top - 1, shift(top - 1, top, false), active);
+					break;
+				case SimOpcode.LT:
+					put_bool(top - 1, less_than(top - 1, top), active);
+					break;
+				case SimOpcode.LTE:
+					put_bool(top - 1, less_than(top - 1, top) | equal_lanes, active);
+					break;
+				case SimOpcode.GT:
+					put_bool(top - 1, ~(less_than(top - 1, top) | equal_lanes), active);
+					break;
+				case SimOpcode.GTE:
+					put_bool(top - 1, ~less_than(top - 1, top), active);
+					break;
+				case SimOpcode.EQ:
+					less_than(top - 1, top);
+					put_bool(top - 1, equal_lanes, active);
+					break;
+				case SimOpcode.NE:
+					less_than(top - 1, top);
+					put_bool(top - 1, ~equal_lanes, active);
+					break;
+				case SimOpcode.LAND:
+					put_bool(top - 1, non_zero(top - 1) & non_zero(top), active);
+					break;
+				case SimOpcode.LOR:
+					put_bool(top - 1, non_zero(top - 1) | non_zero(top), active);
+					break;
+				case SimOpcode.STORE:
+				{
+					int mask = code[pc + 2];
+
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						result[i] = (((mask >>> i) & 1) != 0) ? plane(top, i) : 0;
+					}
+					store(new_values, code[pc + 1], active);
+					break;
+				}
+				case SimOpcode.STORE_BITS:
+				{
+					int offset = code[pc + 1] * NUM_PLANES;
+					int lsb = code[pc + 2] & 31;
+					int field_mask = code[pc + 3] << lsb;
+					int mask = code[pc + 4];
+
+					for (int i = 0; i < NUM_PLANES; i++)
+					{
+						long value = (((field_mask >>> i) & 1) != 0) ? plane(top, i - lsb) : new_values[offset + i];
+
+						result[i] = (((mask >>> i) & 1) != 0) ? value : 0;
+					}
+					store(new_values, code[pc + 1], active);
+					break;
+				}
+				case SimOpcode.JUMP:
+					pending[code[pc + 1]] |= active;
+					active = 0;
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+				{
+					long lanes = non_zero(top);
+
+					pending[code[pc + 1]] |= active & ~lanes;
+					active &= lanes;
+					break;
+				}
+				case SimOpcode.CASE_NE:
+					less_than(top - 1, top);
+					pending[code[pc + 1]] |= active & ~equal_lanes;
+					active &= equal_lanes;
+					break;
+				case SimOpcode.POP:
+					break;
+				case SimOpcode.COUNT:
+					/* lanes aren't profiled */
+					break;
+				case SimOpcode.SWITCH:
+				{
+					long lanes = active;
+
+					/* each lane waits at the target for its value */
+					for (int i = 0; i < code[pc + 2] && lanes != 0; i++)
+					{
+						long matched = lanes & equal_to(top, code[pc + 1] + i);
+
+						pending[code[pc + 4 + i]] |= matched;
+						lanes &= ~matched;
+					}
+					pending[code[pc + 3]] |= lanes;
+					active = 0;
+					break;
+				}
+				default:
+					/* END */
+					return;
+			}
+			pc += SimOpcode.length(code, pc);
+		}
+	}
+
+	private static long bitwise(int opcode, long left, long right)
+	{
+		switch (opcode)
+		{
+			case SimOpcode.AND:
+				return left & right;
+			case SimOpcode.NAND:
+				return ~(left & right);
+			case SimOpcode.OR:
+				return left | right;
+			case SimOpcode.NOR:
+				return ~(left | right);
+			case SimOpcode.XOR:
+				return left ^ right;
+			default:
+				return ~(left ^ right);
+		}
+	}
+}
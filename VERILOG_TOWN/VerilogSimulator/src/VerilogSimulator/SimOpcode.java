@@ -0,0 +1,278 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Instruction set of a SimProgram. Each instruction is an opcode followed by
+ * its operands in the same int array. Values are kept on an operand stack, so
+ * an expression is its operands followed by its operator. In a wide program
+ * the value, mask and bit_mask operands are indexes into its constants. */
+public final class SimOpcode
+{
+	/* CONST value : push a constant */
+	public static final int	CONST			= 0;
+	/* LOAD slot : push the old value of a slot */
+	public static final int	LOAD			= 1;
+	/* LOAD_BIT slot bit_mask : push 1 if the masked bit of a slot is set */
+	public static final int	LOAD_BIT		= 2;
+	/* MASK mask : and the top of the stack with a mask */
+	public static final int	MASK			= 3;
+
+	/* unary operators */
+	public static final int	NEG				= 4;
+	public static final int	NOT				= 5;
+	public static final int	LNOT			= 6;
+
+	/* binary operators */
+	public static final int	MUL				= 7;
+	public static final int	DIV				= 8;
+	public static final int	MOD				= 9;
+	public static final int	ADD				= 10;
+	public static final int	SUB				= 11;
+	public static final int	AND				= 12;
+	public static final int	NAND			= 13;
+	public static final int	OR				= 14;
+	public static final int	NOR				= 15;
+	public static final int	XOR				= 16;
+	public static final int	XNOR			= 17;
+	public static final int	SHL				= 18;
+	public static final int	SHR				= 19;
+	public static final int	LT				= 20;
+	public static final int	LTE				= 21;
+	public static final int	GT				= 22;
+	public static final int	GTE				= 23;
+	public static final int	EQ				= 24;
+	public static final int	NE				= 25;
+	public static final int	LAND			= 26;
+	public static final int	LOR				= 27;
+
+	/* STORE slot mask : pop into the new value of a slot */
+	public static final int	STORE			= 28;
+	/* STORE_BITS slot lsb field_mask mask : pop into a bit range of a slot */
+	public static final int	STORE_BITS		= 29;
+
+	/* JUMP target : continue at target */
+	public static final int	JUMP			= 30;
+	/* JUMP_IF_ZERO target : pop and continue at target if the value is 0 */
+	public static final int	JUMP_IF_ZERO	= 31;
+	/* CASE_NE target : pop a case label and continue at target if it does not
+	 * match the case expression left on the stack */
+	public static final int	CASE_NE			= 32;
+	/* POP : drop the top of the stack */
+	public static final int	POP				= 33;
+	/* END : stop executing */
+	public static final int	END				= 34;
+	/* SWITCH min count default target... : pop a case expression and continue
+	 * at the count targets for min, min + 1... or at default if it's none of
+	 * them. Not used in wide programs. */
+	public static final int	SWITCH			= 35;
+	/* COUNT counter : add one to a profiling counter of the engine, only in
+	 * programs compiled for profiling - see SimCoverage */
+	public static final int	COUNT			= 36;
+
+	/* DIV, MOD, SHL, SHR and the compares on the low 32 bits as ints, the
+	 * way SimInterpreter runs them, for operands of up to 30 bits in a wide
+	 * program. Only used in wide programs. */
+	public static final int	INT_DIV			= 37;
+	public static final int	INT_MOD			= 38;
+	public static final int	INT_SHL			= 39;
+	public static final int	INT_SHR			= 40;
+	public static final int	INT_LT			= 41;
+	public static final int	INT_LTE			= 42;
+	public static final int	INT_GT			= 43;
+	public static final int	INT_GTE			= 44;
+
+	public static final int	NUM_OPCODES		= 45;
+
+	private static final String[]	NAMES;
+	private static final int[]		LENGTHS;
+	private static final int[]		STACK_EFFECTS;
+	private static final int[]		STACK_INPUTS;
+
+	static
+	{
+		NAMES = new String[] { "CONST", "LOAD", "LOAD_BIT", "MASK", "NEG", "NOT", "LNOT", "MUL", "DIV", "MOD", "ADD", "SUB", "AND", "NAND", "OR", "NOR", "XOR", "XNOR", "SHL", "SHR", "LT", "LTE", "GT", "GTE", "EQ", "NE", "LAND", "LOR", "STORE", "STORE_BITS", "JUMP", "JUMP_IF_ZERO", "CASE_NE", "POP", "END", "SWITCH", "COUNT", "INT_DIV", "INT_MOD", "INT_SHL", "INT_SHR", "INT_LT", "INT_LTE", "INT_GT", "INT_GTE" };
+
+		LENGTHS = new int[NUM_OPCODES];
+		STACK_EFFECTS = new int[NUM_OPCODES];
+		STACK_INPUTS = new int[NUM_OPCODES];
+
+		for (int i = MUL; i < NUM_OPCODES; i++)
+		{
+			/* binary operators take two and leave one */
+			if (i <= LOR || i >= INT_DIV)
+			{
+				LENGTHS[i] = 1;
+				STACK_EFFECTS[i] = -1;
+				STACK_INPUTS[i] = 2;
+			}
+		}
+
+		LENGTHS[CONST] = 2;
+		STACK_EFFECTS[CONST] = 1;
+		LENGTHS[LOAD] = 2;
+		STACK_EFFECTS[LOAD] = 1;
+		LENGTHS[LOAD_BIT] = 3;
+		STACK_EFFECTS[LOAD_BIT] = 1;
+		LENGTHS[MASK] = 2;
+		STACK_INPUTS[MASK] = 1;
+		LENGTHS[NEG] = 1;
+		STACK_INPUTS[NEG] = 1;
+		LENGTHS[NOT] = 1;
+		STACK_INPUTS[NOT] = 1;
+		LENGTHS[LNOT] = 1;
+		STACK_INPUTS[LNOT] = 1;
+		LENGTHS[STORE] = 3;
+		STACK_EFFECTS[STORE] = -1;
+		STACK_INPUTS[STORE] = 1;
+		LENGTHS[STORE_BITS] = 5;
+		STACK_EFFECTS[STORE_BITS] = -1;
+		STACK_INPUTS[STORE_BITS] = 1;
+		LENGTHS[JUMP] = 2;
+		LENGTHS[JUMP_IF_ZERO] = 2;
+		STACK_EFFECTS[JUMP_IF_ZERO] = -1;
+		STACK_INPUTS[JUMP_IF_ZERO] = 1;
+		LENGTHS[CASE_NE] = 2;
+		STACK_EFFECTS[CASE_NE] = -1;
+		/* the label and the case expression under it */
+		STACK_INPUTS[CASE_NE] = 2;
+		LENGTHS[POP] = 1;
+		STACK_EFFECTS[POP] = -1;
+		STACK_INPUTS[POP] = 1;
+		LENGTHS[END] = 1;
+		/* without its table - see length(int[], int) */
+		LENGTHS[SWITCH] = 4;
+		STACK_EFFECTS[SWITCH] = -1;
+		STACK_INPUTS[SWITCH] = 1;
+		LENGTHS[COUNT] = 2;
+	}
+
+	private SimOpcode()
+	{
+	}
+
+	public static String name(int opcode)
+	{
+		return NAMES[opcode];
+	}
+
+	/* number of ints the instruction takes including the opcode, for any
+	 * instruction but SWITCH */
+	public static int length(int opcode)
+	{
+		return LENGTHS[opcode];
+	}
+
+	/* number of ints the instruction at pc takes including the opcode */
+	public static int length(int[] code, int pc)
+	{
+		return (code[pc] == SWITCH) ? LENGTHS[SWITCH] + code[pc + 2] : LENGTHS[code[pc]];
+	}
+
+	/* change in operand stack depth after the instruction runs */
+	public static int stackEffect(int opcode)
+	{
+		return STACK_EFFECTS[opcode];
+	}
+
+	/* number of values the instruction reads off the operand stack */
+	public static int stackInputs(int opcode)
+	{
+		return STACK_INPUTS[opcode];
+	}
+
+	/* What NEG, NOT or LNOT leave for a constant, for folding */
+	public static int evaluate(int opcode, int value)
+	{
+		switch (opcode)
+		{
+			case NEG:
+				return -value;
+			case NOT:
+				return ~value;
+			default:
+				return (value == 0) ? 1 : 0;
+		}
+	}
+
+	/* What a binary operator leaves for constants, the same as SimInterpreter,
+	 * and what an INT_ operator leaves for the low 32 bits of its operands.
+	 * DIV and MOD by 0 throw, so don't fold those. */
+	public static int evaluate(int opcode, int left, int right)
+	{
+		switch (opcode)
+		{
+			case MUL:
+				return left * right;
+			case DIV:
+			case INT_DIV:
+				return left / right;
+			case MOD:
+			case INT_MOD:
+				return left % right;
+			case ADD:
+				return left + right;
+			case SUB:
+				return left - right;
+			case AND:
+				return left & right;
+			case NAND:
+				return ~(left & right);
+			case OR:
+				return left | right;
+			case NOR:
+				return ~(left | right);
+			case XOR:
+				return left ^ right;
+			case XNOR:
+				return ~(left ^ right);
+			case SHL:
+			case INT_SHL:
+				return left << right;
+			case SHR:
+			case INT_SHR:
+				return left >> right;
+			case LT:
+			case INT_LT:
+				return (left < right) ? 1 : 0;
+			case LTE:
+			case INT_LTE:
+				return (left <= right) ? 1 : 0;
+			case GT:
+			case INT_GT:
+				return (left > right) ? 1 : 0;
+			case GTE:
+			case INT_GTE:
+				return (left >= right) ? 1 : 0;
+			case EQ:
+				return (left == right) ? 1 : 0;
+			case NE:
+				return (left != right) ? 1 : 0;
+			case LAND:
+				return (left != 0 && right != 0) ? 1 : 0;
+			default:
+				return (left != 0 || right != 0) ? 1 : 0;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Bounded map from the inputs of a step() to the outputs it gave, for modules
+ * with no state where the outputs only depend on the inputs. Open addressing
+ * on the packed rst, sensor_light and general_sensors bits, with clock
+ * eviction once it's full: a hit sets an entry's reference bit and the hand
+ * evicts the first entry it finds without one.
+ *
+ * Every SimInstance of a CompiledModule shares its cache, so the table is
+ * split into stripes by the key's hash, each with its own lock, size and
+ * hand. Instances on different threads only wait on each other when their
+ * keys land in the same stripe. */
+public class SimOutputCache
+{
+	public static final int		DEFAULT_SIZE	= 4096;
+
+	private static final long	EMPTY			= -1;
+	/* outN, outS, outE, outW and debug_port */
+	private static final int	NUM_VALUES		= 5;
+	private static final int	STRIPE_BITS		= 4;
+	private static final int	NUM_STRIPES		= 1 << STRIPE_BITS;
+
+	/* stripe s has the entries from s << index_bits */
+	private long[]				keys;
+	private int[]				values;
+	private boolean[]			is_referenced;
+	private int					index_bits;
+	private int					index_mask;
+
+	private Object[]			locks;
+	private int[]				sizes;
+	private int[]				hands;
+	private long[]				hits;
+	private long[]				misses;
+	private int					stripe_max_size;
+	private int					max_size;
+
+	public SimOutputCache(int max_size)
+	{
+		int capacity;
+
+		/* each stripe at most half full so the probes stay short */
+		this.stripe_max_size = Math.max(1, (max_size + NUM_STRIPES - 1) / NUM_STRIPES);
+		this.index_bits = 1;
+		while ((1 << this.index_bits) < this.stripe_max_size * 2)
+		{
+			this.index_bits++;
+		}
+		capacity = NUM_STRIPES << this.index_bits;
+		this.index_mask = (1 << this.index_bits) - 1;
+
+		this.keys = new long[capacity];
+		this.values = new int[capacity * NUM_VALUES];
+		this.is_referenced = new boolean[capacity];
+		this.locks = new Object[NUM_STRIPES];
+		this.sizes = new int[NUM_STRIPES];
+		this.hands = new int[NUM_STRIPES];
+		this.hits = new long[NUM_STRIPES];
+		this.misses = new long[NUM_STRIPES];
+		for (int i = 0; i < NUM_STRIPES; i++)
+		{
+			this.locks[i] = new Object();
+		}
+		this.max_size = max_size;
+		clear();
+	}
+
+	/* 1 bit of rst, 8 of sensor_light and 30 of general_sensors */
+	public static long key(int rst, int sensor_light, int general_sensors)
+	{
+		return ((long) (rst & 0x1) << 38) | ((long) (sensor_light & 0xFF) << 30) | (general_sensors & 0x3FFFFFFF);
+	}
+
+	/* Copies the outputs for the key and returns true if it's cached */
+	public boolean get(long key, int[] outputs)
+	{
+		int stripe = stripe(key);
+
+		synchronized (locks[stripe])
+		{
+			int idx = find(stripe, key);
+
+			if (keys[idx] == key)
+			{
+				System.arraycopy(values, idx * NUM_VALUES, outputs, 0, NUM_VALUES);
+				is_referenced[idx] = true;
+				hits[stripe]++;
+				return true;
+			}
+
+			misses[stripe]++;
+			return false;
+		}
+	}
+
+	/* A key that is already cached gets the new outputs, and only a new key
+	 * in a full stripe evicts another */
+	public void put(long key, int[] outputs)
+	{
+		int stripe = stripe(key);
+
+		synchronized (locks[stripe])
+		{
+			int idx = find(stripe, key);
+
+			if (keys[idx] != key)
+			{
+				if (sizes[stripe] == stripe_max_size)
+				{
+					evict(stripe);
+					idx = find(stripe, key);
+				}
+				keys[idx] = key;
+				sizes[stripe]++;
+			}
+			System.arraycopy(outputs, 0, values, idx * NUM_VALUES, NUM_VALUES);
+			is_referenced[idx] = false;
+		}
+	}
+
+	public void clear()
+	{
+		for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+		{
+			synchronized (locks[stripe])
+			{
+				for (int i = 0; i <= index_mask; i++)
+				{
+					keys[(stripe << index_bits) + i] = EMPTY;
+					is_referenced[(stripe << index_bits) + i] = false;
+				}
+				sizes[stripe] = 0;
+				hands[stripe] = 0;
+			}
+		}
+	}
+
+	public long getHits()
+	{
+		long total = 0;
+
+		for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+		{
+			synchronized (locks[stripe])
+			{
+				total += hits[stripe];
+			}
+		}
+
+		return total;
+	}
+
+	public long getMisses()
+	{
+		long total = 0;
+
+		for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+		{
+			synchronized (locks[stripe])
+			{
+				total += misses[stripe];
+			}
+		}
+
+		return total;
+	}
+
+	public int getSize()
+	{
+		int total = 0;
+
+		for (int stripe = 0; stripe < NUM_STRIPES; stripe++)
+		{
+			synchronized (locks[stripe])
+			{
+				total += sizes[stripe];
+			}
+		}
+
+		return total;
+	}
+
+	/* Each stripe holds max_size / NUM_STRIPES, rounded up */
+	public int getMaxSize()
+	{
+		return max_size;
+	}
+
+	private static long hash(long key)
+	{
+		return key * 0x9E3779B97F4A7C15L;
+	}
+
+	/* the top bits of the hash pick the stripe and the ones below them the
+	 * home entry in it */
+	private static int stripe(long key)
+	{
+		return (int) (hash(key) >>> (64 - STRIPE_BITS));
+	}
+
+	private int home(long key)
+	{
+		return (int) (hash(key) >>> (64 - STRIPE_BITS - index_bits)) & index_mask;
+	}
+
+	/* The entry holding key, or the empty one its probe stops at */
+	private int find(int stripe, long key)
+	{
+		int base = stripe << index_bits;
+		int idx = home(key);
+
+		while (keys[base + idx] != EMPTY && keys[base + idx] != key)
+		{
+			idx = (idx + 1) & index_mask;
+		}
+
+		return base + idx;
+	}
+
+	/* Sweeps the stripe's hand to the first entry not used since its last
+	 * pass */
+	private void evict(int stripe)
+	{
+		int base = stripe << index_bits;
+
+		for (;;)
+		{
+			int idx = base + hands[stripe];
+
+			hands[stripe] = (hands[stripe] + 1) & index_mask;
+			if (keys[idx] == EMPTY)
+			{
+				continue;
+			}
+			if (is_referenced[idx])
+			{
+				is_referenced[idx] = false;
+				continue;
+			}
+
+			remove(stripe, idx - base);
+			return;
+		}
+	}
+
+	/* Empties the entry and shifts back the ones after it that would no
+	 * longer be found past the hole. hole is within the stripe. */
+	private void remove(int stripe, int hole)
+	{
+		int base = stripe << index_bits;
+		int idx = hole;
+
+		for (;;)
+		{
+			int entry_home;
+
+			idx = (idx + 1) & index_mask;
+			if (keys[base + idx] == EMPTY)
+			{
+				break;
+			}
+
+			entry_home = home(keys[base + idx]);
+			/* can the entry at idx move back to the hole? only if its home
+			 * is not cyclically in (hole, idx] */
+			if (((idx - entry_home) & index_mask) >= ((idx - hole) & index_mask))
+			{
+				keys[base + hole] = keys[base + idx];
+				System.arraycopy(values, (base + idx) * NUM_VALUES, values, (base + hole) * NUM_VALUES, NUM_VALUES);
+				is_referenced[base + hole] = is_referenced[base + idx];
+				hole = idx;
+			}
+		}
+
+		keys[base + hole] = EMPTY;
+		is_referenced[base + hole] = false;
+		sizes[stripe]--;
+	}
+}
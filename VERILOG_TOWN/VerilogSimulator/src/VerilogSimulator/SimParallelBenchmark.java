@@ -0,0 +1,176 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/* Times SimParallelStage on a pool against stepping the signals one after
+ * another on a made up map: -signals copies of the given controller files,
+ * each seeing random cars at its light every tick. The pool has -threads
+ * threads, a thread per core if it's left out.
+ *
+ * java VerilogSimulator.SimParallelBenchmark [-signals n] [-ticks n]
+ * [-chunk n] [-threads n] [-engine INTERPRETER|BYTECODE] file.v ... */
+public class SimParallelBenchmark
+{
+	public static void main(String[] args) throws IOException
+	{
+		int num_signals = 500;
+		int num_ticks = 5000;
+		int chunk_size = SimParallelStage.DEFAULT_CHUNK_SIZE;
+		ForkJoinPool pool = SimParallelStage.sharedPool();
+		SimEngineType engine_type = SimEngineType.BYTECODE;
+		int num_files = 0;
+		String[] files = new String[args.length];
+		int[][] sensor_light;
+		int[] general_sensors;
+		long sequential_time;
+		long parallel_time;
+		long sequential_sum;
+		long parallel_sum;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-signals") && i + 1 < args.length)
+			{
+				num_signals = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-ticks") && i + 1 < args.length)
+			{
+				num_ticks = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-chunk") && i + 1 < args.length)
+			{
+				chunk_size = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-threads") && i + 1 < args.length)
+			{
+				pool = new ForkJoinPool(Integer.parseInt(args[++i]));
+			}
+			else if (args[i].equals("-engine") && i + 1 < args.length)
+			{
+				engine_type = SimEngineType.valueOf(args[++i]);
+			}
+			else
+			{
+				files[num_files++] = args[i];
+			}
+		}
+		if (num_files == 0)
+		{
+			System.out.println("usage: SimParallelBenchmark [-signals n] [-ticks n] [-chunk n] [-threads n] [-engine type] file.v ...");
+			return;
+		}
+
+		/* the same inputs for both runs */
+		sensor_light = new int[num_ticks][num_signals];
+		general_sensors = new int[num_ticks];
+		make_traffic(new Random(1), sensor_light, general_sensors);
+
+		/* once each first so both runs get a warm JIT */
+		run(make_map(files, num_files, num_signals, engine_type), null, chunk_size, sensor_light, general_sensors);
+		run(make_map(files, num_files, num_signals, engine_type), pool, chunk_size, sensor_light, general_sensors);
+
+		sequential_time = System.nanoTime();
+		sequential_sum = run(make_map(files, num_files, num_signals, engine_type), null, chunk_size, sensor_light, general_sensors);
+		sequential_time = System.nanoTime() - sequential_time;
+
+		parallel_time = System.nanoTime();
+		parallel_sum = run(make_map(files, num_files, num_signals, engine_type), pool, chunk_size, sensor_light, general_sensors);
+		parallel_time = System.nanoTime() - parallel_time;
+
+		System.out.println(num_signals + " signals, " + num_ticks + " ticks, " + pool.getParallelism() + " threads on " + Runtime.getRuntime().availableProcessors() + " cores, chunks of " + chunk_size);
+		System.out.printf("sequential %.3f ms a tick%n", sequential_time / 1e6 / num_ticks);
+		System.out.printf("parallel   %.3f ms a tick, %.2fx%n", parallel_time / 1e6 / num_ticks, (double) sequential_time / parallel_time);
+		if (sequential_sum != parallel_sum)
+		{
+			System.out.println("Error: the parallel outputs differ");
+		}
+		if (parallel_time >= sequential_time)
+		{
+			System.out.println("No gain, so keep the game's signals on one thread");
+		}
+	}
+
+	private static Parse[] make_map(String[] files, int num_files, int num_signals, SimEngineType engine_type) throws IOException
+	{
+		Parse[] signals = new Parse[num_signals];
+		/* every copy of a file shares its module like a level's do */
+		SimProgramCache cache = new SimProgramCache(new File(System.getProperty("java.io.tmpdir"), "verilogTownBenchmark"));
+
+		for (int i = 0; i < num_signals; i++)
+		{
+			signals[i] = new Parse();
+			signals[i].setSimEngine(engine_type);
+			signals[i].setProgramCache(cache);
+			signals[i].compileFileForGame(files[i % num_files]);
+		}
+
+		return signals;
+	}
+
+	private static void make_traffic(Random random, int[][] sensor_light, int[] general_sensors)
+	{
+		for (int tick = 0; tick < sensor_light.length; tick++)
+		{
+			for (int i = 0; i < sensor_light[tick].length; i++)
+			{
+				/* a car at each sensor a quarter of the time */
+				for (int bit = 0; bit < 8; bit++)
+				{
+					if (random.nextInt(4) == 0)
+					{
+						sensor_light[tick][i] |= 1 << bit;
+					}
+				}
+			}
+			general_sensors[tick] = random.nextInt(1 << 28);
+		}
+	}
+
+	/* Returns a sum of every output to check the runs against each other. A
+	 * null pool steps the signals one after another. */
+	private static long run(Parse[] signals, ForkJoinPool pool, int chunk_size, int[][] sensor_light, int[] general_sensors)
+	{
+		SimParallelStage stage = new SimParallelStage(signals, pool, chunk_size);
+		long sum = 0;
+
+		for (int tick = 0; tick < sensor_light.length; tick++)
+		{
+			stage.step(1, sensor_light[tick], general_sensors[tick]);
+			for (int i = 0; i < signals.length; i++)
+			{
+				int[] outputs = stage.getOutputs(i);
+
+				sum = sum * 31 + outputs[Parse.OUT_N] + 3 * outputs[Parse.OUT_S] + 5 * outputs[Parse.OUT_E] + 7 * outputs[Parse.OUT_W];
+			}
+		}
+
+		return sum;
+	}
+}
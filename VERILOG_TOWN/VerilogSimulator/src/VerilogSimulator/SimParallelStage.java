@@ -0,0 +1,168 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* Steps every traffic signal of a map for one tick, spread over a ForkJoin
+ * pool. The signals don't see each other within a tick, so any order gives
+ * the same result, and each signal's outputs go in its own array to be read
+ * in signal order after step() returns.
+ *
+ * Signals are stepped in chunks of chunk_size on one thread, as a step is
+ * only a few hundred nanoseconds. Maps with no more than chunk_size signals,
+ * which is every level shipped with the game, never leave the calling
+ * thread.
+ *
+ * With no pool every signal is stepped on the calling thread, which is what
+ * the one-argument constructor does: SimParallelBenchmark hasn't shown the
+ * pool beating that, so it's only used when asked for. */
+public class SimParallelStage
+{
+	public static final int		DEFAULT_CHUNK_SIZE	= 32;
+
+	private static ForkJoinPool	shared_pool;
+
+	private Parse[]				signals;
+	private ForkJoinPool		pool;
+	private int					chunk_size;
+	/* outputs of each signal as Parse.step gives them */
+	private int[][]				outputs;
+
+	/* this tick's inputs, for the tasks */
+	private int					rst;
+	private int[]				sensor_light;
+	private int					general_sensors;
+
+	/* Steps the signals one after another */
+	public SimParallelStage(Parse[] signals)
+	{
+		this(signals, null, DEFAULT_CHUNK_SIZE);
+	}
+
+	/* pool can be null to step the signals one after another */
+	public SimParallelStage(Parse[] signals, ForkJoinPool pool, int chunk_size)
+	{
+		if (chunk_size < 1)
+		{
+			throw new IllegalArgumentException("A chunk needs at least one signal");
+		}
+
+		this.signals = signals;
+		this.pool = pool;
+		this.chunk_size = chunk_size;
+		this.outputs = new int[signals.length][Parse.NUM_OUTPUTS];
+	}
+
+	/* One pool for every stage, with a thread per core. Its threads are
+	 * daemons so they don't keep the game running. */
+	public static synchronized ForkJoinPool sharedPool()
+	{
+		if (shared_pool == null)
+		{
+			shared_pool = new ForkJoinPool();
+		}
+
+		return shared_pool;
+	}
+
+	public Parse[] getSignals()
+	{
+		return signals;
+	}
+
+	/* Parse.step for every signal. sensor_light[i] is the light sensors of
+	 * signal i, and rst and general_sensors go to all of them. */
+	public void step(int rst, int[] sensor_light, int general_sensors)
+	{
+		if (sensor_light.length < signals.length)
+		{
+			throw new IllegalArgumentException("Every signal needs its light sensors");
+		}
+
+		if (pool == null || signals.length <= chunk_size || pool.getParallelism() == 1)
+		{
+			step_signals(rst, sensor_light, general_sensors, 0, signals.length);
+			return;
+		}
+
+		this.rst = rst;
+		this.sensor_light = sensor_light;
+		this.general_sensors = general_sensors;
+		/* returns once every chunk is done, with their writes visible */
+		pool.invoke(new StepTask(0, signals.length));
+		this.sensor_light = null;
+	}
+
+	/* outN, outS, outE, outW, debug_port and the clock cycle of a signal from
+	 * the last step() - see Parse.OUT_N... */
+	public int[] getOutputs(int signal)
+	{
+		return outputs[signal];
+	}
+
+	private void step_signals(int rst, int[] sensor_light, int general_sensors, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			signals[i].step(rst, sensor_light[i], general_sensors, outputs[i]);
+		}
+	}
+
+	private class StepTask extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+
+		private int					start;
+		private int					end;
+
+		StepTask(int start, int end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			int middle;
+
+			if (end - start <= chunk_size)
+			{
+				step_signals(rst, sensor_light, general_sensors, start, end);
+				return;
+			}
+
+			/* split on a chunk boundary so the chunks stay the same */
+			middle = start + ((end - start) / chunk_size / 2) * chunk_size;
+			if (middle == start)
+			{
+				middle += chunk_size;
+			}
+			invokeAll(new StepTask(start, middle), new StepTask(middle, end));
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* A module lowered by SimCompiler. Every port, reg, wire and parameter is a
+ * slot in the state arrays, and the always and assign blocks are flattened
+ * into one instruction array for clock cycles and one for combinational
+ * cycles. step() runs the blocks of a SimSchedule instead.
+ *
+ * A module with a vector wider than 30 bits is a wide program: every value is
+ * getValueWords() longs, and the value operands of CONST, LOAD_BIT, MASK,
+ * STORE and STORE_BITS index getConstants() instead of holding the value. */
+public class SimProgram
+{
+	private int				num_slots;
+	private String[]		slot_names;
+	private int[]			slot_masks;
+	private int[]			slot_init;
+	private int[]			slot_widths;
+
+	/* slots that must be assigned every cycle and slots that hold their value */
+	private int[]			latch_slots;
+	private int[]			carry_slots;
+	/* constants with their declared value unmasked in slot_init */
+	private int[]			parameter_slots;
+
+	private int				rst_slot;
+	private int				sensor_light_slot;
+	private int				general_sensors_slot;
+	private int[]			output_slots;
+
+	private int[]			comb_code;
+	private int[]			seq_code;
+	private SimSchedule		schedule;
+	private int				max_stack;
+
+	/* 0 for a module that fits in ints */
+	private int				value_words;
+	private long[]			constants;
+
+	/* where each COUNT counter is in the source - empty unless the program
+	 * was compiled for profiling */
+	private int[]			counter_lines;
+	private SimCoverage.Kind[]	counter_kinds;
+
+	public SimProgram(
+			String[] slot_names,
+			int[] slot_masks,
+			int[] slot_init,
+			int[] slot_widths,
+			int[] latch_slots,
+			int[] carry_slots,
+			int[] parameter_slots,
+			int[] input_slots,
+			int[] output_slots,
+			int[] comb_code,
+			int[] seq_code,
+			SimSchedule schedule,
+			int max_stack,
+			int value_words,
+			long[] constants)
+	{
+		this(slot_names, slot_masks, slot_init, slot_widths, latch_slots, carry_slots, parameter_slots, input_slots, output_slots, comb_code, seq_code, schedule, max_stack, value_words, constants, new int[0], new SimCoverage.Kind[0]);
+	}
+
+	public SimProgram(
+			String[] slot_names,
+			int[] slot_masks,
+			int[] slot_init,
+			int[] slot_widths,
+			int[] latch_slots,
+			int[] carry_slots,
+			int[] parameter_slots,
+			int[] input_slots,
+			int[] output_slots,
+			int[] comb_code,
+			int[] seq_code,
+			SimSchedule schedule,
+			int max_stack,
+			int value_words,
+			long[] constants,
+			int[] counter_lines,
+			SimCoverage.Kind[] counter_kinds)
+	{
+		this.num_slots = slot_names.length;
+		this.slot_names = slot_names;
+		this.slot_masks = slot_masks;
+		this.slot_init = slot_init;
+		this.slot_widths = slot_widths;
+		this.latch_slots = latch_slots;
+		this.carry_slots = carry_slots;
+		this.parameter_slots = parameter_slots;
+		this.rst_slot = input_slots[0];
+		this.sensor_light_slot = input_slots[1];
+		this.general_sensors_slot = input_slots[2];
+		this.output_slots = output_slots;
+		this.comb_code = comb_code;
+		this.seq_code = seq_code;
+		this.schedule = schedule;
+		this.max_stack = max_stack;
+		this.value_words = value_words;
+		this.constants = constants;
+		this.counter_lines = counter_lines;
+		this.counter_kinds = counter_kinds;
+	}
+
+	public int getNumSlots()
+	{
+		return num_slots;
+	}
+
+	public String getSlotName(int slot)
+	{
+		return slot_names[slot];
+	}
+
+	public int getSlotMask(int slot)
+	{
+		return slot_masks[slot];
+	}
+
+	public int getSlotInit(int slot)
+	{
+		return slot_init[slot];
+	}
+
+	public int getSlotWidth(int slot)
+	{
+		return slot_widths[slot];
+	}
+
+	public int[] getLatchSlots()
+	{
+		return latch_slots;
+	}
+
+	public int[] getCarrySlots()
+	{
+		return carry_slots;
+	}
+
+	public int[] getParameterSlots()
+	{
+		return parameter_slots;
+	}
+
+	public int getRstSlot()
+	{
+		return rst_slot;
+	}
+
+	public int getSensorLightSlot()
+	{
+		return sensor_light_slot;
+	}
+
+	public int getGeneralSensorsSlot()
+	{
+		return general_sensors_slot;
+	}
+
+	/* outN, outS, outE, outW and debug_port */
+	public int[] getOutputSlots()
+	{
+		return output_slots;
+	}
+
+	public int[] getCombCode()
+	{
+		return comb_code;
+	}
+
+	public int[] getSeqCode()
+	{
+		return seq_code;
+	}
+
+	public SimSchedule getSchedule()
+	{
+		return schedule;
+	}
+
+	public int getMaxStack()
+	{
+		return max_stack;
+	}
+
+	public boolean isWide()
+	{
+		return value_words > 0;
+	}
+
+	public int getValueWords()
+	{
+		return value_words;
+	}
+
+	/* getValueWords() longs for each constant */
+	public long[] getConstants()
+	{
+		return constants;
+	}
+
+	/* number of counters COUNT adds to, 0 unless compiled for profiling */
+	public int getNumCounters()
+	{
+		return counter_lines.length;
+	}
+
+	public int getCounterLine(int counter)
+	{
+		return counter_lines[counter];
+	}
+
+	public SimCoverage.Kind getCounterKind(int counter)
+	{
+		return counter_kinds[counter];
+	}
+
+	/* Lists the instructions, one per line, for debugging the compiler */
+	public String disassemble(int[] code)
+	{
+		StringBuilder text = new StringBuilder();
+		int pc = 0;
+
+		while (pc < code.length)
+		{
+			int opcode = code[pc];
+
+			text.append(pc).append(": ").append(SimOpcode.name(opcode));
+			for (int i = 1; i < SimOpcode.length(code, pc); i++)
+			{
+				text.append(' ').append(code[pc + i]);
+			}
+			if (opcode == SimOpcode.LOAD || opcode == SimOpcode.LOAD_BIT || opcode == SimOpcode.STORE || opcode == SimOpcode.STORE_BITS)
+			{
+				text.append("\t; ").append(slot_names[code[pc + 1]]);
+			}
+			text.append('\n');
+
+			pc += SimOpcode.length(code, pc);
+		}
+
+		return text.toString();
+	}
+}
@@ -0,0 +1,719 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Compiled modules saved in a directory so a source file that hasn't changed
+ * skips ANTLR and SimCompiler. A file is named by the SHA-256 of the source
+ * and FORMAT_VERSION, and holds everything in a SimProgram and the warnings
+ * SimAnalysis found in the source. Files are mapped to load them, and a file
+ * that can't be read is compiled again. Every size and index in a file is
+ * checked before it's used, so a damaged file is compiled again too instead
+ * of failing in the engine. The first store deletes the files an older
+ * FORMAT_VERSION wrote, which nothing would load again.
+ *
+ * The CompiledModules made from the programs are also kept in memory, so
+ * every signal of a level running the same source shares one. */
+public class SimProgramCache
+{
+	/* bump when SimCompiler or SimProgram change what they make */
+	public static final int		FORMAT_VERSION	= 5;
+
+	private static final int	MAGIC			= 0x56505247;
+	private static final String	SUFFIX			= ".vprog";
+	/* a few levels' worth, as every edit of a signal makes a new module */
+	private static final int	MAX_MODULES		= 64;
+
+	private File							directory;
+	private Map<String, CompiledModule>	modules;
+	private boolean							is_swept;
+
+	public SimProgramCache(File directory)
+	{
+		this.directory = directory;
+		this.modules = new LinkedHashMap<String, CompiledModule>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledModule> eldest)
+			{
+				return size() > MAX_MODULES;
+			}
+		};
+	}
+
+	/* .verilogTown/compiled in the user's home */
+	public static File defaultDirectory()
+	{
+		return new File(new File(System.getProperty("user.home"), ".verilogTown"), "compiled");
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/* The module compiled from source for engine_type, the same one every
+	 * time, or null if neither it nor its program is cached */
+	public synchronized CompiledModule loadModule(byte[] source, SimEngineType engine_type)
+	{
+		String key = key(source) + engine_type;
+		CompiledModule module = modules.get(key);
+		List<SimDiagnostic> diagnostics = new ArrayList<SimDiagnostic>();
+		SimProgram program;
+
+		if (module == null)
+		{
+			program = load(source, diagnostics);
+			if (program == null)
+			{
+				return null;
+			}
+			module = new CompiledModule(program, engine_type, diagnostics);
+			modules.put(key, module);
+		}
+
+		return module;
+	}
+
+	/* Keeps the module for the next loadModule and stores its program */
+	public synchronized void storeModule(byte[] source, SimEngineType engine_type, CompiledModule module) throws IOException
+	{
+		modules.put(key(source) + engine_type, module);
+		store(source, module.getProgram(), module.getDiagnostics());
+	}
+
+	/* The program compiled from source, or null if it isn't cached. The
+	 * warnings stored with it are added to diagnostics. */
+	public SimProgram load(byte[] source, List<SimDiagnostic> diagnostics)
+	{
+		File file = file(source);
+		RandomAccessFile input = null;
+
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		try
+		{
+			input = new RandomAccessFile(file, "r");
+			return read(input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length()), diagnostics);
+		}
+		catch (IOException e)
+		{
+			/* unreadable, or damaged - see read() */
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			/* a damaged file that runs off the end */
+			return null;
+		}
+		finally
+		{
+			close(input);
+		}
+	}
+
+	/* Saves the program and the warnings of source for the next load of the
+	 * same source. It's written to a temporary file first so a load never sees
+	 * half a file. */
+	public void store(byte[] source, SimProgram program, List<SimDiagnostic> diagnostics) throws IOException
+	{
+		File file = file(source);
+		File temp_file;
+		FileOutputStream output = null;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Can't make " + directory);
+		}
+		sweep();
+
+		temp_file = File.createTempFile("program", ".tmp", directory);
+		try
+		{
+			output = new FileOutputStream(temp_file);
+			output.write(write(program, diagnostics));
+			output.close();
+			output = null;
+
+			if (!temp_file.renameTo(file))
+			{
+				/* another Parse could have stored the same source */
+				file.delete();
+				if (!temp_file.renameTo(file))
+				{
+					throw new IOException("Can't rename " + temp_file + " to " + file);
+				}
+			}
+		}
+		finally
+		{
+			close(output);
+			temp_file.delete();
+		}
+	}
+
+	/* Once, deletes the files whose header isn't this FORMAT_VERSION's. Their
+	 * names hash another version, so no load would ever read them. */
+	private synchronized void sweep()
+	{
+		File[] files = directory.listFiles();
+
+		if (is_swept || files == null)
+		{
+			return;
+		}
+		is_swept = true;
+
+		for (File file : files)
+		{
+			if (file.getName().endsWith(SUFFIX) && !is_current(file))
+			{
+				file.delete();
+			}
+		}
+	}
+
+	private static boolean is_current(File file)
+	{
+		RandomAccessFile input = null;
+
+		try
+		{
+			input = new RandomAccessFile(file, "r");
+			return input.length() >= 8 && input.readInt() == MAGIC && input.readInt() == FORMAT_VERSION;
+		}
+		catch (IOException e)
+		{
+			/* can't tell, so leave it */
+			return true;
+		}
+		finally
+		{
+			close(input);
+		}
+	}
+
+	private File file(byte[] source)
+	{
+		return new File(directory, key(source) + SUFFIX);
+	}
+
+	private static String key(byte[] source)
+	{
+		MessageDigest digest;
+		StringBuilder text = new StringBuilder();
+
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			/* every Java platform has SHA-256 */
+			throw new IllegalStateException(e);
+		}
+
+		digest.update(ByteBuffer.allocate(4).putInt(FORMAT_VERSION).array());
+		digest.update(source);
+		for (byte b : digest.digest())
+		{
+			text.append(String.format("%02x", b & 0xFF));
+		}
+
+		return text.toString();
+	}
+
+	private static void close(Closeable closeable)
+	{
+		if (closeable != null)
+		{
+			try
+			{
+				closeable.close();
+			}
+			catch (IOException e)
+			{
+				/* nothing left to do with it */
+			}
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Writing
+	 * -------------------------------------------------------------------------- */
+	private static byte[] write(SimProgram program, List<SimDiagnostic> diagnostics) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		SimSchedule schedule = program.getSchedule();
+		int num_slots = program.getNumSlots();
+		int num_blocks = schedule.getNumBlocks();
+
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT_VERSION);
+
+		output.writeInt(num_slots);
+		for (int i = 0; i < num_slots; i++)
+		{
+			write_string(output, program.getSlotName(i));
+			output.writeInt(program.getSlotMask(i));
+			output.writeInt(program.getSlotInit(i));
+			output.writeInt(program.getSlotWidth(i));
+		}
+		write_ints(output, program.getLatchSlots());
+		write_ints(output, program.getCarrySlots());
+		write_ints(output, program.getParameterSlots());
+		write_ints(output, new int[] { program.getRstSlot(), program.getSensorLightSlot(), program.getGeneralSensorsSlot() });
+		write_ints(output, program.getOutputSlots());
+		write_ints(output, program.getCombCode());
+		write_ints(output, program.getSeqCode());
+		output.writeInt(program.getMaxStack());
+		output.writeInt(program.getValueWords());
+		output.writeInt(program.getConstants().length);
+		for (int i = 0; i < program.getConstants().length; i++)
+		{
+			output.writeLong(program.getConstants()[i]);
+		}
+
+		write_ints(output, schedule.getCode());
+		output.writeInt(num_blocks);
+		for (int i = 0; i < num_blocks; i++)
+		{
+			output.writeInt(schedule.getBlockStart(i));
+			output.writeBoolean(schedule.isAlwaysRun(i));
+		}
+		output.writeInt(schedule.getNumCombBlocks());
+		for (int i = 0; i < num_slots; i++)
+		{
+			write_ints(output, schedule.getSlotReaders(i));
+		}
+		write_ints(output, schedule.getLatchBlocks());
+		write_ints(output, schedule.getEdgeSlots());
+		output.writeBoolean(schedule.isStateless());
+
+		output.writeInt(diagnostics.size());
+		for (SimDiagnostic diagnostic : diagnostics)
+		{
+			output.writeInt(diagnostic.getKind().ordinal());
+			output.writeInt(diagnostic.getLine());
+			output.writeInt(diagnostic.getColumn());
+			output.writeBoolean(diagnostic.getSignal() != null);
+			if (diagnostic.getSignal() != null)
+			{
+				write_string(output, diagnostic.getSignal());
+			}
+			write_string(output, diagnostic.getMessage());
+		}
+
+		output.flush();
+
+		return bytes.toByteArray();
+	}
+
+	private static void write_string(DataOutputStream output, String text) throws IOException
+	{
+		output.writeInt(text.length());
+		output.writeChars(text);
+	}
+
+	private static void write_ints(DataOutputStream output, int[] values) throws IOException
+	{
+		output.writeInt(values.length);
+		for (int i = 0; i < values.length; i++)
+		{
+			output.writeInt(values[i]);
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Reading, in the order written
+	 * -------------------------------------------------------------------------- */
+	/* Throws IOException if a size or index in the file is out of range.
+	 * The warnings are only added to diagnostics once the whole file has
+	 * been read. */
+	private static SimProgram read(ByteBuffer input, List<SimDiagnostic> diagnostics) throws IOException
+	{
+		int num_slots;
+		String[] slot_names;
+		int[] slot_masks;
+		int[] slot_init;
+		int[] slot_widths;
+		int[] latch_slots;
+		int[] carry_slots;
+		int[] parameter_slots;
+		int[] input_slots;
+		int[] output_slots;
+		int[] comb_code;
+		int[] seq_code;
+		int max_stack;
+		int value_words;
+		long[] constants;
+		int[] step_code;
+		int[] block_starts;
+		boolean[] is_always_run;
+		int num_comb_blocks;
+		int[][] slot_readers;
+		int[] latch_blocks;
+		int[] edge_slots;
+		boolean is_stateless;
+		SimDiagnostic[] warnings;
+		int num_values;
+		boolean[] step_starts;
+
+		if (input.getInt() != MAGIC || input.getInt() != FORMAT_VERSION)
+		{
+			return null;
+		}
+
+		/* a slot is at least a name length, mask, init and width */
+		num_slots = read_count(input, 16);
+		slot_names = new String[num_slots];
+		slot_masks = new int[num_slots];
+		slot_init = new int[num_slots];
+		slot_widths = new int[num_slots];
+		for (int i = 0; i < num_slots; i++)
+		{
+			slot_names[i] = read_string(input);
+			slot_masks[i] = input.getInt();
+			slot_init[i] = input.getInt();
+			slot_widths[i] = input.getInt();
+			check(slot_widths[i] > 0, "width");
+		}
+		latch_slots = read_indexes(input, num_slots);
+		carry_slots = read_indexes(input, num_slots);
+		parameter_slots = read_indexes(input, num_slots);
+		input_slots = read_indexes(input, num_slots);
+		output_slots = read_indexes(input, num_slots);
+		check(input_slots.length == 3 && output_slots.length == 5, "ports");
+		comb_code = read_ints(input);
+		seq_code = read_ints(input);
+		max_stack = input.getInt();
+		value_words = input.getInt();
+		constants = new long[read_count(input, 8)];
+		for (int i = 0; i < constants.length; i++)
+		{
+			constants[i] = input.getLong();
+		}
+
+		step_code = read_ints(input);
+		block_starts = new int[read_count(input, 5)];
+		is_always_run = new boolean[block_starts.length];
+		for (int i = 0; i < block_starts.length; i++)
+		{
+			block_starts[i] = input.getInt();
+			is_always_run[i] = input.get() != 0;
+		}
+		num_comb_blocks = input.getInt();
+		check(num_comb_blocks >= 0 && num_comb_blocks <= block_starts.length, "blocks");
+		slot_readers = new int[num_slots][];
+		for (int i = 0; i < num_slots; i++)
+		{
+			slot_readers[i] = read_indexes(input, block_starts.length);
+		}
+		latch_blocks = read_ints(input);
+		edge_slots = read_indexes(input, num_slots);
+		is_stateless = input.get() != 0;
+
+		/* a warning is at least a kind, line, column, no signal and a message
+		 * length */
+		warnings = new SimDiagnostic[read_count(input, 17)];
+		for (int i = 0; i < warnings.length; i++)
+		{
+			int kind = input.getInt();
+			int line = input.getInt();
+			int column = input.getInt();
+			String signal = (input.get() != 0) ? read_string(input) : null;
+
+			check(kind >= 0 && kind < SimDiagnostic.Kind.values().length, "warning");
+			warnings[i] = new SimDiagnostic(SimDiagnostic.Kind.values()[kind], line, column, signal, read_string(input));
+		}
+
+		if (input.hasRemaining())
+		{
+			return null;
+		}
+
+		/* the engines size their values and stack from these */
+		check(value_words == value_words(slot_widths, parameter_slots), "value words");
+		check(value_words == 0 || constants.length % value_words == 0, "constants");
+		num_values = (value_words == 0) ? constants.length : constants.length / value_words;
+		check(max_stack >= 0 && max_stack <= comb_code.length + seq_code.length + step_code.length, "stack");
+
+		check_code(comb_code, num_slots, num_values, value_words);
+		check_stack(comb_code, new int[] { 0 }, max_stack);
+		check_code(seq_code, num_slots, num_values, value_words);
+		check_stack(seq_code, new int[] { 0 }, max_stack);
+		step_starts = check_code(step_code, num_slots, num_values, value_words);
+		for (int i = 0; i < block_starts.length; i++)
+		{
+			int end = (i + 1 < block_starts.length) ? block_starts[i + 1] : step_code.length;
+
+			check(block_starts[i] >= 0 && block_starts[i] < end && step_starts[block_starts[i]], "block start");
+			check(step_starts[end - 1] && step_code[end - 1] == SimOpcode.END, "block end");
+		}
+		check_stack(step_code, block_starts, max_stack);
+		check(latch_blocks.length == latch_slots.length, "latch blocks");
+		for (int i = 0; i < latch_blocks.length; i++)
+		{
+			check(latch_blocks[i] >= -1 && latch_blocks[i] < num_comb_blocks, "latch block");
+		}
+
+		diagnostics.addAll(Arrays.asList(warnings));
+
+		return new SimProgram(slot_names, slot_masks, slot_init, slot_widths, latch_slots, carry_slots, parameter_slots, input_slots, output_slots, comb_code, seq_code, new SimSchedule(step_code, block_starts, num_comb_blocks, slot_readers, latch_blocks, is_always_run, edge_slots, is_stateless), max_stack, value_words, constants);
+	}
+
+	private static String read_string(ByteBuffer input) throws IOException
+	{
+		char[] text = new char[read_count(input, 2)];
+
+		for (int i = 0; i < text.length; i++)
+		{
+			text[i] = input.getChar();
+		}
+
+		return new String(text);
+	}
+
+	private static int[] read_ints(ByteBuffer input) throws IOException
+	{
+		int[] values = new int[read_count(input, 4)];
+
+		input.asIntBuffer().get(values);
+		input.position(input.position() + 4 * values.length);
+
+		return values;
+	}
+
+	/* read_ints where each is an index below limit */
+	private static int[] read_indexes(ByteBuffer input, int limit) throws IOException
+	{
+		int[] indexes = read_ints(input);
+
+		for (int i = 0; i < indexes.length; i++)
+		{
+			check(indexes[i] >= 0 && indexes[i] < limit, "index");
+		}
+
+		return indexes;
+	}
+
+	/* A count of things of bytes_each bytes that the rest of the file can
+	 * hold, so a damaged count can't allocate more than the file */
+	private static int read_count(ByteBuffer input, int bytes_each) throws IOException
+	{
+		int count = input.getInt();
+
+		check(count >= 0 && count <= input.remaining() / bytes_each, "count");
+
+		return count;
+	}
+
+	/* what SimCompiler makes the value words for these widths */
+	private static int value_words(int[] slot_widths, int[] parameter_slots)
+	{
+		boolean[] is_parameter = new boolean[slot_widths.length];
+		long max_width = 0;
+
+		for (int i = 0; i < parameter_slots.length; i++)
+		{
+			is_parameter[parameter_slots[i]] = true;
+		}
+		for (int i = 0; i < slot_widths.length; i++)
+		{
+			if (!is_parameter[i] && slot_widths[i] > max_width)
+			{
+				max_width = slot_widths[i];
+			}
+		}
+
+		return (max_width > 30) ? (int) ((max_width + 63) / 64) : 0;
+	}
+
+	/* Checks that every instruction is whole and its slots, constants and
+	 * targets are in the program, and that the code ends with END. Returns
+	 * which indexes start an instruction. */
+	private static boolean[] check_code(int[] code, int num_slots, int num_values, int value_words) throws IOException
+	{
+		boolean[] is_start = new boolean[code.length];
+		int pc = 0;
+
+		while (pc < code.length)
+		{
+			int opcode = code[pc];
+			int length;
+
+			/* profiling programs aren't cached, so there is no COUNT */
+			check(opcode >= 0 && opcode < SimOpcode.NUM_OPCODES && opcode != SimOpcode.COUNT, "opcode");
+			check(opcode != SimOpcode.SWITCH || (value_words == 0 && pc + 2 < code.length && code[pc + 2] >= 0 && code[pc + 2] <= code.length), "switch");
+			check(opcode < SimOpcode.INT_DIV || value_words > 0, "int opcode");
+			length = SimOpcode.length(code, pc);
+			check(length <= code.length - pc, "instruction");
+			is_start[pc] = true;
+			pc += length;
+		}
+		check(code.length == 0 || (is_start[code.length - 1] && code[code.length - 1] == SimOpcode.END), "end");
+
+		for (pc = 0; pc < code.length; pc += SimOpcode.length(code, pc))
+		{
+			switch (code[pc])
+			{
+				case SimOpcode.CONST:
+				case SimOpcode.MASK:
+					check_value(code[pc + 1], num_values, value_words);
+					break;
+				case SimOpcode.LOAD:
+					check(code[pc + 1] >= 0 && code[pc + 1] < num_slots, "slot");
+					break;
+				case SimOpcode.LOAD_BIT:
+				case SimOpcode.STORE:
+					check(code[pc + 1] >= 0 && code[pc + 1] < num_slots, "slot");
+					check_value(code[pc + 2], num_values, value_words);
+					break;
+				case SimOpcode.STORE_BITS:
+					check(code[pc + 1] >= 0 && code[pc + 1] < num_slots, "slot");
+					check(code[pc + 2] >= 0, "lsb");
+					check_value(code[pc + 3], num_values, value_words);
+					check_value(code[pc + 4], num_values, value_words);
+					break;
+				case SimOpcode.JUMP:
+				case SimOpcode.JUMP_IF_ZERO:
+				case SimOpcode.CASE_NE:
+					check_target(code[pc + 1], is_start);
+					break;
+				case SimOpcode.SWITCH:
+					for (int i = 0; i <= code[pc + 2]; i++)
+					{
+						check_target(code[pc + 3 + i], is_start);
+					}
+					break;
+				default:
+					break;
+			}
+		}
+
+		return is_start;
+	}
+
+	/* Follows every path from the entries, checked by check_code, to see that
+	 * no instruction reads more values than the stack holds or pushes past
+	 * max_stack, and that paths meeting at an instruction agree on the
+	 * depth */
+	private static void check_stack(int[] code, int[] entries, int max_stack) throws IOException
+	{
+		int[] depths = new int[code.length];
+		int[] pending = new int[code.length];
+		int num_pending = 0;
+
+		Arrays.fill(depths, -1);
+		for (int i = 0; i < entries.length && code.length > 0; i++)
+		{
+			num_pending = reach(depths, pending, num_pending, entries[i], 0);
+		}
+
+		while (num_pending > 0)
+		{
+			int pc = pending[--num_pending];
+			int opcode = code[pc];
+			int depth = depths[pc] + SimOpcode.stackEffect(opcode);
+
+			check(depths[pc] >= SimOpcode.stackInputs(opcode) && depth <= max_stack, "stack");
+			switch (opcode)
+			{
+				case SimOpcode.END:
+					break;
+				case SimOpcode.JUMP:
+					num_pending = reach(depths, pending, num_pending, code[pc + 1], depth);
+					break;
+				case SimOpcode.SWITCH:
+					for (int i = 0; i <= code[pc + 2]; i++)
+					{
+						num_pending = reach(depths, pending, num_pending, code[pc + 3 + i], depth);
+					}
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+				case SimOpcode.CASE_NE:
+					num_pending = reach(depths, pending, num_pending, code[pc + 1], depth);
+					num_pending = reach(depths, pending, num_pending, pc + SimOpcode.length(code, pc), depth);
+					break;
+				default:
+					num_pending = reach(depths, pending, num_pending, pc + SimOpcode.length(code, pc), depth);
+					break;
+			}
+		}
+	}
+
+	/* the depth at pc, queued the first time pc is reached */
+	private static int reach(int[] depths, int[] pending, int num_pending, int pc, int depth) throws IOException
+	{
+		/* check_code saw that the code ends with END */
+		if (depths[pc] == -1)
+		{
+			depths[pc] = depth;
+			pending[num_pending++] = pc;
+		}
+		check(depths[pc] == depth, "stack");
+
+		return num_pending;
+	}
+
+	/* a value operand indexes the constants in a wide program */
+	private static void check_value(int operand, int num_values, int value_words) throws IOException
+	{
+		check(value_words == 0 || (operand >= 0 && operand < num_values), "constant");
+	}
+
+	private static void check_target(int target, boolean[] is_start) throws IOException
+	{
+		check(target >= 0 && target < is_start.length && is_start[target], "target");
+	}
+
+	private static void check(boolean is_valid, String what) throws IOException
+	{
+		if (!is_valid)
+		{
+			throw new IOException("Bad " + what + " in a cached program");
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* What step() runs, split into blocks so only the blocks whose inputs changed
+ * are run again. Every assign and always block of the module is a block in
+ * one instruction array, each ending with an END: the combinational blocks
+ * first in dependency order, then the clocked blocks with only their
+ * non-blocking assigns. */
+public class SimSchedule
+{
+	private int[]		code;
+	private int[]		block_starts;
+	private int			num_comb_blocks;
+
+	/* the blocks that load each slot */
+	private int[][]		slot_readers;
+
+	/* the one block assigning each of SimProgram's latch slots, or -1 if none
+	 * or several do - those blocks run every step */
+	private int[]		latch_blocks;
+	private boolean[]	is_always_run;
+
+	/* slots the clocked blocks assign */
+	private int[]		edge_slots;
+
+	/* no clocked blocks, and no block loads a slot assigned by itself or a
+	 * later block, so the outputs only depend on the inputs */
+	private boolean		is_stateless;
+
+	public SimSchedule(
+			int[] code,
+			int[] block_starts,
+			int num_comb_blocks,
+			int[][] slot_readers,
+			int[] latch_blocks,
+			boolean[] is_always_run,
+			int[] edge_slots,
+			boolean is_stateless)
+	{
+		this.code = code;
+		this.block_starts = block_starts;
+		this.num_comb_blocks = num_comb_blocks;
+		this.slot_readers = slot_readers;
+		this.latch_blocks = latch_blocks;
+		this.is_always_run = is_always_run;
+		this.edge_slots = edge_slots;
+		this.is_stateless = is_stateless;
+	}
+
+	public int[] getCode()
+	{
+		return code;
+	}
+
+	public int getNumBlocks()
+	{
+		return block_starts.length;
+	}
+
+	public int getNumCombBlocks()
+	{
+		return num_comb_blocks;
+	}
+
+	public int getBlockStart(int block)
+	{
+		return block_starts[block];
+	}
+
+	/* one past the END of the block */
+	public int getBlockEnd(int block)
+	{
+		return (block + 1 < block_starts.length) ? block_starts[block + 1] : code.length;
+	}
+
+	public int[] getSlotReaders(int slot)
+	{
+		return slot_readers[slot];
+	}
+
+	public int[] getLatchBlocks()
+	{
+		return latch_blocks;
+	}
+
+	public boolean isAlwaysRun(int block)
+	{
+		return is_always_run[block];
+	}
+
+	public int[] getEdgeSlots()
+	{
+		return edge_slots;
+	}
+
+	/* A latch holds a value from an earlier step, so a module that can
+	 * infer one isn't stateless even if no block loads the slot */
+	public boolean isStateless()
+	{
+		return is_stateless && latch_blocks.length == 0;
+	}
+}
@@ -0,0 +1,368 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+
+package VerilogSimulator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/* Writes the signals of a module to a VCD file for a waveform viewer such as
+ * GTKWave. sample() takes the value of every slot, and only the slots that
+ * changed since the last sample are written, after the time. Only the slots
+ * given are declared, so constants like parameters can be left out. Output
+ * goes through one buffer to the channel so a sample where little changes
+ * costs a few comparisons.
+ *
+ * A name like first.inner.count is the signal count of an instance, and is
+ * declared as count in a scope for first with one for inner in it.
+ *
+ * Values are value_words longs per slot, or one long holding the int value
+ * for a program that isn't wide, and are written as their low width bits. */
+public class SimVcdWriter
+{
+	private static final int		BUFFER_SIZE	= 64 * 1024;
+	/* the printable characters VCD identifiers are made of */
+	private static final int		FIRST_CODE	= '!';
+	private static final int		NUM_CODES	= '~' - '!' + 1;
+
+	private WritableByteChannel		channel;
+	private ByteBuffer				buffer;
+	private String					scope;
+
+	private String[]				names;
+	private int[]					widths;
+	private int						words;
+	/* the slots written, and their identifiers in the same order */
+	private int[]					slots;
+	private byte[][]				codes;
+
+	/* what the file has for each slot */
+	private long[]					written_values;
+	private boolean					is_started;
+	private long					last_time;
+
+	/* names and widths are by slot */
+	public SimVcdWriter(WritableByteChannel channel, String scope, String[] names, int[] widths, int value_words, int[] slots)
+	{
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.scope = scope;
+		this.names = names;
+		this.widths = widths;
+		this.words = Math.max(1, value_words);
+		this.slots = slots;
+		this.codes = new byte[slots.length][];
+		for (int i = 0; i < slots.length; i++)
+		{
+			codes[i] = code(i);
+		}
+
+		this.written_values = new long[names.length * words];
+		this.is_started = false;
+		this.last_time = -1;
+	}
+
+	public static SimVcdWriter open(File file, String scope, String[] names, int[] widths, int value_words, int[] slots) throws IOException
+	{
+		return new SimVcdWriter(new FileOutputStream(file).getChannel(), scope, names, widths, value_words, slots);
+	}
+
+	/* The values at time, which can't be negative or before the last
+	 * sample's. The first sample is written whole as the initial values. */
+	public void sample(long time, long[] values) throws IOException
+	{
+		boolean is_time_written = false;
+
+		if (time < 0)
+		{
+			throw new IllegalArgumentException("VCD time can't be negative: " + time);
+		}
+		if (!is_started)
+		{
+			write_header();
+			put_time(time);
+			put("$dumpvars\n");
+			for (int i = 0; i < slots.length; i++)
+			{
+				write_value(i, values);
+			}
+			put("$end\n");
+			System.arraycopy(values, 0, written_values, 0, written_values.length);
+			is_started = true;
+			last_time = time;
+			return;
+		}
+		if (time < last_time)
+		{
+			throw new IllegalArgumentException("VCD time can't go back from " + last_time + " to " + time);
+		}
+
+		for (int i = 0; i < slots.length; i++)
+		{
+			int slot = slots[i];
+
+			if (!is_changed(slot, values))
+			{
+				continue;
+			}
+			if (!is_time_written && time != last_time)
+			{
+				put_time(time);
+			}
+			is_time_written = true;
+			write_value(i, values);
+			System.arraycopy(values, slot * words, written_values, slot * words, words);
+		}
+		last_time = time;
+	}
+
+	/* Writes out what is buffered */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Encoding
+	 * -------------------------------------------------------------------------- */
+	/* The signals are declared sorted by their instance path, so each
+	 * instance's scope is opened once */
+	private void write_header() throws IOException
+	{
+		Integer[] order = new Integer[slots.length];
+		String[] open = new String[0];
+
+		for (int i = 0; i < order.length; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> compare_paths(names[slots[a]], names[slots[b]]));
+
+		put("$version Verilog Town $end\n");
+		put("$timescale 1 ns $end\n");
+		put("$scope module " + scope + " $end\n");
+		for (int i : order)
+		{
+			String[] parts = names[slots[i]].split("\\.");
+			int depth = parts.length - 1;
+			int common = 0;
+
+			while (common < open.length && common < depth && open[common].equals(parts[common]))
+			{
+				common++;
+			}
+			for (int j = open.length; j > common; j--)
+			{
+				put("$upscope $end\n");
+			}
+			for (int j = common; j < depth; j++)
+			{
+				put("$scope module " + parts[j] + " $end\n");
+			}
+			open = Arrays.copyOf(parts, depth);
+			put("$var wire " + widths[slots[i]] + " " + new String(codes[i], "US-ASCII") + " " + parts[depth] + " $end\n");
+		}
+		for (int j = open.length; j >= 0; j--)
+		{
+			put("$upscope $end\n");
+		}
+		put("$enddefinitions $end\n");
+	}
+
+	/* By the instances in the names, a signal of the module itself first and
+	 * signals of the same instance in slot order */
+	private static int compare_paths(String name1, String name2)
+	{
+		String[] parts1 = name1.split("\\.");
+		String[] parts2 = name2.split("\\.");
+		int depth = Math.min(parts1.length, parts2.length) - 1;
+
+		for (int i = 0; i < depth; i++)
+		{
+			int compare = parts1[i].compareTo(parts2[i]);
+
+			if (compare != 0)
+			{
+				return compare;
+			}
+		}
+
+		return parts1.length - parts2.length;
+	}
+
+	private boolean is_changed(int slot, long[] values)
+	{
+		int width = widths[slot];
+
+		for (int j = 0; j < words; j++)
+		{
+			int index = slot * words + j;
+			long mask = word_mask(width - 64 * j);
+
+			if (((values[index] ^ written_values[index]) & mask) != 0)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/* 0! for a 1 bit signal, b101 ! for a vector with the leading 0s left
+	 * out. index is into slots. */
+	private void write_value(int index, long[] values) throws IOException
+	{
+		int slot = slots[index];
+		int width = widths[slot];
+		int top = width - 1;
+
+		make_room(width + codes[index].length + 3);
+		if (width == 1)
+		{
+			buffer.put((byte) ('0' + (values[slot * words] & 1)));
+		}
+		else
+		{
+			buffer.put((byte) 'b');
+			while (top > 0 && bit(values, slot, top) == 0)
+			{
+				top--;
+			}
+			for (int i = top; i >= 0; i--)
+			{
+				buffer.put((byte) ('0' + bit(values, slot, i)));
+			}
+			buffer.put((byte) ' ');
+		}
+		buffer.put(codes[index]);
+		buffer.put((byte) '\n');
+	}
+
+	private int bit(long[] values, int slot, int i)
+	{
+		/* a value that isn't wide is an int in one long */
+		if (i >= 64 * words)
+		{
+			return 0;
+		}
+
+		return (int) (values[slot * words + (i >>> 6)] >>> (i & 63)) & 1;
+	}
+
+	private static long word_mask(int bits)
+	{
+		if (bits >= 64)
+		{
+			return ~0L;
+		}
+
+		return (bits <= 0) ? 0 : (1L << bits) - 1;
+	}
+
+	/* Identifiers counting !, ", ... ~, !!, !", ... so the first slots get
+	 * the shortest */
+	private static byte[] code(int slot)
+	{
+		byte[] digits = new byte[8];
+		int length = 0;
+		byte[] code;
+
+		for (int n = slot; n >= 0; n = n / NUM_CODES - 1)
+		{
+			digits[length++] = (byte) (FIRST_CODE + n % NUM_CODES);
+		}
+		code = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			code[i] = digits[length - 1 - i];
+		}
+
+		return code;
+	}
+
+	/* #time and a newline, with the digits put straight into the buffer */
+	private void put_time(long time) throws IOException
+	{
+		int length = 1;
+		int start;
+
+		for (long n = time; n >= 10; n /= 10)
+		{
+			length++;
+		}
+		make_room(length + 2);
+		buffer.put((byte) '#');
+		start = buffer.position();
+		for (int i = length - 1; i >= 0; i--)
+		{
+			buffer.put(start + i, (byte) ('0' + time % 10));
+			time /= 10;
+		}
+		buffer.position(start + length);
+		buffer.put((byte) '\n');
+	}
+
+	private void put(String text) throws IOException
+	{
+		make_room(text.length());
+		for (int i = 0; i < text.length(); i++)
+		{
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+
+	private void make_room(int length) throws IOException
+	{
+		if (buffer.remaining() < length)
+		{
+			flush();
+		}
+		if (buffer.capacity() < length)
+		{
+			buffer = ByteBuffer.allocateDirect(length);
+		}
+	}
+}
@@ -24,61 +24,110 @@ THE SOFTWARE.
 
 package VerilogSimulator;
 
-import java.util.Hashtable;
 import java.util.ArrayList;
+import java.util.List;
 
-public class SimVisitor extends Verilog2001BaseVisitor<Value>
-{
-	private boolean							is_sequential_sim_cycle;
-	private int								cycle_time;
-
-	private boolean							is_combinational;
-	private boolean							is_sequential;
-
-	private Hashtable<String, ParsePort>	hash_ports;
-	private Hashtable<String, ParseRegWire>	hash_vars;
-	private ArrayList<ParsePort>			ports_list;
-	private ArrayList<ParseRegWire>			vars_list;
+import org.antlr.v4.runtime.tree.ParseTree;
 
-	private ArrayList<Integer>				output_vector_list;
-
-	private int								new_val_idx;
-	private int								old_val_idx;
-
-	private Integer							outN;
-	private Integer							outS;
-	private Integer							outE;
-	private Integer							outW;
-	private Integer							debug;
-	private Integer							clock_cycle;
+public class SimVisitor extends Verilog2001BaseVisitor<Void>
+{
+	private boolean				is_sequential_sim_cycle;
+
+	private boolean				is_combinational;
+	private boolean				is_sequential;
+
+	/* identifiers are resolved to slots by the binding pass */
+	private SimBinding			binding;
+	/* stores go to new_values and loads read old_values, and the arrays
+	 * trade places every sim cycle */
+	private int[]				new_values;
+	private int[]				old_values;
+	private int[]				slot_masks;
+	/* what loads read - old_values, except while step() settles */
+	private int[]				read_values;
+
+	/* the blocks step() settles in dependency order, and the clocked ones */
+	private ParseTree[]			comb_blocks;
+	private ParseTree[]			seq_blocks;
+
+	/* One bit per slot assigned this sim cycle, and the slots in the order
+	 * they were first assigned so the bits are cleared in O(assigned) */
+	private long[]				is_written;
+	private int[]				written_slots;
+	private int					num_written;
+	/* the carry slots as bits like is_written */
+	private long[]				carry_bits;
+
+	private ArrayList<Integer>	output_vector_list;
+
+	/* Expression visits leave their value and size here instead of returning
+	 * a new object, so a sim cycle allocates nothing */
+	private int					result_value;
+	private int					result_size;
+
+	/* numbers by token index, parsed the first time they are reached */
+	private int[]				number_values;
+	private int[]				number_sizes;
+	private boolean[]			is_number_parsed;
+
+	/* the lsb and field mask of bit and range stores by token index, like
+	 * numbers */
+	private int[]				store_lsbs;
+	private int[]				store_masks;
+	private boolean[]			is_store_parsed;
+
+	private int					clock_cycle;
+
+	/* step_blocks is SimCompiler.stepBlocks() */
+	public SimVisitor(SimBinding binding, List<ParseTree> step_blocks)
+	{
+		int num_slots = binding.getNumSlots();
+		ArrayList<ParseTree> comb_list = new ArrayList<ParseTree>();
+		ArrayList<ParseTree> seq_list = new ArrayList<ParseTree>();
 
-	public SimVisitor(
-			ArrayList<ParsePort> ports_list,
-			ArrayList<ParseRegWire> vars_list,
-			Hashtable<String, ParsePort> hash_ports,
-			Hashtable<String, ParseRegWire> hash_vars)
-	{
 		this.is_combinational = false;
 		this.is_sequential = false;
 
 		this.is_sequential_sim_cycle = true;
-		this.cycle_time = 0;
 
-		this.new_val_idx = 0;
-		this.old_val_idx = 1;
+		this.binding = binding;
+		this.slot_masks = binding.getSlotMasks();
+		/* initialize two spots for new and old values */
+		this.new_values = binding.getSlotInit().clone();
+		this.old_values = binding.getSlotInit().clone();
+		this.read_values = old_values;
+
+		for (int i = 0; i < step_blocks.size(); i++)
+		{
+			if (step_blocks.get(i) instanceof Verilog2001Parser.SEQUENTIAL_ALWAYSContext)
+			{
+				seq_list.add(step_blocks.get(i));
+			}
+			else
+			{
+				comb_list.add(step_blocks.get(i));
+			}
+		}
+		this.comb_blocks = comb_list.toArray(new ParseTree[comb_list.size()]);
+		this.seq_blocks = seq_list.toArray(new ParseTree[seq_list.size()]);
+
+		this.is_written = new long[(num_slots + 63) / 64];
+		this.written_slots = new int[num_slots];
+		this.num_written = 0;
+		this.carry_bits = slot_bits(binding.getCarrySlots(), num_slots);
 
-		this.ports_list = ports_list;
-		this.vars_list = vars_list;
-		this.hash_ports = hash_ports;
-		this.hash_vars = hash_vars;
+		this.number_values = new int[binding.getNumTokens()];
+		this.number_sizes = new int[binding.getNumTokens()];
+		this.is_number_parsed = new boolean[binding.getNumTokens()];
+		this.store_lsbs = new int[binding.getNumTokens()];
+		this.store_masks = new int[binding.getNumTokens()];
+		this.is_store_parsed = new boolean[binding.getNumTokens()];
 
 		this.output_vector_list = new ArrayList<Integer>();
-		this.output_vector_list.add(outN);
-		this.output_vector_list.add(outS);
-		this.output_vector_list.add(outE);
-		this.output_vector_list.add(outW);
-		this.output_vector_list.add(debug);
-		this.output_vector_list.add(clock_cycle);
+		for (int i = 0; i < 6; i++)
+		{
+			this.output_vector_list.add(0);
+		}
 		/* initialize a clock tracker */
 		this.clock_cycle = 0;
 	}
@@ -91,14 +140,33 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * --------------------------------------------------
 	 * ------------------------
 	 * -------------------------------------------------------------- */
-	/* toggles the access index into the values */
+	private static long[] slot_bits(int[] slots, int num_slots)
+	{
+		long[] bits = new long[(num_slots + 63) / 64];
+
+		for (int i = 0; i < slots.length; i++)
+		{
+			bits[slots[i] >>> 6] |= 1L << slots[i];
+		}
+
+		return bits;
+	}
+
+	/* swaps the old and new values */
 	public void next_sim_cycle()
 	{
-		/* increase the cycle stamp */
-		cycle_time++;
-		/* toggle the idx for old and new */
-		new_val_idx = old_val_idx;
-		old_val_idx = (new_val_idx == 1) ? 0 : 1;
+		int[] swap = new_values;
+
+		/* toggle old and new */
+		new_values = old_values;
+		old_values = swap;
+		read_values = old_values;
+		/* nothing is assigned yet */
+		for (int i = 0; i < num_written; i++)
+		{
+			is_written[written_slots[i] >>> 6] = 0;
+		}
+		num_written = 0;
 		/* toggle between sequential sims and combinational sims */
 		is_sequential_sim_cycle = (is_sequential_sim_cycle) ? false : true;
 
@@ -112,41 +180,82 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	{
 		if (!is_sequential_sim_cycle)
 		{
-			/* Makes sure the sequential registers keep value and catches
-			 * inferred latches */
-			for (int i = 0; i < ports_list.size(); i++)
+			/* Makes sure the sequential registers keep value, a word of slots
+			 * at a time. SimAnalysis reports latches at compile time. */
+			for (int i = 0; i < is_written.length; i++)
 			{
-				ports_list.get(i).seqUpdate(cycle_time, new_val_idx, old_val_idx);
-			}
-			for (int i = 0; i < vars_list.size(); i++)
-			{
-				vars_list.get(i).seqUpdate(cycle_time, new_val_idx, old_val_idx);
+				long carries = carry_bits[i] & ~is_written[i];
+
+				while (carries != 0)
+				{
+					int slot = (i << 6) + Long.numberOfTrailingZeros(carries);
+
+					new_values[slot] = old_values[slot];
+					carries &= carries - 1;
+				}
 			}
 		}
 	}
 
+	/* One step() the way the compiled engines run it instead of two sim
+	 * cycles. The combinational blocks run once in dependency order, each
+	 * loading what the blocks before it stored, so a chain of assigns settles
+	 * in the same step. Then the clocked blocks run on the settled values,
+	 * and the combinational outputs stay as they were before the edge. */
+	public void step(int rst, int light_sensors, int level_sensors)
+	{
+		/* combinational half - slots nothing assigns keep their values */
+		next_sim_cycle();
+		System.arraycopy(old_values, 0, new_values, 0, new_values.length);
+		update_vector_inputs(rst, light_sensors, level_sensors);
+		read_values = new_values;
+		for (int i = 0; i < comb_blocks.length; i++)
+		{
+			visit(comb_blocks[i]);
+		}
+		read_values = old_values;
+
+		/* clock half */
+		next_sim_cycle();
+		System.arraycopy(old_values, 0, new_values, 0, new_values.length);
+		update_vector_inputs(rst, light_sensors, level_sensors);
+		for (int i = 0; i < seq_blocks.length; i++)
+		{
+			visit(seq_blocks[i]);
+		}
+	}
+
 	/* Greatest to least as in lightsensors[7] = char 0 ... */
 	public void update_vector_inputs(
 			String rst,
 			String light_sensors,
 			String level_sensors)
 	{
-		ParsePort update_port;
-
-		/* rst */
-		hash_ports.get("rst").setValue(old_val_idx, getBitValFromString(rst, 0), cycle_time);
+		int light_bits = 0;
+		int level_bits = 0;
 
-		update_port = hash_ports.get("sensor_light");
 		for (int i = 7; i >= 0; i--)
 		{
-			update_port.setBitValue(old_val_idx, i, getBitValFromString(light_sensors, 7 - i), cycle_time);
+			light_bits |= getBitValFromString(light_sensors, 7 - i) << i;
 		}
-
-		update_port = hash_ports.get("general_sensors");
 		for (int i = 29; i >= 0; i--)
 		{
-			update_port.setBitValue(old_val_idx, i, getBitValFromString(level_sensors, 29 - i), cycle_time);
+			level_bits |= getBitValFromString(level_sensors, 29 - i) << i;
 		}
+
+		update_vector_inputs(getBitValFromString(rst, 0), light_bits, level_bits);
+	}
+
+	public void update_vector_inputs(
+			int rst,
+			int light_sensors,
+			int level_sensors)
+	{
+		int[] input_slots = binding.getInputSlots();
+
+		setValue(input_slots[0], rst);
+		setValue(input_slots[1], light_sensors);
+		setValue(input_slots[2], level_sensors);
 	}
 
 	public int getBitValFromString(String str, int idx)
@@ -156,23 +265,93 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 
 	public ArrayList<Integer> update_vector_ouputs()
 	{
-		ParsePort out_port;
-
-		out_port = hash_ports.get("outN");
-		output_vector_list.set(0, out_port.getValue(new_val_idx));
-		out_port = hash_ports.get("outS");
-		output_vector_list.set(1, out_port.getValue(new_val_idx));
-		out_port = hash_ports.get("outE");
-		output_vector_list.set(2, out_port.getValue(new_val_idx));
-		out_port = hash_ports.get("outW");
-		output_vector_list.set(3, out_port.getValue(new_val_idx));
-		out_port = hash_ports.get("debug_port");
-		output_vector_list.set(4, out_port.getValue(new_val_idx));
+		int[] output_slots = binding.getOutputSlots();
+
+		/* only box values that changed */
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			if (output_vector_list.get(i) != new_values[output_slots[i]])
+			{
+				output_vector_list.set(i, new_values[output_slots[i]]);
+			}
+		}
 		output_vector_list.set(5, clock_cycle);
 
 		return output_vector_list;
 	}
 
+	/* outN, outS, outE, outW, debug_port and the clock cycle without boxing */
+	public void update_vector_ouputs(int[] output_values)
+	{
+		int[] output_slots = binding.getOutputSlots();
+
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			output_values[i] = new_values[output_slots[i]];
+		}
+		output_values[5] = clock_cycle;
+	}
+
+	/* the new value of every slot, one long each as SimEngine.load_values */
+	public void load_values(long[] values)
+	{
+		for (int i = 0; i < new_values.length; i++)
+		{
+			values[i] = new_values[i];
+		}
+	}
+
+	public SimBinding getBinding()
+	{
+		return binding;
+	}
+
+	private void setValue(int slot, int value)
+	{
+		long bit = 1L << slot;
+
+		if ((is_written[slot >>> 6] & bit) == 0)
+		{
+			is_written[slot >>> 6] |= bit;
+			written_slots[num_written++] = slot;
+		}
+
+		if (binding.isInput(slot))
+		{
+			/* inputs are the same in both halves */
+			new_values[slot] = value & slot_masks[slot];
+			old_values[slot] = value & slot_masks[slot];
+		}
+		else
+		{
+			new_values[slot] = value & slot_masks[slot];
+		}
+	}
+
+	/* Sets the result the way a sized value is made - masked to size bits and
+	 * never more than 30 bits wide */
+	private void setResult(int value, int size)
+	{
+		if (size != -1)
+		{
+			/* Mask based on size */
+			result_value = value & ((1 << size) - 1);
+			result_size = (size > 30) ? 30 : size;
+		}
+		else
+		{
+			result_value = value;
+			result_size = -1;
+		}
+	}
+
+	/* results of compares and logical operators have no size */
+	private void setResult(boolean value)
+	{
+		result_value = value ? 1 : 0;
+		result_size = -1;
+	}
+
 	/* --------------------------------------------------------------------------
 	 * -----------
 	 * --------------------------------------------------------------
@@ -183,43 +362,97 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * --------------------------------------------------------------------
 	 * ------------ */
 	@Override
-	public Value visitConditional_statement(
+	public Void visitModule_declaration(
+			Verilog2001Parser.Module_declarationContext ctx)
+	{
+		/* only the assign and always blocks do anything each cycle */
+		for (int i = 0; i < ctx.getChildCount(); i++)
+		{
+			if (ctx.getChild(i) instanceof Verilog2001Parser.Module_itemContext)
+			{
+				Verilog2001Parser.Module_itemContext item = (Verilog2001Parser.Module_itemContext) ctx.getChild(i);
+
+				if (item.continuous_assign() != null)
+				{
+					visit(item.continuous_assign());
+				}
+				else if (item.always_construct() != null)
+				{
+					visit(item.always_construct());
+				}
+				else if (item.module_instantiation() != null)
+				{
+					/* instances run their blocks with their own slots */
+					for (int j = 0; j < item.module_instantiation().module_instance().size(); j++)
+					{
+						Verilog2001Parser.Module_declarationContext module = binding.getInstanceModule(item.module_instantiation().module_instance(j));
+
+						if (module != null)
+						{
+							visit(module);
+						}
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitConditional_statement(
 			Verilog2001Parser.Conditional_statementContext ctx)
 	{
-		for (int i = 0; i < ctx.statement().size(); i++)
+		boolean has_condition = false;
+
+		/* getChild() since statement() and expression() build lists */
+		for (int i = 0; i < ctx.getChildCount(); i++)
 		{
-			if (ctx.expression(i) == null && i == ctx.statement().size() - 1)
+			if (ctx.getChild(i) instanceof Verilog2001Parser.ExpressionContext)
 			{
-				/* ELSE statment */
-				visit(ctx.statement(i));
-				break;
+				visit(ctx.getChild(i));
+				has_condition = true;
 			}
-			else if (visit(ctx.expression(i)).asBoolean())
+			else if (ctx.getChild(i) instanceof Verilog2001Parser.StatementContext)
 			{
-				/* IF - this if condition is true, then evaluate statement */
-				visit(ctx.statement(i));
-				break;
+				if (!has_condition)
+				{
+					/* ELSE statment */
+					visit(ctx.getChild(i));
+					break;
+				}
+				else if (result_value != 0)
+				{
+					/* IF - this if condition is true, then evaluate statement */
+					visit(ctx.getChild(i));
+					break;
+				}
+				has_condition = false;
 			}
 		}
 
 		return null;
 	}
 
-	Value	case_expression;
+	int		case_expression;
+	boolean	is_case_matched;
 
 	@Override
-	public
-			Value
-			visitCase_statement(Verilog2001Parser.Case_statementContext ctx)
+	public Void visitCase_statement(Verilog2001Parser.Case_statementContext ctx)
 	{
-		case_expression = visit(ctx.expression());
+		visit(ctx.expression());
+		case_expression = result_value;
 
-		for (int i = 0; i < ctx.case_item().size(); i++)
+		for (int i = 0; i < ctx.getChildCount(); i++)
 		{
-			if (visit(ctx.case_item(i)).asBoolean())
+			if (ctx.getChild(i) instanceof Verilog2001Parser.Case_itemContext)
 			{
-				/* If one evaluates true then exit */
-				break;
+				visit(ctx.getChild(i));
+				if (is_case_matched)
+				{
+					/* If one evaluates true then exit */
+					break;
+				}
 			}
 		}
 
@@ -228,24 +461,27 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitFCASE_ITEM(Verilog2001Parser.FCASE_ITEMContext ctx)
+	public Void visitFCASE_ITEM(Verilog2001Parser.FCASE_ITEMContext ctx)
 	{
-		Value constant_expression = visit(ctx.expression());
+		visit(ctx.expression());
 
-		if (constant_expression.asInt() == case_expression.asInt())
+		if (result_value == case_expression)
 		{
 			visit(ctx.statement());
-			return new Value(true);
+			is_case_matched = true;
+			return null;
 		}
-		return new Value(false);
+		is_case_matched = false;
+		return null;
 	}
 
 	@Override
-	public Value visitDEFAULT(Verilog2001Parser.DEFAULTContext ctx)
+	public Void visitDEFAULT(Verilog2001Parser.DEFAULTContext ctx)
 	{
 		/* If we get to the default then it's true */
 		visit(ctx.statement());
-		return new Value(true);
+		is_case_matched = true;
+		return null;
 	}
 
 	/* --------------------------------------------------------------------------
@@ -258,7 +494,7 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * ------------------------------------------------------------------
 	 * ------------ */
 	@Override
-	public Value visitCOMBONATIONAL_ALWAYS(
+	public Void visitCOMBONATIONAL_ALWAYS(
 			Verilog2001Parser.COMBONATIONAL_ALWAYSContext ctx)
 	{
 		is_combinational = true;
@@ -272,7 +508,7 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitSEQUENTIAL_ALWAYS(
+	public Void visitSEQUENTIAL_ALWAYS(
 			Verilog2001Parser.SEQUENTIAL_ALWAYSContext ctx)
 	{
 		is_sequential = true;
@@ -294,30 +530,25 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * ----------------
 	 * ---------------------------------------------------------------------- */
 	@Override
-	public Value visitBlocking_assignment(
+	public Void visitBlocking_assignment(
 			Verilog2001Parser.Blocking_assignmentContext ctx)
 	{
 		if (!is_combinational)
 		{
-			System.out.println("ERROR: Blocking Statement in a sequential block");
-			return new Value(false);
+			/* ignored, SimAnalysis reports it */
+			return null;
 		}
 
-		// System.out.println("Visit:"+ctx.getText()+" Line:"+ctx.start.getLine());
-
-		Value left = visit(ctx.variable_lvalue());
-		Value right = visit(ctx.expression());
+		visit(ctx.expression());
 
 		/* Update the data structure with the right value */
-		left.setVar(new_val_idx, right.asInt(), cycle_time);
-
-		// System.out.println("AssignBlocking:"+left.getVarName()+" Value = "+right.asInt());
+		store(ctx.variable_lvalue(), result_value);
 
 		return null;
 	}
 
 	@Override
-	public Value visitNonblocking_assignment(
+	public Void visitNonblocking_assignment(
 			Verilog2001Parser.Nonblocking_assignmentContext ctx)
 	{
 		if (is_sequential_sim_cycle)
@@ -325,37 +556,27 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 			/* Only store on simulate cycles */
 			if (!is_sequential)
 			{
-				System.out.println("ERROR: Non Blocking Statement in a combinational block");
-				return new Value(false);
+				/* ignored, SimAnalysis reports it */
+				return null;
 			}
 
-			// System.out.println("Visit:"+ctx.getText());
-
-			Value left = visit(ctx.variable_lvalue());
-			Value right = visit(ctx.expression());
+			visit(ctx.expression());
 
 			/* Update the data structure with the right value */
-			left.setVar(new_val_idx, right.asInt(), cycle_time);
-
-			// System.out.println("AssignNonBlocking:"+left.getVarName()+" Value = "+right);
+			store(ctx.variable_lvalue(), result_value);
 		}
 
 		return null;
 	}
 
 	@Override
-	public Value visitContinuous_assign(
+	public Void visitContinuous_assign(
 			Verilog2001Parser.Continuous_assignContext ctx)
 	{
-		// System.out.println("Continuous Visit:"+ctx.getText()+" Line:"+ctx.start.getLine());
-
-		Value left = visit(ctx.variable_lvalue());
-		Value right = visit(ctx.expression());
+		visit(ctx.expression());
 
 		/* Update the data structure with the right value */
-		left.setVar(new_val_idx, right.asInt(), cycle_time);
-
-		// System.out.println("Continuous assign:"+left.getVarName()+" Value = "+right.asInt());
+		store(ctx.variable_lvalue(), result_value);
 
 		return null;
 	}
@@ -369,33 +590,63 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * ----
 	 * ----------------------------------------------------------------------
 	 * ------------ */
-	@Override
-	public Value visitVariable_lvalue(
-			Verilog2001Parser.Variable_lvalueContext ctx)
+	private void store(Verilog2001Parser.Variable_lvalueContext ctx, int value)
 	{
-		String ident = ctx.identifier().getText();
-		ParsePort port = hash_ports.get(ident);
-		ParseRegWire regWire = hash_vars.get(ident);
-		Value Size = null;
+		int slot = binding.getSlot(ctx.identifier().start);
 
-		if (ctx.range_expression() != null)
+		if (slot == SimBinding.NO_SLOT)
 		{
-			/* Visit the decimal number ... NOTE range is not done here! */
-			Size = visit(ctx.range_expression().decimal_number());
+			System.out.println("Error: No left hand side called: " + ctx.identifier().getText());
+			return;
 		}
 
-		if (regWire != null)
+		if (ctx.range_expression() == null)
 		{
-			return new Value(ValueType.REG_WIRE_T, null, regWire, (Size != null ? Size.asInt() : -1));
+			setValue(slot, value);
+			return;
 		}
-		else if (port != null)
+
+		int token_index = ctx.start.getTokenIndex();
+
+		if (!is_store_parsed[token_index])
 		{
-			return new Value(ValueType.PORT_T, port, null, (Size != null ? Size.asInt() : -1));
+			parse_store_range(ctx.range_expression(), token_index);
 		}
 
-		System.out.println("Error: No left hand side called: " + ident);
+		int lsb = store_lsbs[token_index];
+		int field_mask = store_masks[token_index];
+		/* the bits outside the range keep the value they have this cycle, as
+		 * STORE_BITS does */
+		long bit = 1L << slot;
+		int base = ((is_written[slot >>> 6] & bit) != 0) ? new_values[slot] : old_values[slot];
 
-		return null;
+		setValue(slot, (base & ~(field_mask << lsb)) | ((value & field_mask) << lsb));
+	}
+
+	private void parse_store_range(
+			Verilog2001Parser.Range_expressionContext range,
+			int token_index)
+	{
+		int msb;
+		int lsb;
+
+		if (range.decimal_number() != null)
+		{
+			visit(range.decimal_number());
+			msb = result_value;
+			lsb = msb;
+		}
+		else
+		{
+			visit(range.msb_constant_expression().decimal_number());
+			msb = result_value;
+			visit(range.lsb_constant_expression().decimal_number());
+			lsb = result_value;
+		}
+
+		store_lsbs[token_index] = lsb;
+		store_masks[token_index] = (msb - lsb + 1 >= 32) ? -1 : (1 << (msb - lsb + 1)) - 1;
+		is_store_parsed[token_index] = true;
 	}
 
 	/* --------------------------------------------------------------------------
@@ -407,44 +658,47 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	 * --------------
 	 * ------------------------------------------------------------------------ */
 	@Override
-	public Value visitUMINUS(Verilog2001Parser.UMINUSContext ctx)
+	public Void visitUMINUS(Verilog2001Parser.UMINUSContext ctx)
 	{
-		// System.out.println("UMINUS");
-		Value unary = visit(ctx.expression());
-		return new Value(Integer.valueOf(-unary.asInt()));
-
+		visit(ctx.expression());
+		setResult(-result_value, -1);
+		return null;
 	}
 
 	@Override
-	public Value visitUNOT(Verilog2001Parser.UNOTContext ctx)
+	public Void visitUNOT(Verilog2001Parser.UNOTContext ctx)
 	{
-		// System.out.println("UNOT");
-		Value unary = visit(ctx.expression());
-		return new Value(Integer.valueOf(~unary.asInt()));
+		visit(ctx.expression());
+		setResult(~result_value, -1);
+		return null;
 	}
 
 	@Override
-	public Value visitMULT_DIV_MOD(Verilog2001Parser.MULT_DIV_MODContext ctx)
+	public Void visitMULT_DIV_MOD(Verilog2001Parser.MULT_DIV_MODContext ctx)
 	{
-		// System.out.println("*/%");
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
-		int mask1 = (1 << left.getSize()) - 1;
-		int mask2 = (1 << right.getSize()) - 1;
+		visit(ctx.expression(0));
+		int left = result_value;
+		int mask1 = (1 << result_size) - 1;
+		visit(ctx.expression(1));
+		int right = result_value;
+		int mask2 = (1 << result_size) - 1;
 
 		switch (ctx.op.getType())
 		{
 			case (Verilog2001Parser.MULT):
 			{
-				return new Value(Integer.valueOf(left.asInt() * right.asInt()), (mask1 >= mask2) ? 2 * mask1 : 2 * mask2);
+				setResult(left * right, (mask1 >= mask2) ? 2 * mask1 : 2 * mask2);
+				break;
 			}
 			case (Verilog2001Parser.DIV):
 			{
-				return new Value(Integer.valueOf(left.asInt() / right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left / right, (mask1 >= mask2) ? mask1 : mask2);
+				break;
 			}
 			case (Verilog2001Parser.MOD):
 			{
-				return new Value(Integer.valueOf(left.asInt() % right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left % right, (mask1 >= mask2) ? mask1 : mask2);
+				break;
 			}
 			default:
 			{
@@ -457,23 +711,26 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitADD_SUB(Verilog2001Parser.ADD_SUBContext ctx)
+	public Void visitADD_SUB(Verilog2001Parser.ADD_SUBContext ctx)
 	{
-		// System.out.println("+-");
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
-		int mask1 = (1 << left.getSize()) - 1;
-		int mask2 = (1 << right.getSize()) - 1;
+		visit(ctx.expression(0));
+		int left = result_value;
+		int mask1 = (1 << result_size) - 1;
+		visit(ctx.expression(1));
+		int right = result_value;
+		int mask2 = (1 << result_size) - 1;
 
 		switch (ctx.op.getType())
 		{
 			case (Verilog2001Parser.SUB):
 			{
-				return new Value(Integer.valueOf(left.asInt() - right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left - right, (mask1 >= mask2) ? mask1 : mask2);
+				break;
 			}
 			case (Verilog2001Parser.ADD):
 			{
-				return new Value(Integer.valueOf(left.asInt() + right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left + right, (mask1 >= mask2) ? mask1 : mask2);
+				break;
 			}
 			default:
 			{
@@ -486,47 +743,57 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitBLOGIC(Verilog2001Parser.BLOGICContext ctx)
+	public Void visitBLOGIC(Verilog2001Parser.BLOGICContext ctx)
 	{
-		// System.out.println("Binary Logic");
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
-		int mask1 = (1 << left.getSize()) - 1;
-		int mask2 = (1 << right.getSize()) - 1;
+		visit(ctx.expression(0));
+		int left = result_value;
+		int mask1 = (1 << result_size) - 1;
+		visit(ctx.expression(1));
+		int right = result_value;
+		int mask2 = (1 << result_size) - 1;
+		int size = (mask1 >= mask2) ? mask1 : mask2;
 
 		switch (ctx.op.getType())
 		{
 			case (Verilog2001Parser.BITWISE_AND):
 			{
-				return new Value(Integer.valueOf(left.asInt() & right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left & right, size);
+				break;
 			}
 			case (Verilog2001Parser.BITWISE_NAND):
 			{
-				return new Value(Integer.valueOf(~(left.asInt() & right.asInt())), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(~(left & right), size);
+				break;
 			}
 			case (Verilog2001Parser.BITWISE_OR):
 			{
-				return new Value(Integer.valueOf(left.asInt() | right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left | right, size);
+				break;
 			}
 			case (Verilog2001Parser.BITWISE_NOR):
 			{
-				return new Value(Integer.valueOf(~(left.asInt() | right.asInt())), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(~(left | right), size);
+				break;
 			}
 			case (Verilog2001Parser.BITWISE_XOR):
 			{
-				return new Value(Integer.valueOf(left.asInt() ^ right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left ^ right, size);
+				break;
 			}
 			case (Verilog2001Parser.BITWISE_XNOR):
 			{
-				return new Value(Integer.valueOf(~(left.asInt() ^ right.asInt())), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(~(left ^ right), size);
+				break;
 			}
 			case (Verilog2001Parser.SHIFT_LEFT):
 			{
-				return new Value(Integer.valueOf(left.asInt() << right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left << right, size);
+				break;
 			}
 			case (Verilog2001Parser.SHIFT_RIGHT):
 			{
-				return new Value(Integer.valueOf(left.asInt() >> right.asInt()), (mask1 >= mask2) ? mask1 : mask2);
+				setResult(left >> right, size);
+				break;
 			}
 
 			default:
@@ -539,36 +806,44 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitCOMPARES(Verilog2001Parser.COMPARESContext ctx)
+	public Void visitCOMPARES(Verilog2001Parser.COMPARESContext ctx)
 	{
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
+		visit(ctx.expression(0));
+		int left = result_value;
+		visit(ctx.expression(1));
+		int right = result_value;
 
 		switch (ctx.op.getType())
 		{
 			case (Verilog2001Parser.NOTEQUAL):
 			{
-				return new Value(Boolean.valueOf(left.asInt() != right.asInt()));
+				setResult(left != right);
+				break;
 			}
 			case (Verilog2001Parser.EQUAL):
 			{
-				return new Value(Boolean.valueOf(left.asInt() == right.asInt()));
+				setResult(left == right);
+				break;
 			}
 			case (Verilog2001Parser.LT):
 			{
-				return new Value(Boolean.valueOf(left.asInt() < right.asInt()));
+				setResult(left < right);
+				break;
 			}
 			case (Verilog2001Parser.LTE):
 			{
-				return new Value(Boolean.valueOf(left.asInt() <= right.asInt()));
+				setResult(left <= right);
+				break;
 			}
 			case (Verilog2001Parser.GT):
 			{
-				return new Value(Boolean.valueOf(left.asInt() > right.asInt()));
+				setResult(left > right);
+				break;
 			}
 			case (Verilog2001Parser.GTE):
 			{
-				return new Value(Boolean.valueOf(left.asInt() >= right.asInt()));
+				setResult(left >= right);
+				break;
 			}
 			default:
 			{
@@ -580,140 +855,156 @@ public class SimVisitor extends Verilog2001BaseVisitor<Value>
 	}
 
 	@Override
-	public Value visitLNOT(Verilog2001Parser.LNOTContext ctx)
+	public Void visitLNOT(Verilog2001Parser.LNOTContext ctx)
 	{
-		Value unary = visit(ctx.expression(0));
-		return new Value(Boolean.valueOf(!unary.asBoolean()));
+		visit(ctx.expression(0));
+		setResult(result_value == 0);
+		return null;
 	}
 
 	@Override
-	public Value visitLAND(Verilog2001Parser.LANDContext ctx)
+	public Void visitLAND(Verilog2001Parser.LANDContext ctx)
 	{
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
-		return new Value(Boolean.valueOf(left.asBoolean() && right.asBoolean()));
+		visit(ctx.expression(0));
+		int left = result_value;
+		visit(ctx.expression(1));
+		setResult(left != 0 && result_value != 0);
+		return null;
 	}
 
 	@Override
-	public Value visitLOR(Verilog2001Parser.LORContext ctx)
+	public Void visitLOR(Verilog2001Parser.LORContext ctx)
 	{
-		Value left = visit(ctx.expression(0));
-		Value right = visit(ctx.expression(1));
-		return new Value(Boolean.valueOf(left.asBoolean() || right.asBoolean()));
+		visit(ctx.expression(0));
+		int left = result_value;
+		visit(ctx.expression(1));
+		setResult(left != 0 || result_value != 0);
+		return null;
 	}
 
 	@Override
-	public Value visitQUES(Verilog2001Parser.QUESContext ctx)
+	public Void visitQUES(Verilog2001Parser.QUESContext ctx)
 	{
-		System.out.println("?");
-		System.out.println("Error: Not implemented yet");
+		/* SimBinding doesn't bind a module with ? */
 		return null;
 	}
 
 	@Override
-	public Value visitBRACKETS(Verilog2001Parser.BRACKETSContext ctx)
+	public Void visitBRACKETS(Verilog2001Parser.BRACKETSContext ctx)
 	{
 		/* just pass results up */
 		return visit(ctx.expression());
 	}
 
 	@Override
-	public Value visitIDENT(Verilog2001Parser.IDENTContext ctx)
+	public Void visitIDENT(Verilog2001Parser.IDENTContext ctx)
 	{
 		/* Gets numbers */
-		Value next = visit(ctx.identifier_types());
-		// System.out.println("Visit Expression:"+next.asInt());
-		return next;
+		return visit(ctx.identifier_types());
 	}
 
 	@Override
-	public Value visitBIT_ACCESS(Verilog2001Parser.BIT_ACCESSContext ctx)
+	public Void visitBIT_ACCESS(Verilog2001Parser.BIT_ACCESSContext ctx)
 	{
-		String ident = ctx.identifier().getText();
-		ParsePort port = hash_ports.get(ident);
-		ParseRegWire regWire = hash_vars.get(ident);
-		Value number = visit(ctx.constant_expression());
+		int slot = binding.getSlot(ctx.identifier().start);
 
-		if (regWire != null)
-		{
-			int value_of_bit = regWire.getIntegerBit(number.asInt(), old_val_idx);
-			// System.out.println("RegWire bit:"+ident+" loc: "+number.asInt()+" val:"+value_of_bit);
-			return new Value(value_of_bit, 1);
-		}
-		else if (port != null)
+		visit(ctx.constant_expression());
+
+		if (slot != SimBinding.NO_SLOT)
 		{
-			int value_of_bit = port.getIntegerBit(number.asInt(), old_val_idx);
-			// System.out.println("Port bit:"+ident+" loc: "+number.asInt()+" val:"+value_of_bit);
-			return new Value(value_of_bit, 1);
+			int value_of_bit = ((read_values[slot] & (1 << result_value)) > 0) ? 1 : 0;
+			setResult(value_of_bit, 1);
+			return null;
 		}
 
-		System.out.println("Error: No item called: " + ident);
+		System.out.println("Error: No item called: " + ctx.identifier().getText());
 
 		return visitChildren(ctx);
 	}
 
 	@Override
-	public Value visitGENERAL(Verilog2001Parser.GENERALContext ctx)
+	public Void visitGENERAL(Verilog2001Parser.GENERALContext ctx)
 	{
-		String ident = ctx.getText();
-		ParsePort port = hash_ports.get(ident);
-		ParseRegWire regWire = hash_vars.get(ident);
+		int slot = binding.getSlot(ctx.start);
 
-		if (regWire != null)
-		{
-			// System.out.println("General Ident:"+ident+" val:"+regWire.getValue(old_val_idx));
-			return new Value(regWire.getValue(old_val_idx), 30);
-		}
-		else if (port != null)
+		if (slot != SimBinding.NO_SLOT)
 		{
-			return new Value(port.getValue(old_val_idx), 30);
+			setResult(read_values[slot], 30);
+			return null;
 		}
 
-		System.out.println("Error: No item called: " + ident);
+		System.out.println("Error: No item called: " + ctx.getText());
+		setResult(0, -1);
 
 		return null;
 	}
 
 	@Override
-	public Value visitINUMBER(Verilog2001Parser.INUMBERContext ctx)
+	public Void visitINUMBER(Verilog2001Parser.INUMBERContext ctx)
 	{
-		/* Visit your children and return the appropriate Value - holds size if
-		 * need be */
+		/* Visit your children for the value - holds size if need be */
 		return visitChildren(ctx);
 	}
 
 	@Override
-	public
-			Value
-			visitDecimal_number(Verilog2001Parser.Decimal_numberContext ctx)
+	public Void visitNumber(Verilog2001Parser.NumberContext ctx)
+	{
+		int token_index = ctx.start.getTokenIndex();
+
+		if (token_index < 0 || token_index >= number_values.length)
+		{
+			return visitChildren(ctx);
+		}
+
+		/* the text of a number is only parsed the first time it is reached */
+		if (!is_number_parsed[token_index])
+		{
+			visitChildren(ctx);
+			number_values[token_index] = result_value;
+			number_sizes[token_index] = result_size;
+			is_number_parsed[token_index] = true;
+		}
+
+		result_value = number_values[token_index];
+		result_size = number_sizes[token_index];
+
+		return null;
+	}
+
+	@Override
+	public Void visitDecimal_number(Verilog2001Parser.Decimal_numberContext ctx)
 	{
 		/* get the 2nd list array item and convert to int */
 		if (ctx.Unsigned_number().size() == 1)
 		{
-			return new Value(Integer.parseInt(ctx.Unsigned_number().get(0).getText()), 30);
+			setResult(Integer.parseInt(ctx.Unsigned_number().get(0).getText()), 30);
 		}
 		else
 		{
-			return new Value(Integer.parseInt(ctx.Unsigned_number().get(1).getText()), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+			setResult(Integer.parseInt(ctx.Unsigned_number().get(1).getText()), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
 		}
+		return null;
 	}
 
 	@Override
-	public Value visitBinary_number(Verilog2001Parser.Binary_numberContext ctx)
+	public Void visitBinary_number(Verilog2001Parser.Binary_numberContext ctx)
 	{
 		/* get the 2nd list array item and convert to int */
-		return new Value(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 2), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		setResult(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 2), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		return null;
 	}
 
 	@Override
-	public Value visitOctal_number(Verilog2001Parser.Octal_numberContext ctx)
+	public Void visitOctal_number(Verilog2001Parser.Octal_numberContext ctx)
 	{
-		return new Value(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 8), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		setResult(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 8), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		return null;
 	}
 
 	@Override
-	public Value visitHex_number(Verilog2001Parser.Hex_numberContext ctx)
+	public Void visitHex_number(Verilog2001Parser.Hex_numberContext ctx)
 	{
-		return new Value(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 16), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		setResult(Integer.parseInt(ctx.Unsigned_number().get(1).getText(), 16), Integer.parseInt(ctx.Unsigned_number().get(0).getText()));
+		return null;
 	}
 }
@@ -0,0 +1,753 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Runs a wide SimProgram the way SimInterpreter runs the others. A slot is
+ * value_words longs at slot * value_words, and so is each stack entry. Up to
+ * 64 bits a value is one long and runs on plain long operators, wider values
+ * go through SimWords. Values are unsigned, so DIV, MOD, SHR and the compares
+ * are unsigned, but the INT_ operators on narrow operands run on ints like in
+ * SimInterpreter. Outputs are the low 32 bits of their slot. */
+public class SimWideInterpreter extends SimEngine
+{
+	private SimProgram	program;
+	private SimSchedule	schedule;
+	private int			value_words;
+	private long[]		constants;
+
+	private long[][]	values;
+	private int[]		update_time;
+	private long[]		stack;
+	private long[]		scratch;
+
+	private boolean[]	is_dirty;
+	private boolean[]	is_running;
+	private int[]		run_time;
+
+	private int			new_val_idx;
+	private int			old_val_idx;
+
+	public SimWideInterpreter(SimProgram program)
+	{
+		int num_slots = program.getNumSlots();
+
+		this.program = program;
+		this.schedule = program.getSchedule();
+		this.value_words = program.getValueWords();
+		this.constants = program.getConstants();
+
+		this.values = new long[2][num_slots * value_words];
+		this.update_time = new int[num_slots];
+		for (int i = 0; i < num_slots; i++)
+		{
+			SimWords.set(this.values[0], i * value_words, value_words, program.getSlotInit(i));
+			SimWords.set(this.values[1], i * value_words, value_words, program.getSlotInit(i));
+			this.update_time[i] = -1;
+		}
+		this.stack = new long[(program.getMaxStack() + 1) * value_words];
+		this.scratch = new long[4 * value_words];
+
+		this.is_dirty = new boolean[schedule.getNumBlocks()];
+		this.is_running = new boolean[schedule.getNumBlocks()];
+		this.run_time = new int[schedule.getNumBlocks()];
+
+		this.new_val_idx = 0;
+		this.old_val_idx = 1;
+	}
+
+	@Override
+	protected void swap_values()
+	{
+		/* toggle the idx for old and new */
+		new_val_idx = old_val_idx;
+		old_val_idx = (new_val_idx == 1) ? 0 : 1;
+	}
+
+	@Override
+	protected void set_inputs(int rst, int sensor_light, int general_sensors)
+	{
+		set_input(program.getRstSlot(), rst);
+		set_input(program.getSensorLightSlot(), sensor_light);
+		set_input(program.getGeneralSensorsSlot(), general_sensors);
+	}
+
+	private void set_input(int slot, int value)
+	{
+		int offset = slot * value_words;
+		int width = program.getSlotWidth(slot);
+		long masked_value = (width > 30) ? (value & 0xFFFFFFFFL) & SimWords.mask(width) : value & program.getSlotMask(slot);
+
+		if (values[new_val_idx][offset] != masked_value || !SimWords.isZero(values[new_val_idx], offset + 1, value_words - 1))
+		{
+			changed(slot);
+		}
+		/* inputs are the same in both halves */
+		SimWords.set(values[0], offset, value_words, 0);
+		SimWords.set(values[1], offset, value_words, 0);
+		values[0][offset] = masked_value;
+		values[1][offset] = masked_value;
+	}
+
+	/* the blocks loading the slot have to run again */
+	private void changed(int slot)
+	{
+		int[] readers = schedule.getSlotReaders(slot);
+
+		for (int i = 0; i < readers.length; i++)
+		{
+			is_dirty[readers[i]] = true;
+		}
+	}
+
+	@Override
+	public void evalCombinational()
+	{
+		execute(program.getCombCode(), 0, values[old_val_idx], values[new_val_idx]);
+	}
+
+	@Override
+	public void clockEdge()
+	{
+		execute(program.getSeqCode(), 0, values[old_val_idx], values[new_val_idx]);
+	}
+
+	@Override
+	protected void invalidate_blocks()
+	{
+		for (int i = 0; i < is_dirty.length; i++)
+		{
+			is_dirty[i] = true;
+		}
+	}
+
+	@Override
+	protected void settle()
+	{
+		long[] new_values = values[new_val_idx];
+		int[] latch_slots = program.getLatchSlots();
+		int[] latch_blocks = schedule.getLatchBlocks();
+
+		for (int i = 0; i < schedule.getNumCombBlocks(); i++)
+		{
+			if (is_dirty[i] || schedule.isAlwaysRun(i))
+			{
+				is_dirty[i] = false;
+				run_time[i] = cycle_time;
+				execute(schedule.getCode(), schedule.getBlockStart(i), new_values, new_values);
+			}
+		}
+
+		/* a block that didn't run assigns what it did last time */
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			int assign_time = (latch_blocks[i] == -1) ? cycle_time : run_time[latch_blocks[i]];
+
+			if (update_time[latch_slots[i]] != assign_time)
+			{
+				inferred_latch();
+			}
+		}
+	}
+
+	@Override
+	protected void edge()
+	{
+		int[] edge_slots = schedule.getEdgeSlots();
+		long[] new_values = values[new_val_idx];
+		long[] next_values = values[old_val_idx];
+
+		/* the old half holds the registers' next values so the clocked blocks
+		 * all read from before the edge */
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(new_values, edge_slots[i] * value_words, next_values, edge_slots[i] * value_words, value_words);
+		}
+		/* stores mark blocks as they go, so pick what runs first */
+		for (int i = schedule.getNumCombBlocks(); i < is_dirty.length; i++)
+		{
+			is_running[i] = is_dirty[i];
+			is_dirty[i] = false;
+		}
+		for (int i = schedule.getNumCombBlocks(); i < is_dirty.length; i++)
+		{
+			if (is_running[i])
+			{
+				execute(schedule.getCode(), schedule.getBlockStart(i), new_values, next_values);
+			}
+		}
+		for (int i = 0; i < edge_slots.length; i++)
+		{
+			System.arraycopy(next_values, edge_slots[i] * value_words, new_values, edge_slots[i] * value_words, value_words);
+		}
+	}
+
+	@Override
+	protected void check_latches()
+	{
+		int[] latch_slots = program.getLatchSlots();
+
+		for (int i = 0; i < latch_slots.length; i++)
+		{
+			if (update_time[latch_slots[i]] != cycle_time)
+			{
+				inferred_latch();
+			}
+		}
+	}
+
+	@Override
+	protected void carry_values()
+	{
+		int[] carry_slots = program.getCarrySlots();
+
+		for (int i = 0; i < carry_slots.length; i++)
+		{
+			if (update_time[carry_slots[i]] != cycle_time)
+			{
+				System.arraycopy(values[old_val_idx], carry_slots[i] * value_words, values[new_val_idx], carry_slots[i] * value_words, value_words);
+			}
+		}
+	}
+
+	@Override
+	protected void load_outputs()
+	{
+		int[] output_slots = program.getOutputSlots();
+
+		for (int i = 0; i < output_slots.length; i++)
+		{
+			outputs[i] = (int) values[new_val_idx][output_slots[i] * value_words];
+		}
+	}
+
+	@Override
+	protected void load_values(long[] values)
+	{
+		System.arraycopy(this.values[new_val_idx], 0, values, 0, this.values[new_val_idx].length);
+	}
+
+	private void execute(int[] code, int pc, long[] old_values, long[] new_values)
+	{
+		if (value_words == 1)
+		{
+			execute_long(code, pc, old_values, new_values);
+		}
+		else
+		{
+			execute_words(code, pc, old_values, new_values);
+		}
+	}
+
+	/* loads read old_values and stores write new_values */
+	private void execute_long(int[] code, int pc, long[] old_values, long[] new_values)
+	{
+		long[] stack = this.stack;
+		long[] constants = this.constants;
+		int sp = 0;
+		long right;
+
+		for (;;)
+		{
+			switch (code[pc])
+			{
+				case SimOpcode.CONST:
+					stack[sp++] = constants[code[pc + 1]];
+					pc += 2;
+					break;
+				case SimOpcode.LOAD:
+					stack[sp++] = old_values[code[pc + 1]];
+					pc += 2;
+					break;
+				case SimOpcode.LOAD_BIT:
+					stack[sp++] = ((old_values[code[pc + 1]] & constants[code[pc + 2]]) != 0) ? 1 : 0;
+					pc += 3;
+					break;
+				case SimOpcode.MASK:
+					stack[sp - 1] &= constants[code[pc + 1]];
+					pc += 2;
+					break;
+				case SimOpcode.NEG:
+					stack[sp - 1] = -stack[sp - 1];
+					pc++;
+					break;
+				case SimOpcode.NOT:
+					stack[sp - 1] = ~stack[sp - 1];
+					pc++;
+					break;
+				case SimOpcode.LNOT:
+					stack[sp - 1] = (stack[sp - 1] == 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.MUL:
+					right = stack[--sp];
+					stack[sp - 1] *= right;
+					pc++;
+					break;
+				case SimOpcode.DIV:
+					right = stack[--sp];
+					stack[sp - 1] = SimWords.divideUnsigned(stack[sp - 1], right);
+					pc++;
+					break;
+				case SimOpcode.MOD:
+					right = stack[--sp];
+					stack[sp - 1] = SimWords.remainderUnsigned(stack[sp - 1], right);
+					pc++;
+					break;
+				case SimOpcode.ADD:
+					right = stack[--sp];
+					stack[sp - 1] += right;
+					pc++;
+					break;
+				case SimOpcode.SUB:
+					right = stack[--sp];
+					stack[sp - 1] -= right;
+					pc++;
+					break;
+				case SimOpcode.AND:
+					right = stack[--sp];
+					stack[sp - 1] &= right;
+					pc++;
+					break;
+				case SimOpcode.NAND:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] & right);
+					pc++;
+					break;
+				case SimOpcode.OR:
+					right = stack[--sp];
+					stack[sp - 1] |= right;
+					pc++;
+					break;
+				case SimOpcode.NOR:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] | right);
+					pc++;
+					break;
+				case SimOpcode.XOR:
+					right = stack[--sp];
+					stack[sp - 1] ^= right;
+					pc++;
+					break;
+				case SimOpcode.XNOR:
+					right = stack[--sp];
+					stack[sp - 1] = ~(stack[sp - 1] ^ right);
+					pc++;
+					break;
+				case SimOpcode.SHL:
+					right = stack[--sp];
+					stack[sp - 1] = SimWords.shiftLeft(stack[sp - 1], right);
+					pc++;
+					break;
+				case SimOpcode.SHR:
+					right = stack[--sp];
+					stack[sp - 1] = SimWords.shiftRight(stack[sp - 1], right);
+					pc++;
+					break;
+				case SimOpcode.LT:
+					right = stack[--sp];
+					stack[sp - 1] = (SimWords.compareUnsigned(stack[sp - 1], right) < 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LTE:
+					right = stack[--sp];
+					stack[sp - 1] = (SimWords.compareUnsigned(stack[sp - 1], right) <= 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.GT:
+					right = stack[--sp];
+					stack[sp - 1] = (SimWords.compareUnsigned(stack[sp - 1], right) > 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.GTE:
+					right = stack[--sp];
+					stack[sp - 1] = (SimWords.compareUnsigned(stack[sp - 1], right) >= 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.EQ:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] == right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.NE:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != right) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LAND:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != 0 && right != 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.LOR:
+					right = stack[--sp];
+					stack[sp - 1] = (stack[sp - 1] != 0 || right != 0) ? 1 : 0;
+					pc++;
+					break;
+				case SimOpcode.INT_DIV:
+				case SimOpcode.INT_MOD:
+				case SimOpcode.INT_SHL:
+				case SimOpcode.INT_SHR:
+				case SimOpcode.INT_LT:
+				case SimOpcode.INT_LTE:
+				case SimOpcode.INT_GT:
+				case SimOpcode.INT_GTE:
+					right = stack[--sp];
+					stack[sp - 1] = SimOpcode.evaluate(code[pc], (int) stack[sp - 1], (int) right);
+					pc++;
+					break;
+				case SimOpcode.STORE:
+				{
+					int slot = code[pc + 1];
+					long value = stack[--sp] & constants[code[pc + 2]];
+
+					if (new_values[slot] != value)
+					{
+						new_values[slot] = value;
+						changed(slot);
+					}
+					update_time[slot] = cycle_time;
+					pc += 3;
+					break;
+				}
+				case SimOpcode.STORE_BITS:
+				{
+					int slot = code[pc + 1];
+					int lsb = code[pc + 2];
+					long field_mask = constants[code[pc + 3]];
+					long value = ((new_values[slot] & ~SimWords.shiftLeft(field_mask, lsb)) | SimWords.shiftLeft(stack[--sp] & field_mask, lsb)) & constants[code[pc + 4]];
+
+					if (new_values[slot] != value)
+					{
+						new_values[slot] = value;
+						changed(slot);
+					}
+					update_time[slot] = cycle_time;
+					pc += 5;
+					break;
+				}
+				case SimOpcode.JUMP:
+					pc = code[pc + 1];
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+					pc = (stack[--sp] == 0) ? code[pc + 1] : pc + 2;
+					break;
+				case SimOpcode.CASE_NE:
+					right = stack[--sp];
+					pc = (stack[sp - 1] != right) ? code[pc + 1] : pc + 2;
+					break;
+				case SimOpcode.POP:
+					sp--;
+					pc++;
+					break;
+				case SimOpcode.COUNT:
+					counters[code[pc + 1]]++;
+					pc += 2;
+					break;
+				default:
+					/* END */
+					return;
+			}
+		}
+	}
+
+	/* execute_long with value_words longs per value. top is the offset of
+	 * the top of the stack and left the one under it. */
+	private void execute_words(int[] code, int pc, long[] old_values, long[] new_values)
+	{
+		long[] stack = this.stack;
+		long[] constants = this.constants;
+		int words = value_words;
+		int top = -words;
+		int left;
+		boolean result;
+
+		for (;;)
+		{
+			int opcode = code[pc];
+
+			switch (opcode)
+			{
+				case SimOpcode.CONST:
+					top += words;
+					System.arraycopy(constants, code[pc + 1] * words, stack, top, words);
+					pc += 2;
+					break;
+				case SimOpcode.LOAD:
+					top += words;
+					System.arraycopy(old_values, code[pc + 1] * words, stack, top, words);
+					pc += 2;
+					break;
+				case SimOpcode.LOAD_BIT:
+				{
+					int offset = code[pc + 1] * words;
+					int mask = code[pc + 2] * words;
+
+					result = false;
+					for (int i = 0; i < words; i++)
+					{
+						result |= (old_values[offset + i] & constants[mask + i]) != 0;
+					}
+					top += words;
+					SimWords.set(stack, top, words, result ? 1 : 0);
+					pc += 3;
+					break;
+				}
+				case SimOpcode.MASK:
+					for (int i = 0; i < words; i++)
+					{
+						stack[top + i] &= constants[code[pc + 1] * words + i];
+					}
+					pc += 2;
+					break;
+				case SimOpcode.NEG:
+					SimWords.negate(stack, top, words);
+					pc++;
+					break;
+				case SimOpcode.NOT:
+					for (int i = 0; i < words; i++)
+					{
+						stack[top + i] = ~stack[top + i];
+					}
+					pc++;
+					break;
+				case SimOpcode.LNOT:
+					SimWords.set(stack, top, words, SimWords.isZero(stack, top, words) ? 1 : 0);
+					pc++;
+					break;
+				case SimOpcode.MUL:
+					left = top - words;
+					SimWords.multiply(stack, left, stack, top, words, scratch);
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.DIV:
+				case SimOpcode.MOD:
+					left = top - words;
+					SimWords.divide(stack, left, stack, top, words, opcode == SimOpcode.MOD, scratch);
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.ADD:
+					left = top - words;
+					SimWords.add(stack, left, stack, top, words);
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.SUB:
+					left = top - words;
+					SimWords.subtract(stack, left, stack, top, words);
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.AND:
+				case SimOpcode.NAND:
+				case SimOpcode.OR:
+				case SimOpcode.NOR:
+				case SimOpcode.XOR:
+				case SimOpcode.XNOR:
+					left = top - words;
+					for (int i = 0; i < words; i++)
+					{
+						stack[left + i] = bitwise(opcode, stack[left + i], stack[top + i]);
+					}
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.SHL:
+					left = top - words;
+					SimWords.shiftLeft(stack, left, words, SimWords.shiftAmount(stack, top, words));
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.SHR:
+					left = top - words;
+					SimWords.shiftRight(stack, left, words, SimWords.shiftAmount(stack, top, words));
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.LT:
+				case SimOpcode.LTE:
+				case SimOpcode.GT:
+				case SimOpcode.GTE:
+				case SimOpcode.EQ:
+				case SimOpcode.NE:
+				{
+					int compare;
+
+					left = top - words;
+					compare = SimWords.compare(stack, left, stack, top, words);
+					switch (opcode)
+					{
+						case SimOpcode.LT:
+							result = compare < 0;
+							break;
+						case SimOpcode.LTE:
+							result = compare <= 0;
+							break;
+						case SimOpcode.GT:
+							result = compare > 0;
+							break;
+						case SimOpcode.GTE:
+							result = compare >= 0;
+							break;
+						case SimOpcode.EQ:
+							result = compare == 0;
+							break;
+						default:
+							result = compare != 0;
+							break;
+					}
+					SimWords.set(stack, left, words, result ? 1 : 0);
+					top = left;
+					pc++;
+					break;
+				}
+				case SimOpcode.LAND:
+				case SimOpcode.LOR:
+					left = top - words;
+					if (opcode == SimOpcode.LAND)
+					{
+						result = !SimWords.isZero(stack, left, words) && !SimWords.isZero(stack, top, words);
+					}
+					else
+					{
+						result = !SimWords.isZero(stack, left, words) || !SimWords.isZero(stack, top, words);
+					}
+					SimWords.set(stack, left, words, result ? 1 : 0);
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.INT_DIV:
+				case SimOpcode.INT_MOD:
+				case SimOpcode.INT_SHL:
+				case SimOpcode.INT_SHR:
+				case SimOpcode.INT_LT:
+				case SimOpcode.INT_LTE:
+				case SimOpcode.INT_GT:
+				case SimOpcode.INT_GTE:
+					left = top - words;
+					SimWords.set(stack, left, words, SimOpcode.evaluate(opcode, (int) stack[left], (int) stack[top]));
+					top = left;
+					pc++;
+					break;
+				case SimOpcode.STORE:
+				{
+					int slot = code[pc + 1];
+					int mask = code[pc + 2] * words;
+
+					for (int i = 0; i < words; i++)
+					{
+						stack[top + i] &= constants[mask + i];
+					}
+					store(new_values, slot, top);
+					top -= words;
+					pc += 3;
+					break;
+				}
+				case SimOpcode.STORE_BITS:
+				{
+					int slot = code[pc + 1];
+					int offset = slot * words;
+					int lsb = code[pc + 2];
+					int field_mask = code[pc + 3] * words;
+					int mask = code[pc + 4] * words;
+					long[] scratch = this.scratch;
+
+					/* the field mask moved up to the bits being stored */
+					System.arraycopy(constants, field_mask, scratch, 0, words);
+					SimWords.shiftLeft(scratch, 0, words, lsb);
+					for (int i = 0; i < words; i++)
+					{
+						stack[top + i] &= constants[field_mask + i];
+					}
+					SimWords.shiftLeft(stack, top, words, lsb);
+					for (int i = 0; i < words; i++)
+					{
+						stack[top + i] = ((new_values[offset + i] & ~scratch[i]) | stack[top + i]) & constants[mask + i];
+					}
+					store(new_values, slot, top);
+					top -= words;
+					pc += 5;
+					break;
+				}
+				case SimOpcode.JUMP:
+					pc = code[pc + 1];
+					break;
+				case SimOpcode.JUMP_IF_ZERO:
+					pc = SimWords.isZero(stack, top, words) ? code[pc + 1] : pc + 2;
+					top -= words;
+					break;
+				case SimOpcode.CASE_NE:
+					left = top - words;
+					pc = !SimWords.equals(stack, left, stack, top, words) ? code[pc + 1] : pc + 2;
+					top = left;
+					break;
+				case SimOpcode.POP:
+					top -= words;
+					pc++;
+					break;
+				case SimOpcode.COUNT:
+					counters[code[pc + 1]]++;
+					pc += 2;
+					break;
+				default:
+					/* END */
+					return;
+			}
+		}
+	}
+
+	private static long bitwise(int opcode, long left, long right)
+	{
+		switch (opcode)
+		{
+			case SimOpcode.AND:
+				return left & right;
+			case SimOpcode.NAND:
+				return ~(left & right);
+			case SimOpcode.OR:
+				return left | right;
+			case SimOpcode.NOR:
+				return ~(left | right);
+			case SimOpcode.XOR:
+				return left ^ right;
+			default:
+				return ~(left ^ right);
+		}
+	}
+
+	/* copies the value at the stack offset into the slot if it changed */
+	private void store(long[] new_values, int slot, int top)
+	{
+		int offset = slot * value_words;
+
+		if (!SimWords.equals(new_values, offset, stack, top, value_words))
+		{
+			System.arraycopy(stack, top, new_values, offset, value_words);
+			changed(slot);
+		}
+		update_time[slot] = cycle_time;
+	}
+}
@@ -0,0 +1,357 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) 2014 Peter Jamieson, Naoki Mizuno, and Boyu Zhang
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+ */
+
+package VerilogSimulator;
+
+/* Unsigned arithmetic on values packed into longs, least significant word
+ * first. A value is num_words longs starting at an offset into an array, so
+ * the stack and the slots of SimWideInterpreter are flat arrays. Results are
+ * truncated to num_words. */
+public final class SimWords
+{
+	private SimWords()
+	{
+	}
+
+	/* --------------------------------------------------------------------------
+	 * One word
+	 * -------------------------------------------------------------------------- */
+	public static int compareUnsigned(long left, long right)
+	{
+		left += Long.MIN_VALUE;
+		right += Long.MIN_VALUE;
+
+		return (left < right) ? -1 : ((left == right) ? 0 : 1);
+	}
+
+	public static long divideUnsigned(long dividend, long divisor)
+	{
+		long quotient;
+
+		if (divisor < 0)
+		{
+			/* the top bit is set so the quotient is 0 or 1 */
+			return (compareUnsigned(dividend, divisor) < 0) ? 0 : 1;
+		}
+		if (dividend >= 0)
+		{
+			return dividend / divisor;
+		}
+
+		quotient = ((dividend >>> 1) / divisor) << 1;
+		if (compareUnsigned(dividend - quotient * divisor, divisor) >= 0)
+		{
+			quotient++;
+		}
+
+		return quotient;
+	}
+
+	public static long remainderUnsigned(long dividend, long divisor)
+	{
+		return dividend - divideUnsigned(dividend, divisor) * divisor;
+	}
+
+	/* shifts of a word or more leave nothing */
+	public static long shiftLeft(long value, long amount)
+	{
+		return (amount < 0 || amount >= 64) ? 0 : value << amount;
+	}
+
+	public static long shiftRight(long value, long amount)
+	{
+		return (amount < 0 || amount >= 64) ? 0 : value >>> amount;
+	}
+
+	/* the low width bits set */
+	public static long mask(int width)
+	{
+		return (width >= 64) ? -1L : (1L << width) - 1;
+	}
+
+	/* --------------------------------------------------------------------------
+	 * Several words
+	 * -------------------------------------------------------------------------- */
+	public static void set(long[] words, int offset, int num_words, long value)
+	{
+		words[offset] = value;
+		for (int i = 1; i < num_words; i++)
+		{
+			/* sign extend like an int does when it widens */
+			words[offset + i] = (value < 0) ? -1L : 0;
+		}
+	}
+
+	public static void mask(long[] words, int offset, int num_words, int width)
+	{
+		for (int i = 0; i < num_words; i++)
+		{
+			int bits = width - 64 * i;
+
+			words[offset + i] = (bits <= 0) ? 0 : mask(bits);
+		}
+	}
+
+	public static void setBit(long[] words, int offset, int bit)
+	{
+		words[offset + bit / 64] |= 1L << (bit % 64);
+	}
+
+	public static boolean isZero(long[] words, int offset, int num_words)
+	{
+		for (int i = 0; i < num_words; i++)
+		{
+			if (words[offset + i] != 0)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public static boolean equals(long[] left, int left_offset, long[] right, int right_offset, int num_words)
+	{
+		for (int i = 0; i < num_words; i++)
+		{
+			if (left[left_offset + i] != right[right_offset + i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public static int compare(long[] left, int left_offset, long[] right, int right_offset, int num_words)
+	{
+		for (int i = num_words - 1; i >= 0; i--)
+		{
+			int result = compareUnsigned(left[left_offset + i], right[right_offset + i]);
+
+			if (result != 0)
+			{
+				return result;
+			}
+		}
+
+		return 0;
+	}
+
+	/* left += right */
+	public static void add(long[] left, int left_offset, long[] right, int right_offset, int num_words)
+	{
+		long carry = 0;
+
+		for (int i = 0; i < num_words; i++)
+		{
+			long x = left[left_offset + i];
+			long y = right[right_offset + i];
+			long sum = x + y + carry;
+
+			carry = ((x & y) | ((x | y) & ~sum)) >>> 63;
+			left[left_offset + i] = sum;
+		}
+	}
+
+	/* left -= right */
+	public static void subtract(long[] left, int left_offset, long[] right, int right_offset, int num_words)
+	{
+		long borrow = 0;
+
+		for (int i = 0; i < num_words; i++)
+		{
+			long x = left[left_offset + i];
+			long y = right[right_offset + i];
+			long difference = x - y - borrow;
+
+			borrow = ((~x & y) | ((~x | y) & difference)) >>> 63;
+			left[left_offset + i] = difference;
+		}
+	}
+
+	public static void negate(long[] words, int offset, int num_words)
+	{
+		long carry = 1;
+
+		for (int i = 0; i < num_words; i++)
+		{
+			long value = ~words[offset + i] + carry;
+
+			carry = (carry != 0 && value == 0) ? 1 : 0;
+			words[offset + i] = value;
+		}
+	}
+
+	/* left *= right, in 32 bit halves so no product overflows. scratch needs
+	 * num_words longs. */
+	public static void multiply(long[] left, int left_offset, long[] right, int right_offset, int num_words, long[] scratch)
+	{
+		int num_halves = 2 * num_words;
+
+		for (int i = 0; i < num_words; i++)
+		{
+			scratch[i] = 0;
+		}
+
+		for (int i = 0; i < num_halves; i++)
+		{
+			long x = half(left, left_offset, i);
+			long carry = 0;
+
+			if (x == 0)
+			{
+				continue;
+			}
+			for (int j = 0; i + j < num_halves; j++)
+			{
+				long product = x * half(right, right_offset, j) + half(scratch, 0, i + j) + carry;
+
+				set_half(scratch, i + j, product & 0xFFFFFFFFL);
+				carry = product >>> 32;
+			}
+		}
+
+		System.arraycopy(scratch, 0, left, left_offset, num_words);
+	}
+
+	private static long half(long[] words, int offset, int i)
+	{
+		long word = words[offset + i / 2];
+
+		return ((i % 2) == 0) ? (word & 0xFFFFFFFFL) : (word >>> 32);
+	}
+
+	private static void set_half(long[] words, int i, long value)
+	{
+		if ((i % 2) == 0)
+		{
+			words[i / 2] = (words[i / 2] & 0xFFFFFFFF00000000L) | value;
+		}
+		else
+		{
+			words[i / 2] = (words[i / 2] & 0xFFFFFFFFL) | (value << 32);
+		}
+	}
+
+	/* Long division a bit at a time. Leaves the quotient in left, or the
+	 * remainder if is_remainder. scratch needs 2 * num_words longs. */
+	public static void divide(long[] left, int left_offset, long[] right, int right_offset, int num_words, boolean is_remainder, long[] scratch)
+	{
+		int remainder = num_words;
+
+		if (isZero(right, right_offset, num_words))
+		{
+			throw new ArithmeticException("/ by zero");
+		}
+
+		for (int i = 0; i < 2 * num_words; i++)
+		{
+			scratch[i] = 0;
+		}
+
+		for (int bit = 64 * num_words - 1; bit >= 0; bit--)
+		{
+			/* the remainder can outgrow the words for a moment */
+			boolean is_over = scratch[remainder + num_words - 1] < 0;
+
+			shiftLeft(scratch, remainder, num_words, 1);
+			scratch[remainder] |= (left[left_offset + bit / 64] >>> (bit % 64)) & 1;
+
+			if (is_over || compare(scratch, remainder, right, right_offset, num_words) >= 0)
+			{
+				subtract(scratch, remainder, right, right_offset, num_words);
+				setBit(scratch, 0, bit);
+			}
+		}
+
+		System.arraycopy(scratch, is_remainder ? remainder : 0, left, left_offset, num_words);
+	}
+
+	public static void shiftLeft(long[] words, int offset, int num_words, long amount)
+	{
+		int word_shift;
+		int bit_shift;
+
+		if (amount < 0 || amount >= 64L * num_words)
+		{
+			set(words, offset, num_words, 0);
+			return;
+		}
+
+		word_shift = (int) (amount / 64);
+		bit_shift = (int) (amount % 64);
+		for (int i = num_words - 1; i >= 0; i--)
+		{
+			int from = i - word_shift;
+			long value = (from >= 0) ? words[offset + from] << bit_shift : 0;
+
+			if (bit_shift != 0 && from > 0)
+			{
+				value |= words[offset + from - 1] >>> (64 - bit_shift);
+			}
+			words[offset + i] = value;
+		}
+	}
+
+	public static void shiftRight(long[] words, int offset, int num_words, long amount)
+	{
+		int word_shift;
+		int bit_shift;
+
+		if (amount < 0 || amount >= 64L * num_words)
+		{
+			set(words, offset, num_words, 0);
+			return;
+		}
+
+		word_shift = (int) (amount / 64);
+		bit_shift = (int) (amount % 64);
+		for (int i = 0; i < num_words; i++)
+		{
+			int from = i + word_shift;
+			long value = (from < num_words) ? words[offset + from] >>> bit_shift : 0;
+
+			if (bit_shift != 0 && from + 1 < num_words)
+			{
+				value |= words[offset + from + 1] << (64 - bit_shift);
+			}
+			words[offset + i] = value;
+		}
+	}
+
+	/* a shift amount too big for a long shifts everything out */
+	public static long shiftAmount(long[] words, int offset, int num_words)
+	{
+		for (int i = 1; i < num_words; i++)
+		{
+			if (words[offset + i] != 0)
+			{
+				return -1;
+			}
+		}
+
+		return words[offset];
+	}
+}
@@ -67,18 +67,14 @@ public class GeneralSensor
 		return sensorTexture;
 	}
 
-	public String readSensorInfo()
+	/* 4 bits - the top one is set if a car is on the sensor and the rest are
+	 * the lowest 3 bits of its ending counter */
+	public int readSensorInfo()
 	{
-		String temp = "";
 		if (this.gridNode == null || this.gridNode.getCar() == null)
-			temp = "0000";
-		else if (this.gridNode != null && this.gridNode.getCar() != null)
-		{
-			temp = "00" + Integer.toBinaryString(this.gridNode.getCar().get_end_point().getEndingCounter());
-			temp = temp.substring(temp.length() - 3);
-			temp = "1" + temp;
-		}
-		return temp;
+			return 0;
+
+		return 0x8 | (this.gridNode.getCar().get_end_point().getEndingCounter() & 0x7);
 	}
 	
 	public void dispose(){
@@ -26,16 +26,23 @@ package com.me.myverilogTown;
 
 import java.util.*;
 import VerilogSimulator.Parse;
+import VerilogSimulator.SimParallelStage;
 
 public class LevelLogic
 {
-	private int				time_step;
-	private int				count_cars_done;
-	private int				num_general_sensors;
-	public int				success_cars	= 0;
-	public int				crash_cars		= 0;
-	private Queue<Integer>	car_processing_q;
-	private Queue<Integer>	car_crashing_q;
+	/* -DverilogTown.parallelSignals=true steps the signals on every core.
+	 * It's off as SimParallelBenchmark hasn't shown it beating one thread. */
+	public static final String	PARALLEL_SIGNALS_PROPERTY	= "verilogTown.parallelSignals";
+
+	private int					time_step;
+	private int					count_cars_done;
+	private int					num_general_sensors;
+	public int					success_cars	= 0;
+	public int					crash_cars		= 0;
+	private Queue<Integer>		car_processing_q;
+	private Queue<Integer>		car_crashing_q;
+	private SimParallelStage	signal_stage;
+	private int[]				sensor_lights;
 
 	public LevelLogic()
 	{
@@ -48,6 +55,9 @@ public class LevelLogic
 		/* Queues to do processing steps */
 		car_processing_q = new LinkedList<Integer>();
 		car_crashing_q = new LinkedList<Integer>();
+
+		/* made for the first update's signals */
+		signal_stage = null;
 	}
 
 	public boolean update(
@@ -58,28 +68,36 @@ public class LevelLogic
 			Parse Compiler[],
 			GeneralSensor sensor[])
 	{
-		ArrayList<Integer> light_values;
-		String general_sensors;
+		int general_sensors;
 		/* increment time */
 		time_step++; // a second of time at 25 FPS
 
-		general_sensors = "00";
-		/* setup general sensors - NOT DONE */
+		general_sensors = 0;
+		/* setup general sensors - 4 bits each with sensor 0 at the bottom */
 		for (int i = sensor.length - 1; i >= 0; i--)
 		{
 			/* Check sensor */
-			general_sensors = general_sensors + sensor[i].readSensorInfo();
+			general_sensors = (general_sensors << 4) | sensor[i].readSensorInfo();
 		}
 
-		/* simulation of traffic lights. This is where the Verilog simulation
-		 * would go */
+		/* simulation of traffic lights. The signals don't affect each other
+		 * within a tick, so big maps can step them on several cores */
+		if (signal_stage == null || signal_stage.getSignals() != Compiler)
+		{
+			signal_stage = Boolean.getBoolean(PARALLEL_SIGNALS_PROPERTY) ? new SimParallelStage(Compiler, SimParallelStage.sharedPool(), SimParallelStage.DEFAULT_CHUNK_SIZE) : new SimParallelStage(Compiler);
+			sensor_lights = new int[Compiler.length];
+		}
+		for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
+		{
+			sensor_lights[i] = clevel.read_traffic_signal(i);
+		}
+		/* one clock, combinational logic settled in dependency order */
+		signal_stage.step(1, sensor_lights, general_sensors);
 		for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
 		{
-			/* simulate twice for clock and combinational */
-			light_values = Compiler[i].sim_cycle("1", clevel.read_traffic_signal(i), general_sensors);
-			light_values = Compiler[i].sim_cycle("1", clevel.read_traffic_signal(i), general_sensors);
+			int[] light_values = signal_stage.getOutputs(i);
 
-			clevel.set_traffic_signal(i, light_values.get(0), light_values.get(1), light_values.get(2), light_values.get(3));
+			clevel.set_traffic_signal(i, light_values[Parse.OUT_N], light_values[Parse.OUT_S], light_values[Parse.OUT_E], light_values[Parse.OUT_W]);
 		}
 
 		/* load up a queue with what needs to be processed */
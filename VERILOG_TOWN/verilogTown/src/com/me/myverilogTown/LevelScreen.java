@@ -35,6 +35,9 @@ import java.net.URISyntaxException;
 import java.util.*;
 
 import VerilogSimulator.Parse;
+import VerilogSimulator.SimCoverage;
+import VerilogSimulator.SimEngineType;
+import VerilogSimulator.SimProgramCache;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.*;
@@ -53,6 +56,13 @@ import com.badlogic.gdx.graphics.g2d.Sprite;
 public class LevelScreen implements Screen
 {
 	public static final String	VERILOG_TOWN_DEVELOPMENT	= "VERILOG_TOWN_DEVELOPMENT";
+	/* -DverilogTown.waveforms=directory writes a VCD of every signal there */
+	public static final String	WAVEFORMS_PROPERTY			= "verilogTown.waveforms";
+	/* -DverilogTown.coverage=directory profiles the signals and writes their
+	 * coverage reports there when the level ends */
+	public static final String	COVERAGE_PROPERTY			= "verilogTown.coverage";
+	/* ten seconds of ticks at 25 FPS, written out when cars crash */
+	private static final int	CYCLES_BEFORE_CRASH			= 250;
 
 	public final VerilogTown	game;
 
@@ -168,6 +178,8 @@ public class LevelScreen implements Screen
 	private boolean				isPlacingSensor;
 	private Sprite				tempSprite;
 	private File				sensorFile;
+	private File				waveformDirectory;
+	private File				coverageDirectory;
 	private GeneralSensor		tempSensor;
 
 	private Car					lastCarShowDestination;
@@ -331,9 +343,28 @@ public class LevelScreen implements Screen
 
 		/* initialize the simulators for the Verilog */
 		Compiler = new Parse[clevel.get_num_traffic_signals()];
+		SimProgramCache programCache = new SimProgramCache(SimProgramCache.defaultDirectory());
 		for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
 		{
 			Compiler[i] = new Parse();
+			/* the signals run every frame for the whole level */
+			Compiler[i].setSimEngine(SimEngineType.BYTECODE);
+			/* signals that haven't changed since the last run skip the parser */
+			Compiler[i].setProgramCache(programCache);
+		}
+		if (System.getProperty(WAVEFORMS_PROPERTY) != null)
+		{
+			waveformDirectory = new File(System.getProperty(WAVEFORMS_PROPERTY));
+			waveformDirectory.mkdirs();
+		}
+		if (System.getProperty(COVERAGE_PROPERTY) != null)
+		{
+			coverageDirectory = new File(System.getProperty(COVERAGE_PROPERTY));
+			coverageDirectory.mkdirs();
+			for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
+			{
+				Compiler[i].setProfiling(true);
+			}
 		}
 
 		/* initialize the time */
@@ -536,6 +567,10 @@ public class LevelScreen implements Screen
 			/* IF - tick happends and simulating then simulate a time frame */
 			/* Gdx.app.log("Time Since last simulation:", "="+ Time); */
 			this.level_done = levelLogic.update(this.cars, this.num_cars, clevel, random_number, Compiler, sensor);
+			if (waveformDirectory != null && levelLogic.crash_cars > this.crash_cars)
+			{
+				writeCrashWaveforms();
+			}
 			this.crash_cars = levelLogic.crash_cars;
 			this.forced_cars = clevel.forced_cars;
 			this.failed_cars = clevel.forced_cars + levelLogic.crash_cars;
@@ -837,6 +872,61 @@ public class LevelScreen implements Screen
 		pathOfVerilogFile = rootPath + "Levels/" + "Lv" + level_number + "/" + "VerilogFiles/";
 	}
 
+	/* One VCD per signal for the whole run, and the last cycles of each kept
+	 * for writeCrashWaveforms */
+	private void startWaveforms()
+	{
+		for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
+		{
+			try
+			{
+				Compiler[i].keepLastCycles(CYCLES_BEFORE_CRASH);
+				Compiler[i].startWaveform(new File(waveformDirectory, "Lv" + level_number + "_signal_" + i + ".vcd"));
+			}
+			catch (IOException e)
+			{
+				Gdx.app.log("LevelScreen", "Can't write the waveform of signal " + i + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void writeCrashWaveforms()
+	{
+		for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
+		{
+			try
+			{
+				Compiler[i].writeLastCycles(new File(waveformDirectory, "Lv" + level_number + "_signal_" + i + "_crash_" + levelLogic.crash_cars + ".vcd"));
+			}
+			catch (IOException e)
+			{
+				Gdx.app.log("LevelScreen", "Can't write the waveform of signal " + i + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private void writeCoverage()
+	{
+		for (int i = 0; i < Compiler.length; i++)
+		{
+			SimCoverage coverage = Compiler[i].getCoverage();
+
+			if (coverage == null)
+			{
+				continue;
+			}
+
+			try
+			{
+				coverage.writeReport(new File(coverageDirectory, "Lv" + level_number + "_signal_" + i + "_coverage.txt"));
+			}
+			catch (IOException e)
+			{
+				Gdx.app.log("LevelScreen", "Can't write the coverage of signal " + i + ": " + e.getMessage());
+			}
+		}
+	}
+
 	public void draw_score_bar()
 	{
 		uibatch.begin();
@@ -929,11 +1019,15 @@ public class LevelScreen implements Screen
 					/* Recorded that the simulation has started */
 					simulation_started = true;
 
-					/* If compiled simulate first 2 cycles to reset system */
+					if (waveformDirectory != null)
+					{
+						startWaveforms();
+					}
+
+					/* If compiled simulate a clock with rst low to reset system */
 					for (int i = 0; i < clevel.get_num_traffic_signals(); i++)
 					{
-						Compiler[i].sim_cycle("0", "00000000", "000000000000000000000000000000");
-						Compiler[i].sim_cycle("0", "00000000", "000000000000000000000000000000");
+						Compiler[i].step(0, 0, 0, null);
 					}
 				}
 			}
@@ -1169,6 +1263,14 @@ public class LevelScreen implements Screen
 	@Override
 	public void dispose()
 	{
+		for (int i = 0; i < Compiler.length; i++)
+		{
+			Compiler[i].stopWaveform();
+		}
+		if (coverageDirectory != null)
+		{
+			writeCoverage();
+		}
 		level_map.dispose();
 		stop.dispose();
 		stop_highlighted.dispose();
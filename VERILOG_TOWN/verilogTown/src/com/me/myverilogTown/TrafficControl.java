@@ -538,78 +538,27 @@ public class TrafficControl
 		}
 	}
 
-	/* Index order where 0 is the last element in string 7 is MSB and 0 is LSB 4
+	/* Index order where 7 is MSB and 0 is LSB 4
 	 * 017 523 6 */
-	public String read_traffic_signal()
+	public int read_traffic_signal()
 	{
-		String return_string = "";
-
-		if (goWest != null && goWest.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (goNorth != null && goNorth.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (goEast != null && goEast.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (goSouth != null && goSouth.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (internalLowerRight != null && internalLowerRight.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (internalLowerLeft != null && internalLowerLeft.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (internalUpperRight != null && internalUpperRight.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
-		if (internalUpperLeft != null && internalUpperLeft.getCar() != null)
-		{
-			return_string = return_string + "1";
-		}
-		else
-		{
-			return_string = return_string + "0";
-		}
+		int signal_bits = 0;
+
+		signal_bits = (signal_bits << 1) | (hasCar(goWest) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(goNorth) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(goEast) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(goSouth) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(internalLowerRight) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(internalLowerLeft) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(internalUpperRight) ? 1 : 0);
+		signal_bits = (signal_bits << 1) | (hasCar(internalUpperLeft) ? 1 : 0);
+
+		return signal_bits;
+	}
 
-		return return_string;
+	private boolean hasCar(GridNode node)
+	{
+		return node != null && node.getCar() != null;
 	}
 
 	/* batch.draw(intersection, ((goNorth.getX()-2)*64)+41,
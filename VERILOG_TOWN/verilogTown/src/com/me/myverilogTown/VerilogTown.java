@@ -37,6 +37,8 @@ import java.net.URISyntaxException;
 
 import javax.swing.JOptionPane;
 
+import VerilogSimulator.ParseFrontEnd;
+
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
@@ -93,6 +95,19 @@ public class VerilogTown extends Game
 			localServer.start();
 		}
 
+		// Fill the Verilog parser's caches while the menus are up so the
+		// first level compiles quickly
+		Thread warmUp = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				ParseFrontEnd.warmUp();
+			}
+		}, "Verilog warm-up");
+		warmUp.setDaemon(true);
+		warmUp.start();
+
 		this.setScreen(new MainMenu(this));
 	}
 
@@ -338,7 +338,7 @@ public class VerilogTownMap
 		}
 	}
 
-	public String read_traffic_signal(int light_index)
+	public int read_traffic_signal(int light_index)
 	{
 		return traffic_signals[light_index].read_traffic_signal();
 	}